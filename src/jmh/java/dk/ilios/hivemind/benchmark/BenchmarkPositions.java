@@ -0,0 +1,160 @@
+package dk.ilios.hivemind.benchmark;
+
+import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import dk.ilios.hivemind.model.rules.Rules;
+import dk.ilios.hivemind.parser.BoardspaceGameParser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fixed set of positions the benchmarks run on, so results can be compared between runs.
+ *
+ * - "sureWinInOneTurn" and "sureWinInTwoTurns": The boards from <code>TestSetups</code>.
+ * - "defensive": Position after 42 plies of a random game without expansions (seed 30). The player to move cannot win,
+ *   and only 4 of 77 moves stop the opponent from surrounding its queen next turn.
+ * - "early", "mid" and "late": Positions after 8, 24 and 48 plies. If the system property "hivemind.benchmark.games"
+ *   points to a directory with Boardspace game files (eg. ./plays/tournament), the positions are replayed from the
+ *   first game long enough. Otherwise they come from a random game with a fixed seed, played with all expansions.
+ */
+public class BenchmarkPositions {
+
+    public static final String GAMES_DIR_PROPERTY = "hivemind.benchmark.games";
+
+    public static final String SURE_WIN_IN_ONE_TURN = "sureWinInOneTurn";
+    public static final String SURE_WIN_IN_TWO_TURNS = "sureWinInTwoTurns";
+    public static final String DEFENSIVE = "defensive";
+    public static final String EARLY = "early";
+    public static final String MID = "mid";
+    public static final String LATE = "late";
+
+    private static final long SEED = 42;
+    private static final long DEFENSIVE_SEED = 30;
+
+    private static final Comparator<GameCommand> MOVE_ORDER = new Comparator<GameCommand>() {
+        @Override
+        public int compare(GameCommand move1, GameCommand move2) {
+            return getMoveKey(move1).compareTo(getMoveKey(move2));
+        }
+    };
+
+    /**
+     * Returns the position with the given name. Positions from games are left with the player to move active.
+     */
+    public static Game create(String name) {
+        if (name.equals(SURE_WIN_IN_ONE_TURN)) return updateKey(TestSetups.sureWinInOneTurn(createGame(false)));
+        if (name.equals(SURE_WIN_IN_TWO_TURNS)) return updateKey(TestSetups.sureWinInTwoTurns(createGame(false)));
+        if (name.equals(DEFENSIVE)) return playRandomGame(42, false, DEFENSIVE_SEED);
+        if (name.equals(EARLY)) return createGamePosition(8);
+        if (name.equals(MID)) return createGamePosition(24);
+        if (name.equals(LATE)) return createGamePosition(48);
+        throw new IllegalArgumentException("Unknown position: " + name);
+    }
+
+    // The test setups change the board directly
+    private static Game updateKey(Game game) {
+        game.updateZobristKey();
+        return game;
+    }
+
+    private static Game createGamePosition(int plies) {
+        String gamesDir = System.getProperty(GAMES_DIR_PROPERTY);
+        if (gamesDir != null) {
+            Game game = replayBoardspaceGame(new File(gamesDir), plies);
+            if (game != null) return game;
+        }
+        return playRandomGame(plies, true, SEED);
+    }
+
+    // Replay the first game in the directory with enough moves. Returns null if no game could be used.
+    private static Game replayBoardspaceGame(File dir, int plies) {
+        File[] files = dir.listFiles();
+        if (files == null) return null;
+        Arrays.sort(files);
+        for (File file : files) {
+            if (!file.isFile()) continue;
+            Game game;
+            try {
+                game = new BoardspaceGameParser(file).parse();
+            } catch (RuntimeException e) {
+                continue;
+            }
+
+            game.setReplayMode(true);
+            int ply = 0;
+            while (ply < plies && game.forward() != null) {
+                ply++;
+            }
+            if (ply == plies) return game;
+        }
+        return null;
+    }
+
+    // Play random moves until the given ply. Moves that end the game are avoided, so the position is still open.
+    // The order of generated moves depends on identity hash codes, so they are sorted to get the same game every time.
+    private static Game playRandomGame(int plies, boolean expansions, long seed) {
+        Random random = new Random(seed);
+        StandardMoveGenerator generator = new StandardMoveGenerator();
+        Game game = createGame(expansions);
+        for (int ply = 0; ply < plies; ply++) {
+            List<GameCommand> moves = generator.generateMoves(new ArrayList<GameCommand>(), game);
+            Collections.sort(moves, MOVE_ORDER);
+            boolean moved = false;
+            while (!moved && !moves.isEmpty()) {
+                GameCommand move = moves.remove(random.nextInt(moves.size()));
+                move.execute(game);
+                moved = !isGameOver(game);
+                if (!moved) {
+                    move.undo(game);
+                }
+            }
+            if (!moved) {
+                GameCommand.PASS.execute(game);
+            }
+        }
+        return game;
+    }
+
+    /**
+     * Returns a key that identifies the move independent of the game instance and where the token currently is. Token
+     * ids are not used, as which token of a type is taken from the supply depends on the order of a hash set.
+     */
+    public static String getMoveKey(GameCommand move) {
+        if (move == null || move.getToken() == null) return "PASS";
+        return move.getToken().getPlayer().getType() + ":" + move.getToken().getOriginalType() + ":" + move.getFromQ()
+                + "," + move.getFromR() + "->" + move.getToQ() + "," + move.getToR() + (move.isMovedByPillbug() ? ":pillbug" : "");
+    }
+
+    private static boolean isGameOver(Game game) {
+        Rules rules = Rules.getInstance();
+        return rules.isQueenSurrounded(game.getWhitePlayer(), game.getBoard())
+                || rules.isQueenSurrounded(game.getBlackPlayer(), game.getBoard());
+    }
+
+    private static Game createGame(boolean expansions) {
+        Game game = new Game();
+        Player white = new Player("White", Player.PlayerType.WHITE);
+        Player black = new Player("Black", Player.PlayerType.BLACK);
+        if (expansions) {
+            white.useAllExpansions();
+            black.useAllExpansions();
+        }
+        white.fillBaseSupply();
+        black.fillBaseSupply();
+        game.addPlayers(white, black);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setManualStepping(true);
+        game.start();
+        return game;
+    }
+}
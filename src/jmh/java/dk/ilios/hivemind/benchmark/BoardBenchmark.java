@@ -0,0 +1,91 @@
+package dk.ilios.hivemind.benchmark;
+
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for updating and querying the <code>Board</code>. Tokens are added and removed or moved back and forth
+ * in the same operation, so the position is the same for every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({"sureWinInOneTurn", "sureWinInTwoTurns", "early", "mid", "late"})
+    public String position;
+
+    private Board board;
+    private GameCommand addMove;   // First legal move from the supply, if any
+    private GameCommand boardMove; // First legal move of a token on the board, if any
+    private List<Hex> filledHexes;
+
+    @Setup
+    public void setup() {
+        Game game = BenchmarkPositions.create(position);
+        board = game.getBoard();
+        filledHexes = board.getFilledHexes();
+        for (GameCommand move : new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), game)) {
+            if (move.getToken() == null) continue;
+            if (move.getFromQ() == Hex.SUPPLY) {
+                if (addMove == null) addMove = move;
+            } else {
+                if (boardMove == null) boardMove = move;
+            }
+        }
+    }
+
+    @Benchmark
+    public Board addAndRemoveToken() {
+        if (addMove != null) {
+            Token token = addMove.getToken();
+            board.addToken(token, addMove.getToQ(), addMove.getToR());
+            board.removeToken(addMove.getToQ(), addMove.getToR());
+        }
+        return board;
+    }
+
+    @Benchmark
+    public Board moveToken() {
+        if (boardMove != null) {
+            board.moveToken(boardMove.getFromQ(), boardMove.getFromR(), boardMove.getToQ(), boardMove.getToR());
+            board.moveToken(boardMove.getToQ(), boardMove.getToR(), boardMove.getFromQ(), boardMove.getFromR());
+        }
+        return board;
+    }
+
+    @Benchmark
+    public void getNeighborHexes(Blackhole blackhole) {
+        for (int i = 0; i < filledHexes.size(); i++) {
+            blackhole.consume(board.getNeighborHexes(filledHexes.get(i)));
+        }
+    }
+
+    @Benchmark
+    public List<Hex> getFilledHexes() {
+        return board.getFilledHexes();
+    }
+}
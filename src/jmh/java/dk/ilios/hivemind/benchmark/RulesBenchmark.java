@@ -0,0 +1,74 @@
+package dk.ilios.hivemind.benchmark;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.Token;
+import dk.ilios.hivemind.model.rules.Rules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the general <code>Rules</code> used by move generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmark {
+
+    @Param({"sureWinInOneTurn", "sureWinInTwoTurns", "early", "mid", "late"})
+    public String position;
+
+    private Rules rules;
+    private Board board;
+    private Player player;
+    private List<Token> tokens; // Top token of each filled hex
+
+    @Setup
+    public void setup() {
+        Game game = BenchmarkPositions.create(position);
+        rules = Rules.getInstance();
+        board = game.getBoard();
+        player = game.getActivePlayer();
+        tokens = new ArrayList<Token>();
+        for (Hex hex : board.getFilledHexes()) {
+            tokens.add(hex.getTopToken());
+        }
+    }
+
+    @Benchmark
+    public void isFreeToMove(Blackhole blackhole) {
+        for (int i = 0; i < tokens.size(); i++) {
+            blackhole.consume(rules.isFreeToMove(tokens.get(i), board));
+        }
+    }
+
+    @Benchmark
+    public Set<Token> getFreeTokens() {
+        return rules.getFreeTokens(player, board);
+    }
+
+    @Benchmark
+    public List<Hex> getStartHexes() {
+        return rules.getStartHexes(player, board);
+    }
+}
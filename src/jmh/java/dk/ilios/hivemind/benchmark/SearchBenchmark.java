@@ -0,0 +1,383 @@
+package dk.ilios.hivemind.benchmark;
+
+import dk.ilios.hivemind.ai.AbstractMinMaxAI;
+import dk.ilios.hivemind.ai.AbstractMonteCarloTreeSearchAI;
+import dk.ilios.hivemind.ai.AlphaBetaMiniMaxAI;
+import dk.ilios.hivemind.ai.BestMoveListener;
+import dk.ilios.hivemind.ai.HiveAI;
+import dk.ilios.hivemind.ai.IDDFSAlphaBetaMiniMaxAI;
+import dk.ilios.hivemind.ai.KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI;
+import dk.ilios.hivemind.ai.MTDFAI;
+import dk.ilios.hivemind.ai.MonteCarloTreeSearchAI;
+import dk.ilios.hivemind.ai.MultiPVAlphaBetaMiniMaxAI;
+import dk.ilios.hivemind.ai.NegamaxAI;
+import dk.ilios.hivemind.ai.ProofNumberSearchAI;
+import dk.ilios.hivemind.ai.RandomAI;
+import dk.ilios.hivemind.ai.SimpleMinMaxAI;
+import dk.ilios.hivemind.ai.TranspostionTableIDDFSAlphaBetaMiniMaxAI;
+import dk.ilios.hivemind.ai.UCTMonteCarloTreeSearchAI;
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV3;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.ai.statistics.AIStatistics;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.rules.Rules;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs every AI on a fixed suite of positions and writes a JSON report, so search results can be compared between
+ * commits. Run with "gradle searchBenchmark".
+ *
+ * Minimax searches run to a fixed depth and Monte Carlo searches to a fixed number of playouts, both with a generous
+ * time limit. All AIs use the same random seed, so every run searches exactly the same nodes and the node counts only
+ * change if the search itself changes.
+ *
+ * Positions (see <code>BenchmarkPositions</code>):
+ * - "sureWinInOneTurn": Correct moves win the game.
+ * - "sureWinInTwoTurns": Correct moves leave the opponent the fewest replies that avoid losing next turn, ie. none.
+ * - "defensive": Correct moves stop the opponent from winning next turn.
+ * - "early", "mid" and "late": Quiet positions without a known correct move, used for node counts and speed.
+ *
+ * Measured pr. AI and position:
+ * - nodes: Positions expanded, evaluated by the heuristic or expanded by an endgame solver.
+ * - nodesPrSecond: nodes divided by the search time.
+ * - effectiveBranchingFactor: nodes^(1/depth) or -1 for searches without a fixed depth.
+ * - ttHitRate: Ratio of transposition table probes that found an entry or -1 if the AI has no table.
+ * - timeToCorrectMove: Milliseconds until the AI settled on a correct move or -1 if the final move isn't correct.
+ * - peakHeapBytes: Sum of the peak usage of all heap memory pools during the search.
+ *
+ * Arguments: [report file] [depth] [AI names...]
+ * The commit is taken from the system property "hivemind.commit", if set.
+ */
+public class SearchBenchmark {
+
+    public static final String COMMIT_PROPERTY = "hivemind.commit";
+
+    public static final String[] POSITIONS = {
+            BenchmarkPositions.SURE_WIN_IN_ONE_TURN,
+            BenchmarkPositions.SURE_WIN_IN_TWO_TURNS,
+            BenchmarkPositions.DEFENSIVE,
+            BenchmarkPositions.EARLY,
+            BenchmarkPositions.MID,
+            BenchmarkPositions.LATE
+    };
+
+    public static final String[] AIS = {
+            "SimpleMinMax", "AlphaBeta", "Negamax", "IDDFS", "TT-IDDFS", "Killer-TT-IDDFS", "MTD(f)", "MultiPV",
+            "PNS", "MCTS", "MCTS-UCT", "Random"
+    };
+
+    private static final int DEFAULT_DEPTH = 2;
+    private static final int MAX_TIME_IN_MILLIS = 10 * 60 * 1000; // Only a safeguard, depth should be the limit
+    private static final int MONTE_CARLO_PLAYOUTS = 200;
+    private static final long SEED = 42;
+    private static final int MONTE_CARLO_PLAYOUT_DEPTH = 100;
+
+    private final int depth;
+    private final Map<String, Set<String>> correctMoves = new HashMap<String, Set<String>>();
+
+    public static void main(String[] args) throws IOException {
+        File reportFile = new File((args.length > 0) ? args[0] : "build/reports/search-benchmark.json");
+        int depth = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+        List<String> ais = (args.length > 2) ? Arrays.asList(args).subList(2, args.length) : Arrays.asList(AIS);
+
+        SearchBenchmark benchmark = new SearchBenchmark(depth);
+        List<Result> results = new ArrayList<Result>();
+        for (String ai : ais) {
+            for (String position : POSITIONS) {
+                Result result = benchmark.run(ai, position);
+                System.err.println(result);
+                results.add(result);
+            }
+        }
+
+        if (reportFile.getParentFile() != null) {
+            reportFile.getParentFile().mkdirs();
+        }
+        Writer writer = new FileWriter(reportFile);
+        try {
+            writer.write(toJson(System.getProperty(COMMIT_PROPERTY, "unknown"), depth, results));
+        } finally {
+            writer.close();
+        }
+        System.err.println("Report written to " + reportFile.getPath());
+    }
+
+    public SearchBenchmark(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Create the AI with the given name. All minimax AIs use the same heuristic and all AIs use the same seed.
+     */
+    public HiveAI createAI(String name) {
+        HiveAI ai = createUnseededAI(name);
+        if (ai instanceof AbstractMinMaxAI) {
+            ((AbstractMinMaxAI) ai).setSeed(SEED);
+        } else if (ai instanceof AbstractMonteCarloTreeSearchAI) {
+            ((AbstractMonteCarloTreeSearchAI) ai).setSeed(SEED);
+            ((AbstractMonteCarloTreeSearchAI) ai).setMaxPlayouts(MONTE_CARLO_PLAYOUTS);
+        }
+        return ai;
+    }
+
+    private HiveAI createUnseededAI(String name) {
+        if (name.equals("SimpleMinMax")) return new SimpleMinMaxAI(name, new SimpleHeuristicV3(), depth, MAX_TIME_IN_MILLIS);
+        if (name.equals("AlphaBeta")) return new AlphaBetaMiniMaxAI(name, new SimpleHeuristicV3(), depth, MAX_TIME_IN_MILLIS);
+        if (name.equals("Negamax")) return new NegamaxAI(name, new SimpleHeuristicV3(), depth, MAX_TIME_IN_MILLIS);
+        if (name.equals("IDDFS")) return new IDDFSAlphaBetaMiniMaxAI(name, new SimpleHeuristicV3(), depth, MAX_TIME_IN_MILLIS);
+        if (name.equals("TT-IDDFS")) return new TranspostionTableIDDFSAlphaBetaMiniMaxAI(name, new SimpleHeuristicV3(), depth, MAX_TIME_IN_MILLIS);
+        if (name.equals("Killer-TT-IDDFS")) return new KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI(name, new SimpleHeuristicV3(), depth, MAX_TIME_IN_MILLIS);
+        if (name.equals("MTD(f)")) return new MTDFAI(name, new SimpleHeuristicV3(), depth, MAX_TIME_IN_MILLIS);
+        if (name.equals("MultiPV")) return new MultiPVAlphaBetaMiniMaxAI(name, new SimpleHeuristicV3(), depth, MAX_TIME_IN_MILLIS);
+        if (name.equals("PNS")) return new ProofNumberSearchAI(name, 5, MAX_TIME_IN_MILLIS, createAI("AlphaBeta"));
+        if (name.equals("MCTS")) return new MonteCarloTreeSearchAI(name, MONTE_CARLO_PLAYOUT_DEPTH, MAX_TIME_IN_MILLIS);
+        if (name.equals("MCTS-UCT")) return new UCTMonteCarloTreeSearchAI(name, MONTE_CARLO_PLAYOUT_DEPTH, MAX_TIME_IN_MILLIS);
+        if (name.equals("Random")) return new RandomAI(name, SEED);
+        throw new IllegalArgumentException("Unknown AI: " + name);
+    }
+
+    /**
+     * Search the position with a new instance of the AI.
+     */
+    public Result run(String aiName, String position) {
+        HiveAI ai = createAI(aiName);
+        Game game = BenchmarkPositions.create(position);
+        Set<String> correctMoves = getCorrectMoves(position);
+        SearchListener listener = new SearchListener(correctMoves);
+        ai.setBestMoveListener(listener);
+
+        List<MemoryPoolMXBean> heapPools = getHeapPools();
+        System.gc();
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+
+        listener.start = System.nanoTime();
+        GameCommand move = ai.nextMove(game, game.getBoard());
+        long nanos = Math.max(1, System.nanoTime() - listener.start);
+
+        Result result = new Result();
+        result.ai = aiName;
+        result.position = position;
+        result.move = (move != null) ? move.toString() : "null";
+        result.millis = nanos / 1000000L;
+        result.peakHeapBytes = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            result.peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+
+        for (AIStatistics stats : getStatistics(ai)) {
+            result.nodes += stats.getNodesExpanded() + stats.getTotalPositionsEvaluated() + stats.getSolverNodesExpanded();
+            result.ttProbes += stats.getTranspositionTableProbes();
+            result.ttHits += stats.getTranspositionTableHits();
+        }
+        result.nodesPrSecond = result.nodes * 1000000000L / nanos;
+        result.depth = (ai instanceof AbstractMinMaxAI || ai instanceof ProofNumberSearchAI) ? depth : 0;
+        result.effectiveBranchingFactor = (result.depth > 0) ? Math.pow(result.nodes, 1d / result.depth) : -1d;
+        result.ttHitRate = (result.ttProbes > 0) ? result.ttHits / (double) result.ttProbes : -1d;
+
+        if (correctMoves == null) {
+            result.timeToCorrectMove = -1;
+        } else {
+            result.correct = correctMoves.contains(BenchmarkPositions.getMoveKey(move));
+            if (!result.correct) {
+                result.timeToCorrectMove = -1;
+            } else if (listener.correct) {
+                result.timeToCorrectMove = (listener.correctSince - listener.start) / 1000000L;
+            } else {
+                result.timeToCorrectMove = result.millis; // The AI doesn't report moves while searching
+            }
+        }
+        return result;
+    }
+
+    private Set<String> getCorrectMoves(String position) {
+        if (!correctMoves.containsKey(position)) {
+            correctMoves.put(position, findCorrectMoves(position, BenchmarkPositions.create(position)));
+        }
+        return correctMoves.get(position);
+    }
+
+    // The fallback of a Proof-Number search does the work if no forced win is found
+    private List<AIStatistics> getStatistics(HiveAI ai) {
+        List<AIStatistics> result = new ArrayList<AIStatistics>();
+        result.add(ai.getAiStats());
+        if (ai instanceof ProofNumberSearchAI) {
+            result.addAll(getStatistics(((ProofNumberSearchAI) ai).getFallback()));
+        }
+        return result;
+    }
+
+    private List<MemoryPoolMXBean> getHeapPools() {
+        List<MemoryPoolMXBean> result = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                result.add(pool);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the keys of all correct moves in the position or null if the position has no known correct moves.
+     * Each move gets a penalty and the correct moves are the ones with the lowest.
+     */
+    static Set<String> findCorrectMoves(String position, Game game) {
+        if (!position.equals(BenchmarkPositions.SURE_WIN_IN_ONE_TURN)
+                && !position.equals(BenchmarkPositions.SURE_WIN_IN_TWO_TURNS)
+                && !position.equals(BenchmarkPositions.DEFENSIVE)) {
+            return null;
+        }
+
+        StandardMoveGenerator generator = new StandardMoveGenerator();
+        Player player = game.getActivePlayer();
+        Player opponent = game.getOtherPlayer();
+        Set<String> result = new HashSet<String>();
+        int lowestPenalty = Integer.MAX_VALUE;
+
+        for (GameCommand move : generator.generateMoves(new ArrayList<GameCommand>(), game)) {
+            move.execute(game);
+            int penalty;
+            if (hasWon(game, player)) {
+                penalty = 0;
+            } else if (hasWon(game, opponent)) {
+                penalty = Integer.MAX_VALUE;
+            } else if (position.equals(BenchmarkPositions.SURE_WIN_IN_TWO_TURNS)) {
+                // Leave the opponent as few replies as possible that avoid losing next turn
+                penalty = 1 + countSafeReplies(game, generator, player);
+            } else if (position.equals(BenchmarkPositions.DEFENSIVE)) {
+                penalty = hasWinningMove(game, generator, opponent) ? Integer.MAX_VALUE : 1;
+            } else {
+                penalty = 1;
+            }
+            move.undo(game);
+
+            if (penalty < lowestPenalty) {
+                lowestPenalty = penalty;
+                result.clear();
+            }
+            if (penalty == lowestPenalty) {
+                result.add(BenchmarkPositions.getMoveKey(move));
+            }
+        }
+        return result;
+    }
+
+    // Returns the number of moves the player to move can make without the given player winning next turn
+    private static int countSafeReplies(Game game, StandardMoveGenerator generator, Player player) {
+        int result = 0;
+        for (GameCommand reply : generator.generateMoves(new ArrayList<GameCommand>(), game)) {
+            reply.execute(game);
+            if (hasWon(game, game.getOtherPlayer()) || !hasWinningMove(game, generator, player)) {
+                result++;
+            }
+            reply.undo(game);
+        }
+        return result;
+    }
+
+    // True if the player to move, which must be the given player, can win with a single move
+    private static boolean hasWinningMove(Game game, StandardMoveGenerator generator, Player player) {
+        for (GameCommand move : generator.generateMoves(new ArrayList<GameCommand>(), game)) {
+            move.execute(game);
+            boolean won = hasWon(game, player);
+            move.undo(game);
+            if (won) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasWon(Game game, Player player) {
+        Player opponent = player.isWhitePlayer() ? game.getBlackPlayer() : game.getWhitePlayer();
+        Rules rules = Rules.getInstance();
+        return rules.isQueenSurrounded(opponent, game.getBoard()) && !rules.isQueenSurrounded(player, game.getBoard());
+    }
+
+    private static String toJson(String commit, int depth, List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"commit\": \"").append(commit).append("\",\n");
+        sb.append("  \"depth\": ").append(depth).append(",\n");
+        sb.append("  \"results\": [\n");
+        for (int i = 0; i < results.size(); i++) {
+            sb.append("    ").append(results.get(i).toJson());
+            sb.append((i < results.size() - 1) ? ",\n" : "\n");
+        }
+        sb.append("  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Result of searching a single position.
+     */
+    public static class Result {
+        public String ai;
+        public String position;
+        public String move;
+        public Boolean correct; // null if the position has no known correct moves
+        public int depth;
+        public long millis;
+        public long nodes;
+        public long nodesPrSecond;
+        public double effectiveBranchingFactor;
+        public long ttProbes;
+        public long ttHits;
+        public double ttHitRate;
+        public long timeToCorrectMove;
+        public long peakHeapBytes;
+
+        public String toJson() {
+            return String.format(Locale.US, "{\"ai\": \"%s\", \"position\": \"%s\", \"move\": \"%s\", \"correct\": %s, " +
+                    "\"depth\": %d, \"millis\": %d, \"nodes\": %d, \"nodesPrSecond\": %d, \"effectiveBranchingFactor\": %.3f, " +
+                    "\"ttProbes\": %d, \"ttHits\": %d, \"ttHitRate\": %.4f, \"timeToCorrectMove\": %d, \"peakHeapBytes\": %d}",
+                    ai, position, move, correct, depth, millis, nodes, nodesPrSecond, effectiveBranchingFactor,
+                    ttProbes, ttHits, ttHitRate, timeToCorrectMove, peakHeapBytes);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-16s %-18s %8d ms %10d nodes %8d nodes/s  EBF %6.2f  TT %5.2f  correct: %s (%d ms)",
+                    ai, position, millis, nodes, nodesPrSecond, effectiveBranchingFactor, ttHitRate, correct, timeToCorrectMove);
+        }
+    }
+
+    // Track when the best move last became a correct one
+    private static class SearchListener implements BestMoveListener {
+        private final Set<String> correctMoves;
+        private long start;
+        private boolean correct = false;
+        private long correctSince;
+
+        private SearchListener(Set<String> correctMoves) {
+            this.correctMoves = correctMoves;
+        }
+
+        @Override
+        public void onBestMove(HiveAI ai, GameCommand move, int value, int depth) {
+            if (correctMoves == null) return;
+            boolean correctMove = correctMoves.contains(BenchmarkPositions.getMoveKey(move));
+            if (correctMove && !correct) {
+                correctSince = System.nanoTime();
+            }
+            correct = correctMove;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package dk.ilios.hivemind.benchmark;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.BugType;
+import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Token;
+import dk.ilios.hivemind.model.rules.Bug;
+import dk.ilios.hivemind.model.rules.Rules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of <code>getTargetHexes()</code> for each bug. Each operation finds the targets of all tokens of the given
+ * type on top of the hive. Only the "early", "mid" and "late" positions contain the expansion bugs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetHexesBenchmark {
+
+    @Param({"sureWinInOneTurn", "sureWinInTwoTurns", "early", "mid", "late"})
+    public String position;
+
+    @Param({"QUEEN_BEE", "BEETLE", "GRASSHOPPER", "SPIDER", "SOLDIER_ANT", "MOSQUITO", "LADY_BUG", "PILL_BUG"})
+    public String bugType;
+
+    private Board board;
+    private Bug bug;
+    private List<Token> tokens;
+
+    @Setup
+    public void setup() {
+        Game game = BenchmarkPositions.create(position);
+        board = game.getBoard();
+        BugType type = BugType.valueOf(bugType);
+        tokens = new ArrayList<Token>();
+        for (Hex hex : board.getFilledHexes()) {
+            Token token = hex.getTopToken();
+            if (token.getType() == type) {
+                tokens.add(token);
+            }
+        }
+        bug = Rules.getInstance().getBugSpecificRules(new Token(game.getWhitePlayer(), type));
+    }
+
+    @Benchmark
+    public void getTargetHexes(Blackhole blackhole) {
+        for (int i = 0; i < tokens.size(); i++) {
+            blackhole.consume(bug.getTargetHexes(tokens.get(i), board));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package dk.ilios.hivemind.benchmark;
+
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Hex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for maintaining Zobrist keys. All positions use Standard Position, so executing a move also updates the
+ * symmetry keys and the standard position of the board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZobristBenchmark {
+
+    @Param({"sureWinInOneTurn", "sureWinInTwoTurns", "early", "mid", "late"})
+    public String position;
+
+    private Game game;
+    private GameCommand boardMove;
+
+    @Setup
+    public void setup() {
+        game = BenchmarkPositions.create(position);
+        for (GameCommand move : new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), game)) {
+            if (move.getToken() != null && move.getFromQ() != Hex.SUPPLY) {
+                boardMove = move;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Combine the incrementally updated board keys with the rest of the game state.
+     */
+    @Benchmark
+    public long updateGameKey() {
+        game.updateZobristKey();
+        return game.getZobristKey();
+    }
+
+    /**
+     * Execute and undo a move, including all incremental key updates.
+     */
+    @Benchmark
+    public long executeAndUndoMove() {
+        if (boardMove != null) {
+            boardMove.execute(game);
+            boardMove.undo(game);
+        }
+        return game.getZobristKey();
+    }
+
+    @Benchmark
+    public long getCanonicalBoardKey() {
+        return game.getBoard().getSymmetryKey(game.getBoard().getCanonicalSymmetry());
+    }
+}
@@ -0,0 +1,34 @@
+package dk.ilios.hivemind;
+
+import dk.ilios.hivemind.ai.trace.SearchTraceAnalyzer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Print a summary of one or more search traces, see <code>SearchTracer</code>.
+ *
+ * Arguments: trace files.
+ */
+public class MainAnalyzeTrace {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: MainAnalyzeTrace <trace file>...");
+            return;
+        }
+
+        SearchTraceAnalyzer analyzer = new SearchTraceAnalyzer();
+        for (String file : args) {
+            InputStream input = new FileInputStream(new File(file));
+            try {
+                analyzer.read(input);
+            } finally {
+                input.close();
+            }
+        }
+        analyzer.printReport(System.out);
+    }
+}
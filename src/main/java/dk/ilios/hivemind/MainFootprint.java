@@ -0,0 +1,14 @@
+package dk.ilios.hivemind;
+
+import dk.ilios.hivemind.ai.MemoryFootprint;
+
+/**
+ * Print the memory footprint of the model and search structures. Run with a fixed heap size, eg. -Xms512m -Xmx512m,
+ * for stable results.
+ */
+public class MainFootprint {
+
+    public static void main(String[] args) {
+        new MemoryFootprint().printReport(System.out);
+    }
+}
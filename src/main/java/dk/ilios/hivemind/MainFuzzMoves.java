@@ -0,0 +1,48 @@
+package dk.ilios.hivemind;
+
+import dk.ilios.hivemind.ai.moves.AggressiveMovesFirstGenerator;
+import dk.ilios.hivemind.ai.moves.DifferentialMoveChecker;
+import dk.ilios.hivemind.ai.moves.MoveGenerator;
+import dk.ilios.hivemind.ai.moves.RandomPositionGenerator;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+
+/**
+ * Compare a move generator against the reference move generator on random positions from games with random
+ * expansions, or use the random positions as a stress benchmark of move generation.
+ *
+ * Arguments: [positions] [seed] [options]
+ * - "aggressive": Check AggressiveMovesFirstGenerator instead of StandardMoveGenerator.
+ * - "throughput": Only generate, execute and undo the moves of the positions and report the throughput.
+ */
+public class MainFuzzMoves {
+
+    public static void main(String[] args) {
+        int positions = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : System.nanoTime();
+        MoveGenerator candidate = new StandardMoveGenerator();
+        boolean throughput = false;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("aggressive")) candidate = new AggressiveMovesFirstGenerator();
+            if (args[i].equals("throughput")) throughput = true;
+        }
+
+        DifferentialMoveChecker checker = new DifferentialMoveChecker(candidate);
+        RandomPositionGenerator generator = new RandomPositionGenerator(seed);
+        long start = System.nanoTime();
+        if (throughput) {
+            long moves = checker.runThroughput(generator, positions);
+            long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+            System.out.println(String.format("%d positions, %d moves in %d ms. (%d positions/s, %d moves/s)",
+                    positions, moves, millis, positions * 1000L / millis, moves * 1000 / millis));
+        } else {
+            DifferentialMoveChecker.Failure failure = checker.run(generator, positions);
+            long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+            if (failure == null) {
+                System.out.println(String.format("%d positions passed in %d ms. Seed: %d", positions, millis, seed));
+            } else {
+                System.out.println("Failed. Seed: " + seed);
+                System.out.println(failure);
+            }
+        }
+    }
+}
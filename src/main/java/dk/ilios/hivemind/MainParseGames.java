@@ -1,6 +1,8 @@
 package dk.ilios.hivemind;
 
 import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.jfr.FlightRecorderEvents;
+import dk.ilios.hivemind.jfr.ParseGameFileEvent;
 import dk.ilios.hivemind.parser.BoardspaceGameParser;
 import dk.ilios.hivemind.parser.BoardspaceGameType;
 import dk.ilios.hivemind.parser.filters.BoardspaceNetMasterPlayersFilter;
@@ -40,6 +42,13 @@ public class MainParseGames {
         for (BoardspaceGameType type : files.keySet()) {
             List<File> fileList = files.get(type);
             for (File file : fileList) {
+                ParseGameFileEvent event = null;
+                if (FlightRecorderEvents.ENABLED) {
+                    event = new ParseGameFileEvent();
+                    event.file = file.getName();
+                    event.begin();
+                }
+
                 BoardspaceGameParser parser = null;
                 Game game = null;
 
@@ -48,6 +57,9 @@ public class MainParseGames {
                     game = parser.parse();
                 } catch (RuntimeException e) {
                     System.out.println("Game could not be parsed: " + file.getName() + " -> " + e);
+                    if (FlightRecorderEvents.ENABLED) {
+                        event.commit();
+                    }
                     continue;
                 }
 
@@ -65,6 +77,13 @@ public class MainParseGames {
                         metric.analyzeGame(type, parser.getGameType(), game);
                     }
                 }
+
+                if (FlightRecorderEvents.ENABLED) {
+                    event.gameType = parser.getGameType();
+                    event.parsed = true;
+                    event.analyzed = analyseGame;
+                    event.commit();
+                }
             }
         }
 
@@ -117,6 +136,7 @@ public class MainParseGames {
 //        metrics.add(new LeastMovedTokenMetric());
 //        metrics.add(new IngersollOpeningsMetric());
 //        metrics.add(new LinaelOpeningList());
+//        metrics.add(new OpeningBookMetric());
         metrics.add(new LinaelOpeningComparison());
     }
 
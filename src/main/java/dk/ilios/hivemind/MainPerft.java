@@ -0,0 +1,68 @@
+package dk.ilios.hivemind;
+
+import dk.ilios.hivemind.ai.moves.Perft;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Count the moves from the start position to a given depth and report move generation throughput.
+ *
+ * Arguments: [depth] [options]
+ * - "parallel": Count each root move in parallel.
+ * - "divide": Print the count below each root move.
+ * - "expansions": Play with all expansions.
+ */
+public class MainPerft {
+
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        boolean parallel = false;
+        boolean divide = false;
+        boolean expansions = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("parallel")) parallel = true;
+            if (args[i].equals("divide")) divide = true;
+            if (args[i].equals("expansions")) expansions = true;
+        }
+
+        Game game = createGame(expansions);
+        Perft perft = new Perft();
+        long start = System.nanoTime();
+        long leaves;
+        if (divide) {
+            leaves = 0;
+            for (Map.Entry<GameCommand, Long> entry : perft.divide(game, depth).entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+                leaves += entry.getValue();
+            }
+        } else if (parallel) {
+            leaves = perft.parallelPerft(game, depth, new ForkJoinPool());
+        } else {
+            leaves = perft.perft(game, depth);
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+
+        System.out.println(String.format("Depth %d: %d leaves in %d ms. (%d leaves/s)", depth, leaves, millis, leaves * 1000 / millis));
+    }
+
+    private static Game createGame(boolean expansions) {
+        Player white = new Player("White", Player.PlayerType.WHITE);
+        white.fillBaseSupply();
+        Player black = new Player("Black", Player.PlayerType.BLACK);
+        black.fillBaseSupply();
+        if (expansions) {
+            white.useAllExpansions();
+            black.useAllExpansions();
+        }
+
+        Game game = new Game();
+        game.addPlayers(white, black);
+        game.setManualStepping(true);
+        game.start();
+        return game;
+    }
+}
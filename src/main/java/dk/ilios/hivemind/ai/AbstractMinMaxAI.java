@@ -3,14 +3,25 @@ package dk.ilios.hivemind.ai;
 import dk.ilios.hivemind.ai.heuristics.BoardValueHeuristic;
 import dk.ilios.hivemind.ai.moves.MoveGenerator;
 import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.ai.solver.ProofNumberSearch;
 import dk.ilios.hivemind.ai.statistics.AIStatistics;
+import dk.ilios.hivemind.ai.time.TimeManager;
+import dk.ilios.hivemind.ai.trace.SearchTracer;
+import dk.ilios.hivemind.ai.transpositiontable.ProofNumberTable;
+import dk.ilios.hivemind.ai.transpositiontable.TranspositionTable;
+import dk.ilios.hivemind.ai.transpositiontable.TranspositionTableEntry;
 import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.GamePhase;
+import dk.ilios.hivemind.game.MoveEncoder;
+import dk.ilios.hivemind.jfr.FlightRecorderEvents;
+import dk.ilios.hivemind.jfr.SearchIterationEvent;
 import dk.ilios.hivemind.model.Player;
 import dk.ilios.hivemind.model.rules.Rules;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 public abstract class AbstractMinMaxAI implements HiveAI {
 
@@ -25,13 +36,280 @@ public abstract class AbstractMinMaxAI implements HiveAI {
     protected int maxTimeInMillis;  // Search limit in milliseconds
     protected long start; // Start time in millis when nextMove was called
     protected Player maximizingPlayer; // Player is who is acting as MAX player in the MinMax algorithm
+    protected final TimeManager timeManager;
+    protected volatile BestMoveListener bestMoveListener;
+    protected volatile SearchProgressListener progressListener;
+    protected TranspositionTable table = new TranspositionTable(); // Only used by AIs with a transposition table
+    protected Random random = new Random(); // Breaks ties between moves with the same value
+    private Long seed; // Seed for the random generator or null if unseeded
+    private SearchIterationEvent iterationEvent; // Only used if Flight Recorder events are enabled
+    private int ply; // Moves applied since the root of the search
+    private int selectiveDepth; // Deepest ply reached in the current search
+    protected SearchTracer tracer; // Optional
 
+    // Optional endgame oracle
+    protected ProofNumberSearch endgameSolver;
+    protected int endgameSolverPlies;
+    protected int endgameSolverMaxNodes;
+    protected int endgameSolverTimeInMillis;
 
     public AbstractMinMaxAI(String name, BoardValueHeuristic heuristicFunction, int searchDepth, int maxTimeInMillis) {
         this.name = name;
         this.heuristic = heuristicFunction;
         this.searchDepth = searchDepth;
         this.maxTimeInMillis = maxTimeInMillis;
+        this.timeManager = new TimeManager(maxTimeInMillis);
+        aiStats.setTranspositionTable(table);
+    }
+
+    /**
+     * Prepare a new search for the active player.
+     */
+    protected void startSearch(Game state) {
+        start = System.currentTimeMillis();
+        this.state = state;
+        maximizingPlayer = state.getActivePlayer();
+        ply = 0;
+        selectiveDepth = 0;
+        aiStats.setGamePhase(GamePhase.of(state));
+        timeManager.start(state, aiStats.getAverageBranchFactor());
+        if (FlightRecorderEvents.ENABLED) {
+            iterationEvent = new SearchIterationEvent();
+            iterationEvent.begin();
+        }
+        if (tracer != null) {
+            tracer.startSearch(name, state);
+            tracer.nodeVisited(0);
+        }
+    }
+
+    /**
+     * Mark the end of an Iterative Deepening iteration. Searches with a fixed depth should call this once when done, so
+     * progress listeners are notified.
+     *
+     * @param depth Depth searched in the iteration.
+     * @param bestMove Best move found in the iteration or null if none was found.
+     * @param value Value of the best move.
+     */
+    protected void iterationCompleted(int depth, GameCommand bestMove, int value) {
+        boolean aborted = timeManager.isStopped();
+        timeManager.iterationCompleted();
+        if (!aborted) {
+            aiStats.searchDepthReached(depth);
+        }
+
+        if (FlightRecorderEvents.ENABLED) {
+            iterationEvent.end();
+            if (iterationEvent.shouldCommit()) {
+                iterationEvent.ai = name;
+                iterationEvent.depth = depth;
+                iterationEvent.nodes = timeManager.getLastIterationNodes();
+                iterationEvent.bestMove = String.valueOf(bestMove);
+                iterationEvent.value = value;
+                iterationEvent.aborted = aborted;
+                iterationEvent.commit();
+            }
+            iterationEvent = new SearchIterationEvent();
+            iterationEvent.begin();
+        }
+
+        SearchProgressListener listener = progressListener;
+        if (listener != null) {
+            List<GameCommand> pv = getPrincipalVariation(state, bestMove, depth);
+            listener.onSearchProgress(this, new SearchProgress(depth, selectiveDepth, timeManager.getNodes(),
+                    timeManager.getElapsedMillis(), table.getFillRate(), bestMove, value, pv, aborted));
+        }
+    }
+
+    /**
+     * Returns the best move followed by the best replies stored in the transposition table, at most
+     * <code>maxLength</code> moves. Only the best move is returned if the AI doesn't store best moves in the table.
+     * Moves are only played on the game state if it is at the root of the search, and it is restored afterwards.
+     */
+    protected List<GameCommand> getPrincipalVariation(Game state, GameCommand bestMove, int maxLength) {
+        List<GameCommand> pv = new ArrayList<GameCommand>();
+        if (bestMove == null) return pv;
+        pv.add(bestMove);
+        if (state == null || ply != 0 || !state.isUsingZobristKey()) return pv;
+
+        bestMove.execute(state);
+        while (pv.size() < maxLength && !isGameOver(state, searchDepth)) {
+            TranspositionTableEntry entry = table.getResult(state, getTablePerspective(state));
+            if (entry == null || entry.move == null) break;
+            List<GameCommand> moves = moveGenerator.generateMoves(new ArrayList<GameCommand>(), state);
+            if (!moves.contains(entry.move)) break; // Replaced by an entry for another position
+            pv.add(entry.move);
+            entry.move.execute(state);
+        }
+        for (int i = pv.size() - 1; i >= 0; i--) {
+            pv.get(i).undo(state);
+        }
+        return pv;
+    }
+
+    /**
+     * Returns the player that values in the transposition table are relative to for the given game state.
+     */
+    protected Player getTablePerspective(Game state) {
+        return maximizingPlayer;
+    }
+
+    /**
+     * Trace a node if a tracer is set and the node is sampled. Must be called after the moves of the node have been
+     * searched, with the state of the node.
+     *
+     * @param alpha Alpha when the node was entered.
+     * @param beta Beta when the node was entered.
+     * @param value Value returned for the node.
+     * @param moves Number of moves generated.
+     * @param cutoffIndex Index of the move that caused a cutoff or -1.
+     * @param move Move that caused the cutoff, the best move or null if not known.
+     */
+    protected void traceNode(Game state, int depth, int alpha, int beta, int value, int moves, int cutoffIndex, GameCommand move) {
+        SearchTracer tracer = this.tracer;
+        if (tracer != null && tracer.sampleNode()) {
+            tracer.traceAlphaBetaNode(ply, depth, alpha, beta, value, moves, cutoffIndex, MoveEncoder.encode(state.getBoard(), move));
+        }
+    }
+
+    /**
+     * Must be called for every node visited. Returns true if the search has run out of time and should return
+     * as fast as possible.
+     */
+    protected boolean isOutOfTime() {
+        return timeManager.checkTime();
+    }
+
+    public TimeManager getTimeManager() {
+        return timeManager;
+    }
+
+    /**
+     * Limit each search to the given number of nodes. Use 0 to disable. Together with <code>setSeed()</code> this makes
+     * searches reproducible, as long as the time limit is large enough to never be reached.
+     */
+    public void setMaxNodes(long maxNodes) {
+        timeManager.setMaxNodes(maxNodes);
+    }
+
+    /**
+     * Seed the random generator used to choose between moves with the same value. Copies of this AI use the same
+     * seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        random = new Random(seed);
+    }
+
+    @Override
+    public void stop() {
+        timeManager.stop();
+        ProofNumberSearch solver = endgameSolver;
+        if (solver != null) {
+            solver.stop();
+        }
+    }
+
+    @Override
+    public void setBestMoveListener(BestMoveListener listener) {
+        bestMoveListener = listener;
+    }
+
+    @Override
+    public void setSearchProgressListener(SearchProgressListener listener) {
+        progressListener = listener;
+    }
+
+    /**
+     * Notify the listener, if any, about a new best move.
+     */
+    protected void reportBestMove(GameCommand move, int value, int depth) {
+        aiStats.searchDepthReached(depth);
+        BestMoveListener listener = bestMoveListener;
+        if (listener != null) {
+            listener.onBestMove(this, move, value, depth);
+        }
+    }
+
+    /**
+     * Replace the transposition table, eg. with a <code>PersistentTranspositionTable</code> that keeps results between
+     * runs. Tables that are thread safe are shared with copies of this AI.
+     *
+     * @throws IllegalArgumentException if the table is owned by another AI or heuristic.
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        if (table.getOwner() != null && !table.getOwner().equals(getTranspositionTableOwner())) {
+            throw new IllegalArgumentException("Transposition table belongs to " + table.getOwner() + ", not " + getTranspositionTableOwner());
+        }
+        this.table = table;
+        aiStats.setTranspositionTable(table);
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * Identifies the values this AI stores in its transposition table. Values depend on the search algorithm, which
+     * decides the perspective and bounds stored, and on the heuristic, so tables that outlive the AI should only be
+     * used by AIs with the same owner.
+     */
+    public String getTranspositionTableOwner() {
+        return getClass().getName() + "/" + heuristic.getClass().getName();
+    }
+
+    /**
+     * Write a sampled trace of all searches to the given tracer, or stop tracing if null. The tracer isn't used by
+     * copies of this AI.
+     */
+    public void setSearchTracer(SearchTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Enable a Proof-Number search that is run before the normal search when only a few empty hexes remain around the
+     * opposing queen. If a forced win is proven, that move is returned right away.
+     *
+     * @param maxPlies Number of plies to look for a forced win.
+     * @param maxNodes Maximum number of nodes the solver may expand pr. move.
+     * @param maxTimeInMillis Time limit for the solver pr. move.
+     */
+    public void setEndgameSolver(int maxPlies, int maxNodes, int maxTimeInMillis) {
+        endgameSolverPlies = maxPlies;
+        endgameSolverMaxNodes = maxNodes;
+        endgameSolverTimeInMillis = maxTimeInMillis;
+        endgameSolver = new ProofNumberSearch(maxPlies, maxNodes);
+    }
+
+    /**
+     * Returns a move that is proven to win the game or null if the endgame solver is disabled or couldn't find one.
+     */
+    protected GameCommand findForcedWin(Game state) {
+        if (endgameSolver == null || !endgameSolver.isCandidate(state)) return null;
+        int result = endgameSolver.solve(state, endgameSolverTimeInMillis);
+        aiStats.solverNodesExpanded(endgameSolver.getNodesExpanded());
+        if (result == ProofNumberTable.PROVEN) {
+            reportBestMove(endgameSolver.getWinningMove(), HiveAI.MAX, endgameSolverPlies);
+            return endgameSolver.getWinningMove();
+        }
+        return null;
+    }
+
+    /**
+     * Copy optional settings from this AI to a copy of it.
+     */
+    protected <T extends AbstractMinMaxAI> T copySettings(T copy) {
+        if (endgameSolver != null) {
+            copy.setEndgameSolver(endgameSolverPlies, endgameSolverMaxNodes, endgameSolverTimeInMillis);
+        }
+        if (table.isThreadSafe()) {
+            copy.setTranspositionTable(table);
+        }
+        if (seed != null) {
+            copy.setSeed(seed);
+        }
+        copy.setMaxNodes(timeManager.getMaxNodes());
+        return copy;
     }
 
     protected int calculateBoardValue(Game state) {
@@ -44,6 +322,12 @@ public abstract class AbstractMinMaxAI implements HiveAI {
         return aiStats;
     }
 
+    @Override
+    public void setAiStats(AIStatistics stats) {
+        aiStats = stats;
+        aiStats.setTranspositionTable(table);
+    }
+
     @Override
     public String getName() {
         return name;
@@ -69,11 +353,18 @@ public abstract class AbstractMinMaxAI implements HiveAI {
 
     protected Game applyMove(GameCommand command, Game state) {
         command.execute(state);
+        if (++ply > selectiveDepth) {
+            selectiveDepth = ply;
+        }
+        if (tracer != null) {
+            tracer.nodeVisited(ply);
+        }
         return state;
     }
 
     protected Game undoMove(GameCommand command, Game state) {
         command.undo(state);
+        ply--;
         return state;
     }
 
@@ -111,4 +402,9 @@ public abstract class AbstractMinMaxAI implements HiveAI {
     public boolean maintainsStandardPosition() {
         return true;
     }
+
+    @Override
+    public int getThreadCount() {
+        return 1;
+    }
 }
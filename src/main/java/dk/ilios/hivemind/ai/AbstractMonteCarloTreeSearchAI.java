@@ -2,9 +2,16 @@ package dk.ilios.hivemind.ai;
 
 import dk.ilios.hivemind.ai.moves.MoveGenerator;
 import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.ai.solver.ProofNumberSearch;
 import dk.ilios.hivemind.ai.statistics.AIStatistics;
+import dk.ilios.hivemind.ai.time.TimeManager;
+import dk.ilios.hivemind.ai.trace.SearchTracer;
+import dk.ilios.hivemind.ai.transpositiontable.ProofNumberTable;
 import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.MoveEncoder;
+import dk.ilios.hivemind.jfr.FlightRecorderEvents;
+import dk.ilios.hivemind.jfr.MonteCarloBatchEvent;
 import dk.ilios.hivemind.model.*;
 import dk.ilios.hivemind.model.rules.Rules;
 
@@ -12,6 +19,9 @@ import java.util.*;
 
 public abstract class AbstractMonteCarloTreeSearchAI implements HiveAI {
 
+    public static final int PLAYOUTS_PR_EVENT = 100; // Playouts in each Flight Recorder batch event
+    public static final int PLAYOUTS_PR_PROGRESS_REPORT = 100; // Playouts between reports to the progress listener
+
     protected final int timeLimit; // Timelimit pr. move in millis
     protected final int maxDepth; // Max depth to run simulation
 
@@ -22,20 +32,292 @@ public abstract class AbstractMonteCarloTreeSearchAI implements HiveAI {
 
     protected AIStatistics aiStats = new AIStatistics(this);
     protected long start; // Start time for requesting a new move.
-
+    protected final TimeManager timeManager;
+    protected volatile BestMoveListener bestMoveListener;
+    protected volatile SearchProgressListener progressListener;
+    private GameNode reportedBestChild;
+    protected Random random = new Random(); // Used for choosing moves during expansion and playouts
+    private Long seed; // Seed for the random generator or null if unseeded
+    private int maxPlayouts = 0; // Playouts pr. move. 0 = Only limited by time
+    protected int treeSize = 0; // Nodes in the current search tree
+    protected int treeDepth = 0; // Depth of the deepest node in the current search tree
+    protected SearchTracer tracer; // Optional
+    private GameNode tracedRoot;
+
+    // Only used if Flight Recorder events are enabled
+    private MonteCarloBatchEvent batchEvent;
+    private GameNode batchRoot;
+    private int batchPlayouts;
+    private int totalPlayouts;
+
+    // Optional endgame oracle
+    protected ProofNumberSearch endgameSolver;
+    protected int endgameSolverPlies;
+    protected int endgameSolverMaxNodes;
+    protected int endgameSolverTimeInMillis;
 
     public AbstractMonteCarloTreeSearchAI(String name, int maxDepth, int maxTimeMillis) {
         this.name = name;
         this.maxDepth = maxDepth;
         this.timeLimit = maxTimeMillis;
+        this.timeManager = new TimeManager(maxTimeMillis, 1); // Each playout is expensive, so check the clock every time
+    }
+
+    /**
+     * Returns true if no more playouts should be started. Playouts continue after the soft limit as long as the best
+     * move by value is not also the most visited one. If a playout budget is set, the search stops when the budget is
+     * used instead.
+     */
+    protected boolean isSearchFinished(GameNode root) {
+        if (bestMoveListener != null) {
+            reportBestChild(root);
+        }
+        boolean finished;
+        if (timeManager.isHardLimitReached()) {
+            finished = true;
+        } else if (maxPlayouts > 0) {
+            finished = getPlayouts(root) >= maxPlayouts;
+        } else {
+            finished = timeManager.isSoftLimitReached() && isBestMoveStable(root);
+        }
+        if (FlightRecorderEvents.ENABLED) {
+            recordBatch(root, finished);
+        }
+        if (progressListener != null) {
+            reportProgress(root, finished);
+        }
+        if (tracer != null) {
+            tracePlayout(root, finished);
+        }
+        return finished;
+    }
+
+    // Called once before each playout and once when the search is finished
+    private void tracePlayout(GameNode root, boolean finished) {
+        if (tracedRoot != root) {
+            tracedRoot = root;
+            tracer.startSearch(name, state);
+            tracer.nodeVisited(0);
+        }
+        if (finished) {
+            tracedRoot = null; // Don't keep the tree alive
+            return;
+        }
+
+        if (tracer.startPlayout()) {
+            List<GameNode> children = root.getChildren();
+            long[] moves = new long[children.size()];
+            int[] visits = new int[children.size()];
+            int[] totalResults = new int[children.size()];
+            for (int i = 0; i < children.size(); i++) {
+                GameNode child = children.get(i);
+                moves[i] = MoveEncoder.encode(state.getBoard(), child.getCommand());
+                visits[i] = child.getVisits();
+                totalResults[i] = child.getTotalResults();
+            }
+            tracer.traceMonteCarloRoot(moves, visits, totalResults);
+        }
+    }
+
+    // Called once before each playout and once when the search is finished
+    private void reportProgress(GameNode root, boolean finished) {
+        SearchProgressListener listener = progressListener;
+        int playouts = getPlayouts(root);
+        if (listener == null || playouts == 0 || (!finished && playouts % PLAYOUTS_PR_PROGRESS_REPORT != 0)) return;
+
+        // Best move by value, as that is the move returned, followed by the most visited replies
+        GameNode best = null;
+        for (GameNode child : root.getChildren()) {
+            if (best == null || child.getValue() > best.getValue()) best = child;
+        }
+        List<GameCommand> pv = new ArrayList<GameCommand>();
+        for (GameNode node = best; node != null; node = getMostVisitedChild(node)) {
+            pv.add(node.getCommand());
+        }
+
+        listener.onSearchProgress(this, new SearchProgress(pv.size(), treeDepth, playouts, timeManager.getElapsedMillis(),
+                -1, best.getCommand(), (int) (best.getValue() * 100), pv, timeManager.isStopped()));
+    }
+
+    private GameNode getMostVisitedChild(GameNode node) {
+        GameNode mostVisited = null;
+        for (GameNode child : node.getChildren()) {
+            if (mostVisited == null || child.getVisits() > mostVisited.getVisits()) mostVisited = child;
+        }
+        return mostVisited;
+    }
+
+    // Called once before each playout and once when the search is finished
+    private void recordBatch(GameNode root, boolean finished) {
+        if (batchRoot != root) {
+            batchRoot = root;
+            batchPlayouts = 0;
+            totalPlayouts = 0;
+            batchEvent = new MonteCarloBatchEvent();
+            batchEvent.begin();
+        } else {
+            batchPlayouts++;
+            totalPlayouts++;
+        }
+
+        if (batchPlayouts > 0 && (finished || batchPlayouts == PLAYOUTS_PR_EVENT)) {
+            batchEvent.end();
+            if (batchEvent.shouldCommit()) {
+                batchEvent.ai = name;
+                batchEvent.playouts = batchPlayouts;
+                batchEvent.totalPlayouts = totalPlayouts;
+                batchEvent.treeSize = treeSize;
+                batchEvent.commit();
+            }
+            batchPlayouts = 0;
+            batchEvent = new MonteCarloBatchEvent();
+            batchEvent.begin();
+        }
+        if (finished) {
+            batchRoot = null; // Don't keep the tree alive
+        }
+    }
+
+    // The root itself isn't updated during backpropagation, so count the playouts through its children.
+    private int getPlayouts(GameNode root) {
+        int playouts = 0;
+        for (GameNode child : root.getChildren()) {
+            playouts += child.getVisits();
+        }
+        return playouts;
+    }
+
+    private void reportBestChild(GameNode root) {
+        GameNode best = null;
+        for (GameNode child : root.getChildren()) {
+            if (best == null || child.getValue() > best.getValue()) best = child;
+        }
+        if (best != null && best != reportedBestChild) {
+            reportedBestChild = best;
+            reportBestMove(best.getCommand(), (int) (best.getValue() * 100), 0);
+        }
+    }
+
+    private boolean isBestMoveStable(GameNode root) {
+        GameNode bestValue = null;
+        GameNode mostVisited = null;
+        for (GameNode child : root.getChildren()) {
+            if (bestValue == null || child.getValue() > bestValue.getValue()) bestValue = child;
+            if (mostVisited == null || child.getVisits() > mostVisited.getVisits()) mostVisited = child;
+        }
+        return bestValue == mostVisited;
+    }
+
+    public TimeManager getTimeManager() {
+        return timeManager;
+    }
+
+    /**
+     * Limit each search to the given number of playouts. Use 0 to disable. Together with <code>setSeed()</code> this
+     * makes searches reproducible, as long as the time limit is large enough to never be reached.
+     */
+    public void setMaxPlayouts(int maxPlayouts) {
+        if (maxPlayouts < 0) throw new IllegalArgumentException("Playout budget cannot be negative: " + maxPlayouts);
+        this.maxPlayouts = maxPlayouts;
     }
 
+    /**
+     * Write a sampled trace of all searches to the given tracer, or stop tracing if null. The tracer isn't used by
+     * copies of this AI.
+     */
+    public void setSearchTracer(SearchTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Seed the random generator used for expansion and playouts. Copies of this AI use the same seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        random = new Random(seed);
+    }
+
+    @Override
+    public void stop() {
+        timeManager.stop();
+        ProofNumberSearch solver = endgameSolver;
+        if (solver != null) {
+            solver.stop();
+        }
+    }
+
+    @Override
+    public void setBestMoveListener(BestMoveListener listener) {
+        bestMoveListener = listener;
+    }
+
+    @Override
+    public void setSearchProgressListener(SearchProgressListener listener) {
+        progressListener = listener;
+    }
+
+    /**
+     * Notify the listener, if any, about a new best move.
+     */
+    protected void reportBestMove(GameCommand move, int value, int depth) {
+        BestMoveListener listener = bestMoveListener;
+        if (listener != null) {
+            listener.onBestMove(this, move, value, depth);
+        }
+    }
+
+
+    /**
+     * Enable a Proof-Number search that is run before the tree search when only a few empty hexes remain around the
+     * opposing queen. If a forced win is proven, that move is returned right away.
+     *
+     * @param maxPlies Number of plies to look for a forced win.
+     * @param maxNodes Maximum number of nodes the solver may expand pr. move.
+     * @param maxTimeInMillis Time limit for the solver pr. move.
+     */
+    public void setEndgameSolver(int maxPlies, int maxNodes, int maxTimeInMillis) {
+        endgameSolverPlies = maxPlies;
+        endgameSolverMaxNodes = maxNodes;
+        endgameSolverTimeInMillis = maxTimeInMillis;
+        endgameSolver = new ProofNumberSearch(maxPlies, maxNodes);
+    }
+
+    /**
+     * Returns a move that is proven to win the game or null if the endgame solver is disabled or couldn't find one.
+     */
+    protected GameCommand findForcedWin(Game state) {
+        if (endgameSolver == null || !endgameSolver.isCandidate(state)) return null;
+        if (endgameSolver.solve(state, endgameSolverTimeInMillis) == ProofNumberTable.PROVEN) {
+            reportBestMove(endgameSolver.getWinningMove(), 100, endgameSolverPlies);
+            return endgameSolver.getWinningMove();
+        }
+        return null;
+    }
+
+    /**
+     * Copy optional settings from this AI to a copy of it.
+     */
+    protected <T extends AbstractMonteCarloTreeSearchAI> T copySettings(T copy) {
+        if (endgameSolver != null) {
+            copy.setEndgameSolver(endgameSolverPlies, endgameSolverMaxNodes, endgameSolverTimeInMillis);
+        }
+        if (seed != null) {
+            copy.setSeed(seed);
+        }
+        copy.setMaxPlayouts(maxPlayouts);
+        return copy;
+    }
 
     @Override
     public AIStatistics getAiStats() {
         return aiStats;
     }
 
+    @Override
+    public void setAiStats(AIStatistics stats) {
+        aiStats = stats;
+    }
+
     @Override
     public String getName() {
         return name;
@@ -113,6 +395,7 @@ public abstract class AbstractMonteCarloTreeSearchAI implements HiveAI {
         private int maxChildren = -1; // How many children does the game node has. 0 Indicate game end result. -1 = Node has not been explored
         private Map<GameCommand, GameNode> children = new HashMap<GameCommand, GameNode>(); // Currently explored children
         private GameCommand command; // Command object to execute on game state to get to this game state from parent.
+        private int depth; // Plies from the root
 
         // MCTS properties
         private int visits = 0; // Games played through this node
@@ -122,6 +405,12 @@ public abstract class AbstractMonteCarloTreeSearchAI implements HiveAI {
         public GameNode(GameCommand command, GameNode parent) {
             this.parent = parent;
             this.command = command;
+            this.depth = (parent == null) ? 0 : parent.depth + 1;
+            treeSize = (parent == null) ? 1 : treeSize + 1;
+            treeDepth = (parent == null) ? 0 : Math.max(treeDepth, depth);
+            if (tracer != null && parent != null) {
+                tracer.nodeVisited(depth);
+            }
         }
 
         public GameNode getParent() {
@@ -162,6 +451,9 @@ public abstract class AbstractMonteCarloTreeSearchAI implements HiveAI {
         public void addResult(int result) {
             visits++;
             totalResults += result;
+            if (tracer != null && tracer.isPlayoutSampled()) {
+                tracer.traceMonteCarloNode(depth, MoveEncoder.encode(state.getBoard(), command), visits, totalResults);
+            }
         }
 
         public double getValue() {
@@ -197,4 +489,9 @@ public abstract class AbstractMonteCarloTreeSearchAI implements HiveAI {
     public boolean maintainsStandardPosition() {
         return false;
     }
+
+    @Override
+    public int getThreadCount() {
+        return 1;
+    }
 }
@@ -6,7 +6,6 @@ import dk.ilios.hivemind.game.GameCommand;
 import dk.ilios.hivemind.model.Board;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * AI that implements Minimax tree search algorithm with Alpha-Beta prunning.
@@ -14,7 +13,6 @@ import java.util.Random;
  */
 public class AlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
-    private Random random = new Random();
 
     public AlphaBetaMiniMaxAI(String name, BoardValueHeuristic heuristicFunction, int depth, int maxTimeInMillis) {
         super(name, heuristicFunction, depth, maxTimeInMillis);
@@ -22,13 +20,17 @@ public class AlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
     @Override
     public HiveAI copy() {
-        return new AlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis);
+        return copySettings(new AlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis));
     }
 
     @Override
     public GameCommand nextMove(Game state, Board board) {
-        maximizingPlayer = state.getActivePlayer();
-        start = System.currentTimeMillis();
+        startSearch(state);
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
 
         // Minimax traversal of game tree
         List<GameCommand> moves = generateMoves(state);
@@ -42,17 +44,21 @@ public class AlphaBetaMiniMaxAI extends AbstractMinMaxAI {
             if (value > bestValue) {
                 bestValue = value;
                 bestMove = move;
+                reportBestMove(move, value, searchDepth);
                 if (bestValue == HiveAI.MAX) break;
             }
             undoMove(move, state);
         }
 
+        iterationCompleted(searchDepth, bestMove, bestValue);
         return bestMove;
     }
 
     private int alphabeta(Game state, int depth, int alpha, int beta, boolean maximizingPlayer) {
 
-        boolean timeout = System.currentTimeMillis() - start > maxTimeInMillis;
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        boolean timeout = isOutOfTime();
         boolean maxDepthReached = depth <= 0;
 
         if (isGameOver(state, depth) || maxDepthReached || timeout) {
@@ -60,6 +66,7 @@ public class AlphaBetaMiniMaxAI extends AbstractMinMaxAI {
         } else {
             List<GameCommand> moves = generateMoves(state);
             int moveEvaluated = 0;
+            int cutoffIndex = -1;
             if (maximizingPlayer) {
                 for (GameCommand move : moves) {
                     applyMove(move, state);
@@ -73,10 +80,12 @@ public class AlphaBetaMiniMaxAI extends AbstractMinMaxAI {
                     // Beta cut-off
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveEvaluated);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
 
+                traceNode(state, depth, originalAlpha, originalBeta, alpha, moves.size(), cutoffIndex, (cutoffIndex >= 0) ? moves.get(cutoffIndex) : null);
                 return alpha;
 
             } else {
@@ -93,10 +102,12 @@ public class AlphaBetaMiniMaxAI extends AbstractMinMaxAI {
                     // Alpha cut-off
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveEvaluated);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
 
+                traceNode(state, depth, originalAlpha, originalBeta, beta, moves.size(), cutoffIndex, (cutoffIndex >= 0) ? moves.get(cutoffIndex) : null);
                 return beta;
             }
         }
@@ -0,0 +1,206 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the searches of a HiveAI in the background, so a controller can run many AIs at the same time, enforce its own
+ * clocks and get threads back as soon as a search is stopped.
+ *
+ * Searches run on a copy of the game, so the game can be inspected while the AI is thinking. Moves returned by the
+ * future and reported to the listener belong to the original game and can be executed on it directly.
+ *
+ * Stopping a search, either through <code>stop()</code> or by cancelling the future, makes the AI return the best move
+ * found so far. Only one search can run at a time for each AI.
+ */
+public class AsyncHiveAI {
+
+    private static final int STOP_POLL_INTERVAL_IN_MILLIS = 10;
+
+    private final HiveAI ai;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private Search currentSearch;
+
+    /**
+     * Run searches on a dedicated background thread.
+     */
+    public AsyncHiveAI(final HiveAI ai) {
+        this(ai, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Search-" + ai.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    /**
+     * Run searches on a shared executor, eg. a pool sized to the number of cores used by all AIs in a tournament.
+     */
+    public AsyncHiveAI(HiveAI ai, ExecutorService executor) {
+        this(ai, executor, false);
+    }
+
+    private AsyncHiveAI(HiveAI ai, ExecutorService executor, boolean ownsExecutor) {
+        this.ai = ai;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    public HiveAI getAI() {
+        return ai;
+    }
+
+    /**
+     * Start searching for the next move. Any search still running is stopped first.
+     *
+     * @param state Game to find a move for. Must not be changed until the future is done.
+     * @param listener Listener for the best moves found during the search or null.
+     * @return Future that returns the move or PASS if no move could be found.
+     */
+    public synchronized Future<GameCommand> nextMove(Game state, BestMoveListener listener) {
+        if (currentSearch != null) {
+            currentSearch.stopAndWait();
+        }
+        currentSearch = new Search(state, listener);
+        currentSearch.future = executor.submit(currentSearch);
+        return currentSearch;
+    }
+
+    /**
+     * Stop the current search. The future returns the best move found so far. Doesn't block.
+     */
+    public synchronized void stop() {
+        if (currentSearch != null) {
+            currentSearch.stop();
+        }
+    }
+
+    /**
+     * Stop any search in progress and release the background thread if it isn't shared.
+     */
+    public synchronized void shutdown() {
+        if (currentSearch != null) {
+            currentSearch.stopAndWait();
+            currentSearch = null;
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A single search. Acts as the future for the result as well.
+     */
+    private class Search implements Callable<GameCommand>, Future<GameCommand> {
+
+        private final Game state;
+        private final Game searchState;
+        private final BestMoveListener listener;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private volatile boolean stopRequested;
+        private volatile boolean cancelled;
+        private Future<GameCommand> future;
+
+        private Search(Game state, BestMoveListener listener) {
+            this.state = state;
+            this.searchState = state.copy();
+            this.listener = listener;
+        }
+
+        @Override
+        public GameCommand call() throws Exception {
+            if (!started.compareAndSet(false, true)) return GameCommand.PASS; // Stopped before it started
+            try {
+                ai.setBestMoveListener(new BestMoveListener() {
+                    @Override
+                    public void onBestMove(HiveAI ai, GameCommand move, int value, int depth) {
+                        if (stopRequested) {
+                            ai.stop(); // Stop might have been requested before the search started
+                        }
+                        if (listener != null) {
+                            listener.onBestMove(ai, move.copyFor(state), value, depth);
+                        }
+                    }
+                });
+                GameCommand move = ai.nextMove(searchState, searchState.getBoard());
+                return (move != null) ? move.copyFor(state) : GameCommand.PASS;
+            } finally {
+                ai.setBestMoveListener(null);
+                finished.countDown();
+            }
+        }
+
+        private void stop() {
+            stopRequested = true;
+            ai.stop();
+        }
+
+        /**
+         * Stop the search and block until the AI is no longer used.
+         */
+        private void stopAndWait() {
+            stop();
+            awaitFinished();
+        }
+
+        private void awaitFinished() {
+            if (started.compareAndSet(false, true)) return; // Never started, so the AI will not be used
+            try {
+                // The AI resets its stop signal when a search starts, so keep signaling until it has finished.
+                while (!finished.await(STOP_POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS)) {
+                    ai.stop();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (isDone()) return false;
+            cancelled = true;
+            stop();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled || future.isDone();
+        }
+
+        @Override
+        public GameCommand get() throws InterruptedException, ExecutionException {
+            if (cancelled) throw new CancellationException();
+            if (stopRequested) awaitFinished();
+            return future.get();
+        }
+
+        @Override
+        public GameCommand get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (cancelled) throw new CancellationException();
+            if (stopRequested) ai.stop();
+            return future.get(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.game.GameCommand;
+
+/**
+ * Listener that is notified each time an AI changes its mind about the best move while searching.
+ *
+ * Callbacks happen on the thread running the search, so implementations should return quickly.
+ */
+public interface BestMoveListener {
+
+    /**
+     * @param ai AI that is searching.
+     * @param move Best move found so far.
+     * @param value Value of the move. Board value for Minimax searches, average playout result x 100 for Monte Carlo
+     *              searches.
+     * @param depth Search depth that produced the move or 0 if the AI doesn't search by depth.
+     */
+    public void onBestMove(HiveAI ai, GameCommand move, int value, int depth);
+}
@@ -18,11 +18,34 @@ public interface HiveAI {
      */
     public GameCommand nextMove(Game state, Board board);
 
+    /**
+     * Stop the search in progress as soon as possible. <code>nextMove()</code> then returns the best move found so far.
+     * Safe to call from any thread. Calling it when no search is running has no effect.
+     */
+    public void stop();
+
+    /**
+     * Set a listener that is notified each time the best move changes during a search. Use null to remove it.
+     */
+    public void setBestMoveListener(BestMoveListener listener);
+
+    /**
+     * Set a listener that is notified about depth, nodes searched and the principal variation during a search. Use
+     * null to remove it.
+     */
+    public void setSearchProgressListener(SearchProgressListener listener);
+
     /**
      * Return metrics from this AI
      */
     public AIStatistics getAiStats();
 
+    /**
+     * Replace the statistics the AI records to, eg. to keep background searches out of the statistics of the moves
+     * played. Must not be called while searching.
+     */
+    public void setAiStats(AIStatistics stats);
+
     /**
      * Return the name of the AI
      */
@@ -38,4 +61,10 @@ public interface HiveAI {
      * Position if it is not used.
      */
     public boolean maintainsStandardPosition();
+
+    /**
+     * Returns the number of threads the AI keeps busy while searching for a move. Used to avoid running more
+     * searches in parallel than there are CPUs.
+     */
+    public int getThreadCount();
 }
@@ -6,7 +6,6 @@ import dk.ilios.hivemind.game.GameCommand;
 import dk.ilios.hivemind.model.Board;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * AI that implements Minimax tree search algorithm with Alpha-Beta prunning and Iterative Deepening Depth-First Search.
@@ -24,7 +23,6 @@ import java.util.Random;
  */
 public class IDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
-    private Random random = new Random();
 
     public IDDFSAlphaBetaMiniMaxAI(String name, BoardValueHeuristic heuristicFunction, int depth, int maxTimeInMillis) {
         super(name, heuristicFunction, depth, maxTimeInMillis);
@@ -32,14 +30,18 @@ public class IDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
     @Override
     public HiveAI copy() {
-        return new IDDFSAlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis);
+        return copySettings(new IDDFSAlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis));
     }
 
 
     @Override
     public GameCommand nextMove(Game state, Board board) {
-        start = System.currentTimeMillis();
-        maximizingPlayer = state.getActivePlayer();
+        startSearch(state);
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
 
         // Iterate depths, effectively a breath-first search, where top nodes get visited multiple times
         int depth = 0;
@@ -47,12 +49,24 @@ public class IDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
         GameCommand bestCommand = GameCommand.PASS;
 
         Object[] result = new Object[2];
-        while(depth <= searchDepth && System.currentTimeMillis() - start < maxTimeInMillis) {
+        while(depth <= searchDepth && timeManager.canStartIteration()) {
             result = runMinMax(state, depth, result);
+            boolean aborted = timeManager.isStopped();
             int val = (Integer) result[0];
+            iterationCompleted(depth, (GameCommand) result[1], val);
+
+            // Only keep complete iterations unless nothing else is available
+            if (aborted) {
+                if (depth == 0) {
+                    bestCommand = (GameCommand) result[1];
+                }
+                break;
+            }
+
             if (val > bestValue) {
                 bestValue = val;
                 bestCommand = (GameCommand) result[1];
+                reportBestMove(bestCommand, bestValue, depth);
                 if (bestValue == HiveAI.MAX) {
                     return bestCommand; // Game winning move
                 }
@@ -90,15 +104,20 @@ public class IDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
     private int alphabeta(Game state, int depth, int alpha, int beta, boolean maximizingPlayer) {
 
-        if (isGameOver(state, depth) || depth <= 0 || System.currentTimeMillis() - start > maxTimeInMillis) {
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        if (isOutOfTime() || isGameOver(state, depth) || depth <= 0) {
             return value(state);
 
         } else {
 
             List<GameCommand> moves = generateMoves(state);
+            int moveEvaluated = 0;
+            int cutoffIndex = -1;
 
             if (maximizingPlayer) {
                 for (GameCommand move : moves) {
+                    moveEvaluated++;
                     applyMove(move, state);
                     int value = alphabeta(state, depth - 1, alpha, beta, !maximizingPlayer);
                     if (value > alpha) {
@@ -108,14 +127,18 @@ public class IDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
                     // Beta cut-off
                     if (beta <= alpha) {
+                        aiStats.cutOffAfter(moveEvaluated);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
+                traceNode(state, depth, originalAlpha, originalBeta, alpha, moves.size(), cutoffIndex, (cutoffIndex >= 0) ? moves.get(cutoffIndex) : null);
                 return alpha;
 
             } else {
 
                 for (GameCommand move : moves) {
+                    moveEvaluated++;
                     applyMove(move, state);
                     int value = alphabeta(state, depth - 1, alpha, beta, !maximizingPlayer);
                     if (value < beta) {
@@ -125,9 +148,12 @@ public class IDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
                     // Alpha cut-off
                     if (beta <= alpha) {
+                        aiStats.cutOffAfter(moveEvaluated);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
+                traceNode(state, depth, originalAlpha, originalBeta, beta, moves.size(), cutoffIndex, (cutoffIndex >= 0) ? moves.get(cutoffIndex) : null);
                 return beta;
             }
         }
@@ -1,7 +1,6 @@
 package dk.ilios.hivemind.ai;
 
 import dk.ilios.hivemind.ai.heuristics.BoardValueHeuristic;
-import dk.ilios.hivemind.ai.transpositiontable.TranspositionTable;
 import dk.ilios.hivemind.ai.transpositiontable.TranspositionTableEntry;
 import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
@@ -10,7 +9,6 @@ import dk.ilios.hivemind.utils.LimitedBuffer;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * AI that implements Minimax tree search algorithm with Alpha-Beta prunning and Iterative Deepening Depth-First Search.
@@ -18,8 +16,6 @@ import java.util.Random;
  */
 public class KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
-    private Random random = new Random();
-    private TranspositionTable table = new TranspositionTable();
     private ArrayList<LimitedBuffer<GameCommand>> killerMoves = new ArrayList<LimitedBuffer<GameCommand>>();
 
     public KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI(String name, BoardValueHeuristic heuristicFunction, int depth, int maxTimeInMillis) {
@@ -31,13 +27,17 @@ public class KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI extends Abs
 
     @Override
     public HiveAI copy() {
-        return new KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis);
+        return copySettings(new KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis));
     }
 
     @Override
     public GameCommand nextMove(Game state, Board board) {
-        start = System.currentTimeMillis();
-        maximizingPlayer = state.getActivePlayer();
+        startSearch(state);
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
 
         // Clear previous killer moves
         for (LimitedBuffer<GameCommand> buffer : killerMoves) {
@@ -50,12 +50,24 @@ public class KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI extends Abs
         GameCommand bestCommand = null;
 
         Object[] result = new Object[2];
-        while(depth <= searchDepth && System.currentTimeMillis() - start < maxTimeInMillis) {
+        while(depth <= searchDepth && timeManager.canStartIteration()) {
             result = runMinMax(state, depth, result);
+            boolean aborted = timeManager.isStopped();
             int val = (Integer) result[0];
+            iterationCompleted(depth, (GameCommand) result[1], val);
+
+            // Only keep complete iterations unless nothing else is available
+            if (aborted) {
+                if (bestCommand == null) {
+                    bestCommand = (GameCommand) result[1];
+                }
+                break;
+            }
+
             if (val > bestValue || val == bestValue && random.nextBoolean()) {
                 bestValue = val;
                 bestCommand = (GameCommand) result[1];
+                reportBestMove(bestCommand, bestValue, depth);
                 if (bestValue == HiveAI.MAX) {
                     return bestCommand; // Game winning move
                 }
@@ -97,8 +109,8 @@ public class KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI extends Abs
         GameCommand bestMove = null;
 
         // Check transposition table and adjust values if needed or return result if possible
-        long zobristKey = state.getZobristKey();
-        TranspositionTableEntry entry = table.getResult(zobristKey);
+        TranspositionTableEntry entry = table.getResult(state, this.maximizingPlayer);
+        aiStats.transpositionTableProbe(entry != null);
         if (entry != null && entry.depth >= depth) {
             aiStats.cacheHit();
             bestMove = entry.move;
@@ -118,7 +130,7 @@ public class KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI extends Abs
 
         // Run algorithm as usual
         int value;
-        if (isGameOver(state, depth) || depth <= 0 || System.currentTimeMillis() - start > maxTimeInMillis) {
+        if (isOutOfTime() || isGameOver(state, depth) || depth <= 0) {
             value = value(state);
         } else {
 
@@ -127,6 +139,7 @@ public class KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI extends Abs
             killerMoves.get(depth).toArray(killMoves);
             List<GameCommand> moves = generateMoves(state, bestMove, killMoves[0], killMoves[1]);
             int moveEvaluated = 0;
+            int cutoffIndex = -1;
 
             if (maximizingPlayer) {
                 for (GameCommand move : moves) {
@@ -143,6 +156,7 @@ public class KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI extends Abs
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveEvaluated);
                         killerMoves.get(depth).add(move);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
@@ -165,21 +179,25 @@ public class KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI extends Abs
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveEvaluated);
                         killerMoves.get(depth).add(move);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
 
                 value = beta;
             }
+
+            traceNode(state, depth, originalAlpha, originalBeta, value, moves.size(), cutoffIndex, bestMove);
         }
 
-        // Update transposition table
+        // Update transposition table. Values found after the search was stopped are only static evaluations.
+        if (timeManager.isStopped()) return value;
         if (value <= originalAlpha) {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.CUT_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.CUT_NODE, bestMove);
         } else if (value >= originalBeta) {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.ALL_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.ALL_NODE, bestMove);
         } else {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.PV_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.PV_NODE, bestMove);
         }
 
         return value;
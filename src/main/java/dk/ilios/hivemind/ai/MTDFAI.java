@@ -1,7 +1,6 @@
 package dk.ilios.hivemind.ai;
 
 import dk.ilios.hivemind.ai.heuristics.BoardValueHeuristic;
-import dk.ilios.hivemind.ai.transpositiontable.TranspositionTable;
 import dk.ilios.hivemind.ai.transpositiontable.TranspositionTableEntry;
 import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
@@ -10,7 +9,6 @@ import dk.ilios.hivemind.utils.LimitedBuffer;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Implementation of a MTD(f) algorithm search algorithm.
@@ -20,8 +18,6 @@ import java.util.Random;
  */
 public class MTDFAI extends AbstractMinMaxAI {
 
-    private Random random = new Random();
-    private TranspositionTable table = new TranspositionTable();
     private ArrayList<LimitedBuffer<GameCommand>> killerMoves = new ArrayList<LimitedBuffer<GameCommand>>();
 
     public MTDFAI(String name, BoardValueHeuristic heuristicFunction, int depth, int maxTimeInMillis) {
@@ -33,13 +29,17 @@ public class MTDFAI extends AbstractMinMaxAI {
 
     @Override
     public HiveAI copy() {
-        return new KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis);
+        return copySettings(new MTDFAI(name, heuristic, searchDepth, maxTimeInMillis));
     }
 
     @Override
     public GameCommand nextMove(Game state, Board board) {
-        start = System.currentTimeMillis();
-        maximizingPlayer = state.getActivePlayer();
+        startSearch(state);
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
 
         // Clear previous killer moves
         for (LimitedBuffer<GameCommand> buffer : killerMoves) {
@@ -52,10 +52,22 @@ public class MTDFAI extends AbstractMinMaxAI {
         GameCommand bestCommand = null;
 
         Object[] result;
-        while(depth <= searchDepth && System.currentTimeMillis() - start < maxTimeInMillis) {
+        while(depth <= searchDepth && timeManager.canStartIteration()) {
             result = MTDF(state, bestValue, depth);
+            boolean aborted = timeManager.isStopped();
+            iterationCompleted(depth, (GameCommand) result[1], (Integer) result[0]);
+
+            // Only keep complete iterations unless nothing else is available
+            if (aborted) {
+                if (bestCommand == null) {
+                    bestCommand = (GameCommand) result[1];
+                }
+                break;
+            }
+
             bestValue = (Integer) result[0];
             bestCommand = (GameCommand) result[1];
+            reportBestMove(bestCommand, bestValue, depth);
             if (bestValue == HiveAI.MAX) {
                 return bestCommand; // Game winning move
             }
@@ -83,14 +95,15 @@ public class MTDFAI extends AbstractMinMaxAI {
             } else {
                 lowerbound = value;
             }
-        } while (lowerbound >= upperbound);
+        } while (lowerbound < upperbound && !timeManager.isStopped()); // Bounds of a stopped search are meaningless
 
         return result;
     }
 
     private Object[] runAlphaBetaWithMemory(Game state, int startAlpha, int startBeta, int depth, Object[] result) {
 
-        // Minimax traversal of game tree
+        // Minimax traversal of game tree. The root moves are searched with an open window, so the value is exact and
+        // the MTD(f) loop stops after at most two passes.
         List<GameCommand> moves = generateMoves(state);
         int bestValue = Integer.MIN_VALUE;
         GameCommand bestMove = GameCommand.PASS;
@@ -98,7 +111,7 @@ public class MTDFAI extends AbstractMinMaxAI {
         for (GameCommand move : moves) {
             // Update game state and continue traversel
             applyMove(move, state);
-            int value = alphaBetaWithMemory(state, bestValue, HiveAI.MAX, searchDepth - 1, false);
+            int value = alphaBetaWithMemory(state, bestValue, HiveAI.MAX, depth - 1, false);
             if (value > bestValue || value == bestValue && random.nextBoolean()) {
                 bestValue = value;
                 bestMove = move;
@@ -116,8 +129,8 @@ public class MTDFAI extends AbstractMinMaxAI {
     private int alphaBetaWithMemory(Game state, int alpha, int beta, int depth, boolean maximizingPlayer) {
 
         // Check transposition table and adjust values if needed or return result if possible
-        long zobristKey = state.getZobristKey();
-        TranspositionTableEntry entry = table.getResult(zobristKey);
+        TranspositionTableEntry entry = table.getResult(state, this.maximizingPlayer);
+        aiStats.transpositionTableProbe(entry != null);
         if (entry != null && entry.depth >= depth) {
             aiStats.cacheHit();
             if (entry.type == TranspositionTableEntry.PV_NODE) {
@@ -139,7 +152,7 @@ public class MTDFAI extends AbstractMinMaxAI {
 
         // Run algorithm as usual
         int value;
-        if (isGameOver(state, depth) || depth <= 0 || System.currentTimeMillis() - start > maxTimeInMillis) {
+        if (isOutOfTime() || isGameOver(state, depth) || depth <= 0) {
             value = value(state);
         } else {
 
@@ -148,6 +161,7 @@ public class MTDFAI extends AbstractMinMaxAI {
             killerMoves.get(depth).toArray(killMoves);
             List<GameCommand> moves = generateMoves(state, bestMove, killMoves[0], killMoves[1]);
             int moveEvaluated = 0;
+            int cutoffIndex = -1;
 
             if (maximizingPlayer) {
                 for (GameCommand move : moves) {
@@ -164,6 +178,7 @@ public class MTDFAI extends AbstractMinMaxAI {
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveEvaluated);
                         killerMoves.get(depth).add(move);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
@@ -186,21 +201,25 @@ public class MTDFAI extends AbstractMinMaxAI {
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveEvaluated);
                         killerMoves.get(depth).add(move);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
 
                 value = beta;
             }
+
+            traceNode(state, depth, originalAlpha, originalBeta, value, moves.size(), cutoffIndex, bestMove);
         }
 
-        // Update transposition table
+        // Update transposition table. Values found after the search was stopped are only static evaluations.
+        if (timeManager.isStopped()) return value;
         if (value <= originalAlpha) {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.CUT_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.CUT_NODE, bestMove);
         } else if (value >= originalBeta) {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.ALL_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.ALL_NODE, bestMove);
         } else {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.PV_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.PV_NODE, bestMove);
         }
 
         return value;
@@ -213,8 +232,8 @@ public class MTDFAI extends AbstractMinMaxAI {
         GameCommand bestMove = null;
 
         // Check transposition table and adjust values if needed or return result if possible
-        long zobristKey = state.getZobristKey();
-        TranspositionTableEntry entry = table.getResult(zobristKey);
+        TranspositionTableEntry entry = table.getResult(state, this.maximizingPlayer);
+        aiStats.transpositionTableProbe(entry != null);
         if (entry != null && entry.depth >= depth) {
             aiStats.cacheHit();
             bestMove = entry.move;
@@ -233,7 +252,7 @@ public class MTDFAI extends AbstractMinMaxAI {
 
         // Run algorithm as usual
         int value;
-        if (isGameOver(state, depth) || depth <= 0 || System.currentTimeMillis() - start > maxTimeInMillis) {
+        if (isOutOfTime() || isGameOver(state, depth) || depth <= 0) {
             value = value(state);
         } else {
 
@@ -242,6 +261,7 @@ public class MTDFAI extends AbstractMinMaxAI {
             killerMoves.get(depth).toArray(killMoves);
             List<GameCommand> moves = generateMoves(state, bestMove, killMoves[0], killMoves[1]);
             int moveEvaluated = 0;
+            int cutoffIndex = -1;
 
             if (maximizingPlayer) {
                 for (GameCommand move : moves) {
@@ -258,6 +278,7 @@ public class MTDFAI extends AbstractMinMaxAI {
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveEvaluated);
                         killerMoves.get(depth).add(move);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
@@ -280,21 +301,25 @@ public class MTDFAI extends AbstractMinMaxAI {
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveEvaluated);
                         killerMoves.get(depth).add(move);
+                        cutoffIndex = moveEvaluated - 1;
                         break;
                     }
                 }
 
                 value = beta;
             }
+
+            traceNode(state, depth, originalAlpha, originalBeta, value, moves.size(), cutoffIndex, bestMove);
         }
 
-        // Update transposition table
+        // Update transposition table. Values found after the search was stopped are only static evaluations.
+        if (timeManager.isStopped()) return value;
         if (value <= originalAlpha) {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.CUT_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.CUT_NODE, bestMove);
         } else if (value >= originalBeta) {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.ALL_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.ALL_NODE, bestMove);
         } else {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.PV_NODE, bestMove);  // Shouldn't happen in zero-window searches (why?)
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.PV_NODE, bestMove);  // Shouldn't happen in zero-window searches (why?)
         }
 
         return value;
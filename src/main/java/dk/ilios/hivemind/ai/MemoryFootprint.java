@@ -0,0 +1,214 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV1;
+import dk.ilios.hivemind.ai.moves.MoveGenerator;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.ai.transpositiontable.TranspositionTable;
+import dk.ilios.hivemind.ai.transpositiontable.TranspositionTableEntry;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import dk.ilios.hivemind.model.Token;
+import dk.ilios.hivemind.utils.MemoryMeter;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Harness for measuring the memory footprint of the model and the search structures, so changes to them can be
+ * compared and regressions caught by tests.
+ *
+ * Retained bytes are measured by creating many objects and comparing the heap after garbage collection before and
+ * after, so they are averages including all objects reachable only from the measured ones. Allocated bytes are
+ * counted by the JVM for the current thread and are -1 if the JVM cannot measure them.
+ *
+ * Measurements run on the calling thread and take a few seconds. Other threads allocating at the same time makes the
+ * retained values less precise.
+ */
+public class MemoryFootprint {
+
+    public static final int GAMES = 1000;
+    public static final int BOARDS = 1000;
+    public static final int MONTE_CARLO_NODES = 100000;
+    public static final int MONTE_CARLO_BRANCHING = 8;
+    public static final int TRANSPOSITION_TABLE_ENTRIES = 100000;
+    public static final int MOVE_GENERATIONS = 2000;
+    public static final int SEARCH_NODES = 20000;
+
+    private static final int MIDGAME_MOVES = 8;
+    private static final int WARMUP_ROUNDS = 3;
+
+    private final Game game;
+    private Object retained; // Keeps the measured objects alive until the heap has been measured
+
+    /**
+     * Measure using a midgame position created from a fixed seed.
+     */
+    public MemoryFootprint() {
+        this(createMidgame(42));
+    }
+
+    /**
+     * Measure using the given position. The position should allow several moves and use the standard position, so
+     * searches use Zobrist keys like in real games.
+     */
+    public MemoryFootprint(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Returns a game with both players having made a few random moves.
+     */
+    public static Game createMidgame(long seed) {
+        Player white = new Player("White", Player.PlayerType.WHITE);
+        white.fillBaseSupply();
+        Player black = new Player("Black", Player.PlayerType.BLACK);
+        black.fillBaseSupply();
+        Game game = new Game();
+        game.addPlayers(white, black);
+        game.setTurnLimit(100);
+        game.setManualStepping(true);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.start();
+
+        RandomAI random = new RandomAI("Random", seed);
+        for (int i = 0; i < MIDGAME_MOVES; i++) {
+            random.nextMove(game, game.getBoard()).execute(game);
+        }
+        return game;
+    }
+
+    /**
+     * Retained bytes pr. copy of the game, including its players, tokens, board and move history.
+     */
+    public long getRetainedBytesPrGame() {
+        Game[] games = new Game[GAMES];
+        long before = MemoryMeter.getUsedHeapAfterGc();
+        for (int i = 0; i < games.length; i++) {
+            games[i] = game.copy();
+        }
+        return retainedSince(before, games, games.length);
+    }
+
+    /**
+     * Retained bytes pr. copy of the board, ie. its hexes and the lists and keys for looking them up. Tokens belong to
+     * the players and are not counted.
+     */
+    public long getRetainedBytesPrBoard() {
+        Player[] players = new Player[BOARDS * 2];
+        for (int i = 0; i < BOARDS; i++) {
+            players[i * 2] = game.getWhitePlayer().copy();
+            players[i * 2 + 1] = game.getBlackPlayer().copy();
+        }
+        Board[] boards = new Board[BOARDS];
+        Board board = game.getBoard();
+
+        long before = MemoryMeter.getUsedHeapAfterGc();
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = board.copy(players[i * 2], players[i * 2 + 1]);
+        }
+        return retainedSince(before, new Object[] { players, boards }, boards.length);
+    }
+
+    /**
+     * Retained bytes pr. node in a Monte Carlo search tree, including the command leading to it and the entry in its
+     * parents child map.
+     */
+    public long getRetainedBytesPrMonteCarloNode() {
+        UCTMonteCarloTreeSearchAI ai = new UCTMonteCarloTreeSearchAI("Footprint", 1, 0);
+        Token token = game.getActivePlayer().getSupply().iterator().next();
+
+        long before = MemoryMeter.getUsedHeapAfterGc();
+        List<AbstractMonteCarloTreeSearchAI.GameNode> nodes = new ArrayList<AbstractMonteCarloTreeSearchAI.GameNode>(MONTE_CARLO_NODES);
+        AbstractMonteCarloTreeSearchAI.GameNode root = ai.new GameNode(null, null);
+        nodes.add(root);
+        for (int i = 1; i < MONTE_CARLO_NODES; i++) {
+            AbstractMonteCarloTreeSearchAI.GameNode parent = nodes.get((i - 1) / MONTE_CARLO_BRANCHING);
+            GameCommand command = new GameCommand(Hex.SUPPLY, Hex.SUPPLY, i, -i, token, false);
+            AbstractMonteCarloTreeSearchAI.GameNode node = ai.new GameNode(command, parent);
+            parent.addChild(node);
+            nodes.add(node);
+        }
+        nodes = null; // Only count what the tree itself keeps alive
+        return retainedSince(before, root, MONTE_CARLO_NODES);
+    }
+
+    /**
+     * Retained bytes pr. entry in a transposition table. The best move of the entries is shared, as commands usually
+     * also are referenced from elsewhere.
+     */
+    public long getRetainedBytesPrTranspositionTableEntry() {
+        GameCommand move = new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), game).get(0);
+
+        long before = MemoryMeter.getUsedHeapAfterGc();
+        TranspositionTable table = new TranspositionTable();
+        for (int i = 0; i < TRANSPOSITION_TABLE_ENTRIES; i++) {
+            table.addResult(0x9E3779B97F4A7C15L * (i + 1), i, 1, TranspositionTableEntry.PV_NODE, move);
+        }
+        return retainedSince(before, table, TRANSPOSITION_TABLE_ENTRIES);
+    }
+
+    /**
+     * Allocated bytes pr. move returned by the standard move generator, or -1 if allocations cannot be measured.
+     */
+    public long getAllocatedBytesPrGeneratedMove() {
+        if (!MemoryMeter.isAllocationMeasurable()) return -1;
+        MoveGenerator generator = new StandardMoveGenerator();
+        long bytes = 0;
+        long moves = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            bytes = MemoryMeter.getAllocatedBytes();
+            moves = 0;
+            for (int i = 0; i < MOVE_GENERATIONS; i++) {
+                moves += generator.generateMoves(new ArrayList<GameCommand>(), game).size();
+            }
+            bytes = MemoryMeter.getAllocatedBytes() - bytes;
+        }
+        return (moves > 0) ? bytes / moves : -1;
+    }
+
+    /**
+     * Allocated bytes pr. node searched by an iterative deepening Alpha-Beta search without transposition table, or -1
+     * if allocations cannot be measured.
+     */
+    public long getAllocatedBytesPrSearchedNode() {
+        if (!MemoryMeter.isAllocationMeasurable()) return -1;
+        long bytes = 0;
+        long nodes = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            IDDFSAlphaBetaMiniMaxAI ai = new IDDFSAlphaBetaMiniMaxAI("Footprint", new SimpleHeuristicV1(), 100, 600000);
+            ai.setSeed(42);
+            ai.setMaxNodes(SEARCH_NODES);
+            Game state = game.copy();
+            bytes = MemoryMeter.getAllocatedBytes();
+            ai.nextMove(state, state.getBoard());
+            bytes = MemoryMeter.getAllocatedBytes() - bytes;
+            nodes = ai.getTimeManager().getNodes();
+        }
+        return (nodes > 0) ? bytes / nodes : -1;
+    }
+
+    /**
+     * Run all measurements and print the results.
+     */
+    public void printReport(PrintStream out) {
+        out.println(String.format("%-40s %10s", "Measurement", "Bytes"));
+        out.println(String.format("%-40s %10d", "Retained pr. game", getRetainedBytesPrGame()));
+        out.println(String.format("%-40s %10d", "Retained pr. board", getRetainedBytesPrBoard()));
+        out.println(String.format("%-40s %10d", "Retained pr. Monte Carlo node", getRetainedBytesPrMonteCarloNode()));
+        out.println(String.format("%-40s %10d", "Retained pr. transposition table entry", getRetainedBytesPrTranspositionTableEntry()));
+        out.println(String.format("%-40s %10d", "Allocated pr. generated move", getAllocatedBytesPrGeneratedMove()));
+        out.println(String.format("%-40s %10d", "Allocated pr. searched node", getAllocatedBytesPrSearchedNode()));
+    }
+
+    private long retainedSince(long before, Object objects, int count) {
+        retained = objects;
+        long after = MemoryMeter.getUsedHeapAfterGc();
+        retained = null;
+        return Math.max(0, after - before) / count;
+    }
+}
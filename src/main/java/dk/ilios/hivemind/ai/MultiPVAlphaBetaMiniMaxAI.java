@@ -0,0 +1,249 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.heuristics.BoardValueHeuristic;
+import dk.ilios.hivemind.ai.transpositiontable.TranspositionTableEntry;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * AI that can report the K best root moves together with their scores and principal variations (multi-PV).
+ *
+ * Root moves are searched with alpha set to the score of the K'th best line found so far, instead of the best one,
+ * so all K lines get exact scores in a single pass over the root moves. The lines share one transposition table with
+ * each other and with earlier iterations of the Iterative Deepening search, so moves already refuted, or searched for
+ * another line, mostly run into cutoffs and move ordering hints.
+ *
+ * Principal variations are collected in a triangular PV array [1], where row <code>ply</code> holds the best line
+ * found from that ply. A line may end before the search depth if it runs into a transposition table hit.
+ *
+ * The transposition table is only used if the game maintains Zobrist keys.
+ *
+ * @see [1] http://chessprogramming.wikispaces.com/Triangular+PV-Table
+ * @see http://chessprogramming.wikispaces.com/Principal+variation
+ */
+public class MultiPVAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
+
+    private boolean useTable;
+    private long nodesSearched;     // Nodes visited by the last call to analyze()
+
+    // Triangular PV array. Row n has room for the PV from ply n and down.
+    private final GameCommand[][] pvTable;
+    private final int[] pvLength;
+
+    public MultiPVAlphaBetaMiniMaxAI(String name, BoardValueHeuristic heuristicFunction, int depth, int maxTimeInMillis) {
+        super(name, heuristicFunction, depth, maxTimeInMillis);
+        pvTable = new GameCommand[depth + 1][depth + 1];
+        pvLength = new int[depth + 1];
+    }
+
+    @Override
+    public HiveAI copy() {
+        return copySettings(new MultiPVAlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis));
+    }
+
+    @Override
+    public GameCommand nextMove(Game state, Board board) {
+        startSearch(state);
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
+
+        List<PrincipalVariation> result = search(state, 1);
+        return result.isEmpty() ? GameCommand.PASS : result.get(0).move;
+    }
+
+    /**
+     * Analyze the position and return the best root moves for the player to move, best move first.
+     * Scores are from the point of view of the player to move.
+     *
+     * @param state Game state to analyze. It is restored before returning.
+     * @param lines Number of root moves (K) to return. Fewer are returned if there are not enough legal moves.
+     * @return The principal variations from the deepest iteration that completed.
+     */
+    public List<PrincipalVariation> analyze(Game state, int lines) {
+        startSearch(state);
+        return search(state, lines);
+    }
+
+    /**
+     * Returns the number of nodes visited by the last search.
+     */
+    public long getNodesSearched() {
+        return nodesSearched;
+    }
+
+    // Negamax stores values relative to the player to move
+    @Override
+    protected Player getTablePerspective(Game state) {
+        return state.getActivePlayer();
+    }
+
+    private List<PrincipalVariation> search(Game state, int lines) {
+        useTable = state.isUsingZobristKey();
+        nodesSearched = 0;
+
+        List<PrincipalVariation> result = new ArrayList<PrincipalVariation>();
+        if (isGameOver(state, searchDepth)) return result;
+
+        int color = state.getActivePlayer().isWhitePlayer() ? 1 : -1;
+        List<GameCommand> rootMoves = generateMoves(state);
+        lines = Math.min(lines, rootMoves.size());
+
+        for (int depth = 1; depth <= searchDepth && timeManager.canStartIteration(); depth++) {
+            List<PrincipalVariation> iteration = searchRoot(state, rootMoves, lines, depth, color);
+            boolean aborted = timeManager.isStopped();
+            if (iteration.isEmpty()) {
+                iterationCompleted(depth, null, 0);
+            } else {
+                iterationCompleted(depth, iteration.get(0).move, iteration.get(0).value);
+            }
+
+            // Only keep complete iterations unless nothing else is available
+            if (!aborted || result.isEmpty()) {
+                result = iteration;
+            }
+            if (!aborted && !result.isEmpty()) {
+                reportBestMove(result.get(0).move, result.get(0).value, depth);
+            }
+            if (aborted || (!result.isEmpty() && result.get(0).value == HiveAI.MAX)) {
+                break;
+            }
+
+            // Search best moves from this iteration first in the next one
+            for (int i = iteration.size() - 1; i >= 0; i--) {
+                GameCommand move = iteration.get(i).move;
+                rootMoves.remove(move);
+                rootMoves.add(0, move);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Search all root moves and return the best lines, best line first.
+     *
+     * Moves are searched with alpha set to the score of the K'th best line found so far, so a move is only searched
+     * accurately if it can enter the list of best lines.
+     */
+    private List<PrincipalVariation> searchRoot(Game state, List<GameCommand> moves, int lines, int depth, int color) {
+        List<PrincipalVariation> result = new ArrayList<PrincipalVariation>(lines + 1);
+        for (GameCommand move : moves) {
+            int alpha = (result.size() < lines) ? HiveAI.MIN : result.get(lines - 1).value;
+            applyMove(move, state);
+            int value = -negamax(state, depth - 1, 1, -HiveAI.MAX, -alpha, -color);
+            undoMove(move, state);
+            if (timeManager.isStopped()) break;
+
+            if (value > alpha || result.size() < lines) {
+                updatePV(0, move);
+                int index = result.size();
+                while (index > 0 && result.get(index - 1).value < value) {
+                    index--;
+                }
+                result.add(index, new PrincipalVariation(value, depth, new ArrayList<GameCommand>(Arrays.asList(pvTable[0]).subList(0, pvLength[0]))));
+                if (result.size() > lines) {
+                    result.remove(lines);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private int negamax(Game state, int depth, int ply, int alpha, int beta, int color) {
+        nodesSearched++;
+        pvLength[ply] = ply;
+        int originalAlpha = alpha;
+        GameCommand tableMove = null;
+
+        // Check transposition table and adjust values if needed or return result if possible
+        if (useTable) {
+            TranspositionTableEntry entry = table.getResult(state, state.getActivePlayer());
+            aiStats.transpositionTableProbe(entry != null);
+            if (entry != null) {
+                tableMove = entry.move;
+                if (entry.depth >= depth) {
+                    aiStats.cacheHit();
+                    if (entry.type == TranspositionTableEntry.PV_NODE) {
+                        return entry.value;
+                    } else if (entry.type == TranspositionTableEntry.CUT_NODE) {
+                        alpha = Math.max(alpha, entry.value);
+                    } else if (entry.type == TranspositionTableEntry.ALL_NODE) {
+                        beta = Math.min(beta, entry.value);
+                    }
+
+                    if (alpha >= beta) {
+                        return entry.value;
+                    }
+                }
+            }
+        }
+
+        if (isOutOfTime() || isGameOver(state, depth) || depth <= 0) {
+            return color * calculateBoardValue(state);
+        }
+
+        int bestValue = HiveAI.MIN;
+        GameCommand bestMove = null;
+        List<GameCommand> moves = generateMoves(state, tableMove);
+        if (moves.isEmpty()) {
+            moves.add(GameCommand.PASS); // No legal moves, the player must pass
+        }
+        int moveAnalyzed = 0;
+        int cutoffIndex = -1;
+        for (GameCommand move : moves) {
+            moveAnalyzed++;
+            applyMove(move, state);
+            int value = -negamax(state, depth - 1, ply + 1, -beta, -alpha, -color);
+            undoMove(move, state);
+            if (timeManager.isStopped()) return bestValue;
+
+            if (value > bestValue || bestMove == null) { // Any move is better than no move, also for the PV
+                bestValue = value;
+                bestMove = move;
+                updatePV(ply, move);
+            }
+            alpha = Math.max(alpha, value);
+            if (alpha >= beta) {
+                aiStats.cutOffAfter(moveAnalyzed);
+                cutoffIndex = moveAnalyzed - 1;
+                break;
+            }
+        }
+        traceNode(state, depth, originalAlpha, beta, bestValue, moves.size(), cutoffIndex, bestMove);
+
+        // Update transposition table
+        if (useTable) {
+            if (bestValue <= originalAlpha) {
+                table.addResult(state, state.getActivePlayer(), bestValue, depth, TranspositionTableEntry.ALL_NODE, bestMove);
+            } else if (bestValue >= beta) {
+                table.addResult(state, state.getActivePlayer(), bestValue, depth, TranspositionTableEntry.CUT_NODE, bestMove);
+            } else {
+                table.addResult(state, state.getActivePlayer(), bestValue, depth, TranspositionTableEntry.PV_NODE, bestMove);
+            }
+        }
+
+        return bestValue;
+    }
+
+    /**
+     * Make <code>move</code> followed by the PV from the next ply the new PV for <code>ply</code>.
+     */
+    private void updatePV(int ply, GameCommand move) {
+        pvTable[ply][ply] = move;
+        int length = (ply + 1 < pvLength.length) ? pvLength[ply + 1] : ply + 1;
+        for (int i = ply + 1; i < length; i++) {
+            pvTable[ply][i] = pvTable[ply + 1][i];
+        }
+        pvLength[ply] = Math.max(length, ply + 1);
+    }
+}
@@ -20,13 +20,17 @@ public class NegamaxAI extends AbstractMinMaxAI {
 
     @Override
     public HiveAI copy() {
-        return new NegamaxAI(name, heuristic, searchDepth, maxTimeInMillis);
+        return copySettings(new NegamaxAI(name, heuristic, searchDepth, maxTimeInMillis));
     }
 
     @Override
     public GameCommand nextMove(Game state, Board board) {
-        maximizingPlayer = state.getActivePlayer();
-        start = System.currentTimeMillis();
+        startSearch(state);
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
 
         // Player A = white, Player B = black
         if (state.getActivePlayer().isWhitePlayer()) {
@@ -49,15 +53,17 @@ public class NegamaxAI extends AbstractMinMaxAI {
             if (value > bestValue) {
                 bestValue = value;
                 bestMove = move;
+                reportBestMove(move, value, searchDepth);
             }
             undoMove(move, state);
         }
 
+        iterationCompleted(searchDepth, bestMove, bestValue);
         return bestMove;
     }
 
     private int negamax(Game state, int depth, int alpha, int beta, int color) {
-        if (isGameOver(state, depth) || depth <= 0 || System.currentTimeMillis() - start > maxTimeInMillis) {
+        if (isOutOfTime() || isGameOver(state, depth) || depth <= 0) {
             return color * calculateBoardValue(state);
 
         } else {
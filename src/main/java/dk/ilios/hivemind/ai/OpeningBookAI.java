@@ -0,0 +1,167 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.book.BookMove;
+import dk.ilios.hivemind.ai.book.ExplorationPolicy;
+import dk.ilios.hivemind.ai.book.OpeningBook;
+import dk.ilios.hivemind.ai.book.WeightedScorePolicy;
+import dk.ilios.hivemind.ai.moves.MoveGenerator;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.ai.statistics.AIStatistics;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Wrapper that plays moves from an opening book without searching, as long as the game is still in the book.
+ *
+ * The book move is chosen by an <code>ExplorationPolicy</code>. By default it is chosen at random, weighted by its
+ * score for the player to move (see <code>BookMove.getScore()</code>), so strong lines are played most of the time,
+ * while games still vary. Moves played in fewer than a minimum number of games are ignored. When no book move is
+ * found, the wrapped AI searches as usual.
+ *
+ * @see dk.ilios.hivemind.ai.book.OpeningBookBuilder
+ */
+public class OpeningBookAI implements HiveAI {
+
+    public static final int DEFAULT_MIN_GAMES = 3;
+
+    private final HiveAI ai;
+    private final OpeningBook book;
+    private final int minGames;
+    private final ExplorationPolicy policy;
+    private Random random;
+    private Long seed; // Seed for the random generator or null if unseeded
+    private final MoveGenerator moveGenerator = new StandardMoveGenerator();
+    private volatile BestMoveListener bestMoveListener;
+
+    public OpeningBookAI(HiveAI ai, OpeningBook book) {
+        this(ai, book, DEFAULT_MIN_GAMES, new WeightedScorePolicy(), new Random());
+    }
+
+    public OpeningBookAI(HiveAI ai, OpeningBook book, int minGames, Random random) {
+        this(ai, book, minGames, new WeightedScorePolicy(), random);
+    }
+
+    /**
+     * @param ai AI to use when out of book.
+     * @param book Opening book. It can be shared by any number of AIs.
+     * @param minGames Minimum number of games a move must have been played in to be used.
+     * @param policy Policy used to pick between book moves.
+     * @param random Random generator used by the policy.
+     */
+    public OpeningBookAI(HiveAI ai, OpeningBook book, int minGames, ExplorationPolicy policy, Random random) {
+        this.ai = ai;
+        this.book = book;
+        this.minGames = minGames;
+        this.policy = policy;
+        this.random = random;
+    }
+
+    @Override
+    public GameCommand nextMove(Game state, Board board) {
+        GameCommand move = getBookMove(state);
+        if (move != null) {
+            BestMoveListener listener = bestMoveListener;
+            if (listener != null) {
+                listener.onBestMove(this, move, 0, 0);
+            }
+            return move;
+        }
+
+        return ai.nextMove(state, board);
+    }
+
+    /**
+     * Returns a legal book move for the current game state or null if the position isn't in the book or the policy
+     * decided to search instead.
+     */
+    public GameCommand getBookMove(Game state) {
+        List<BookMove> candidates = getBookMoves(state);
+        if (candidates.isEmpty()) return null;
+        BookMove selected = policy.select(candidates, state.getActivePlayer(), random);
+        return (selected != null) ? selected.move : null;
+    }
+
+    /**
+     * Returns the legal book moves for the current game state that have been played in enough games.
+     */
+    public List<BookMove> getBookMoves(Game state) {
+        List<BookMove> result = new ArrayList<BookMove>();
+        List<BookMove> bookMoves = book.getMoves(state);
+        if (bookMoves.isEmpty()) return result;
+
+        List<GameCommand> legalMoves = moveGenerator.generateMoves(new ArrayList<GameCommand>(), state);
+        for (BookMove bookMove : bookMoves) {
+            if (bookMove.games >= minGames && legalMoves.contains(bookMove.move)) {
+                result.add(bookMove);
+            }
+        }
+        return result;
+    }
+
+    public HiveAI getAI() {
+        return ai;
+    }
+
+    /**
+     * Seed the random generator used by the policy. Copies of this AI use the same seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        random = new Random(seed);
+    }
+
+    @Override
+    public void stop() {
+        ai.stop();
+    }
+
+    @Override
+    public void setBestMoveListener(BestMoveListener listener) {
+        bestMoveListener = listener;
+        ai.setBestMoveListener(listener);
+    }
+
+    @Override
+    public void setSearchProgressListener(SearchProgressListener listener) {
+        ai.setSearchProgressListener(listener);
+    }
+
+    @Override
+    public AIStatistics getAiStats() {
+        return ai.getAiStats();
+    }
+
+    @Override
+    public void setAiStats(AIStatistics stats) {
+        ai.setAiStats(stats);
+    }
+
+    @Override
+    public String getName() {
+        return ai.getName();
+    }
+
+    @Override
+    public HiveAI copy() {
+        OpeningBookAI copy = new OpeningBookAI(ai.copy(), book, minGames, policy, new Random());
+        if (seed != null) {
+            copy.setSeed(seed);
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean maintainsStandardPosition() {
+        return true; // Book lookups need the Zobrist key
+    }
+
+    @Override
+    public int getThreadCount() {
+        return ai.getThreadCount();
+    }
+}
@@ -0,0 +1,327 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV3;
+import dk.ilios.hivemind.ai.statistics.AIStatistics;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wrapper that lets an AI think during the opponents turn (pondering) [1].
+ *
+ * After a move has been returned, a copy of the game is made and a predictor AI guesses the opponents reply. The
+ * wrapped AI then searches for an answer to that reply on a background thread.
+ *
+ * When the next move is requested, the position is compared to the predicted one:
+ * - Hit: The result of the background search is used. If it hasn't finished yet, it is allowed to run to completion.
+ * - Miss: The background search is stopped and discarded, and a normal search is started. As the same AI instance is
+ *   used for both searches, any transposition table filled while pondering is kept.
+ *
+ * If the background search for a hit fails with an exception, it is counted as a miss and the exception is thrown
+ * from <code>nextMove()</code> like an exception from a normal search.
+ *
+ * Hit rate and the time saved are reported in <code>AIStatistics</code>. Background searches record to separate
+ * statistics, so only the moves searched while it is the AIs own turn count as moves in the statistics. The CPU time
+ * used by the background thread is available from <code>getBackgroundCpuTimeInNanos()</code>.
+ *
+ * @see [1] http://chessprogramming.wikispaces.com/Pondering
+ */
+public class PonderingAI implements HiveAI {
+
+    private static final int DEFAULT_PREDICTOR_DEPTH = 2;
+    private static final int DEFAULT_PREDICTOR_TIME_IN_MILLIS = 1000;
+    private static final int STOP_POLL_INTERVAL_IN_MILLIS = 10;
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final HiveAI ai;
+    private final HiveAI predictor;
+    private AIStatistics stats; // Statistics of the moves played
+    private final AIStatistics ponderStats; // Only used by the background thread
+    private ExecutorService executor;
+    private PonderTask ponderTask;
+    private final AtomicLong backgroundCpuTimeInNanos = new AtomicLong();
+    private volatile BestMoveListener bestMoveListener;
+    private volatile SearchProgressListener progressListener;
+
+    /**
+     * Ponder using a shallow Alpha-Beta search to predict the opponents reply.
+     */
+    public PonderingAI(HiveAI ai) {
+        this(ai, new IDDFSAlphaBetaMiniMaxAI("Predictor", new SimpleHeuristicV3(), DEFAULT_PREDICTOR_DEPTH, DEFAULT_PREDICTOR_TIME_IN_MILLIS));
+    }
+
+    /**
+     * @param ai AI to ponder with.
+     * @param predictor AI used to guess the opponents reply.
+     */
+    public PonderingAI(HiveAI ai, HiveAI predictor) {
+        this.ai = ai;
+        this.predictor = predictor;
+        this.stats = ai.getAiStats();
+        this.ponderStats = new AIStatistics(ai);
+    }
+
+    @Override
+    public GameCommand nextMove(Game state, Board board) {
+        GameCommand move = null;
+        if (ponderTask != null) {
+            try {
+                move = ponderTask.finish(state);
+            } finally {
+                ponderTask = null;
+                ai.setAiStats(stats);
+            }
+        }
+
+        if (move == null) {
+            ai.setBestMoveListener(bestMoveListener);
+            ai.setSearchProgressListener(progressListener);
+            try {
+                move = ai.nextMove(state, board);
+            } finally {
+                ai.setBestMoveListener(null); // Don't report moves found while pondering
+                ai.setSearchProgressListener(null);
+            }
+        }
+
+        startPondering(state, move);
+        return move;
+    }
+
+    /**
+     * Stop any pondering in progress and release the background thread, eg. because the game is over.
+     */
+    public void stopPondering() {
+        if (ponderTask != null) {
+            ponderTask.cancel();
+            ponderTask = null;
+            ai.setAiStats(stats);
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the CPU time used by finished background searches, ie. both predictions and pondered searches. Searches
+     * still running are included once they finish, eg. after <code>stopPondering()</code>. Returns 0 if the JVM cannot
+     * measure CPU time.
+     */
+    public long getBackgroundCpuTimeInNanos() {
+        return backgroundCpuTimeInNanos.get();
+    }
+
+    private void startPondering(Game state, GameCommand move) {
+        Game ponderState = state.copy();
+        move.copyFor(ponderState).execute(ponderState);
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Ponder-" + getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        ai.setAiStats(ponderStats); // Restored when the task is done
+        ponderTask = new PonderTask(ponderState);
+        ponderTask.future = executor.submit(ponderTask);
+    }
+
+    /**
+     * Stops the search for the current move. This includes the pondered search if the current move is waiting for it.
+     */
+    @Override
+    public void stop() {
+        predictor.stop();
+        ai.stop();
+    }
+
+    @Override
+    public void setBestMoveListener(BestMoveListener listener) {
+        bestMoveListener = listener;
+    }
+
+    @Override
+    public void setSearchProgressListener(SearchProgressListener listener) {
+        progressListener = listener;
+    }
+
+    @Override
+    public AIStatistics getAiStats() {
+        return stats;
+    }
+
+    @Override
+    public void setAiStats(AIStatistics stats) {
+        this.stats = stats;
+        if (ponderTask == null) {
+            ai.setAiStats(stats); // Otherwise restored when the ponder task is done
+        }
+    }
+
+    @Override
+    public String getName() {
+        return ai.getName();
+    }
+
+    @Override
+    public HiveAI copy() {
+        return new PonderingAI(ai.copy(), predictor.copy());
+    }
+
+    @Override
+    public boolean maintainsStandardPosition() {
+        return ai.maintainsStandardPosition();
+    }
+
+    /**
+     * Pondering only searches while the wrapped AI is idle, but it runs during the opponents turn, so a game between
+     * two pondering AIs keeps the threads of both busy.
+     */
+    @Override
+    public int getThreadCount() {
+        return ai.getThreadCount();
+    }
+
+    // CPU time used by the current thread in nanoseconds or 0 if the JVM cannot measure it.
+    private static long getCpuTime() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Background search for a single predicted position.
+     */
+    private class PonderTask implements Callable<GameCommand> {
+
+        private final Game state;
+        private volatile Game expectedState; // Position after the predicted reply
+        private volatile boolean cancelled;
+        private volatile long searchStart;
+        private volatile long searchEnd;
+        private final CountDownLatch predicted = new CountDownLatch(1);
+        private Future<GameCommand> future;
+
+        private PonderTask(Game state) {
+            this.state = state;
+        }
+
+        @Override
+        public GameCommand call() throws Exception {
+            long cpuStart = getCpuTime();
+            try {
+                return ponder();
+            } finally {
+                backgroundCpuTimeInNanos.addAndGet(getCpuTime() - cpuStart);
+            }
+        }
+
+        private GameCommand ponder() {
+            try {
+                if (isGameOver()) return null;
+                GameCommand reply = predictor.nextMove(state, state.getBoard());
+                if (cancelled) return null;
+
+                reply.execute(state);
+                if (isGameOver()) return null;
+                expectedState = state.copy();
+            } finally {
+                predicted.countDown();
+            }
+
+            searchStart = System.currentTimeMillis();
+            GameCommand move = ai.nextMove(state, state.getBoard());
+            searchEnd = System.currentTimeMillis();
+            return move;
+        }
+
+        private boolean isGameOver() {
+            return state.isEndOfGame();
+        }
+
+        /**
+         * Returns the pondered move if the opponent played the predicted move or null if not.
+         *
+         * @throws RuntimeException if the background search failed.
+         */
+        private GameCommand finish(Game actualState) {
+            // Opponent might have moved before the prediction was ready. Use the best guess so far.
+            try {
+                predictor.stop();
+                while (!predicted.await(STOP_POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS)) {
+                    predictor.stop(); // Prediction might have started after it was stopped. Try again.
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+
+            Game expected = expectedState;
+            boolean hit = expected != null
+                    && expected.getActivePlayer().getType() == actualState.getActivePlayer().getType()
+                    && expected.getBoard().hasSameLayout(actualState.getBoard());
+
+            if (!hit) {
+                cancel();
+                stats.ponderMiss();
+                return null;
+            }
+
+            long timeSaved = ((searchEnd > 0) ? searchEnd : System.currentTimeMillis()) - searchStart;
+            try {
+                GameCommand move = future.get();
+                if (move == null) {
+                    stats.ponderMiss();
+                    return null;
+                }
+                stats.ponderHit(timeSaved);
+                return move.copyFor(actualState);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                stats.ponderMiss();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new RuntimeException("Pondering failed", cause);
+            }
+        }
+
+        /**
+         * Stop the search and wait for the background thread to finish, so the AI can be used again.
+         */
+        private void cancel() {
+            cancelled = true;
+            while (!future.isDone()) {
+                predictor.stop();
+                ai.stop();
+                try {
+                    future.get(STOP_POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Search might have started after it was stopped. Try again.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.game.GameCommand;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a multi-PV analysis: A root move, its score and the line of play the search expects to follow it.
+ *
+ * @see dk.ilios.hivemind.ai.MultiPVAlphaBetaMiniMaxAI
+ */
+public class PrincipalVariation {
+
+    public final GameCommand move;          // Root move
+    public final int value;                 // Score for the root move. + is good for the player to move.
+    public final int depth;                 // Search depth used to find the score
+    public final List<GameCommand> moves;   // Principal variation starting with the root move
+
+    public PrincipalVariation(int value, int depth, List<GameCommand> moves) {
+        this.move = moves.get(0);
+        this.value = value;
+        this.depth = depth;
+        this.moves = Collections.unmodifiableList(moves);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + depth + "] " + value + ": " + moves;
+    }
+}
@@ -0,0 +1,107 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.solver.ProofNumberSearch;
+import dk.ilios.hivemind.ai.statistics.AIStatistics;
+import dk.ilios.hivemind.ai.transpositiontable.ProofNumberTable;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+
+/**
+ * AI that uses Proof-Number search to find moves that surround the opposing queen within a given number of plies.
+ * If no forced win can be proven, the move is delegated to a fallback AI.
+ *
+ * @see dk.ilios.hivemind.ai.solver.ProofNumberSearch
+ */
+public class ProofNumberSearchAI implements HiveAI {
+
+    private static final int MAX_NODES = 1000000;
+
+    private final String name;
+    private final int maxPlies;
+    private final int maxTimeInMillis;
+    private final HiveAI fallback;
+    private final ProofNumberSearch solver;
+    private AIStatistics aiStats = new AIStatistics(this);
+
+    /**
+     * @param name Name of the AI.
+     * @param maxPlies Number of plies (moves by either player) to look for a forced win.
+     * @param maxTimeInMillis Time limit for the proof search.
+     * @param fallback AI used when no forced win can be found.
+     */
+    public ProofNumberSearchAI(String name, int maxPlies, int maxTimeInMillis, HiveAI fallback) {
+        this.name = name;
+        this.maxPlies = maxPlies;
+        this.maxTimeInMillis = maxTimeInMillis;
+        this.fallback = fallback;
+        this.solver = new ProofNumberSearch(maxPlies, MAX_NODES);
+        this.solver.setMaxEmptyHexesAroundQueen(6);
+    }
+
+    @Override
+    public GameCommand nextMove(Game state, Board board) {
+        if (solver.isCandidate(state)) {
+            int result = solver.solve(state, maxTimeInMillis);
+            aiStats.solverNodesExpanded(solver.getNodesExpanded());
+            if (result == ProofNumberTable.PROVEN) {
+                return solver.getWinningMove();
+            }
+        }
+
+        return fallback.nextMove(state, board);
+    }
+
+    /**
+     * Returns the AI used when no forced win can be found.
+     */
+    public HiveAI getFallback() {
+        return fallback;
+    }
+
+    @Override
+    public void stop() {
+        solver.stop();
+        fallback.stop();
+    }
+
+    @Override
+    public void setBestMoveListener(BestMoveListener listener) {
+        fallback.setBestMoveListener(listener);
+    }
+
+    @Override
+    public void setSearchProgressListener(SearchProgressListener listener) {
+        fallback.setSearchProgressListener(listener);
+    }
+
+    @Override
+    public AIStatistics getAiStats() {
+        return aiStats;
+    }
+
+    @Override
+    public void setAiStats(AIStatistics stats) {
+        aiStats = stats;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public HiveAI copy() {
+        return new ProofNumberSearchAI(name, maxPlies, maxTimeInMillis, fallback.copy());
+    }
+
+    @Override
+    public boolean maintainsStandardPosition() {
+        return true;
+    }
+
+    @Override
+    public int getThreadCount() {
+        return 1;
+    }
+}
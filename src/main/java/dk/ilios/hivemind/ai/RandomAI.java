@@ -19,6 +19,7 @@ public class RandomAI implements HiveAI {
 
     private String name;
     private Random random = new Random();
+    private Long seed; // Seed for the random generator or null if unseeded
     private Game state;
     private AIStatistics stats = new AIStatistics(this);
 
@@ -26,9 +27,18 @@ public class RandomAI implements HiveAI {
         this.name = name;
     }
 
+    /**
+     * Create an AI that plays the same moves every time it is given the same sequence of positions.
+     */
+    public RandomAI(String name, long seed) {
+        this.name = name;
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
     @Override
     public HiveAI copy() {
-        return new RandomAI(name);
+        return (seed != null) ? new RandomAI(name, seed) : new RandomAI(name);
     }
 
     @Override
@@ -63,11 +73,31 @@ public class RandomAI implements HiveAI {
         }
     }
 
+    @Override
+    public void stop() {
+        // Moves are chosen instantly
+    }
+
+    @Override
+    public void setBestMoveListener(BestMoveListener listener) {
+        // Moves are chosen instantly, so there are no updates to report
+    }
+
+    @Override
+    public void setSearchProgressListener(SearchProgressListener listener) {
+        // Moves are chosen instantly, so there is no progress to report
+    }
+
     @Override
     public AIStatistics getAiStats() {
         return stats;
     }
 
+    @Override
+    public void setAiStats(AIStatistics stats) {
+        this.stats = stats;
+    }
+
     private GameCommand moveQueenToRandomBoardLocation() {
         Token token = state.getActivePlayer().getFromSupply(BugType.QUEEN_BEE);
         return moveTokenFromSupplyToRandomBoardLocation(token);
@@ -133,4 +163,9 @@ public class RandomAI implements HiveAI {
     public boolean maintainsStandardPosition() {
         return false;
     }
+
+    @Override
+    public int getThreadCount() {
+        return 1;
+    }
 }
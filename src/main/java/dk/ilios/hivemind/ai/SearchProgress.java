@@ -0,0 +1,47 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.game.GameCommand;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of a running search reported to a <code>SearchProgressListener</code>.
+ *
+ * For Monte Carlo searches nodes are playouts, the depth is the length of the principal variation and the selective
+ * depth is the depth of the search tree.
+ */
+public class SearchProgress {
+
+    public final int depth;                         // Depth of the iteration that was completed
+    public final int selectiveDepth;                // Deepest ply visited so far in the search
+    public final long nodes;                        // Nodes visited so far in the search
+    public final long nodesPrSecond;
+    public final long timeInMillis;                 // Time since the search started
+    public final double transpositionTableFill;     // Part of the transposition table in use (0-1) or -1 if the AI has no table
+    public final GameCommand bestMove;              // Best move found so far or null if none was found
+    public final int value;                         // Value of the best move, see BestMoveListener
+    public final List<GameCommand> principalVariation; // Expected line of play starting with the best move
+    public final boolean aborted;                   // True if the iteration was stopped before it was completed
+
+    public SearchProgress(int depth, int selectiveDepth, long nodes, long timeInMillis, double transpositionTableFill,
+                          GameCommand bestMove, int value, List<GameCommand> principalVariation, boolean aborted) {
+        this.depth = depth;
+        this.selectiveDepth = selectiveDepth;
+        this.nodes = nodes;
+        this.nodesPrSecond = (timeInMillis > 0) ? nodes * 1000 / timeInMillis : 0;
+        this.timeInMillis = timeInMillis;
+        this.transpositionTableFill = transpositionTableFill;
+        this.bestMove = bestMove;
+        this.value = value;
+        this.principalVariation = Collections.unmodifiableList(principalVariation);
+        this.aborted = aborted;
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + " seldepth " + selectiveDepth + " nodes " + nodes + " nps " + nodesPrSecond
+                + " time " + timeInMillis + " ttfill " + transpositionTableFill + " value " + value
+                + (aborted ? " (aborted)" : "") + " pv " + principalVariation;
+    }
+}
@@ -0,0 +1,20 @@
+package dk.ilios.hivemind.ai;
+
+/**
+ * Listener that is notified about the progress of a search while it runs, eg. to show what the AI is thinking or to
+ * stop the search once the principal variation is stable.
+ *
+ * Minimax AIs report after each Iterative Deepening iteration. Monte Carlo AIs report every
+ * <code>AbstractMonteCarloTreeSearchAI.PLAYOUTS_PR_PROGRESS_REPORT</code> playouts and when the search ends.
+ *
+ * Callbacks happen on the thread running the search, so implementations should return quickly. It is safe to call
+ * <code>HiveAI.stop()</code> from a callback.
+ */
+public interface SearchProgressListener {
+
+    /**
+     * @param ai AI that is searching.
+     * @param progress Snapshot of the search. It is never changed afterwards, so it can be kept.
+     */
+    public void onSearchProgress(HiveAI ai, SearchProgress progress);
+}
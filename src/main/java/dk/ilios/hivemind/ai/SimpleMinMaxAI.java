@@ -13,7 +13,6 @@ import java.util.*;
  */
 public class SimpleMinMaxAI extends AbstractMinMaxAI {
 
-    private Random random = new Random();
     private int searchDepth = 0; // Search depth for tree. 0 is the starting depth
 
     public SimpleMinMaxAI(String name, BoardValueHeuristic heuristic, int depth, int maxTimeInMillis) {
@@ -23,13 +22,17 @@ public class SimpleMinMaxAI extends AbstractMinMaxAI {
 
     @Override
     public HiveAI copy() {
-        return new SimpleMinMaxAI(name, heuristic, searchDepth, maxTimeInMillis);
+        return copySettings(new SimpleMinMaxAI(name, heuristic, searchDepth, maxTimeInMillis));
     }
 
     @Override
     public GameCommand nextMove(Game state, Board board) {
-        maximizingPlayer = state.getActivePlayer();
-        start = System.currentTimeMillis();
+        startSearch(state);
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
 
         // Minimax traversal of game tree
         // Ply 1
@@ -43,10 +46,12 @@ public class SimpleMinMaxAI extends AbstractMinMaxAI {
             if (value > bestValue || value == bestValue && random.nextBoolean()) {
                 bestValue = value;
                 bestMove = move;
+                reportBestMove(move, value, searchDepth);
             }
             undoMove(move, state);
         }
 
+        iterationCompleted(searchDepth, bestMove, bestValue);
         return bestMove;
     }
 
@@ -55,7 +60,7 @@ public class SimpleMinMaxAI extends AbstractMinMaxAI {
      * + means current player is winning, - he is loosing
      */
     private int minimax(Game state, int depth, boolean maximizingPlayer) {
-        if (isGameOver(state, depth) || depth <= 0 || System.currentTimeMillis() - start > maxTimeInMillis) {
+        if (isOutOfTime() || isGameOver(state, depth) || depth <= 0) {
             // Positive values are good for the maximizing player, negative values for minimizing player
             return value(state);
 
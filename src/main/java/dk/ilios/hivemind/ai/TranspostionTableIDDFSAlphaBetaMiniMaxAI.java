@@ -1,14 +1,12 @@
 package dk.ilios.hivemind.ai;
 
 import dk.ilios.hivemind.ai.heuristics.BoardValueHeuristic;
-import dk.ilios.hivemind.ai.transpositiontable.TranspositionTable;
 import dk.ilios.hivemind.ai.transpositiontable.TranspositionTableEntry;
 import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
 import dk.ilios.hivemind.model.Board;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * AI that implements Minimax tree search algorithm with Alpha-Beta prunning and Iterative Deepening Depth-First Search.
@@ -28,8 +26,6 @@ import java.util.Random;
  */
 public class TranspostionTableIDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
-    private Random random = new Random();
-    private TranspositionTable table = new TranspositionTable();
 
     public TranspostionTableIDDFSAlphaBetaMiniMaxAI(String name, BoardValueHeuristic heuristicFunction, int depth, int maxTimeInMillis) {
         super(name, heuristicFunction, depth, maxTimeInMillis);
@@ -37,13 +33,17 @@ public class TranspostionTableIDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
     @Override
     public HiveAI copy() {
-        return new TranspostionTableIDDFSAlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis);
+        return copySettings(new TranspostionTableIDDFSAlphaBetaMiniMaxAI(name, heuristic, searchDepth, maxTimeInMillis));
     }
 
     @Override
     public GameCommand nextMove(Game state, Board board) {
-        start = System.currentTimeMillis();
-        maximizingPlayer = state.getActivePlayer();
+        startSearch(state);
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
 
         // Iterate depths, effectively a breath-first search, where top nodes get visited multiple times
         int depth = 0;
@@ -51,12 +51,24 @@ public class TranspostionTableIDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
         GameCommand bestCommand = null;
 
         Object[] result = new Object[2];
-        while(depth <= searchDepth && System.currentTimeMillis() - start < maxTimeInMillis) {
+        while(depth <= searchDepth && timeManager.canStartIteration()) {
             result = runMinMax(state, depth, result);
+            boolean aborted = timeManager.isStopped();
             int val = (Integer) result[0];
+            iterationCompleted(depth, (GameCommand) result[1], val);
+
+            // Only keep complete iterations unless nothing else is available
+            if (aborted) {
+                if (bestCommand == null) {
+                    bestCommand = (GameCommand) result[1];
+                }
+                break;
+            }
+
             if (val > bestValue || val == bestValue && random.nextBoolean()) {
                 bestValue = val;
                 bestCommand = (GameCommand) result[1];
+                reportBestMove(bestCommand, bestValue, depth);
                 if (bestValue == HiveAI.MAX) {
                     return bestCommand; // Game winning move
                 }
@@ -98,8 +110,8 @@ public class TranspostionTableIDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
         GameCommand bestMove = null;
 
         // Check transposition tsable and adjust values if needed or return result if possible
-        long zobristKey = state.getZobristKey();
-        TranspositionTableEntry entry = table.getResult(zobristKey);
+        TranspositionTableEntry entry = table.getResult(state, this.maximizingPlayer);
+        aiStats.transpositionTableProbe(entry != null);
         if (entry != null && entry.depth >= depth) {
             aiStats.cacheHit();
             bestMove = entry.move;
@@ -118,11 +130,12 @@ public class TranspostionTableIDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
 
         // Run algorithm as usual
         int value;
-        if (isGameOver(state, depth) || depth <= 0 || System.currentTimeMillis() - start > maxTimeInMillis) {
+        if (isOutOfTime() || isGameOver(state, depth) || depth <= 0) {
             value = value(state);
         } else {
             List<GameCommand> moves = generateMoves(state, bestMove);
             int moveAnalyzed = 0;
+            int cutoffIndex = -1;
 
             if (maximizingPlayer) {
                 for (GameCommand move : moves) {
@@ -138,6 +151,7 @@ public class TranspostionTableIDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
                     // Beta cut-off
                     if (beta <= alpha) {
                         aiStats.cutOffAfter(moveAnalyzed);
+                        cutoffIndex = moveAnalyzed - 1;
                         break;
                     }
                 }
@@ -152,28 +166,32 @@ public class TranspostionTableIDDFSAlphaBetaMiniMaxAI extends AbstractMinMaxAI {
                     applyMove(move, state);
                     value = alphabeta(state, depth - 1, alpha, beta, !maximizingPlayer);
                     if (value < beta) {
-                        aiStats.cutOffAfter(moveAnalyzed);
                         beta = value;
                     }
                     undoMove(move, state);
 
                     // Alpha cut-off
                     if (beta <= alpha) {
+                        aiStats.cutOffAfter(moveAnalyzed);
+                        cutoffIndex = moveAnalyzed - 1;
                         break;
                     }
                 }
 
                 value = beta;
             }
+
+            traceNode(state, depth, originalAlpha, originalBeta, value, moves.size(), cutoffIndex, bestMove);
         }
 
-        // Update transposition table
+        // Update transposition table. Values found after the search was stopped are only static evaluations.
+        if (timeManager.isStopped()) return value;
         if (value <= originalAlpha) {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.CUT_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.CUT_NODE, bestMove);
         } else if (value >= originalBeta) {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.ALL_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.ALL_NODE, bestMove);
         } else {
-            table.addResult(zobristKey, value, depth, TranspositionTableEntry.PV_NODE, bestMove);
+            table.addResult(state, this.maximizingPlayer, value, depth, TranspositionTableEntry.PV_NODE, bestMove);
         }
 
         return value;
@@ -4,11 +4,11 @@ import dk.ilios.hivemind.ai.heuristics.BoardValueHeuristic;
 import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV3;
 import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.GamePhase;
 import dk.ilios.hivemind.model.Board;
 import dk.ilios.hivemind.model.Player;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * Basic Monte Carlo Tree Search
@@ -21,10 +21,8 @@ import java.util.Random;
  */
 public class UCTMonteCarloTreeSearchAI extends AbstractMonteCarloTreeSearchAI {
 
-    Random random = new Random();
     BoardValueHeuristic evaluationFunction = new SimpleHeuristicV3();
 
-    private Game state;
     private Player startPlayer;
 
     protected long start; // Start time for requesting a new move.
@@ -39,7 +37,7 @@ public class UCTMonteCarloTreeSearchAI extends AbstractMonteCarloTreeSearchAI {
 
     @Override
     public HiveAI copy() {
-        return new UCTMonteCarloTreeSearchAI(name, maxDepth, timeLimit);
+        return copySettings(new UCTMonteCarloTreeSearchAI(name, maxDepth, timeLimit));
     }
 
     @Override
@@ -47,10 +45,17 @@ public class UCTMonteCarloTreeSearchAI extends AbstractMonteCarloTreeSearchAI {
         this.state = state;
         startPlayer = state.getActivePlayer();
         start = System.currentTimeMillis();
+        aiStats.setGamePhase(GamePhase.of(state));
+        timeManager.start(state, aiStats.getAverageBranchFactor());
+
+        GameCommand forcedWin = findForcedWin(state);
+        if (forcedWin != null) {
+            return forcedWin;
+        }
 
         GameNode root = new GameNode(null, null);
 
-        while (System.currentTimeMillis() - start < timeLimit) {
+        while (!isSearchFinished(root)) {
             GameNode leaf = selection(root);
             GameNode simulationStartNode = expand(leaf);
             int result = simulation(simulationStartNode);
@@ -144,7 +149,7 @@ public class UCTMonteCarloTreeSearchAI extends AbstractMonteCarloTreeSearchAI {
      * @Return Return -1/0/+1 or heuristic value?
      */
     private int simulation(GameNode simulationStartNode) {
-        RandomAI moveGenerator = new RandomAI("MCTSRandomMoveGenerator");
+        RandomAI moveGenerator = new RandomAI("MCTSRandomMoveGenerator", random.nextLong());
         return runSimulation(state, moveGenerator, maxDepth);
     }
 
@@ -0,0 +1,73 @@
+package dk.ilios.hivemind.ai.book;
+
+/**
+ * Statistics for a single move in a single position of an opening book.
+ *
+ * Entries are sorted by the Zobrist key of the position, so all moves for a position are next to each other in the
+ * book file.
+ */
+public class BookEntry implements Comparable<BookEntry> {
+
+    public final long key;              // Zobrist key for the game state before the move
+    public final long verificationKey;  // Verification key for the game state before the move
+    public final long move;             // Move encoded by MoveEncoder
+    int games;
+    int whiteWins;
+    int blackWins;
+
+    public BookEntry(long key, long verificationKey, long move, int games, int whiteWins, int blackWins) {
+        this.key = key;
+        this.verificationKey = verificationKey;
+        this.move = move;
+        this.games = games;
+        this.whiteWins = whiteWins;
+        this.blackWins = blackWins;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public int getWhiteWins() {
+        return whiteWins;
+    }
+
+    public int getBlackWins() {
+        return blackWins;
+    }
+
+    /**
+     * Add the results from another entry for the same move.
+     */
+    void add(BookEntry other) {
+        games += other.games;
+        whiteWins += other.whiteWins;
+        blackWins += other.blackWins;
+    }
+
+    @Override
+    public int compareTo(BookEntry other) {
+        if (key != other.key) return (key < other.key) ? -1 : 1;
+        if (verificationKey != other.verificationKey) return (verificationKey < other.verificationKey) ? -1 : 1;
+        if (move != other.move) return (move < other.move) ? -1 : 1;
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BookEntry)) return false;
+        BookEntry other = (BookEntry) o;
+        return key == other.key && verificationKey == other.verificationKey && move == other.move;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = key ^ (verificationKey * 31) ^ (move * 961);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return Long.toHexString(key) + ": " + Long.toHexString(move) + " " + games + " games, " + whiteWins + "/" + blackWins + " white/black wins";
+    }
+}
@@ -0,0 +1,42 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+
+/**
+ * A move from the opening book together with the results of the games it was played in.
+ */
+public class BookMove {
+
+    public final GameCommand move;
+    public final int games;
+    public final int whiteWins;
+    public final int blackWins;
+
+    public BookMove(GameCommand move, int games, int whiteWins, int blackWins) {
+        this.move = move;
+        this.games = games;
+        this.whiteWins = whiteWins;
+        this.blackWins = blackWins;
+    }
+
+    public int getDraws() {
+        return games - whiteWins - blackWins;
+    }
+
+    /**
+     * Returns the score for the player making the move. Wins count 1 and draws 0.5. One win and one loss are added
+     * to the results, so lines seen in a few games are not trusted blindly.
+     *
+     * @return Score between 0 and 1.
+     */
+    public double getScore(Player player) {
+        int wins = player.isWhitePlayer() ? whiteWins : blackWins;
+        return (wins + 0.5 * getDraws() + 1) / (games + 2);
+    }
+
+    @Override
+    public String toString() {
+        return move + " " + games + " games, " + whiteWins + "/" + blackWins + " white/black wins";
+    }
+}
@@ -0,0 +1,24 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.model.Player;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Decides which book move to play in a position, or whether to leave the book and search instead.
+ *
+ * @see dk.ilios.hivemind.ai.OpeningBookAI
+ */
+public interface ExplorationPolicy {
+
+    /**
+     * Select a book move.
+     *
+     * @param moves Legal book moves for the position. Never empty.
+     * @param player Player to move.
+     * @param random Random generator to use for random choices.
+     * @return The move to play or null if the AI should search instead.
+     */
+    public BookMove select(List<BookMove> moves, Player player, Random random);
+}
@@ -0,0 +1,183 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.MoveEncoder;
+import dk.ilios.hivemind.model.ZobristTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only opening book stored in a memory-mapped file.
+ *
+ * The file consists of a header followed by fixed size entries sorted by Zobrist key, see <code>BookEntry</code>.
+ * Lookups use binary search on the mapped file, so opening a book is cheap no matter its size and it can be shared by
+ * any number of threads.
+ *
+ * Books are created by <code>OpeningBookBuilder</code>.
+ *
+ * Entry layout:
+ * - Zobrist key (8 bytes)
+ * - Verification key (8 bytes)
+ * - Move, see <code>MoveEncoder</code> (8 bytes)
+ * - Games, white wins and black wins (4 bytes each)
+ * - Unused (4 bytes)
+ */
+public class OpeningBook {
+
+    public static final long MAGIC = 0x484956454230304BL; // "HIVEB00K"
+    public static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int ENTRY_SIZE = 40;
+
+    private final File file;
+    private volatile Content content;
+
+    /**
+     * Open an existing book.
+     *
+     * @throws IOException if the file cannot be read or isn't a book created with the current Zobrist keys.
+     */
+    public OpeningBook(File file) throws IOException {
+        this.file = file;
+        this.content = load(file);
+    }
+
+    /**
+     * Map the file again, eg. after <code>OpeningBookLearner</code> has merged new games into it. Lookups already in
+     * progress continue to use the old content.
+     */
+    public void reload() throws IOException {
+        content = load(file);
+    }
+
+    private static Content load(File file) throws IOException {
+        MappedByteBuffer buffer;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            if (randomAccessFile.length() < HEADER_SIZE) throw new IOException("Not an opening book: " + file);
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } finally {
+            randomAccessFile.close(); // The mapping stays valid
+        }
+
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != FORMAT_VERSION) {
+            throw new IOException("Not an opening book: " + file);
+        }
+        if (buffer.getInt(12) != ZobristTable.VERSION || buffer.getLong(16) != ZobristTable.SEED || buffer.getLong(24) != ZobristTable.VERIFICATION_SEED) {
+            throw new IOException("Opening book was created with other Zobrist keys: " + file);
+        }
+        long entries = buffer.getLong(32);
+        if (entries * ENTRY_SIZE + HEADER_SIZE != buffer.capacity()) {
+            throw new IOException("Opening book is damaged: " + file);
+        }
+        return new Content(buffer, (int) entries);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of entries, ie. the number of unique (position, move) pairs in the book.
+     */
+    public int size() {
+        return content.size;
+    }
+
+    public BookEntry getEntry(int index) {
+        return content.getEntry(index);
+    }
+
+    /**
+     * Returns the index of the entry for the same position and move as the given entry, or -1 if the book doesn't
+     * contain it.
+     */
+    int indexOf(BookEntry entry) {
+        Content content = this.content;
+        for (int i = content.findFirst(entry.key); i < content.size && content.getKey(i) == entry.key; i++) {
+            if (content.getEntry(i).equals(entry)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of an entry in the book file.
+     */
+    static long getPosition(int index) {
+        return HEADER_SIZE + (long) index * ENTRY_SIZE;
+    }
+
+    /**
+     * Returns all book moves for the current game state. Moves whose tokens cannot be found in the game are left out.
+     * Moves are not checked against the rules.
+     */
+    public List<BookMove> getMoves(Game state) {
+        List<BookMove> result = new ArrayList<BookMove>();
+        if (!state.isUsingZobristKey()) return result;
+
+        Content content = this.content;
+        long key = state.getZobristKey();
+        long verificationKey = state.getVerificationKey();
+        for (int i = content.findFirst(key); i < content.size && content.getKey(i) == key; i++) {
+            BookEntry entry = content.getEntry(i);
+            if (entry.verificationKey != verificationKey) continue;
+            GameCommand move = MoveEncoder.decode(state, entry.move);
+            if (move != null) {
+                result.add(new BookMove(move, entry.games, entry.whiteWins, entry.blackWins));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Content of the book file at the time it was mapped.
+     */
+    private static class Content {
+        private final MappedByteBuffer buffer;
+        private final int size;
+
+        private Content(MappedByteBuffer buffer, int size) {
+            this.buffer = buffer;
+            this.size = size;
+        }
+
+        private BookEntry getEntry(int index) {
+            int position = HEADER_SIZE + index * ENTRY_SIZE;
+            return new BookEntry(
+                    buffer.getLong(position),
+                    buffer.getLong(position + 8),
+                    buffer.getLong(position + 16),
+                    buffer.getInt(position + 24),
+                    buffer.getInt(position + 28),
+                    buffer.getInt(position + 32));
+        }
+
+        // Returns the index of the first entry with a key greater than or equal to the given key.
+        private int findFirst(long key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (getKey(middle) < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private long getKey(int index) {
+            return buffer.getLong(HEADER_SIZE + index * ENTRY_SIZE);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.GameStatus;
+import dk.ilios.hivemind.game.MoveEncoder;
+import dk.ilios.hivemind.model.ZobristTable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the moves played in the opening of finished games and writes them as an <code>OpeningBook</code>.
+ *
+ * Positions are identified by the Zobrist key of the game state in Standard Position, so transpositions, rotations and
+ * reflections of the same opening are merged.
+ */
+public class OpeningBookBuilder {
+
+    public static final int DEFAULT_MAX_PLIES = 12;
+
+    private final int maxPlies;
+    private final Map<BookEntry, BookEntry> entries = new HashMap<BookEntry, BookEntry>();
+
+    public OpeningBookBuilder() {
+        this(DEFAULT_MAX_PLIES);
+    }
+
+    /**
+     * @param maxPlies Number of plies (moves by either player) to record from each game.
+     */
+    public OpeningBookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Record the first moves of a finished game. The game must maintain Zobrist keys. It is replayed from the start and
+     * left at its last position.
+     */
+    public void addGame(Game game) {
+        if (!game.isUsingZobristKey()) throw new IllegalArgumentException("Game must use Standard Position and Zobrist keys.");
+
+        GameStatus result = game.getStatus();
+        game.setReplayMode(true);
+        for (int ply = 0; ply < maxPlies; ply++) {
+            GameCommand move = game.getMove((ply % 2 == 0) ? game.getWhitePlayer() : game.getBlackPlayer(), ply / 2 + 1);
+            if (move == null) break;
+            addMove(game, move, result);
+            game.forward();
+        }
+        game.setReplayMode(false);
+    }
+
+    /**
+     * Record a single move.
+     *
+     * @param state Game state before the move.
+     * @param move Move played.
+     * @param result Result of the game the move was played in.
+     */
+    public void addMove(Game state, GameCommand move, GameStatus result) {
+        if (move.getToken() == null) return; // Passes are forced, so there is nothing to learn
+        add(new BookEntry(state.getZobristKey(), state.getVerificationKey(), MoveEncoder.encode(state.getBoard(), move), 1,
+                result == GameStatus.RESULT_WHITE_WINS ? 1 : 0,
+                result == GameStatus.RESULT_BLACK_WINS ? 1 : 0));
+    }
+
+    /**
+     * Add all entries from an existing book, eg. to extend it with new games.
+     */
+    public void addBook(OpeningBook book) {
+        for (int i = 0; i < book.size(); i++) {
+            add(book.getEntry(i));
+        }
+    }
+
+    /**
+     * Add all entries recorded by another builder.
+     */
+    public void addAll(OpeningBookBuilder other) {
+        for (BookEntry entry : other.entries.values()) {
+            add(new BookEntry(entry.key, entry.verificationKey, entry.move, entry.games, entry.whiteWins, entry.blackWins));
+        }
+    }
+
+    private void add(BookEntry entry) {
+        BookEntry existing = entries.get(entry);
+        if (existing == null) {
+            entries.put(entry, entry);
+        } else {
+            existing.add(entry);
+        }
+    }
+
+    /**
+     * Returns the number of unique (position, move) pairs recorded.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the recorded entries in the order they are stored in a book.
+     */
+    List<BookEntry> getSortedEntries() {
+        List<BookEntry> sortedEntries = new ArrayList<BookEntry>(entries.values());
+        Collections.sort(sortedEntries);
+        return sortedEntries;
+    }
+
+    /**
+     * Write the book to disk. The book is written to a temporary file first, so the old book, if any, is left
+     * untouched if anything fails.
+     */
+    public void write(File file) throws IOException {
+        write(file, null, getSortedEntries());
+    }
+
+    /**
+     * Write a book consisting of the entries of an existing book and some new, sorted entries. The entries are merged
+     * while writing, so the existing book is never loaded into memory. The new entries must not already be in the book.
+     *
+     * @param file File to write. It may be the file of the existing book.
+     * @param book Existing book or <code>null</code>.
+     * @param sortedEntries New entries, see <code>getSortedEntries()</code>.
+     */
+    static void write(File file, OpeningBook book, List<BookEntry> sortedEntries) throws IOException {
+        int bookSize = (book != null) ? book.size() : 0;
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            output.writeLong(OpeningBook.MAGIC);
+            output.writeInt(OpeningBook.FORMAT_VERSION);
+            output.writeInt(ZobristTable.VERSION);
+            output.writeLong(ZobristTable.SEED);
+            output.writeLong(ZobristTable.VERIFICATION_SEED);
+            output.writeLong(bookSize + sortedEntries.size());
+            output.write(new byte[OpeningBook.HEADER_SIZE - output.size()]);
+
+            int i = 0;
+            int j = 0;
+            while (i < bookSize || j < sortedEntries.size()) {
+                BookEntry bookEntry = (i < bookSize) ? book.getEntry(i) : null;
+                if (bookEntry != null && (j == sortedEntries.size() || bookEntry.compareTo(sortedEntries.get(j)) < 0)) {
+                    writeEntry(output, bookEntry);
+                    i++;
+                } else {
+                    writeEntry(output, sortedEntries.get(j));
+                    j++;
+                }
+            }
+        } finally {
+            output.close();
+        }
+
+        // Renaming replaces the old file in one step on most platforms, so readers never see a partial book
+        if (!tempFile.renameTo(file)) {
+            if (file.exists() && !file.delete()) throw new IOException("Could not replace " + file);
+            if (!tempFile.renameTo(file)) throw new IOException("Could not rename " + tempFile + " to " + file);
+        }
+    }
+
+    /**
+     * Write a single entry in the format described in <code>OpeningBook</code>.
+     */
+    static void writeEntry(DataOutput output, BookEntry entry) throws IOException {
+        output.writeLong(entry.key);
+        output.writeLong(entry.verificationKey);
+        output.writeLong(entry.move);
+        output.writeInt(entry.games);
+        output.writeInt(entry.whiteWins);
+        output.writeInt(entry.blackWins);
+        output.writeInt(0);
+    }
+}
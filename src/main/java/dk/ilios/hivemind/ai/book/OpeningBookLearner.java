@@ -0,0 +1,163 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.game.Game;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grows an opening book from finished games, eg. the games of a tournament between AIs.
+ *
+ * Games are collected in memory and merged into the book file after every <code>gamesPerMerge</code> games and when
+ * <code>merge()</code> is called. A merge holds an exclusive lock on "[book].lock", so several processes can learn
+ * into the same book, and each merge reads the latest version of the book before adding its games. Only one learner
+ * pr. book should be used in each process.
+ *
+ * Moves already in the book are updated in place, which costs a binary search and a 40 byte write pr. move. Only moves
+ * that are new to the book require rewriting it: the new moves are merged with the sorted book file while it is copied,
+ * which takes time proportional to the size of the book but doesn't load it into memory. As the book grows, most games
+ * follow known lines for longer, so fewer merges need a rewrite. Counts of a single entry can be seen half updated by
+ * lookups running during a merge.
+ *
+ * After a merge the book returned by <code>getBook()</code> is reloaded, so AIs using it see the new results
+ * right away. Combined with an <code>UCBExplorationPolicy</code>, this moves the opening phase of self-play games from
+ * search to book lookups, while lines that keep losing are played less and less.
+ */
+public class OpeningBookLearner {
+
+    public static final int DEFAULT_GAMES_PER_MERGE = 10;
+
+    private final File file;
+    private final File lockFile;
+    private final int maxPlies;
+    private final int gamesPerMerge;
+    private final OpeningBook book;
+    private OpeningBookBuilder pendingGames;
+    private int pendingGameCount = 0;
+
+    public OpeningBookLearner(File file) throws IOException {
+        this(file, OpeningBookBuilder.DEFAULT_MAX_PLIES, DEFAULT_GAMES_PER_MERGE);
+    }
+
+    /**
+     * Open a book for learning. The book is created if it doesn't exist.
+     *
+     * @param file Book file.
+     * @param maxPlies Number of plies to record from each game.
+     * @param gamesPerMerge Number of games to collect before merging them into the book.
+     */
+    public OpeningBookLearner(File file, int maxPlies, int gamesPerMerge) throws IOException {
+        this.file = file;
+        this.lockFile = new File(file.getPath() + ".lock");
+        this.maxPlies = maxPlies;
+        this.gamesPerMerge = gamesPerMerge;
+        this.pendingGames = new OpeningBookBuilder(maxPlies);
+
+        FileLock lock = lock();
+        try {
+            if (!file.exists()) {
+                new OpeningBookBuilder(maxPlies).write(file);
+            }
+        } finally {
+            release(lock);
+        }
+        this.book = new OpeningBook(file);
+    }
+
+    /**
+     * Returns the book being learned. It is updated after each merge.
+     */
+    public OpeningBook getBook() {
+        return book;
+    }
+
+    /**
+     * Record a finished game. The game must maintain Zobrist keys.
+     */
+    public synchronized void addGame(Game game) throws IOException {
+        pendingGames.addGame(game);
+        pendingGameCount++;
+        if (pendingGameCount >= gamesPerMerge) {
+            merge();
+        }
+    }
+
+    /**
+     * Returns the number of games that haven't been merged into the book yet.
+     */
+    public synchronized int getPendingGames() {
+        return pendingGameCount;
+    }
+
+    /**
+     * Merge all recorded games into the book file and reload the book.
+     */
+    public synchronized void merge() throws IOException {
+        if (pendingGameCount == 0) return;
+
+        FileLock lock = lock();
+        try {
+            OpeningBook currentBook = new OpeningBook(file); // Other processes might have changed the file
+            List<BookEntry> newEntries = updateEntries(currentBook, pendingGames.getSortedEntries());
+            if (!newEntries.isEmpty()) {
+                OpeningBookBuilder.write(file, currentBook, newEntries);
+            }
+        } finally {
+            release(lock);
+        }
+
+        pendingGames = new OpeningBookBuilder(maxPlies);
+        pendingGameCount = 0;
+        book.reload();
+    }
+
+    // Add the results of entries already in the book to the book file. Returns the entries that are not in the book.
+    private List<BookEntry> updateEntries(OpeningBook currentBook, List<BookEntry> entries) throws IOException {
+        List<BookEntry> newEntries = new ArrayList<BookEntry>();
+        RandomAccessFile randomAccessFile = null;
+        try {
+            for (BookEntry entry : entries) {
+                int index = currentBook.indexOf(entry);
+                if (index == -1) {
+                    newEntries.add(entry);
+                    continue;
+                }
+
+                if (randomAccessFile == null) {
+                    randomAccessFile = new RandomAccessFile(file, "rw");
+                }
+                BookEntry updatedEntry = currentBook.getEntry(index);
+                updatedEntry.add(entry);
+                randomAccessFile.seek(OpeningBook.getPosition(index));
+                OpeningBookBuilder.writeEntry(randomAccessFile, updatedEntry);
+            }
+        } finally {
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+        }
+        return newEntries;
+    }
+
+    private FileLock lock() throws IOException {
+        RandomAccessFile lockRandomAccessFile = new RandomAccessFile(lockFile, "rw");
+        try {
+            return lockRandomAccessFile.getChannel().lock();
+        } catch (IOException e) {
+            lockRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    private void release(FileLock lock) throws IOException {
+        try {
+            lock.release();
+        } finally {
+            lock.channel().close();
+        }
+    }
+}
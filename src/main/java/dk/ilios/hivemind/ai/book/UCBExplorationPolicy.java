@@ -0,0 +1,65 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.model.Player;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Policy for learning books, that keeps testing lines that have only been played in a few games.
+ *
+ * Book moves are selected using UCB1 [1], ie. the move with the highest score + C * sqrt(ln(games in position) /
+ * games with move), so a move that has lost a few games is tried again until it has lost often enough to be trusted.
+ *
+ * To find moves that are not in the book yet, the AI leaves the book with a probability that drops as the position is
+ * played more: searchProbability * minGames / (minGames + games in position).
+ *
+ * @see [1] http://en.wikipedia.org/wiki/Multi-armed_bandit
+ */
+public class UCBExplorationPolicy implements ExplorationPolicy {
+
+    public static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+
+    private final double exploration;
+    private final double searchProbability;
+    private final int minGames;
+
+    public UCBExplorationPolicy() {
+        this(DEFAULT_EXPLORATION, 0.5, 10);
+    }
+
+    /**
+     * @param exploration Exploration constant (C). Higher values play rarely played moves more often.
+     * @param searchProbability Probability of searching instead of using the book in a position seen in no games.
+     * @param minGames Number of games in a position before the search probability is halved.
+     */
+    public UCBExplorationPolicy(double exploration, double searchProbability, int minGames) {
+        this.exploration = exploration;
+        this.searchProbability = searchProbability;
+        this.minGames = minGames;
+    }
+
+    @Override
+    public BookMove select(List<BookMove> moves, Player player, Random random) {
+        int totalGames = 0;
+        for (BookMove move : moves) {
+            totalGames += move.games;
+        }
+
+        if (random.nextDouble() < searchProbability * minGames / (minGames + totalGames)) {
+            return null;
+        }
+
+        BookMove bestMove = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        double logGames = Math.log(Math.max(1, totalGames));
+        for (BookMove move : moves) {
+            double value = move.getScore(player) + exploration * Math.sqrt(logGames / Math.max(1, move.games));
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+}
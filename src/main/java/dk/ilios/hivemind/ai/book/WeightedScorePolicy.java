@@ -0,0 +1,32 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.model.Player;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Pick a book move at random, weighted by its score for the player to move. Strong lines are played most of the time,
+ * while games still vary.
+ *
+ * @see BookMove#getScore(dk.ilios.hivemind.model.Player)
+ */
+public class WeightedScorePolicy implements ExplorationPolicy {
+
+    @Override
+    public BookMove select(List<BookMove> moves, Player player, Random random) {
+        double totalScore = 0;
+        for (BookMove move : moves) {
+            totalScore += move.getScore(player);
+        }
+
+        double selected = random.nextDouble() * totalScore;
+        for (BookMove move : moves) {
+            selected -= move.getScore(player);
+            if (selected < 0) {
+                return move;
+            }
+        }
+        return moves.get(moves.size() - 1);
+    }
+}
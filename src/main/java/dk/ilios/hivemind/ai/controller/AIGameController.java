@@ -1,30 +1,48 @@
 package dk.ilios.hivemind.ai.controller;
 
 import dk.ilios.hivemind.ai.HiveAI;
+import dk.ilios.hivemind.ai.PonderingAI;
+import dk.ilios.hivemind.ai.book.OpeningBookLearner;
 import dk.ilios.hivemind.ai.statistics.GameStatistics;
+import dk.ilios.hivemind.ai.statistics.SPRT;
+import dk.ilios.hivemind.ai.statistics.StatisticsExporter;
 import dk.ilios.hivemind.game.CommandProvider;
 import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.GameStatus;
 import dk.ilios.hivemind.model.Board;
 import dk.ilios.hivemind.model.Player;
 import dk.ilios.hivemind.model.StandardPositionMode;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Controller class for executing AI battles.
  * Given x number of opponents, y number of battles are executed among all pairs.
- * Results are then printed to the screen.
+ * Results are printed to the screen and optionally streamed to a file as games finish.
+ *
+ * Games are run in parallel by a <code>TournamentScheduler</code>. The CPU time each AI uses to calculate its moves
+ * is tracked in the <code>GameStatistics</code> of each game. It is measured on the thread running the game and, when
+ * pondering, on the background thread of the <code>PonderingAI</code>.
  */
 public class AIGameController {
 
-    // How many games can run simultaneously. Max should be #CPUs - 1 to avoid CPU contention.
-    // Look into if it is possible to force Java to use different CPU's. Right now we just cross fingers and hope.
-    private static final int THREADS = 3;
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
 
     private int turnLimit;
     private int numberOfMatches;
+    private boolean pondering = false;
+    private OpeningBookLearner bookLearner;
+    private GameResultWriter resultWriter;
+    private int workers = 0;
 
     private long duration;
     private Set<HiveAI> opponents = new HashSet<HiveAI>();
@@ -45,41 +63,189 @@ public class AIGameController {
         this.numberOfMatches = numberOfMatches;
     }
 
+    /**
+     * If enabled, all AI's will search during their opponents turn. Each AI then uses an extra thread while the
+     * opponent is thinking.
+     *
+     * @see dk.ilios.hivemind.ai.PonderingAI
+     */
+    public void setPondering(boolean enabled) {
+        this.pondering = enabled;
+    }
+
+    /**
+     * If set, the openings of all finished games are merged into the learner's book. AIs wrapped in an
+     * <code>OpeningBookAI</code> using <code>learner.getBook()</code> will then play the book moves in later games.
+     *
+     * @see dk.ilios.hivemind.ai.book.OpeningBookLearner
+     */
+    public void setOpeningBookLearner(OpeningBookLearner learner) {
+        this.bookLearner = learner;
+    }
+
+    /**
+     * Set how many games to run in parallel. The default of 0 runs as many games as there are processors for, taking
+     * the number of threads each AI uses into account.
+     *
+     * @see dk.ilios.hivemind.ai.controller.TournamentScheduler
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * If set, the result of each game is appended to the file as soon as the game is over.
+     *
+     * @see dk.ilios.hivemind.ai.controller.GameResultWriter
+     */
+    public void setResultFile(File file) throws IOException {
+        if (resultWriter != null) {
+            resultWriter.close();
+        }
+        resultWriter = (file != null) ? new GameResultWriter(file) : null;
+    }
+
+    public List<GameStatistics> getGameResults() {
+        return gameResults;
+    }
+
+    /**
+     * Write the AI statistics of all games played so far. Files ending with ".json" are written as JSON, all others
+     * as CSV.
+     *
+     * @see dk.ilios.hivemind.ai.statistics.StatisticsExporter
+     */
+    public void exportStatistics(File file) throws IOException {
+        List<GameStatistics> games;
+        synchronized (gameResults) {
+            games = new ArrayList<GameStatistics>(gameResults);
+        }
+        Writer writer = new BufferedWriter(new FileWriter(file));
+        try {
+            if (file.getName().endsWith(".json")) {
+                StatisticsExporter.writeJson(games, writer);
+            } else {
+                StatisticsExporter.writeCsv(games, writer);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
     public void start() {
         long start = System.currentTimeMillis();
-        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        TournamentScheduler scheduler = new TournamentScheduler();
+        scheduler.setWorkers(workers);
         for (HiveAI oppA : opponents) {
             for (HiveAI oppB : opponents) {
                 if (oppA.equals(oppB)) continue;
                 for (int i = 0; i < numberOfMatches; i++) {
-                    final HiveAI a = oppA.copy();
-                    final HiveAI b = oppB.copy();
-                    executor.execute(new Runnable() {
-                        @Override
-                        public void run() {
-                            runGame(a, b, false);
-                        }
-                    });
+                    HiveAI a = oppA.copy();
+                    HiveAI b = oppB.copy();
+                    scheduler.addGame(a, b, getThreadCount(a, b));
                 }
             }
         }
 
-        // Wait for tasks to finish
-        executor.shutdown();
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            /* Ignore */
+        scheduler.run(new TournamentScheduler.GameRunner() {
+            @Override
+            public GameStatistics runGame(HiveAI white, HiveAI black) {
+                return AIGameController.this.runGame(white, black, false);
+            }
+        });
+        mergeOpeningBook();
+
+        duration = System.currentTimeMillis() - start;
+    }
+
+    // Number of threads a game keeps busy. Without pondering only one AI searches at a time.
+    private int getThreadCount(HiveAI white, HiveAI black) {
+        if (pondering) {
+            return white.getThreadCount() + black.getThreadCount();
+        } else {
+            return Math.max(white.getThreadCount(), black.getThreadCount());
         }
+    }
+
+    /**
+     * Play a match between a candidate and a baseline AI until a Sequential Probability Ratio Test accepts either
+     * hypothesis or <code>maxGamePairs</code> pairs of games have been played. Each pair consists of two games with
+     * swapped colors, which cancels out most of the advantage of moving first. Pairs are played in parallel the same
+     * way as games in <code>start()</code>. Pairs still running when the test has finished are completed, but not
+     * added to the test. Pairs with a game that didn't finish (eg. because of an exception) are ignored.
+     *
+     * @return the test with the final result.
+     * @see dk.ilios.hivemind.ai.statistics.SPRT
+     */
+    public SPRT startSPRT(final HiveAI candidate, final HiveAI baseline, final SPRT sprt, final int maxGamePairs) {
+        long start = System.currentTimeMillis();
+        final AtomicInteger pairsStarted = new AtomicInteger(0);
+        int workerCount = (workers > 0) ? workers : TournamentScheduler.getWorkers(Runtime.getRuntime().availableProcessors(), getThreadCount(candidate, baseline));
+        workerCount = Math.min(workerCount, maxGamePairs);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (sprt.getStatus() == SPRT.Status.CONTINUE && pairsStarted.incrementAndGet() <= maxGamePairs) {
+                        GameStatistics first = runGame(candidate.copy(), baseline.copy(), false);
+                        GameStatistics second = runGame(baseline.copy(), candidate.copy(), false);
+                        if (!isFinished(first) || !isFinished(second)) continue;
+                        synchronized (sprt) {
+                            if (sprt.getStatus() != SPRT.Status.CONTINUE) return;
+                            sprt.addGamePair(getScore(first, Player.PlayerType.WHITE), getScore(second, Player.PlayerType.BLACK));
+                            System.out.println(sprt.summary());
+                        }
+                    }
+                }
+            }, "SPRT-worker-" + i);
+            threads.add(worker);
+            worker.start();
+        }
+
+        for (Thread worker : threads) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                /* Ignore */
+            }
+        }
+        mergeOpeningBook();
 
         duration = System.currentTimeMillis() - start;
+        return sprt;
+    }
+
+    private static boolean isFinished(GameStatistics game) {
+        return game.getStatus() != GameStatus.RESULT_NOT_STARTED && game.getStatus() != GameStatus.RESULT_MATCH_IN_PROGRESS;
+    }
+
+    // Score of the player with the given color. All games without a winner count as draws.
+    private static double getScore(GameStatistics game, Player.PlayerType color) {
+        if (game.getStatus() == GameStatus.RESULT_WHITE_WINS) return (color == Player.PlayerType.WHITE) ? 1 : 0;
+        if (game.getStatus() == GameStatus.RESULT_BLACK_WINS) return (color == Player.PlayerType.BLACK) ? 1 : 0;
+        return 0.5;
     }
 
     public void startSingleGame(HiveAI whitePlayer, HiveAI blackPlayer, boolean printGameState) {
         runGame(whitePlayer, blackPlayer, printGameState);
+        mergeOpeningBook();
+    }
+
+    private void mergeOpeningBook() {
+        if (bookLearner == null) return;
+        try {
+            bookLearner.merge();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
-    private void runGame(final HiveAI whiteAI, final HiveAI blackAI, boolean printGameState) {
+    GameStatistics runGame(HiveAI whitePlayerAI, HiveAI blackPlayerAI, boolean printGameState) {
+        final HiveAI whiteAI = pondering ? new PonderingAI(whitePlayerAI) : whitePlayerAI;
+        final HiveAI blackAI = pondering ? new PonderingAI(blackPlayerAI) : blackPlayerAI;
+        final Game game = new Game();
 
         Player whitePlayer = new Player(whiteAI.getName(), Player.PlayerType.WHITE);
         whitePlayer.fillBaseSupply();
@@ -87,8 +253,10 @@ public class AIGameController {
             @Override
             public GameCommand getCommand(Game currentState, Board board) {
                 whiteAI.getAiStats().startCalculatingNextMove();
+                long cpuStart = getCpuTime();
                 GameCommand command = whiteAI.nextMove(currentState, board);
-                whiteAI.getAiStats().moveCalculated();
+                game.getStatistics().addWhiteCpuTime(getCpuTime() - cpuStart);
+                whiteAI.getAiStats().moveCalculated(command);
                 return command;
             }
         });
@@ -99,29 +267,60 @@ public class AIGameController {
             @Override
             public GameCommand getCommand(Game currentState, Board board) {
                 blackAI.getAiStats().startCalculatingNextMove();
+                long cpuStart = getCpuTime();
                 GameCommand command = blackAI.nextMove(currentState, board);
-                blackAI.getAiStats().moveCalculated();
+                game.getStatistics().addBlackCpuTime(getCpuTime() - cpuStart);
+                blackAI.getAiStats().moveCalculated(command);
                 return command;
             }
         });
 
-        Game game = new Game();
         game.setTurnLimit(turnLimit);
         game.setPrintGameStateAfterEachMove(printGameState);
         game.addPlayers(whitePlayer, blackPlayer);
-        game.setStandardPositionMode((whiteAI.maintainsStandardPosition() || blackAI.maintainsStandardPosition()) ? StandardPositionMode.ENABLED : StandardPositionMode.DISABLED);
+        boolean useStandardPosition = whiteAI.maintainsStandardPosition() || blackAI.maintainsStandardPosition() || bookLearner != null;
+        game.setStandardPositionMode(useStandardPosition ? StandardPositionMode.ENABLED : StandardPositionMode.DISABLED);
         try {
             game.start();
         } catch (RuntimeException e) {
             e.printStackTrace();
         }
 
+        if (pondering) {
+            // Background searches must be finished before their CPU time is complete
+            ((PonderingAI) whiteAI).stopPondering();
+            ((PonderingAI) blackAI).stopPondering();
+            game.getStatistics().addWhiteCpuTime(((PonderingAI) whiteAI).getBackgroundCpuTimeInNanos());
+            game.getStatistics().addBlackCpuTime(((PonderingAI) blackAI).getBackgroundCpuTimeInNanos());
+        }
+
         GameStatistics statistics = game.getStatistics();
         statistics.addWhiteAIStats(whiteAI.getAiStats());
         statistics.addBlackAIStats(blackAI.getAiStats());
 
-        gameResults.add(game.getStatistics());
-        System.out.println(game.getStatistics().shortSummary());
+        if (bookLearner != null && game.getStatus() != GameStatus.RESULT_MATCH_IN_PROGRESS) {
+            try {
+                bookLearner.addGame(game);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        gameResults.add(statistics);
+        System.out.println(statistics.shortSummary());
+        if (resultWriter != null) {
+            try {
+                resultWriter.write(statistics);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return statistics;
+    }
+
+    // CPU time used by the current thread in nanoseconds or 0 if the JVM cannot measure it.
+    private static long getCpuTime() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
     }
 
     public void printLog(boolean longSummary) {
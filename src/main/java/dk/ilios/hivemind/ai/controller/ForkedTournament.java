@@ -0,0 +1,337 @@
+package dk.ilios.hivemind.ai.controller;
+
+import dk.ilios.hivemind.ai.HiveAI;
+import dk.ilios.hivemind.game.GameStatus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Tournament where games are played in separate worker JVMs instead of in the JVM running the tournament.
+ *
+ * Running many games in one JVM means that the garbage produced by one AI (eg. MCTS trees or large transposition
+ * tables) causes GC pauses in all other games, which skews their timing. Here each worker JVM plays one game at a time
+ * with its own heap, configured by <code>setJvmArguments()</code>.
+ *
+ * The coordinator schedules games the same way as <code>AIGameController</code> (see <code>TournamentScheduler</code>)
+ * and sends them to the workers over stdin, one game at a time. Workers answer with a single result line on stdout,
+ * see <code>TournamentWorker</code>. If a worker crashes, exits or doesn't finish a game within the game timeout, it
+ * is replaced by a new worker and the game is played again, up to <code>maxRetries</code> times.
+ *
+ * AIs are created from a <code>TournamentSetup</code> in each JVM, so the setup class must be on the class path of the
+ * coordinator.
+ */
+public class ForkedTournament {
+
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_GAME_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+    private final Class<? extends TournamentSetup> setup;
+    private final List<HiveAI> opponents;
+    private int turnLimit;
+    private int numberOfMatches;
+    private boolean pondering = false;
+    private int workers = 0;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long gameTimeout = DEFAULT_GAME_TIMEOUT_MILLIS;
+    private List<String> jvmArguments = new ArrayList<String>();
+    private GameResultWriter resultWriter;
+    private Timer watchdog; // Kills workers that exceed the game timeout
+
+    private long duration;
+    private final List<String> gameResults = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> failedGames = Collections.synchronizedList(new ArrayList<String>());
+
+    public ForkedTournament(Class<? extends TournamentSetup> setup) {
+        this.setup = setup;
+        try {
+            this.opponents = setup.getDeclaredConstructor().newInstance().createOpponents();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create " + setup, e);
+        }
+    }
+
+    /**
+     * Set turn limit pr. player
+     */
+    public void setTurnLimit(int turnLimit) {
+        this.turnLimit = turnLimit;
+    }
+
+    public void setNumberOfMatches(int numberOfMatches) {
+        this.numberOfMatches = numberOfMatches;
+    }
+
+    /**
+     * @see dk.ilios.hivemind.ai.controller.AIGameController#setPondering(boolean)
+     */
+    public void setPondering(boolean enabled) {
+        this.pondering = enabled;
+    }
+
+    /**
+     * Set the number of worker JVMs. The default of 0 starts as many as there are processors for, taking the number of
+     * threads each AI uses into account.
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Set the arguments used to start each worker JVM, eg. "-Xmx1g".
+     */
+    public void setJvmArguments(String... arguments) {
+        this.jvmArguments = Arrays.asList(arguments);
+    }
+
+    /**
+     * Set how many times a game is played again if the worker playing it crashes.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Set the maximum time a worker may spend on a game. For the first game of a worker this includes starting the
+     * JVM. Workers exceeding it are killed and the game is retried like a crashed game. 0 means no timeout.
+     */
+    public void setGameTimeout(long millis) {
+        this.gameTimeout = millis;
+    }
+
+    /**
+     * If set, the result of each game is appended to the file as soon as the game is over. The file is closed when
+     * <code>start()</code> returns.
+     */
+    public void setResultFile(File file) throws IOException {
+        if (resultWriter != null) {
+            resultWriter.close();
+        }
+        resultWriter = (file != null) ? new GameResultWriter(file) : null;
+    }
+
+    /**
+     * Returns the result of each finished game in the format written by <code>GameResultWriter</code>.
+     */
+    public List<String> getGameResults() {
+        return gameResults;
+    }
+
+    /**
+     * Returns the games that still failed after all retries.
+     */
+    public List<String> getFailedGames() {
+        return failedGames;
+    }
+
+    public void start() {
+        long start = System.currentTimeMillis();
+        final TournamentScheduler scheduler = new TournamentScheduler();
+        scheduler.setWorkers(workers);
+        for (HiveAI oppA : opponents) {
+            for (HiveAI oppB : opponents) {
+                if (oppA.equals(oppB)) continue;
+                int threads = pondering ? oppA.getThreadCount() + oppB.getThreadCount() : Math.max(oppA.getThreadCount(), oppB.getThreadCount());
+                for (int i = 0; i < numberOfMatches; i++) {
+                    scheduler.addGame(oppA, oppB, threads);
+                }
+            }
+        }
+
+        int workerCount = Math.min(scheduler.getWorkers(), Math.max(1, scheduler.getPendingGames()));
+        watchdog = new Timer("Tournament-watchdog", true);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < workerCount; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWorker(scheduler);
+                }
+            }, "Tournament-coordinator-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                /* Ignore */
+            }
+        }
+        watchdog.cancel();
+
+        if (resultWriter != null) {
+            try {
+                resultWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            resultWriter = null;
+        }
+
+        duration = System.currentTimeMillis() - start;
+    }
+
+    // Send games to a worker JVM until there are no more games. Crashed workers are replaced.
+    private void runWorker(TournamentScheduler scheduler) {
+        WorkerProcess worker = null;
+        TournamentScheduler.ScheduledGame game;
+        while ((game = scheduler.nextGame()) != null) {
+            long start = System.currentTimeMillis();
+            String result;
+            try {
+                if (worker == null) {
+                    worker = new WorkerProcess();
+                }
+                result = worker.play(game.id, opponents.indexOf(game.white), opponents.indexOf(game.black));
+            } catch (IOException e) {
+                System.err.println("Worker failed: " + e.getMessage());
+                if (worker != null) {
+                    worker.destroy();
+                    worker = null;
+                }
+                if (game.attempts < maxRetries) {
+                    scheduler.reschedule(game);
+                } else {
+                    failedGames.add(game.white.getName() + " vs. " + game.black.getName());
+                }
+                continue;
+            }
+
+            // The game is finished, so failing to write the result must not make it be played again
+            scheduler.gameFinished(game, System.currentTimeMillis() - start);
+            gameResults.add(result);
+            if (resultWriter != null) {
+                try {
+                    resultWriter.write(result);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        if (worker != null) {
+            worker.quit();
+        }
+    }
+
+    public void printLog() {
+        // White wins, black wins and other results pr. pairing
+        Map<String, int[]> pairings = new LinkedHashMap<String, int[]>();
+        for (String result : gameResults) {
+            String[] fields = result.split("\t");
+            String key = fields[0] + " vs. " + fields[1];
+            int[] counts = pairings.get(key);
+            if (counts == null) {
+                counts = new int[3];
+                pairings.put(key, counts);
+            }
+            GameStatus status = GameStatus.valueOf(fields[2]);
+            counts[status == GameStatus.RESULT_WHITE_WINS ? 0 : (status == GameStatus.RESULT_BLACK_WINS ? 1 : 2)]++;
+        }
+
+        StringBuilder sb = new StringBuilder("Games done: " + (duration/1000f) + "s.\n");
+        sb.append("================\n");
+        for (Map.Entry<String, int[]> entry : pairings.entrySet()) {
+            int[] counts = entry.getValue();
+            sb.append(String.format("%s: %d - %d (%d draws)%n", entry.getKey(), counts[0], counts[1], counts[2]));
+        }
+        for (String game : failedGames) {
+            sb.append("Failed: " + game + '\n');
+        }
+        sb.append("================");
+        System.out.println(sb.toString());
+    }
+
+    /**
+     * Connection to a worker JVM.
+     */
+    private class WorkerProcess {
+        private final Process process;
+        private final Writer input;
+        private final BufferedReader output;
+        private volatile boolean timedOut = false;
+
+        private WorkerProcess() throws IOException {
+            List<String> command = new ArrayList<String>();
+            command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+            command.addAll(jvmArguments);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(TournamentWorker.class.getName());
+            command.add(setup.getName());
+            command.add(Integer.toString(turnLimit));
+            command.add(Boolean.toString(pondering));
+
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            process = builder.start();
+            input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), "UTF-8"));
+            output = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        }
+
+        // Returns the result line or throws an IOException if the worker died or timed out.
+        private String play(int id, int white, int black) throws IOException {
+            TimerTask timeout = null;
+            if (gameTimeout > 0) {
+                timeout = new TimerTask() {
+                    @Override
+                    public void run() {
+                        timedOut = true;
+                        destroy(); // Makes readLine() return
+                    }
+                };
+                watchdog.schedule(timeout, gameTimeout);
+            }
+
+            String line;
+            try {
+                input.write(TournamentWorker.GAME + " " + id + " " + white + " " + black + "\n");
+                input.flush();
+                line = output.readLine();
+            } catch (IOException e) {
+                if (!timedOut) throw e;
+                line = null;
+            } finally {
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+            }
+            if (timedOut) throw new IOException("Game " + id + " timed out after " + gameTimeout + " ms");
+            if (line == null) throw new IOException("Worker exited during game " + id);
+            String prefix = TournamentWorker.RESULT + " " + id + "\t";
+            if (!line.startsWith(prefix)) throw new IOException("Unexpected answer from worker: " + line);
+            return line.substring(prefix.length());
+        }
+
+        private void quit() {
+            try {
+                input.write(TournamentWorker.QUIT + "\n");
+                input.close();
+                process.waitFor();
+            } catch (IOException e) {
+                destroy();
+            } catch (InterruptedException e) {
+                destroy();
+            }
+        }
+
+        private void destroy() {
+            process.destroy();
+        }
+    }
+}
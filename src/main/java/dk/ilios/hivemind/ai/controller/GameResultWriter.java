@@ -0,0 +1,64 @@
+package dk.ilios.hivemind.ai.controller;
+
+import dk.ilios.hivemind.ai.statistics.GameStatistics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Appends the result of each game to a tab separated file as soon as the game has finished, so results of long
+ * tournaments are not lost if the tournament is stopped, and can be inspected while it is running.
+ *
+ * A header line is written if the file is empty.
+ */
+public class GameResultWriter {
+
+    public static final String HEADER = "White\tBlack\tResult\tWhite turns\tBlack turns\tDuration (ms)\tWhite CPU (ms)\tBlack CPU (ms)";
+
+    private final Writer output;
+
+    public GameResultWriter(File file) throws IOException {
+        boolean empty = !file.exists() || file.length() == 0;
+        output = new BufferedWriter(new FileWriter(file, true));
+        if (empty) {
+            output.write(HEADER);
+            output.write('\n');
+            output.flush();
+        }
+    }
+
+    public void write(GameStatistics stats) throws IOException {
+        write(toLine(stats));
+    }
+
+    /**
+     * Write a result line created by <code>toLine()</code>, eg. one received from another process.
+     */
+    public synchronized void write(String line) throws IOException {
+        output.write(line);
+        output.write('\n');
+        output.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        output.close();
+    }
+
+    static String toLine(GameStatistics stats) {
+        return clean(stats.getWhiteName()) + '\t'
+                + clean(stats.getBlackName()) + '\t'
+                + stats.getStatus() + '\t'
+                + stats.getWhiteTurns() + '\t'
+                + stats.getBlackTurns() + '\t'
+                + stats.getDurationInMillis() + '\t'
+                + stats.getWhiteCpuTimeInMillis() + '\t'
+                + stats.getBlackCpuTimeInMillis();
+    }
+
+    private static String clean(String name) {
+        return name.replace('\t', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,183 @@
+package dk.ilios.hivemind.ai.controller;
+
+import dk.ilios.hivemind.ai.HiveAI;
+import dk.ilios.hivemind.ai.statistics.GameStatistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the games of a tournament on as many worker threads as the machine can handle.
+ *
+ * - The number of workers is the number of available processors divided by the number of threads the most demanding
+ *   game uses, so AIs that search with several threads don't oversubscribe the CPUs.
+ * - Workers share a single queue and take the next game as soon as they are done, so no worker is idle while
+ *   there are games left.
+ * - The game expected to take the longest is played first (Longest Processing Time first [1]), so the tournament doesn't
+ *   end with a single long game running while all other workers are idle. The expected duration is the average
+ *   duration of the finished games between the same two AIs. Pairings without any finished games are started first,
+ *   so estimates are available as soon as possible.
+ *
+ * @see [1] http://en.wikipedia.org/wiki/Multiprocessor_scheduling
+ */
+public class TournamentScheduler {
+
+    public interface GameRunner {
+        /**
+         * Play a game and return the result.
+         */
+        public GameStatistics runGame(HiveAI white, HiveAI black);
+    }
+
+    private final List<ScheduledGame> pendingGames = new ArrayList<ScheduledGame>();
+    private final Map<String, Pairing> pairings = new HashMap<String, Pairing>();
+    private int workers = 0; // 0 = Auto-size
+    private int maxThreadsPrGame = 1;
+    private int nextId = 0;
+
+    /**
+     * Add a game to the tournament.
+     *
+     * @param white AI playing white.
+     * @param black AI playing black.
+     * @param threads Number of threads the game keeps busy.
+     */
+    public synchronized void addGame(HiveAI white, HiveAI black, int threads) {
+        String key = white.getName() + " vs. " + black.getName();
+        Pairing pairing = pairings.get(key);
+        if (pairing == null) {
+            pairing = new Pairing();
+            pairings.put(key, pairing);
+        }
+        pendingGames.add(new ScheduledGame(nextId++, white, black, pairing));
+        maxThreadsPrGame = Math.max(maxThreadsPrGame, threads);
+    }
+
+    /**
+     * Set the number of games to run in parallel. Use 0 to base it on the number of available processors.
+     */
+    public synchronized void setWorkers(int workers) {
+        if (workers < 0) throw new IllegalArgumentException("Workers must not be negative: " + workers);
+        this.workers = workers;
+    }
+
+    /**
+     * Returns the number of games that will run in parallel.
+     */
+    public synchronized int getWorkers() {
+        if (workers > 0) return workers;
+        return getWorkers(Runtime.getRuntime().availableProcessors(), maxThreadsPrGame);
+    }
+
+    /**
+     * Returns the number of games that can run in parallel without using more threads than there are processors.
+     */
+    public static int getWorkers(int processors, int threadsPrGame) {
+        return Math.max(1, processors / Math.max(1, threadsPrGame));
+    }
+
+    public synchronized int getPendingGames() {
+        return pendingGames.size();
+    }
+
+    /**
+     * Play all games and wait for them to finish.
+     */
+    public void run(final GameRunner runner) {
+        int workerCount = Math.min(getWorkers(), Math.max(1, getPendingGames()));
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ScheduledGame game;
+                    while ((game = nextGame()) != null) {
+                        long start = System.currentTimeMillis();
+                        try {
+                            runner.runGame(game.white, game.black);
+                            gameFinished(game, System.currentTimeMillis() - start);
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }, "Tournament-worker-" + i);
+            threads.add(worker);
+            worker.start();
+        }
+
+        for (Thread worker : threads) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                /* Ignore */
+            }
+        }
+    }
+
+    /**
+     * Remove and return the game that should be played next or null if all games have been started.
+     */
+    synchronized ScheduledGame nextGame() {
+        if (pendingGames.isEmpty()) return null;
+        ScheduledGame next = pendingGames.get(0);
+        for (int i = 1; i < pendingGames.size(); i++) {
+            ScheduledGame game = pendingGames.get(i);
+            if (game.comesBefore(next)) {
+                next = game;
+            }
+        }
+        pendingGames.remove(next);
+        next.pairing.started++;
+        return next;
+    }
+
+    /**
+     * Put a game that failed back in the queue, so it is played again.
+     */
+    synchronized void reschedule(ScheduledGame game) {
+        game.attempts++;
+        pendingGames.add(game);
+    }
+
+    synchronized void gameFinished(ScheduledGame game, long durationInMillis) {
+        game.pairing.finished++;
+        game.pairing.totalDurationInMillis += durationInMillis;
+    }
+
+    static class ScheduledGame {
+        final int id;
+        final HiveAI white;
+        final HiveAI black;
+        final Pairing pairing;
+        int attempts;
+
+        ScheduledGame(int id, HiveAI white, HiveAI black, Pairing pairing) {
+            this.id = id;
+            this.white = white;
+            this.black = black;
+            this.pairing = pairing;
+        }
+
+        boolean comesBefore(ScheduledGame other) {
+            long expected = pairing.getExpectedDuration();
+            long otherExpected = other.pairing.getExpectedDuration();
+            if (expected != otherExpected) return expected > otherExpected;
+            if (pairing.started != other.pairing.started) return pairing.started < other.pairing.started;
+            return id < other.id;
+        }
+    }
+
+    static class Pairing {
+        int started;
+        int finished;
+        long totalDurationInMillis;
+
+        // Unknown durations are treated as the longest
+        long getExpectedDuration() {
+            return (finished == 0) ? Long.MAX_VALUE : totalDurationInMillis / finished;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package dk.ilios.hivemind.ai.controller;
+
+import dk.ilios.hivemind.ai.HiveAI;
+
+import java.util.List;
+
+/**
+ * Creates the AIs taking part in a tournament run by <code>ForkedTournament</code>.
+ *
+ * The coordinator and each worker JVM create their own instance by class name, so implementations must be public and
+ * have a public no-argument constructor. AIs must be returned in the same order every time, as games refer to them by
+ * index.
+ */
+public interface TournamentSetup {
+
+    public List<HiveAI> createOpponents();
+}
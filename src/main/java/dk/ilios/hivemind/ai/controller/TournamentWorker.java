@@ -0,0 +1,57 @@
+package dk.ilios.hivemind.ai.controller;
+
+import dk.ilios.hivemind.ai.HiveAI;
+import dk.ilios.hivemind.ai.statistics.GameStatistics;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Main class of the worker JVMs started by <code>ForkedTournament</code>.
+ *
+ * Workers read one command pr. line from stdin and write results to stdout:
+ * - "GAME [id] [white index] [black index]": Play a game. Answered with "RESULT [id]\t[result]" where result is the
+ *   line <code>GameResultWriter</code> writes for the game.
+ * - "QUIT": Exit. Closing stdin has the same effect.
+ *
+ * Everything else the AIs and games print to stdout is sent to stderr.
+ *
+ * Arguments: [TournamentSetup class] [turn limit] [pondering]
+ */
+public class TournamentWorker {
+
+    static final String GAME = "GAME";
+    static final String RESULT = "RESULT";
+    static final String QUIT = "QUIT";
+
+    public static void main(String[] args) throws Exception {
+        PrintStream output = System.out;
+        System.setOut(System.err);
+
+        TournamentSetup setup;
+        try {
+            setup = (TournamentSetup) Class.forName(args[0]).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create " + args[0], e);
+        }
+        List<HiveAI> opponents = setup.createOpponents();
+        AIGameController controller = new AIGameController();
+        controller.setTurnLimit(Integer.parseInt(args[1]));
+        controller.setPondering(Boolean.parseBoolean(args[2]));
+
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        String line;
+        while ((line = input.readLine()) != null && !line.equals(QUIT)) {
+            String[] command = line.split(" ");
+            if (!command[0].equals(GAME)) throw new IllegalArgumentException("Unknown command: " + line);
+            HiveAI white = opponents.get(Integer.parseInt(command[2])).copy();
+            HiveAI black = opponents.get(Integer.parseInt(command[3])).copy();
+            GameStatistics result = controller.runGame(white, black, false);
+            output.println(RESULT + " " + command[1] + "\t" + GameResultWriter.toLine(result));
+            output.flush();
+        }
+        System.exit(0); // AIs might have left non-daemon threads behind
+    }
+}
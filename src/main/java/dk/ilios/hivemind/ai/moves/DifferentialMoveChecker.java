@@ -0,0 +1,240 @@
+package dk.ilios.hivemind.ai.moves;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.MoveEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares a candidate move generator against the reference <code>StandardMoveGenerator</code> on random positions,
+ * so optimizations of the board, the rules or the bugs can be checked for rule changes on many more positions than
+ * the hand written tests cover.
+ *
+ * For each position the checker verifies that:
+ * - The candidate generates the same moves as the reference, counting duplicates.
+ * - Executing the candidate moves gives the same Zobrist keys as executing the reference moves, and undoing a move
+ *   restores the keys.
+ * - The keys are the same as in a copy of the game where the moves are only executed, so searching a position
+ *   doesn't change its keys.
+ *
+ * Failures are reported for the first failing position of the game, and can then be shrunk by removing moves that
+ * are not needed to reproduce them.
+ */
+public class DifferentialMoveChecker {
+
+    private final MoveGenerator candidate;
+    private final MoveGenerator reference = new StandardMoveGenerator();
+
+    public DifferentialMoveChecker(MoveGenerator candidate) {
+        this.candidate = candidate;
+    }
+
+    /**
+     * Check the given number of random positions and return the first failure, shrunk, or null if all positions
+     * passed.
+     */
+    public Failure run(RandomPositionGenerator generator, int positions) {
+        for (int i = 0; i < positions; i++) {
+            Failure failure = find(generator.next());
+            if (failure != null) {
+                return shrink(failure);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check all positions of the game leading to the given position, ie. all prefixes of its moves.
+     *
+     * @return A description of the first difference or null if there is none.
+     */
+    public String check(RandomPositionGenerator.Position position) {
+        Failure failure = find(position);
+        return (failure != null) ? failure.error : null;
+    }
+
+    /**
+     * Check a single position. The game state is unchanged afterwards, unless undoing a move doesn't restore it.
+     *
+     * @return A description of the difference or null if there is none.
+     */
+    public String check(Game game) {
+        long[] expectedMoves = RandomPositionGenerator.getEncodedMoves(reference, game);
+        long[] actualMoves = RandomPositionGenerator.getEncodedMoves(candidate, game);
+        if (!Arrays.equals(expectedMoves, actualMoves)) {
+            return "Moves differ. Missing: " + describeMissing(expectedMoves, actualMoves, game)
+                    + ", unexpected: " + describeMissing(actualMoves, expectedMoves, game);
+        }
+
+        long zobristKey = game.getZobristKey();
+        long verificationKey = game.getVerificationKey();
+        long[] expectedKeys = getChildKeys(reference, game);
+        long[] actualKeys = getChildKeys(candidate, game);
+        if (game.getZobristKey() != zobristKey || game.getVerificationKey() != verificationKey) {
+            return "Keys not restored after undoing moves";
+        }
+        if (!Arrays.equals(expectedKeys, actualKeys)) {
+            return "Zobrist keys after moves differ";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the smallest failing position found by removing moves from the failing position, as long as the game
+     * stays legal and the check keeps failing. Moves are removed in pairs, one from each player, as moves are saved
+     * with the color of the token, so removing a single move makes the rest of the game illegal.
+     */
+    public Failure shrink(Failure failure) {
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            RandomPositionGenerator.Position position = failure.position;
+            for (int count = 2; count >= 1 && !shrunk; count--) {
+                for (int i = position.getPlies() - count; i >= 0; i--) {
+                    RandomPositionGenerator.Position smaller = position.withMoves(getMovesExcept(position, i, count));
+                    if (smaller.replay() == null) continue;
+                    Failure smallerFailure = find(smaller);
+                    if (smallerFailure != null) {
+                        failure = smallerFailure;
+                        shrunk = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Stress benchmark of the candidate: Generates, executes and undoes all moves in the given number of random
+     * positions without comparing them.
+     *
+     * @return Number of moves generated.
+     */
+    public long runThroughput(RandomPositionGenerator generator, int positions) {
+        long moves = 0;
+        for (int i = 0; i < positions; i++) {
+            Game game = generator.next().replay();
+            List<GameCommand> commands = candidate.generateMoves(new ArrayList<GameCommand>(), game);
+            for (GameCommand command : commands) {
+                command.execute(game);
+                moves += candidate.generateMoves(new ArrayList<GameCommand>(), game).size();
+                command.undo(game);
+            }
+            moves += commands.size();
+        }
+        return moves;
+    }
+
+    // Check all positions of the game and return the first failing one, ie. the shortest failing prefix of the moves
+    private Failure find(RandomPositionGenerator.Position position) {
+        Game game = RandomPositionGenerator.createGame(position.mosquito, position.ladybug, position.pillbug);
+        Game played = RandomPositionGenerator.createGame(position.mosquito, position.ladybug, position.pillbug);
+        for (int ply = 0; ply <= position.getPlies(); ply++) {
+            String error = check(game);
+            if (error == null && (game.getZobristKey() != played.getZobristKey() || game.getVerificationKey() != played.getVerificationKey())) {
+                error = "Keys differ from the keys of the game without searching the previous positions";
+            }
+            if (error != null) {
+                return new Failure(position.withMoves(getMoves(position, ply)), "Ply " + ply + ": " + error);
+            }
+            if (ply < position.getPlies()) {
+                GameCommand move = RandomPositionGenerator.findMove(reference, game, position.getMove(ply));
+                if (move == null) {
+                    return new Failure(position.withMoves(getMoves(position, ply + 1)), "Ply " + ply + ": Illegal move " + Long.toHexString(position.getMove(ply)));
+                }
+                move.execute(game);
+                GameCommand playedMove = RandomPositionGenerator.findMove(reference, played, position.getMove(ply));
+                if (playedMove == null) {
+                    return new Failure(position.withMoves(getMoves(position, ply + 1)), "Ply " + ply + ": Searching the previous positions changed the legal moves");
+                }
+                playedMove.execute(played);
+            }
+        }
+        return null;
+    }
+
+    // Sorted keys of the game state after each move
+    private long[] getChildKeys(MoveGenerator generator, Game game) {
+        List<GameCommand> moves = generator.generateMoves(new ArrayList<GameCommand>(), game);
+        long[] keys = new long[moves.size() * 2];
+        for (int i = 0; i < moves.size(); i++) {
+            GameCommand move = moves.get(i);
+            move.execute(game);
+            keys[i * 2] = game.getZobristKey();
+            keys[i * 2 + 1] = game.getVerificationKey();
+            move.undo(game);
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    // The first moves of the position
+    private long[] getMoves(RandomPositionGenerator.Position position, int plies) {
+        long[] moves = new long[plies];
+        for (int i = 0; i < plies; i++) {
+            moves[i] = position.getMove(i);
+        }
+        return moves;
+    }
+
+    // All moves of the position except count moves from index skip
+    private long[] getMovesExcept(RandomPositionGenerator.Position position, int skip, int count) {
+        long[] moves = new long[position.getPlies() - count];
+        int index = 0;
+        for (int i = 0; i < position.getPlies(); i++) {
+            if (i < skip || i >= skip + count) moves[index++] = position.getMove(i);
+        }
+        return moves;
+    }
+
+    // Moves in a that are not in b, counting duplicates. Both must be sorted.
+    private String describeMissing(long[] a, long[] b, Game game) {
+        StringBuilder sb = new StringBuilder("[");
+        int j = 0;
+        for (long move : a) {
+            while (j < b.length && b[j] < move) j++;
+            if (j < b.length && b[j] == move) {
+                j++;
+            } else {
+                if (sb.length() > 1) sb.append(", ");
+                GameCommand command = MoveEncoder.decode(game, move);
+                sb.append((command != null) ? command.toString() : Long.toHexString(move));
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * A position where the candidate differs from the reference.
+     */
+    public static class Failure {
+        public final RandomPositionGenerator.Position position;
+        public final String error;
+
+        public Failure(RandomPositionGenerator.Position position, String error) {
+            this.position = position;
+            this.error = error;
+        }
+
+        /**
+         * Returns the error, the position and the moves leading to it, one pr. line.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(error).append(" in ").append(position).append('\n');
+            Game game = RandomPositionGenerator.createGame(position.mosquito, position.ladybug, position.pillbug);
+            MoveGenerator reference = new StandardMoveGenerator();
+            for (int i = 0; i < position.getPlies(); i++) {
+                GameCommand move = RandomPositionGenerator.findMove(reference, game, position.getMove(i));
+                sb.append(i).append(": ").append((move != null) ? move.toString() : "Illegal move").append('\n');
+                if (move == null) break;
+                move.execute(game);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package dk.ilios.hivemind.ai.moves;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Performance test (perft) of move generation [1]. Counts the leaf nodes of the full move tree to a given depth by
+ * generating, executing and undoing all moves.
+ *
+ * The counts are a regression test for the rules: if the board representation or the rules for a bug are changed,
+ * the counts for known positions must stay the same. If they differ, <code>divide()</code> shows the count below each
+ * root move, so the move causing the difference can be found by comparing with the old version. The time taken gives
+ * a throughput number for move generation that includes executing and undoing moves.
+ *
+ * Moves are counted as returned by the move generator, so eg. placing two tokens of the same type on the same hex
+ * count as two moves. Positions where a queen is surrounded have no moves and don't count as leaves unless they are at
+ * the given depth. Passes count as moves.
+ *
+ * @see [1] http://chessprogramming.wikispaces.com/Perft
+ */
+public class Perft {
+
+    private final MoveGenerator moveGenerator;
+
+    public Perft() {
+        this(new StandardMoveGenerator());
+    }
+
+    public Perft(MoveGenerator moveGenerator) {
+        this.moveGenerator = moveGenerator;
+    }
+
+    /**
+     * Returns the number of leaf nodes at the given depth. The game state is unchanged afterwards.
+     */
+    public long perft(Game state, int depth) {
+        if (depth == 0) return 1;
+
+        List<GameCommand> moves = moveGenerator.generateMoves(new ArrayList<GameCommand>(), state);
+        if (depth == 1) return moves.size();
+
+        long leaves = 0;
+        for (GameCommand move : moves) {
+            move.execute(state);
+            leaves += perft(state, depth - 1);
+            move.undo(state);
+        }
+        return leaves;
+    }
+
+    /**
+     * Returns the number of leaf nodes at the given depth below each root move, in the order the moves are generated.
+     */
+    public Map<GameCommand, Long> divide(Game state, int depth) {
+        if (depth < 1) throw new IllegalArgumentException("Depth must be at least 1: " + depth);
+        Map<GameCommand, Long> result = new LinkedHashMap<GameCommand, Long>();
+        for (GameCommand move : moveGenerator.generateMoves(new ArrayList<GameCommand>(), state)) {
+            move.execute(state);
+            result.put(move, perft(state, depth - 1));
+            move.undo(state);
+        }
+        return result;
+    }
+
+    /**
+     * Same as <code>perft()</code>, but the leaves below each root move are counted in parallel, each on its own copy
+     * of the game. The move generator must be safe to use from several threads.
+     */
+    public long parallelPerft(Game state, int depth, ForkJoinPool pool) {
+        if (depth <= 1) return perft(state, depth);
+        return pool.invoke(new RootTask(state, depth));
+    }
+
+    // Split the tree at the root
+    private class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Game state;
+        private final int depth;
+
+        private RootTask(Game state, int depth) {
+            this.state = state;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            List<RootMoveTask> tasks = new ArrayList<RootMoveTask>();
+            for (GameCommand move : moveGenerator.generateMoves(new ArrayList<GameCommand>(), state)) {
+                tasks.add(new RootMoveTask(state, move, depth - 1));
+            }
+            invokeAll(tasks);
+
+            long leaves = 0;
+            for (RootMoveTask task : tasks) {
+                leaves += task.join();
+            }
+            return leaves;
+        }
+    }
+
+    // Count the leaves below a single root move
+    private class RootMoveTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Game state;
+        private final GameCommand move;
+        private final int depth;
+
+        private RootMoveTask(Game state, GameCommand move, int depth) {
+            this.state = state.copy();
+            this.move = move.copyFor(this.state);
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            move.execute(state);
+            return perft(state, depth);
+        }
+    }
+}
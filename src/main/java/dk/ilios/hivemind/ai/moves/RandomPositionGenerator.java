@@ -0,0 +1,179 @@
+package dk.ilios.hivemind.ai.moves;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.MoveEncoder;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random positions by playing random legal moves from the start position, using a random selection of the
+ * expansions (mosquito, ladybug and pillbug) for each game. Positions are reproducible from the seed, and are saved
+ * as the list of moves leading to them, so they can be replayed and shrunk by <code>DifferentialMoveChecker</code>.
+ *
+ * Moves are chosen among the moves of the reference move generator, sorted by their encoding, so the positions don't
+ * depend on the order the moves are generated in.
+ */
+public class RandomPositionGenerator {
+
+    public static final int DEFAULT_MAX_PLIES = 60;
+
+    private final Random random;
+    private final MoveGenerator reference = new StandardMoveGenerator();
+    private int minPlies = 0;
+    private int maxPlies = DEFAULT_MAX_PLIES;
+    private Boolean expansions = null; // null = random selection for each game
+
+    public RandomPositionGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Set the range of plies played from the start position. The game can end before <code>minPlies</code>.
+     */
+    public void setPlies(int minPlies, int maxPlies) {
+        if (minPlies < 0 || maxPlies < minPlies) throw new IllegalArgumentException("Invalid plies: " + minPlies + "-" + maxPlies);
+        this.minPlies = minPlies;
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Use all expansions or none in all games. By default a random selection is used for each game.
+     */
+    public void setExpansions(boolean expansions) {
+        this.expansions = expansions;
+    }
+
+    /**
+     * Returns the next random position.
+     */
+    public Position next() {
+        boolean mosquito = (expansions != null) ? expansions : random.nextBoolean();
+        boolean ladybug = (expansions != null) ? expansions : random.nextBoolean();
+        boolean pillbug = (expansions != null) ? expansions : random.nextBoolean();
+        int plies = minPlies + random.nextInt(maxPlies - minPlies + 1);
+
+        Game game = createGame(mosquito, ladybug, pillbug);
+        long[] moves = new long[plies];
+        int played = 0;
+        while (played < plies) {
+            long[] legalMoves = getEncodedMoves(reference, game);
+            if (legalMoves.length == 0) break; // Game over
+            long move = legalMoves[random.nextInt(legalMoves.length)];
+            findMove(reference, game, move).execute(game);
+            moves[played++] = move;
+        }
+        return new Position(mosquito, ladybug, pillbug, Arrays.copyOf(moves, played));
+    }
+
+    /**
+     * Returns a new game at the start position with standard position and Zobrist keys enabled.
+     */
+    public static Game createGame(boolean mosquito, boolean ladybug, boolean pillbug) {
+        Player white = new Player("White", Player.PlayerType.WHITE);
+        Player black = new Player("Black", Player.PlayerType.BLACK);
+        for (Player player : new Player[] { white, black }) {
+            player.fillBaseSupply();
+            if (mosquito) player.useMosquitoExpansion();
+            if (ladybug) player.useLadyBugExpansion();
+            if (pillbug) player.usePillBugExpansion();
+        }
+
+        Game game = new Game();
+        game.addPlayers(white, black);
+        game.setManualStepping(true);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.start();
+        return game;
+    }
+
+    /**
+     * Returns the moves of the generator encoded with <code>MoveEncoder</code> and sorted.
+     */
+    public static long[] getEncodedMoves(MoveGenerator generator, Game state) {
+        List<GameCommand> moves = generator.generateMoves(new ArrayList<GameCommand>(), state);
+        long[] result = new long[moves.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = MoveEncoder.encode(state.getBoard(), moves.get(i));
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the move of the generator with the given encoding or null if it isn't one of the generated moves.
+     */
+    public static GameCommand findMove(MoveGenerator generator, Game state, long move) {
+        for (GameCommand command : generator.generateMoves(new ArrayList<GameCommand>(), state)) {
+            if (MoveEncoder.encode(state.getBoard(), command) == move) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A position described by the expansions used and the encoded moves leading to it from the start position.
+     */
+    public static class Position {
+        public final boolean mosquito;
+        public final boolean ladybug;
+        public final boolean pillbug;
+        private final long[] moves;
+
+        public Position(boolean mosquito, boolean ladybug, boolean pillbug, long[] moves) {
+            this.mosquito = mosquito;
+            this.ladybug = ladybug;
+            this.pillbug = pillbug;
+            this.moves = moves.clone();
+        }
+
+        public int getPlies() {
+            return moves.length;
+        }
+
+        public long getMove(int ply) {
+            return moves[ply];
+        }
+
+        /**
+         * Returns a position with the same expansions and the given moves.
+         */
+        public Position withMoves(long[] moves) {
+            return new Position(mosquito, ladybug, pillbug, moves);
+        }
+
+        /**
+         * Replay the moves from the start position.
+         *
+         * @return The game or null if a move isn't legal according to the reference move generator.
+         */
+        public Game replay() {
+            MoveGenerator reference = new StandardMoveGenerator();
+            Game game = createGame(mosquito, ladybug, pillbug);
+            for (long move : moves) {
+                GameCommand command = findMove(reference, game, move);
+                if (command == null) return null;
+                command.execute(game);
+            }
+            return game;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Position[");
+            sb.append("mosquito=").append(mosquito).append(", ladybug=").append(ladybug).append(", pillbug=").append(pillbug);
+            sb.append(", moves=");
+            for (int i = 0; i < moves.length; i++) {
+                if (i > 0) sb.append(' ');
+                sb.append(Long.toHexString(moves[i]));
+            }
+            return sb.append(']').toString();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package dk.ilios.hivemind.ai.solver;
+
+import dk.ilios.hivemind.ai.moves.MoveGenerator;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.ai.transpositiontable.ProofNumberTable;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.rules.Rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Proof-Number search [1] that tries to prove or disprove that the player to move can surround the opposing queen
+ * within a given number of plies.
+ *
+ * The search tree is kept in memory and expanded by always following the most-proving node. Solved positions are
+ * stored in a <code>ProofNumberTable</code>, so transpositions and later calls can reuse them. The table is only
+ * used if the game maintains Zobrist keys.
+ *
+ * A position counts as won for the attacker, when the opposing queen is surrounded while the attackers own queen is
+ * not. Reaching the ply limit without a win counts as a disproof.
+ *
+ * @see [1] L. V. Allis: Searching for Solutions in Games and Artificial Intelligence
+ * @see [2] http://chessprogramming.wikispaces.com/Proof-number+search
+ */
+public class ProofNumberSearch {
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2; // Leave room for additions without overflow
+    private static final long ATTACKER_BLACK_HASH = 0x9E3779B97F4A7C15L; // Separate results for white and black attackers
+    private static final int TIME_CHECK_INTERVAL = 64; // Check the clock for every X expanded nodes.
+    private static final int DEFAULT_MAX_EMPTY_HEXES = 2;
+
+    private final MoveGenerator moveGenerator = new StandardMoveGenerator();
+    private final ProofNumberTable table;
+    private final int maxPlies;
+    private final int maxNodes;
+    private int maxEmptyHexesAroundQueen = DEFAULT_MAX_EMPTY_HEXES;
+
+    // Search state
+    private Player attacker;
+    private Player defender;
+    private boolean useTable;
+    private long attackerHash;
+    private int nodesExpanded;
+    private GameCommand winningMove;
+    private volatile boolean stop;
+
+    /**
+     * @param maxPlies Number of plies (moves by either player) the attacker has to surround the queen.
+     * @param maxNodes Maximum number of nodes to expand pr. search.
+     */
+    public ProofNumberSearch(int maxPlies, int maxNodes) {
+        this(maxPlies, maxNodes, new ProofNumberTable(20));
+    }
+
+    public ProofNumberSearch(int maxPlies, int maxNodes, ProofNumberTable table) {
+        this.maxPlies = maxPlies;
+        this.maxNodes = maxNodes;
+        this.table = table;
+    }
+
+    /**
+     * Returns true if the position looks like a candidate for a forced win, ie. the opposing queen is on the board
+     * and only a few empty hexes remain around her.
+     */
+    public boolean isCandidate(Game state) {
+        Board board = state.getBoard();
+        Player opponent = state.getOtherPlayer();
+        if (!opponent.hasPlacedQueen()) return false;
+        int emptyHexes = 6 - board.getNeighborTokens(opponent.getQueen().getHex()).size();
+        return emptyHexes <= maxEmptyHexesAroundQueen;
+    }
+
+    /**
+     * Set how many empty hexes there at most can be around the opposing queen, before the position is considered a
+     * candidate for the solver.
+     */
+    public void setMaxEmptyHexesAroundQueen(int maxEmptyHexes) {
+        this.maxEmptyHexesAroundQueen = maxEmptyHexes;
+    }
+
+    /**
+     * Try to prove that the active player can surround the opposing queen within the ply limit.
+     * The game state is restored before returning.
+     *
+     * @param state Game state to search from.
+     * @param maxTimeInMillis Time limit for the search.
+     * @return <code>ProofNumberTable.PROVEN</code>, <code>ProofNumberTable.DISPROVEN</code> or
+     * <code>ProofNumberTable.UNKNOWN</code> if the search ran out of nodes or time.
+     */
+    public int solve(Game state, long maxTimeInMillis) {
+        long start = System.currentTimeMillis();
+        attacker = state.getActivePlayer();
+        defender = state.getOtherPlayer();
+        useTable = state.isUsingZobristKey();
+        attackerHash = attacker.isBlack() ? ATTACKER_BLACK_HASH : 0;
+        nodesExpanded = 0;
+        winningMove = null;
+        stop = false;
+
+        Node root = new Node(null, null, 0, true);
+        evaluate(root, state);
+
+        while (!root.isSolved() && nodesExpanded < maxNodes) {
+            if (stop || (nodesExpanded % TIME_CHECK_INTERVAL == 0 && System.currentTimeMillis() - start > maxTimeInMillis)) {
+                break;
+            }
+
+            Node mostProving = selectMostProvingNode(root, state);
+            expand(mostProving, state);
+            updateAncestors(mostProving, state);
+        }
+
+        if (root.proof == 0) {
+            Node[] children = (root.children != null) ? root.children : new Node[0];
+            for (Node child : children) {
+                if (child.proof == 0) {
+                    winningMove = child.command;
+                    break;
+                }
+            }
+            return ProofNumberTable.PROVEN;
+        } else if (root.disproof == 0) {
+            return ProofNumberTable.DISPROVEN;
+        } else {
+            return ProofNumberTable.UNKNOWN;
+        }
+    }
+
+    /**
+     * Stop a running search. <code>solve()</code> then returns as if it ran out of time. Safe to call from any thread.
+     */
+    public void stop() {
+        stop = true;
+    }
+
+    /**
+     * Returns the first move of the proof found by the last call to <code>solve()</code> or null if no proof was found.
+     */
+    public GameCommand getWinningMove() {
+        return winningMove;
+    }
+
+    /**
+     * Returns the number of nodes expanded by the last call to <code>solve()</code>.
+     */
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public int getMaxPlies() {
+        return maxPlies;
+    }
+
+    /**
+     * Walk down the tree to the most-proving node. The game state is updated along the way.
+     */
+    private Node selectMostProvingNode(Node node, Game state) {
+        while (node.children != null) {
+            Node best = null;
+            for (Node child : node.children) {
+                if (node.orNode) {
+                    if (best == null || child.proof < best.proof) best = child;
+                } else {
+                    if (best == null || child.disproof < best.disproof) best = child;
+                }
+            }
+            best.command.execute(state);
+            node = best;
+        }
+
+        return node;
+    }
+
+    /**
+     * Create and evaluate all children of a node. Stops early if a child solves the node.
+     */
+    private void expand(Node node, Game state) {
+        nodesExpanded++;
+        List<GameCommand> moves = moveGenerator.generateMoves(new ArrayList<GameCommand>(), state);
+        List<Node> children = new ArrayList<Node>(moves.size());
+        for (GameCommand move : moves) {
+            Node child = new Node(move, node, node.ply + 1, !node.orNode);
+            move.execute(state);
+            evaluate(child, state);
+            move.undo(state);
+            children.add(child);
+
+            if ((node.orNode && child.proof == 0) || (!node.orNode && child.disproof == 0)) {
+                break;
+            }
+        }
+        node.children = children.toArray(new Node[children.size()]);
+    }
+
+    /**
+     * Set initial proof and disproof numbers for a new node.
+     * INVARIANT: Game state matches the node.
+     */
+    private void evaluate(Node node, Game state) {
+        Board board = state.getBoard();
+        boolean attackerLost = Rules.getInstance().isQueenSurrounded(attacker, board);
+        boolean defenderLost = Rules.getInstance().isQueenSurrounded(defender, board);
+
+        if (defenderLost && !attackerLost) {
+            node.setProven();
+        } else if (attackerLost || node.ply >= maxPlies) {
+            node.setDisproven();
+        } else if (useTable && node.parent != null) {
+            // The root must be searched in order to find the winning move
+            int result = table.getResult(state.getZobristKey() ^ attackerHash, maxPlies - node.ply);
+            if (result == ProofNumberTable.PROVEN) {
+                node.setProven();
+            } else if (result == ProofNumberTable.DISPROVEN) {
+                node.setDisproven();
+            }
+        }
+    }
+
+    /**
+     * Update proof and disproof numbers from the most-proving node and back to the root. The game state is rewound
+     * to the root position along the way.
+     */
+    private void updateAncestors(Node node, Game state) {
+        while (true) {
+            node.update();
+
+            if (node.isSolved()) {
+                if (useTable) {
+                    table.addResult(state.getZobristKey() ^ attackerHash, node.proof == 0 ? ProofNumberTable.PROVEN : ProofNumberTable.DISPROVEN, maxPlies - node.ply);
+                }
+
+                // Subtree is no longer needed, except for the root where we need the winning move.
+                if (node.parent != null) {
+                    node.children = null;
+                }
+            }
+
+            if (node.parent == null) break;
+            node.command.undo(state);
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Node in the proof tree. OR nodes have the attacker to move, AND nodes the defender.
+     */
+    private static class Node {
+        private final GameCommand command;
+        private final Node parent;
+        private final int ply;
+        private final boolean orNode;
+        private Node[] children;
+        private int proof = 1;
+        private int disproof = 1;
+
+        private Node(GameCommand command, Node parent, int ply, boolean orNode) {
+            this.command = command;
+            this.parent = parent;
+            this.ply = ply;
+            this.orNode = orNode;
+        }
+
+        private void setProven() {
+            proof = 0;
+            disproof = INFINITY;
+        }
+
+        private void setDisproven() {
+            proof = INFINITY;
+            disproof = 0;
+        }
+
+        private boolean isSolved() {
+            return proof == 0 || disproof == 0;
+        }
+
+        private void update() {
+            if (children == null) return;
+
+            int min = INFINITY;
+            int sum = 0;
+            for (Node child : children) {
+                if (orNode) {
+                    min = Math.min(min, child.proof);
+                    sum = Math.min(INFINITY, sum + child.disproof);
+                } else {
+                    min = Math.min(min, child.disproof);
+                    sum = Math.min(INFINITY, sum + child.proof);
+                }
+            }
+
+            if (orNode) {
+                proof = min;
+                disproof = sum;
+            } else {
+                proof = sum;
+                disproof = min;
+            }
+        }
+    }
+}
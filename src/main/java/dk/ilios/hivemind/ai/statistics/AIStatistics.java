@@ -1,37 +1,78 @@
 package dk.ilios.hivemind.ai.statistics;
 
 import dk.ilios.hivemind.ai.HiveAI;
-import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.ai.transpositiontable.TranspositionTable;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.GamePhase;
+import dk.ilios.hivemind.jfr.FlightRecorderEvents;
+import dk.ilios.hivemind.jfr.NextMoveEvent;
+import dk.ilios.hivemind.utils.MemoryMeter;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.UUID;
 
 /**
- * Utility class for keeping track of AI performance
+ * Utility class for keeping track of AI performance.
+ *
+ * Counters are updated by the search for every node, so they are plain primitive fields. Per move results are kept in
+ * primitive arrays, and distributions in <code>Histogram</code>s, so percentiles can be read without sorting.
+ *
+ * A move is measured between <code>startCalculatingNextMove()</code> and <code>moveCalculated()</code>, which must be
+ * called on the thread that searches. Allocated bytes are only measured for that thread and are -1 if the JVM cannot
+ * measure them. If Flight Recorder events are enabled, a <code>NextMoveEvent</code> is recorded for each move.
  */
 public class AIStatistics {
 
+    public static final int MAX_CUTOFF_INDEX = 32; // Cutoffs after more moves are counted as this
+
     private boolean DEBUG = true;
 
     private final HiveAI ai;
 
-    // Result arrays
-    ArrayList<Long> millisecondsPrMove = new ArrayList<Long>(); // Time in milliseconds pr. move of the game
-    ArrayList<Integer> gameStatesEvaluatedPrSecond = new ArrayList<Integer>(); // Normalized "performance" value
-    ArrayList<Integer> positionsEvaluatedPrMove = new ArrayList<Integer>(); // Number of positions looked at when finding a move.
-    ArrayList<Integer> cacheHits = new ArrayList<Integer>(); // Number of cachehits
-
-    int numberOfCutoffs = 0;
-    int totalCutoffTurns = 0; // Average number of moves before cutoffs is totalCutoffTurns/numberOfCutoffs
+    // Result pr. move
+    int moves = 0;
+    long[] millisecondsPrMove = new long[16];        // Time in milliseconds pr. move of the game
+    int[] gameStatesEvaluatedPrSecond = new int[16]; // Normalized "performance" value
+    int[] positionsEvaluatedPrMove = new int[16];    // Number of positions looked at when finding a move.
+    int[] cacheHitsPrMove = new int[16];             // Number of cache hits
+    long[] allocatedBytesPrMove = new long[16];      // Bytes allocated by the searching thread or -1 if unknown
+
+    // Distributions pr. move
+    final Histogram moveTimeInMicros = new Histogram();
+    final Histogram positionsPrMove = new Histogram();
+    final Histogram nodesPrSecond = new Histogram();
+    final Histogram allocatedBytes = new Histogram();
+
+    long numberOfCutoffs = 0;
+    long totalCutoffTurns = 0; // Average number of moves before cutoffs is totalCutoffTurns/numberOfCutoffs
+    final long[] cutoffsAtMove = new long[MAX_CUTOFF_INDEX + 1]; // Number of cutoffs after evaluating X moves
+
+    long branches = 0;
+    long nodes = 0;
+    GamePhase phase = GamePhase.MIDGAME; // Phase of the position currently being searched
+    final long[] branchesInPhase = new long[GamePhase.values().length];
+    final long[] nodesInPhase = new long[GamePhase.values().length];
 
-    int branches = 0;
-    int nodes = 0;
     int cacheHit = 0;
+    long totalPositionsEvaluated = 0;
+    long solverNodes = 0;
+
+    long transpositionTableProbes = 0;
+    long transpositionTableHits = 0; // Probes that found an entry, whether it could be used or not
+    long transpositionTableCollisions = 0;
+    TranspositionTable transpositionTable;
+
+    int ponderHits = 0;
+    int ponderMisses = 0;
+    long ponderTimeSaved = 0; // Search time in milliseconds saved by pondering
 
     // Temporary data
-    String currentKey;
+    long moveStartNanos;
+    long moveStartNodes;
+    long moveStartAllocatedBytes;
+    long moveStartCollisions;
+    int moveStartCacheHits;
+    int depthReached;
+    NextMoveEvent nextMoveEvent;
     int aiDepth = 3;
     int positionsEvaluated = 0;    // How many moves has been considered when getting the next move.
 
@@ -39,131 +80,363 @@ public class AIStatistics {
         this.ai = ai;
     }
 
+    /**
+     * Set the transposition table used by the AI, so collisions found by the table can be counted pr. move. The
+     * table counts its own collisions, so collisions in tables shared between AIs include those from other searches.
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        transpositionTable = table;
+    }
+
     /**
      * A new move request has been made.
      */
     public void startCalculatingNextMove() {
-        currentKey = UUID.randomUUID().toString();
-        StopWatch.getInstance().start(currentKey);
         positionsEvaluated = 0;
+        moveStartNodes = getTotalNodes();
+        moveStartCacheHits = cacheHit;
+        moveStartCollisions = (transpositionTable != null) ? transpositionTable.getCollisions() : 0;
+        moveStartAllocatedBytes = MemoryMeter.getAllocatedBytes();
+        depthReached = 0;
+        moveStartNanos = System.nanoTime();
+        if (FlightRecorderEvents.ENABLED) {
+            nextMoveEvent = new NextMoveEvent();
+            nextMoveEvent.begin();
+        }
     }
 
     /**
      * The AI has returned a move
      */
     public void moveCalculated() {
-        long time = StopWatch.getInstance().stop(currentKey).getElapsedTimeInMillis();
-        int movesPrSecond = (int) (positionsEvaluated / (time / 1000d));
+        moveCalculated(null);
+    }
+
+    /**
+     * The AI has returned the given move.
+     */
+    public void moveCalculated(GameCommand move) {
+        long nanos = Math.max(1, System.nanoTime() - moveStartNanos);
+        long allocated = MemoryMeter.getAllocatedBytes();
+        long bytes = (allocated >= 0 && moveStartAllocatedBytes >= 0) ? allocated - moveStartAllocatedBytes : -1;
+        long time = nanos / 1000000L;
+        long nodesSearched = getTotalNodes() - moveStartNodes;
+
+        ensureCapacity(moves + 1);
+        millisecondsPrMove[moves] = time;
+        gameStatesEvaluatedPrSecond[moves] = (int) Math.min(Integer.MAX_VALUE, positionsEvaluated * 1000000000L / nanos);
+        positionsEvaluatedPrMove[moves] = positionsEvaluated;
+        cacheHitsPrMove[moves] = cacheHit - moveStartCacheHits;
+        allocatedBytesPrMove[moves] = bytes;
+        moves++;
+
+        moveTimeInMicros.record(nanos / 1000L);
+        positionsPrMove.record(positionsEvaluated);
+        nodesPrSecond.record(nodesSearched * 1000000000L / nanos);
+        if (bytes >= 0) {
+            allocatedBytes.record(bytes);
+        }
+        if (transpositionTable != null) {
+            transpositionTableCollisions += transpositionTable.getCollisions() - moveStartCollisions;
+        }
 
-        millisecondsPrMove.add(time);
-        gameStatesEvaluatedPrSecond.add(movesPrSecond);
-        positionsEvaluatedPrMove.add(positionsEvaluated);
-        cacheHits.add(cacheHit);
+        if (FlightRecorderEvents.ENABLED && nextMoveEvent != null) {
+            nextMoveEvent.end();
+            if (nextMoveEvent.shouldCommit()) {
+                nextMoveEvent.ai = ai.getName();
+                nextMoveEvent.depth = depthReached;
+                nextMoveEvent.nodes = nodesSearched;
+                nextMoveEvent.bestMove = String.valueOf(move);
+                nextMoveEvent.commit();
+            }
+            nextMoveEvent = null;
+        }
 
         if (DEBUG) {
-            System.out.println("(" + millisecondsPrMove.size() + ") " + ai.getName() + " : " + (time/1000d) + " s.");
+            System.out.println("(" + moves + ") " + ai.getName() + " : " + (time/1000d) + " s.");
         }
     }
 
+    /**
+     * The search has completed the given depth or found its best move at that depth.
+     */
+    public void searchDepthReached(int depth) {
+        depthReached = depth;
+    }
+
+    /**
+     * Returns the depth reported by the search for the last move or 0 if it didn't report any.
+     */
+    public int getDepthReached() {
+        return depthReached;
+    }
+
     /**
      * The AI has evaluated a game state using the heuristic function
      */
     public void boardEvaluated() {
         positionsEvaluated++;
+        totalPositionsEvaluated++;
     }
 
     public double getAverageTimePrMove() {
-        int result = 0;
-        for (long i : millisecondsPrMove) {
-            result += i;
-        }
-
-        return result / (double) millisecondsPrMove.size();
+        return moveTimeInMicros.getMean() / 1000d;
     }
 
+    /**
+     * Returns the median time pr. move in milliseconds.
+     */
     public long getMeanTimePrMove() {
-        if (millisecondsPrMove.size() == 0) return 0;
-        Long[] list = new Long[millisecondsPrMove.size()];
-        millisecondsPrMove.toArray(list);
-        Arrays.sort(list);
-        return list[list.length/2];
+        return getTimePrMovePercentile(50);
     }
 
     public long getMaxTimePrMove() {
-        long result = 0;
-        for (long i : millisecondsPrMove) {
-            if (i > result) {
-                result = i;
-            }
-        }
-        return result;
+        return moveTimeInMicros.getMax() / 1000L;
     }
 
-    public double getAveragePositionsEvaluatedPrMove() {
-        int result = 0;
-        for (int i : positionsEvaluatedPrMove) {
-            result += i;
-        }
+    /**
+     * Returns the time in milliseconds that the given percentage of moves took less than or equal to.
+     */
+    public long getTimePrMovePercentile(double percentile) {
+        return moveTimeInMicros.getPercentile(percentile) / 1000L;
+    }
+
+    /**
+     * Returns the distribution of time used pr. move in microseconds.
+     */
+    public Histogram getTimePrMoveHistogram() {
+        return moveTimeInMicros;
+    }
+
+    /**
+     * Returns the distribution of nodes searched pr. second for each move. Nodes are positions expanded, evaluated by
+     * the heuristic or expanded by an endgame solver.
+     */
+    public Histogram getNodesPrSecondHistogram() {
+        return nodesPrSecond;
+    }
+
+    /**
+     * Returns the distribution of bytes allocated pr. move by the thread that searched. Empty if the JVM cannot
+     * measure allocations.
+     */
+    public Histogram getAllocatedBytesHistogram() {
+        return allocatedBytes;
+    }
 
-        return result / (double) positionsEvaluatedPrMove.size();
+    public double getAveragePositionsEvaluatedPrMove() {
+        return positionsPrMove.getMean();
     }
 
+    /**
+     * Returns the median number of positions evaluated pr. move.
+     */
     public int getMeanPositionsEvaluatedPrMove() {
-        if (positionsEvaluatedPrMove.size() == 0) return 0;
-        Integer[] list = new Integer[positionsEvaluatedPrMove.size()];
-        positionsEvaluatedPrMove.toArray(list);
-        Arrays.sort(list);
-        return list[list.length/2];
+        return (int) positionsPrMove.getPercentile(50);
     }
 
     public int getMaxPositionsEvaluatedPrMove() {
-        int result = 0;
-        for (int i : positionsEvaluatedPrMove) {
-            if (i > result) {
-                result = i;
-            }
-        }
+        return (int) positionsPrMove.getMax();
+    }
+
+    /**
+     * Returns the number of moves calculated.
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    public long[] getMillisecondsPrMove() {
+        return Arrays.copyOf(millisecondsPrMove, moves);
+    }
 
-        return result;
+    public int[] getGameStatesEvaluatedPrSecond() {
+        return Arrays.copyOf(gameStatesEvaluatedPrSecond, moves);
     }
 
-    public List<Long> getMillisecondsPrMove() {
-        return millisecondsPrMove;
+    public int[] getPositionsEvaluatedPrMove() {
+        return Arrays.copyOf(positionsEvaluatedPrMove, moves);
     }
 
-    public List<Integer> getGameStatesEvaluatedPrSecond() {
-        return gameStatesEvaluatedPrSecond;
+    /**
+     * Returns the number of transposition table cache hits for each move.
+     */
+    public int[] getCacheHits() {
+        return Arrays.copyOf(cacheHitsPrMove, moves);
     }
 
-    public List<Integer> getPositionsEvaluatedPrMove() {
-        return positionsEvaluatedPrMove;
+    public long[] getAllocatedBytesPrMove() {
+        return Arrays.copyOf(allocatedBytesPrMove, moves);
     }
 
     public int getAverageBranchFactor() {
-        return (nodes > 0) ? Math.round(branches/nodes) : 0;
+        return (nodes > 0) ? (int) (branches/nodes) : 0;
+    }
+
+    /**
+     * Returns the average number of moves in positions expanded while searching from a position in the given phase or
+     * -1 if no such positions have been expanded.
+     */
+    public double getAverageBranchFactor(GamePhase phase) {
+        long expanded = nodesInPhase[phase.ordinal()];
+        return (expanded > 0) ? branchesInPhase[phase.ordinal()] / (double) expanded : -1d;
     }
 
-    public List<Integer> getCacheHits() {
-        return cacheHits;
+    /**
+     * Set the phase of the position the AI is about to search. Expanded nodes are counted for this phase.
+     */
+    public void setGamePhase(GamePhase phase) {
+        this.phase = phase;
     }
 
     public void nodeBranched(int size) {
         nodes++;
         branches += size;
+        nodesInPhase[phase.ordinal()]++;
+        branchesInPhase[phase.ordinal()] += size;
     }
 
     public void cacheHit() {
         cacheHit++;
     }
 
+    /**
+     * The transposition table has been searched for the current position.
+     * @param hit True if an entry was found.
+     */
+    public void transpositionTableProbe(boolean hit) {
+        transpositionTableProbes++;
+        if (hit) {
+            transpositionTableHits++;
+        }
+    }
+
+    public long getTranspositionTableProbes() {
+        return transpositionTableProbes;
+    }
+
+    public long getTranspositionTableHits() {
+        return transpositionTableHits;
+    }
+
+    /**
+     * Returns the number of collisions found by the transposition table during moves measured by
+     * <code>startCalculatingNextMove()</code> and <code>moveCalculated()</code>.
+     */
+    public long getTranspositionTableCollisions() {
+        return transpositionTableCollisions;
+    }
+
+    /**
+     * Returns the ratio of transposition table probes that found an entry or -1 if the table hasn't been used.
+     */
+    public double getTranspositionTableHitRate() {
+        return (transpositionTableProbes > 0) ? transpositionTableHits / (double) transpositionTableProbes : -1d;
+    }
+
+    /**
+     * Returns the number of positions that have been expanded, ie. had their moves generated.
+     */
+    public long getNodesExpanded() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of positions evaluated by the heuristic function in all searches.
+     */
+    public long getTotalPositionsEvaluated() {
+        return totalPositionsEvaluated;
+    }
+
+    /**
+     * An endgame solver has expanded the given number of nodes while looking for a forced win.
+     */
+    public void solverNodesExpanded(int count) {
+        solverNodes += count;
+    }
+
+    public long getSolverNodesExpanded() {
+        return solverNodes;
+    }
+
+    /**
+     * A search has cut off the remaining moves of a position.
+     * @param moveEvaluated Number of moves evaluated before the cutoff, including the one causing it.
+     */
     public void cutOffAfter(int moveEvaluated) {
         numberOfCutoffs++;
         totalCutoffTurns += moveEvaluated;
+        cutoffsAtMove[Math.max(0, Math.min(MAX_CUTOFF_INDEX, moveEvaluated))]++;
+    }
+
+    /**
+     * Returns the number of cutoffs that happened after evaluating X moves at index X. The last index counts all
+     * cutoffs after <code>MAX_CUTOFF_INDEX</code> or more moves.
+     */
+    public long[] getCutoffDistribution() {
+        return cutoffsAtMove.clone();
+    }
+
+    /**
+     * Returns the ratio of cutoffs caused by the first move searched or -1 if there have been no cutoffs. Good move
+     * ordering gives a high ratio.
+     */
+    public double getFirstMoveCutoffRate() {
+        return (numberOfCutoffs > 0) ? cutoffsAtMove[1] / (double) numberOfCutoffs : -1d;
+    }
+
+    /**
+     * The opponent played the predicted move, so the result from pondering could be used.
+     * @param millisSaved Time spent searching while pondering.
+     */
+    public void ponderHit(long millisSaved) {
+        ponderHits++;
+        ponderTimeSaved += millisSaved;
+    }
+
+    /**
+     * The opponent didn't play the predicted move, so the result from pondering was discarded.
+     */
+    public void ponderMiss() {
+        ponderMisses++;
+    }
+
+    /**
+     * Returns the ratio of ponder hits or -1 if the AI hasn't pondered.
+     */
+    public double getPonderHitRate() {
+        int total = ponderHits + ponderMisses;
+        return (total > 0) ? ponderHits / (double) total : -1d;
+    }
+
+    public int getPonderHits() {
+        return ponderHits;
+    }
+
+    public int getPonderMisses() {
+        return ponderMisses;
+    }
+
+    public long getPonderTimeSavedInMillis() {
+        return ponderTimeSaved;
     }
 
     public double getAverageMovesEvaluatedBeforeCutoff() {
-        if (totalCutoffTurns == 0) return -1d;
+        if (numberOfCutoffs == 0) return -1d;
         return totalCutoffTurns/(double) numberOfCutoffs;
     }
 
+    private long getTotalNodes() {
+        return nodes + totalPositionsEvaluated + solverNodes;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= millisecondsPrMove.length) return;
+        int capacity = Math.max(size, millisecondsPrMove.length * 2);
+        millisecondsPrMove = Arrays.copyOf(millisecondsPrMove, capacity);
+        gameStatesEvaluatedPrSecond = Arrays.copyOf(gameStatesEvaluatedPrSecond, capacity);
+        positionsEvaluatedPrMove = Arrays.copyOf(positionsEvaluatedPrMove, capacity);
+        cacheHitsPrMove = Arrays.copyOf(cacheHitsPrMove, capacity);
+        allocatedBytesPrMove = Arrays.copyOf(allocatedBytesPrMove, capacity);
+    }
 }
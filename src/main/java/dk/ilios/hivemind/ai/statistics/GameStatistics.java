@@ -14,6 +14,8 @@ public class GameStatistics {
 
     private long start; // Start time in milliseconds from epox
     private long durartionInMillis; // Duration of game in milliseconds
+    private long whiteCpuTimeInNanos; // CPU time used by white to calculate moves, including pondering
+    private long blackCpuTimeInNanos; // CPU time used by black to calculate moves, including pondering
 
     private String whiteName = "?";
     private int whiteTurns = 0;
@@ -38,6 +40,14 @@ public class GameStatistics {
         this.blackAI = blackAIStats;
     }
 
+    public AIStatistics getWhiteAIStats() {
+        return whiteAI;
+    }
+
+    public AIStatistics getBlackAIStats() {
+        return blackAI;
+    }
+
     public String shortSummary() {
         return String.format("%s (%s) vs. %s (%s) - %s ms.: %s", whiteName, whiteTurns, blackName, blackTurns, durartionInMillis, status);
     }
@@ -47,37 +57,55 @@ public class GameStatistics {
         sb.append('\n');
         sb.append("Branching: " + whiteAI.getAverageBranchFactor() + " vs. " + blackAI.getAverageBranchFactor());
         sb.append('\n');
+        sb.append("CPU time (ms): " + getWhiteCpuTimeInMillis() + " vs. " + getBlackCpuTimeInMillis());
+        sb.append('\n');
         sb.append("Time pr move (max.): "  + whiteAI.getMaxTimePrMove() + " vs. " + blackAI.getMaxTimePrMove());
         sb.append('\n');
         sb.append("Time pr move (avg.): "  + whiteAI.getAverageTimePrMove() + " vs. " + blackAI.getAverageTimePrMove());
         sb.append('\n');
         sb.append("Time pr move (mean): "  + whiteAI.getMeanTimePrMove() + " vs. " + blackAI.getMeanTimePrMove());
         sb.append('\n');
+        sb.append("Time pr move (p90/p99): "  + whiteAI.getTimePrMovePercentile(90) + "/" + whiteAI.getTimePrMovePercentile(99) + " vs. " + blackAI.getTimePrMovePercentile(90) + "/" + blackAI.getTimePrMovePercentile(99));
+        sb.append('\n');
+        sb.append("Nodes pr sec. (mean): "  + whiteAI.getNodesPrSecondHistogram().getPercentile(50) + " vs. " + blackAI.getNodesPrSecondHistogram().getPercentile(50));
+        sb.append('\n');
+        sb.append("Allocated bytes pr move (mean): "  + whiteAI.getAllocatedBytesHistogram().getPercentile(50) + " vs. " + blackAI.getAllocatedBytesHistogram().getPercentile(50));
+        sb.append('\n');
+        sb.append("TT hit rate: "  + whiteAI.getTranspositionTableHitRate() + " vs. " + blackAI.getTranspositionTableHitRate());
+        sb.append('\n');
+        sb.append("TT collisions: "  + whiteAI.getTranspositionTableCollisions() + " vs. " + blackAI.getTranspositionTableCollisions());
+        sb.append('\n');
+        sb.append("First move cutoff rate: "  + whiteAI.getFirstMoveCutoffRate() + " vs. " + blackAI.getFirstMoveCutoffRate());
+        sb.append('\n');
         sb.append("Positions pr move (max.): "  + whiteAI.getMaxPositionsEvaluatedPrMove() + " vs. " + blackAI.getMaxPositionsEvaluatedPrMove());
         sb.append('\n');
         sb.append("Positions pr move (avg.): "  + whiteAI.getAveragePositionsEvaluatedPrMove() + " vs. " + blackAI.getAveragePositionsEvaluatedPrMove());
         sb.append('\n');
         sb.append("Positions pr move (mean): "  + whiteAI.getMeanPositionsEvaluatedPrMove() + " vs. " + blackAI.getMeanPositionsEvaluatedPrMove());
         sb.append('\n');
+        sb.append("Ponder hit rate: "  + whiteAI.getPonderHitRate() + " vs. " + blackAI.getPonderHitRate());
+        sb.append('\n');
+        sb.append("Ponder time saved: "  + whiteAI.getPonderTimeSavedInMillis() + " vs. " + blackAI.getPonderTimeSavedInMillis());
+        sb.append('\n');
         sb.append("------------------");
         sb.append('\n');
-        sb.append(whiteName + " time pr. move: " + Arrays.toString(whiteAI.getMillisecondsPrMove().toArray()));
+        sb.append(whiteName + " time pr. move: " + Arrays.toString(whiteAI.getMillisecondsPrMove()));
         sb.append('\n');
-        sb.append(whiteName + " game states pr. sec.: " + Arrays.toString(whiteAI.getGameStatesEvaluatedPrSecond().toArray()));
+        sb.append(whiteName + " game states pr. sec.: " + Arrays.toString(whiteAI.getGameStatesEvaluatedPrSecond()));
         sb.append('\n');
-        sb.append(whiteName + " game states pr. move: " + Arrays.toString(whiteAI.getPositionsEvaluatedPrMove().toArray()));
+        sb.append(whiteName + " game states pr. move: " + Arrays.toString(whiteAI.getPositionsEvaluatedPrMove()));
         sb.append('\n');
-        sb.append(whiteName + " cache hits pr. move: " + Arrays.toString(whiteAI.getCacheHits().toArray()));
+        sb.append(whiteName + " cache hits pr. move: " + Arrays.toString(whiteAI.getCacheHits()));
         sb.append('\n');
         sb.append(whiteName + " average cutoff at move: " + whiteAI.getAverageMovesEvaluatedBeforeCutoff());
         sb.append('\n');
-        sb.append(blackName + " time pr. move: " + Arrays.toString(blackAI.getMillisecondsPrMove().toArray()));
+        sb.append(blackName + " time pr. move: " + Arrays.toString(blackAI.getMillisecondsPrMove()));
         sb.append('\n');
-        sb.append(blackName + " game states pr. sec.: " + Arrays.toString(blackAI.getGameStatesEvaluatedPrSecond().toArray()));
+        sb.append(blackName + " game states pr. sec.: " + Arrays.toString(blackAI.getGameStatesEvaluatedPrSecond()));
         sb.append('\n');
-        sb.append(blackName + " game states pr. move: " + Arrays.toString(blackAI.getPositionsEvaluatedPrMove().toArray()));
+        sb.append(blackName + " game states pr. move: " + Arrays.toString(blackAI.getPositionsEvaluatedPrMove()));
         sb.append('\n');
-        sb.append(blackName + " cache hits pr. move: " + Arrays.toString(blackAI.getCacheHits().toArray()));
+        sb.append(blackName + " cache hits pr. move: " + Arrays.toString(blackAI.getCacheHits()));
         sb.append('\n');
         sb.append(blackName + " average cutoff at move: " + blackAI.getAverageMovesEvaluatedBeforeCutoff());
         sb.append('\n');
@@ -86,6 +114,54 @@ public class GameStatistics {
         return sb.toString();
     }
 
+    /**
+     * Add CPU time used by white on one of its threads, as measured by
+     * <code>ThreadMXBean.getCurrentThreadCpuTime()</code>.
+     */
+    public void addWhiteCpuTime(long nanos) {
+        whiteCpuTimeInNanos += nanos;
+    }
+
+    /**
+     * Add CPU time used by black on one of its threads, as measured by
+     * <code>ThreadMXBean.getCurrentThreadCpuTime()</code>.
+     */
+    public void addBlackCpuTime(long nanos) {
+        blackCpuTimeInNanos += nanos;
+    }
+
+    public long getWhiteCpuTimeInMillis() {
+        return whiteCpuTimeInNanos / 1000000L;
+    }
+
+    public long getBlackCpuTimeInMillis() {
+        return blackCpuTimeInNanos / 1000000L;
+    }
+
+    public long getDurationInMillis() {
+        return durartionInMillis;
+    }
+
+    public GameStatus getStatus() {
+        return status;
+    }
+
+    public String getWhiteName() {
+        return whiteName;
+    }
+
+    public String getBlackName() {
+        return blackName;
+    }
+
+    public int getWhiteTurns() {
+        return whiteTurns;
+    }
+
+    public int getBlackTurns() {
+        return blackTurns;
+    }
+
     public void setStatus(GameStatus status) {
         this.status = status;
     }
@@ -0,0 +1,103 @@
+package dk.ilios.hivemind.ai.statistics;
+
+/**
+ * Histogram of non-negative values with a fixed relative precision, in the style of HdrHistogram [1].
+ *
+ * Values are counted in buckets that double in size for every power of two, with each power split into 32 linear
+ * sub-buckets. Values below 64 are counted exactly and larger values are reported with an error of at most 1/32
+ * (~3%). Recording a value is a few bit operations and an array increment, and the memory used is fixed no matter how
+ * many values are recorded, so the histogram can be updated once pr. move without affecting the search.
+ *
+ * Not thread safe.
+ *
+ * @see [1] http://hdrhistogram.org/
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Record a value. Negative values are counted as 0.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts[getIndex(value)]++;
+        count++;
+        total += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Add all values recorded in another histogram to this one.
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the value that the given percentage of all recorded values are less than or equal to, eg. 50 for the
+     * median. The result is the highest value in the bucket of the value, but never more than the max. Returns 0 if no
+     * values have been recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100d, percentile) / 100d * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, getHighestValue(i));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMin() {
+        return (count > 0) ? min : 0;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return (count > 0) ? total / (double) count : 0;
+    }
+
+    static int getIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long getHighestValue(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
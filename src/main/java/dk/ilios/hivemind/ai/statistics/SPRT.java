@@ -0,0 +1,184 @@
+package dk.ilios.hivemind.ai.statistics;
+
+/**
+ * Sequential Probability Ratio Test [1] on the Elo difference between two AIs. Used to stop a match as soon as it is
+ * clear whether a change made an AI stronger, instead of playing a fixed number of games.
+ *
+ * The test is between H0: elo = elo0 and H1: elo = elo1. Games are played in pairs with swapped colors, and each pair
+ * is one sample. The log-likelihood ratio (LLR) uses the generalized SPRT approximation [2]:
+ *
+ *   LLR = N * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance)
+ *
+ * where s0 and s1 are the expected pair scores at elo0 and elo1, and mean and variance are calculated from the
+ * distribution of pair scores (0, 1/4, 1/2, 3/4 or 1). A small prior is added to each pair score so the variance is
+ * never zero. H1 is accepted when the LLR reaches log((1 - beta) / alpha) and H0 when it drops to
+ * log(beta / (1 - alpha)).
+ *
+ * @see [1] http://en.wikipedia.org/wiki/Sequential_probability_ratio_test
+ * @see [2] http://hardy.uhasselt.be/Toga/GSPRT_approximation.pdf
+ */
+public class SPRT {
+
+    public enum Status {
+        CONTINUE,
+        H0_ACCEPTED, // Not stronger than elo0
+        H1_ACCEPTED  // At least elo1 stronger
+    }
+
+    private static final double PRIOR = 1e-3;       // Prior count for each pair score
+    private static final double CONFIDENCE_Z = 1.96; // 95% confidence interval
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+
+    // Number of game pairs that scored 0, 1/4, 1/2, 3/4 and 1 (in half points: 0 - 4)
+    private final int[] pairScores = new int[5];
+    private int wins;
+    private int draws;
+    private int losses;
+
+    /**
+     * @param elo0 Elo difference of H0, typically 0.
+     * @param elo1 Elo difference of H1, ie. the smallest improvement worth detecting.
+     * @param alpha Probability of accepting H1 if H0 is true (false positive).
+     * @param beta Probability of accepting H0 if H1 is true (false negative).
+     */
+    public SPRT(double elo0, double elo1, double alpha, double beta) {
+        if (elo0 >= elo1) throw new IllegalArgumentException("elo0 must be smaller than elo1: " + elo0 + ", " + elo1);
+        if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) throw new IllegalArgumentException("alpha and beta must be between 0 and 1: " + alpha + ", " + beta);
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Add the result of a pair of games with swapped colors.
+     *
+     * @param firstScore Score of the tested AI in the first game: 1 for a win, 0.5 for a draw and 0 for a loss.
+     * @param secondScore Score of the tested AI in the second game.
+     */
+    public synchronized void addGamePair(double firstScore, double secondScore) {
+        addGame(firstScore);
+        addGame(secondScore);
+        pairScores[(int) Math.round((firstScore + secondScore) * 2)]++;
+    }
+
+    private void addGame(double score) {
+        if (score == 1) {
+            wins++;
+        } else if (score == 0) {
+            losses++;
+        } else if (score == 0.5) {
+            draws++;
+        } else {
+            throw new IllegalArgumentException("Score must be 0, 0.5 or 1: " + score);
+        }
+    }
+
+    public synchronized Status getStatus() {
+        double llr = getLLR();
+        if (llr >= upperBound) return Status.H1_ACCEPTED;
+        if (llr <= lowerBound) return Status.H0_ACCEPTED;
+        return Status.CONTINUE;
+    }
+
+    /**
+     * Returns the log-likelihood ratio of H1 against H0.
+     */
+    public synchronized double getLLR() {
+        int pairs = getGamePairs();
+        if (pairs == 0) return 0;
+        double mean = getMean();
+        double variance = getVariance(mean);
+        double s0 = getScore(elo0);
+        double s1 = getScore(elo1);
+        return pairs * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance);
+    }
+
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Returns the estimated Elo difference. Positive if the tested AI is stronger.
+     */
+    public synchronized double getElo() {
+        return getElo(getMean());
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of the Elo difference.
+     */
+    public synchronized double getEloError() {
+        int pairs = getGamePairs();
+        if (pairs == 0) return Double.POSITIVE_INFINITY;
+        double mean = getMean();
+        double error = CONFIDENCE_Z * Math.sqrt(getVariance(mean) / pairs);
+        return (getElo(Math.min(mean + error, 1 - PRIOR)) - getElo(Math.max(mean - error, PRIOR))) / 2;
+    }
+
+    public synchronized int getGamePairs() {
+        int pairs = 0;
+        for (int count : pairScores) {
+            pairs += count;
+        }
+        return pairs;
+    }
+
+    public synchronized int getWins() {
+        return wins;
+    }
+
+    public synchronized int getDraws() {
+        return draws;
+    }
+
+    public synchronized int getLosses() {
+        return losses;
+    }
+
+    public synchronized String summary() {
+        return String.format("Elo: %.1f +/- %.1f, LLR: %.2f [%.2f, %.2f], Games: %d (W: %d, D: %d, L: %d): %s",
+                getElo(), getEloError(), getLLR(), lowerBound, upperBound, getGamePairs() * 2, wins, draws, losses, getStatus());
+    }
+
+    // Expected score for a given Elo difference
+    static double getScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    // Elo difference for a given expected score
+    static double getElo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private double getMean() {
+        double total = 0;
+        double sum = 0;
+        for (int i = 0; i < pairScores.length; i++) {
+            double count = pairScores[i] + PRIOR;
+            total += count;
+            sum += count * i / 4d;
+        }
+        return sum / total;
+    }
+
+    private double getVariance(double mean) {
+        double total = 0;
+        double sum = 0;
+        for (int i = 0; i < pairScores.length; i++) {
+            double count = pairScores[i] + PRIOR;
+            double diff = i / 4d - mean;
+            total += count;
+            sum += count * diff * diff;
+        }
+        return sum / total;
+    }
+}
@@ -0,0 +1,160 @@
+package dk.ilios.hivemind.ai.statistics;
+
+import dk.ilios.hivemind.game.GamePhase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes the AI statistics of a list of games, eg. all games of a tournament, as CSV or JSON.
+ *
+ * CSV has a row for each AI in each game with summary values, ie. percentiles instead of per move values. JSON has the
+ * same values and also the cutoff distribution and the time and positions evaluated for each move.
+ *
+ * Times are in milliseconds. Values that are unknown, eg. the hit rate of an AI without a transposition table, are -1.
+ */
+public class StatisticsExporter {
+
+    public static final String[] COLUMNS = {
+            "game", "color", "ai", "opponent", "result", "moves",
+            "timeP50", "timeP90", "timeP99", "timeMax", "timeAvg",
+            "nodes", "nodesPrSecondP50", "nodesPrSecondP90", "nodesPrSecondMax",
+            "ttProbes", "ttHits", "ttHitRate", "ttCollisions",
+            "cutoffs", "firstMoveCutoffRate", "averageCutoffMove",
+            "branchingOpening", "branchingMidgame", "branchingEndgame",
+            "allocatedBytesP50", "allocatedBytesP99", "allocatedBytesMax", "allocatedBytesTotal",
+            "ponderHitRate"
+    };
+
+    public static void writeCsv(List<GameStatistics> games, Writer output) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(COLUMNS[i]);
+        }
+        sb.append('\n');
+
+        for (int i = 0; i < games.size(); i++) {
+            GameStatistics game = games.get(i);
+            if (game.getWhiteAIStats() != null) appendCsv(sb, i + 1, "white", game.getWhiteName(), game.getBlackName(), game, game.getWhiteAIStats());
+            if (game.getBlackAIStats() != null) appendCsv(sb, i + 1, "black", game.getBlackName(), game.getWhiteName(), game, game.getBlackAIStats());
+        }
+        output.write(sb.toString());
+        output.flush();
+    }
+
+    public static void writeJson(List<GameStatistics> games, Writer output) throws IOException {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int i = 0; i < games.size(); i++) {
+            GameStatistics game = games.get(i);
+            sb.append("  {\"game\": ").append(i + 1)
+                    .append(", \"white\": ").append(quote(game.getWhiteName()))
+                    .append(", \"black\": ").append(quote(game.getBlackName()))
+                    .append(", \"result\": ").append(quote(String.valueOf(game.getStatus())))
+                    .append(", \"durationMillis\": ").append(game.getDurationInMillis())
+                    .append(",\n   \"whiteStats\": ");
+            appendJson(sb, game.getWhiteAIStats());
+            sb.append(",\n   \"blackStats\": ");
+            appendJson(sb, game.getBlackAIStats());
+            sb.append('}');
+            sb.append((i < games.size() - 1) ? ",\n" : "\n");
+        }
+        sb.append("]\n");
+        output.write(sb.toString());
+        output.flush();
+    }
+
+    private static void appendCsv(StringBuilder sb, int game, String color, String name, String opponent, GameStatistics result, AIStatistics stats) {
+        Object[] values = getValues(stats);
+        sb.append(game).append(',').append(color).append(',').append(csv(name)).append(',').append(csv(opponent))
+                .append(',').append(result.getStatus());
+        for (Object value : values) {
+            sb.append(',').append(format(value));
+        }
+        sb.append('\n');
+    }
+
+    private static void appendJson(StringBuilder sb, AIStatistics stats) {
+        if (stats == null) {
+            sb.append("null");
+            return;
+        }
+        Object[] values = getValues(stats);
+        sb.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append('"').append(COLUMNS[i + 5]).append("\": ").append(format(values[i]));
+        }
+        sb.append(", \"cutoffDistribution\": ").append(toJson(stats.getCutoffDistribution()));
+        sb.append(", \"millisecondsPrMove\": ").append(toJson(stats.getMillisecondsPrMove()));
+        sb.append(", \"positionsEvaluatedPrMove\": ").append(toJson(stats.getPositionsEvaluatedPrMove()));
+        sb.append('}');
+    }
+
+    // Values for all columns after the game result
+    private static Object[] getValues(AIStatistics stats) {
+        Histogram time = stats.getTimePrMoveHistogram();
+        Histogram nodesPrSecond = stats.getNodesPrSecondHistogram();
+        Histogram allocated = stats.getAllocatedBytesHistogram();
+        boolean allocationsMeasured = allocated.getCount() > 0;
+        return new Object[] {
+                stats.getMoves(),
+                time.getPercentile(50) / 1000d, time.getPercentile(90) / 1000d, time.getPercentile(99) / 1000d,
+                time.getMax() / 1000d, time.getMean() / 1000d,
+                stats.getNodesExpanded() + stats.getTotalPositionsEvaluated() + stats.getSolverNodesExpanded(),
+                nodesPrSecond.getPercentile(50), nodesPrSecond.getPercentile(90), nodesPrSecond.getMax(),
+                stats.getTranspositionTableProbes(), stats.getTranspositionTableHits(),
+                stats.getTranspositionTableHitRate(), stats.getTranspositionTableCollisions(),
+                getCutoffs(stats), stats.getFirstMoveCutoffRate(), stats.getAverageMovesEvaluatedBeforeCutoff(),
+                stats.getAverageBranchFactor(GamePhase.OPENING), stats.getAverageBranchFactor(GamePhase.MIDGAME),
+                stats.getAverageBranchFactor(GamePhase.ENDGAME),
+                allocationsMeasured ? allocated.getPercentile(50) : -1, allocationsMeasured ? allocated.getPercentile(99) : -1,
+                allocationsMeasured ? allocated.getMax() : -1, allocationsMeasured ? allocated.getTotal() : -1,
+                stats.getPonderHitRate()
+        };
+    }
+
+    private static long getCutoffs(AIStatistics stats) {
+        long cutoffs = 0;
+        for (long count : stats.getCutoffDistribution()) {
+            cutoffs += count;
+        }
+        return cutoffs;
+    }
+
+    private static String format(Object value) {
+        if (value instanceof Double) {
+            return String.format(Locale.US, "%.3f", (Double) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static String toJson(long[] values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String toJson(int[] values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
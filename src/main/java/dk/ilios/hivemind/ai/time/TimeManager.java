@@ -0,0 +1,274 @@
+package dk.ilios.hivemind.ai.time;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GamePhase;
+
+/**
+ * Decides how long a search may run for a single move.
+ *
+ * Two limits are calculated when a search starts:
+ * - Hard limit: The search must stop. Never more than the AI's time limit pr. move, and lower if a remaining game
+ *   budget has been set.
+ * - Soft limit: No new work (ie. Iterative Deepening iterations) should be started after this. Depends on the game
+ *   phase and the branching factor of the position.
+ *
+ * Searches should call <code>checkTime()</code> for every node. The clock is only read every N nodes and a stop is
+ * signaled through a volatile flag, which means that another thread can also stop the search using
+ * <code>stop()</code>.
+ *
+ * Iterative Deepening searches should report finished iterations using <code>iterationCompleted()</code>. The node
+ * counts of the previous iterations are used to estimate the effective branching factor (EBF), which predicts if the
+ * next iteration can finish before the hard limit [1].
+ *
+ * A node budget can be set as well. The search then stops after the given number of nodes and new iterations are only
+ * started if the next one is predicted to fit within the budget, without looking at the soft limit. As long as the
+ * time limit isn't hit, a search limited by nodes will do the exact same work on every run, no matter how fast the
+ * machine is, which makes it useful for benchmarks and tests.
+ *
+ * @see [1] http://chessprogramming.wikispaces.com/Time+Management
+ * @see http://chessprogramming.wikispaces.com/Branching+Factor
+ */
+public class TimeManager {
+
+    public static final int DEFAULT_CHECK_INTERVAL = 1024; // Read the clock for every X nodes
+
+    private static final long NANOS_PR_MILLI = 1000000L;
+    private static final double OPENING_FACTOR = 0.25;      // Part of the hard limit to use in the opening
+    private static final double MIDGAME_FACTOR = 0.5;       // Part of the hard limit to use in the midgame
+    private static final double ENDGAME_FACTOR = 0.75;      // Part of the hard limit to use in the endgame
+    private static final int WIDE_BRANCHING_FACTOR = 40;    // Positions this wide use the full soft limit
+    private static final int DEFAULT_MOVES_LEFT = 30;       // Expected moves pr. player in a game without turn limit
+    private static final int MIN_MOVES_LEFT = 10;
+    private static final int MAX_BUDGET_FACTOR = 3;         // Never use more than X times the average time left pr. move.
+
+    private final long maxTimeInMillis;
+    private final int checkInterval;
+    private long remainingGameTimeInMillis = 0; // 0 = No game clock
+    private long maxNodes = 0; // 0 = No node budget
+
+    // State for current search
+    private long startNanos;
+    private long softLimitNanos;
+    private long hardLimitNanos;
+    private volatile boolean stop;
+    private int nodesUntilCheck;
+    private long nodes;
+
+    // Iteration history for current search
+    private int iterations;
+    private long iterationStartNanos;
+    private long iterationStartNodes;
+    private long lastIterationNanos;
+    private long lastIterationNodes;
+    private double effectiveBranchingFactor;
+
+    /**
+     * @param maxTimeInMillis Absolute time limit pr. move.
+     */
+    public TimeManager(long maxTimeInMillis) {
+        this(maxTimeInMillis, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * @param maxTimeInMillis Absolute time limit pr. move.
+     * @param checkInterval Number of calls to <code>checkTime()</code> between each time the clock is read.
+     */
+    public TimeManager(long maxTimeInMillis, int checkInterval) {
+        if (checkInterval < 1) throw new IllegalArgumentException("Check interval must be positive: " + checkInterval);
+        this.maxTimeInMillis = maxTimeInMillis;
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Set how much time is left on the game clock for the player. The time for each move is then limited to a share
+     * of the remaining time. Use 0 to disable.
+     */
+    public void setRemainingGameTime(long millis) {
+        remainingGameTimeInMillis = millis;
+    }
+
+    /**
+     * Set the maximum number of nodes a search may visit. Use 0 to disable.
+     */
+    public void setMaxNodes(long maxNodes) {
+        if (maxNodes < 0) throw new IllegalArgumentException("Node budget cannot be negative: " + maxNodes);
+        this.maxNodes = maxNodes;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Start timing a new search.
+     *
+     * @param state Game state to search.
+     * @param branchingFactor Expected branching factor or 0 if unknown.
+     */
+    public void start(Game state, int branchingFactor) {
+        startNanos = System.nanoTime();
+        stop = false;
+        nodes = 0;
+        nodesUntilCheck = checkInterval;
+        iterations = 0;
+        iterationStartNanos = startNanos;
+        iterationStartNodes = 0;
+        lastIterationNanos = 0;
+        lastIterationNodes = 0;
+        effectiveBranchingFactor = 0;
+
+        long hardLimit = maxTimeInMillis;
+        if (remainingGameTimeInMillis > 0) {
+            long averageTimeLeft = remainingGameTimeInMillis / estimateMovesLeft(state);
+            hardLimit = Math.min(hardLimit, Math.min(remainingGameTimeInMillis / 2, averageTimeLeft * MAX_BUDGET_FACTOR));
+        }
+
+        double softFactor = getPhaseFactor(state);
+        if (branchingFactor > 0) {
+            softFactor *= Math.max(0.5, Math.min(1.0, branchingFactor / (double) WIDE_BRANCHING_FACTOR));
+        }
+
+        hardLimitNanos = hardLimit * NANOS_PR_MILLI;
+        softLimitNanos = (long) (hardLimitNanos * softFactor);
+    }
+
+    /**
+     * Register a visited node. Returns true if the search should stop. The clock is only read every N nodes.
+     */
+    public boolean checkTime() {
+        if (stop) return true;
+        nodes++;
+        if (maxNodes > 0 && nodes >= maxNodes) {
+            stop = true;
+            return true;
+        }
+        if (--nodesUntilCheck <= 0) {
+            nodesUntilCheck = checkInterval;
+            if (System.nanoTime() - startNanos >= hardLimitNanos) {
+                stop = true;
+            }
+        }
+        return stop;
+    }
+
+    /**
+     * Stop the current search. Safe to call from any thread.
+     */
+    public void stop() {
+        stop = true;
+    }
+
+    /**
+     * Returns true if the search has been stopped, either by time or by calling <code>stop()</code>.
+     */
+    public boolean isStopped() {
+        return stop;
+    }
+
+    /**
+     * Returns true if the soft limit has been reached. Reads the clock.
+     */
+    public boolean isSoftLimitReached() {
+        return System.nanoTime() - startNanos >= softLimitNanos;
+    }
+
+    /**
+     * Returns true if the hard limit has been reached. Reads the clock.
+     */
+    public boolean isHardLimitReached() {
+        if (!stop && System.nanoTime() - startNanos >= hardLimitNanos) {
+            stop = true;
+        }
+        return stop;
+    }
+
+    /**
+     * Mark the end of an Iterative Deepening iteration.
+     */
+    public void iterationCompleted() {
+        long now = System.nanoTime();
+        long iterationNodes = nodes - iterationStartNodes;
+        if (lastIterationNodes > 0) {
+            effectiveBranchingFactor = iterationNodes / (double) lastIterationNodes;
+        }
+
+        iterations++;
+        lastIterationNanos = now - iterationStartNanos;
+        lastIterationNodes = iterationNodes;
+        iterationStartNanos = now;
+        iterationStartNodes = nodes;
+    }
+
+    /**
+     * Returns true if there is time to start another Iterative Deepening iteration. The first iteration can always
+     * start, later ones only if the soft limit hasn't been reached and the next iteration is expected to finish before
+     * the hard limit. With a node budget the decision only depends on the node counts.
+     */
+    public boolean canStartIteration() {
+        if (stop) return false;
+        if (iterations == 0) return true;
+
+        if (maxNodes > 0) {
+            if (effectiveBranchingFactor <= 0) return nodes < maxNodes;
+            long expectedNodes = (long) (lastIterationNodes * Math.max(1.0, effectiveBranchingFactor));
+            return nodes + expectedNodes <= maxNodes;
+        }
+
+        long elapsed = System.nanoTime() - startNanos;
+        if (elapsed >= softLimitNanos) return false;
+        if (effectiveBranchingFactor <= 0) return true; // Not enough data to predict anything
+
+        long expectedTime = (long) (lastIterationNanos * Math.max(1.0, effectiveBranchingFactor));
+        return elapsed + expectedTime <= hardLimitNanos;
+    }
+
+    /**
+     * Returns the effective branching factor between the last two completed iterations or 0 if unknown.
+     */
+    public double getEffectiveBranchingFactor() {
+        return effectiveBranchingFactor;
+    }
+
+    /**
+     * Returns the number of nodes registered in the last completed iteration.
+     */
+    public long getLastIterationNodes() {
+        return lastIterationNodes;
+    }
+
+    /**
+     * Returns the number of nodes registered by <code>checkTime()</code> in the current search.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / NANOS_PR_MILLI;
+    }
+
+    public long getSoftLimitMillis() {
+        return softLimitNanos / NANOS_PR_MILLI;
+    }
+
+    public long getHardLimitMillis() {
+        return hardLimitNanos / NANOS_PR_MILLI;
+    }
+
+    private double getPhaseFactor(Game state) {
+        switch (GamePhase.of(state)) {
+            case OPENING: return OPENING_FACTOR;
+            case ENDGAME: return ENDGAME_FACTOR;
+            default: return MIDGAME_FACTOR;
+        }
+    }
+
+    private int estimateMovesLeft(Game state) {
+        int moves = state.getActivePlayer().getMoves();
+        if (state.getTurnLimit() > 0) {
+            return Math.max(1, state.getTurnLimit() - moves);
+        } else {
+            return Math.max(MIN_MOVES_LEFT, DEFAULT_MOVES_LEFT - moves);
+        }
+    }
+}
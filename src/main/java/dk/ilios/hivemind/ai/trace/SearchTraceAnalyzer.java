@@ -0,0 +1,337 @@
+package dk.ilios.hivemind.ai.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Summarizes traces written by <code>SearchTracer</code>. Any number of traces can be read into the same analyzer.
+ *
+ * Alpha-Beta searches are summarized pr. ply:
+ * - The effective branching factor, ie. nodes at the next ply / nodes at this ply. For Iterative Deepening searches
+ *   the nodes of all iterations are counted.
+ * - From the sampled nodes: Moves generated, how often a node was cut off, how often the first move caused the cutoff
+ *   and the average index of the cutoff move. Good move ordering gives a first move cutoff rate close to 100%.
+ * - The bounds of the values returned, ie. exact, fail high or fail low.
+ *
+ * Monte Carlo searches are summarized by how the visits of the root moves develop during a search. Sampled root
+ * snapshots are grouped by the part of the search that was done, and for each group the share of visits of the most
+ * visited move, the entropy of the visits and how often the most visited move was also the most visited at the end of
+ * the search is reported.
+ */
+public class SearchTraceAnalyzer {
+
+    public static final int PROGRESS_BUCKETS = 10;
+
+    private static final int MAX_PLIES = SearchTracer.MAX_PLIES;
+
+    private int searches;
+    private int monteCarloSearches;
+    private int maxPly = -1;
+    private final long[] nodes = new long[MAX_PLIES];
+
+    // Sampled Alpha-Beta nodes pr. ply
+    private long alphaBetaSamples;
+    private final long[] sampledNodes = new long[MAX_PLIES];
+    private final long[] movesGenerated = new long[MAX_PLIES];
+    private final long[] cutoffs = new long[MAX_PLIES];
+    private final long[] firstMoveCutoffs = new long[MAX_PLIES];
+    private final long[] cutoffIndexTotal = new long[MAX_PLIES];
+    private final long[] exactValues = new long[MAX_PLIES];
+    private final long[] lowerBounds = new long[MAX_PLIES];
+    private final long[] upperBounds = new long[MAX_PLIES];
+
+    // Sampled Monte Carlo nodes pr. ply
+    private long sampledPlayouts;
+    private final long[] sampledMonteCarloNodes = new long[MAX_PLIES];
+    private final long[] monteCarloVisits = new long[MAX_PLIES];
+    private final double[] monteCarloValues = new double[MAX_PLIES];
+
+    // Root snapshots pr. part of the search
+    private final long[] rootSnapshots = new long[PROGRESS_BUCKETS];
+    private final double[] topMoveShares = new double[PROGRESS_BUCKETS];
+    private final double[] visitEntropies = new double[PROGRESS_BUCKETS];
+    private final long[] finalMoveLeads = new long[PROGRESS_BUCKETS];
+    private final List<RootSnapshot> searchSnapshots = new ArrayList<RootSnapshot>();
+
+    /**
+     * Read a trace and add it to the summary. The stream is not closed.
+     */
+    public void read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != SearchTracer.MAGIC) throw new IOException("Not a search trace");
+        int version = in.readShort();
+        if (version != SearchTracer.VERSION) throw new IOException("Unsupported trace version: " + version);
+        in.readInt(); // Sample interval
+
+        int type;
+        while ((type = in.read()) != -1) {
+            switch (type) {
+                case SearchTracer.SEARCH_START:
+                    in.readUTF();
+                    in.readBoolean();
+                    in.readShort();
+                    searches++;
+                    searchSnapshots.clear();
+                    break;
+                case SearchTracer.ALPHA_BETA_NODE:
+                    readAlphaBetaNode(in);
+                    break;
+                case SearchTracer.MONTE_CARLO_NODE:
+                    readMonteCarloNode(in);
+                    break;
+                case SearchTracer.MONTE_CARLO_ROOT:
+                    readMonteCarloRoot(in);
+                    break;
+                case SearchTracer.SEARCH_END:
+                    readSearchEnd(in);
+                    break;
+                default:
+                    throw new IOException("Unknown record type: " + type);
+            }
+        }
+    }
+
+    private void readAlphaBetaNode(DataInputStream in) throws IOException {
+        int ply = Math.min(in.readByte(), MAX_PLIES - 1);
+        in.readByte(); // Depth
+        in.readInt(); // Alpha
+        in.readInt(); // Beta
+        in.readInt(); // Value
+        byte bound = in.readByte();
+        int moves = in.readShort();
+        int cutoffIndex = in.readShort();
+        in.readLong(); // Move
+
+        alphaBetaSamples++;
+        sampledNodes[ply]++;
+        movesGenerated[ply] += moves;
+        if (cutoffIndex >= 0) {
+            cutoffs[ply]++;
+            cutoffIndexTotal[ply] += cutoffIndex;
+            if (cutoffIndex == 0) firstMoveCutoffs[ply]++;
+        }
+        if (bound == SearchTracer.EXACT) {
+            exactValues[ply]++;
+        } else if (bound == SearchTracer.LOWER_BOUND) {
+            lowerBounds[ply]++;
+        } else {
+            upperBounds[ply]++;
+        }
+    }
+
+    private void readMonteCarloNode(DataInputStream in) throws IOException {
+        int ply = Math.min(in.readByte(), MAX_PLIES - 1);
+        in.readInt(); // Playout
+        in.readLong(); // Move
+        int visits = in.readInt();
+        int totalResult = in.readInt();
+
+        sampledMonteCarloNodes[ply]++;
+        monteCarloVisits[ply] += visits;
+        monteCarloValues[ply] += totalResult / (double) visits;
+    }
+
+    private void readMonteCarloRoot(DataInputStream in) throws IOException {
+        RootSnapshot snapshot = new RootSnapshot();
+        snapshot.playout = in.readInt();
+        int moves = in.readShort();
+        long total = 0;
+        long mostVisits = -1;
+        int[] visits = new int[moves];
+        for (int i = 0; i < moves; i++) {
+            long move = in.readLong();
+            visits[i] = in.readInt();
+            in.readInt(); // Total result
+            total += visits[i];
+            if (visits[i] > mostVisits) {
+                mostVisits = visits[i];
+                snapshot.mostVisitedMove = move;
+            }
+        }
+
+        sampledPlayouts++;
+        if (total == 0) return; // Nothing to learn before the first playout
+
+        snapshot.topMoveShare = mostVisits / (double) total;
+        for (int visit : visits) {
+            if (visit > 0) {
+                double p = visit / (double) total;
+                snapshot.entropy -= p * Math.log(p) / Math.log(2);
+            }
+        }
+        searchSnapshots.add(snapshot);
+    }
+
+    private void readSearchEnd(DataInputStream in) throws IOException {
+        int playouts = in.readInt();
+        int plies = in.readByte();
+        for (int i = 0; i < plies; i++) {
+            nodes[i] += in.readLong();
+        }
+        maxPly = Math.max(maxPly, plies - 1);
+
+        if (playouts > 0) {
+            monteCarloSearches++;
+        }
+        if (!searchSnapshots.isEmpty()) {
+            long finalMove = searchSnapshots.get(searchSnapshots.size() - 1).mostVisitedMove;
+            for (RootSnapshot snapshot : searchSnapshots) {
+                int bucket = (int) Math.min(PROGRESS_BUCKETS - 1, (snapshot.playout - 1L) * PROGRESS_BUCKETS / Math.max(1, playouts));
+                rootSnapshots[bucket]++;
+                topMoveShares[bucket] += snapshot.topMoveShare;
+                visitEntropies[bucket] += snapshot.entropy;
+                if (snapshot.mostVisitedMove == finalMove) finalMoveLeads[bucket]++;
+            }
+            searchSnapshots.clear();
+        }
+    }
+
+    public int getSearches() {
+        return searches;
+    }
+
+    public int getMonteCarloSearches() {
+        return monteCarloSearches;
+    }
+
+    /**
+     * Returns the deepest ply with any nodes or -1 if no searches have been read.
+     */
+    public int getMaxPly() {
+        return maxPly;
+    }
+
+    public long getNodes(int ply) {
+        return nodes[ply];
+    }
+
+    /**
+     * Returns the nodes at the next ply pr. node at this ply or 0 if there are no nodes at this ply.
+     */
+    public double getEffectiveBranchingFactor(int ply) {
+        if (ply + 1 >= MAX_PLIES || nodes[ply] == 0) return 0;
+        return nodes[ply + 1] / (double) nodes[ply];
+    }
+
+    public long getSampledNodes(int ply) {
+        return sampledNodes[ply];
+    }
+
+    public double getAverageMovesGenerated(int ply) {
+        return ratio(movesGenerated[ply], sampledNodes[ply]);
+    }
+
+    /**
+     * Returns the part of the sampled nodes at a ply that were cut off.
+     */
+    public double getCutoffRate(int ply) {
+        return ratio(cutoffs[ply], sampledNodes[ply]);
+    }
+
+    /**
+     * Returns the part of the cutoffs at a ply that were caused by the first move.
+     */
+    public double getFirstMoveCutoffRate(int ply) {
+        return ratio(firstMoveCutoffs[ply], cutoffs[ply]);
+    }
+
+    /**
+     * Returns the average index of the move causing a cutoff at a ply. 0 is the first move.
+     */
+    public double getAverageCutoffIndex(int ply) {
+        return ratio(cutoffIndexTotal[ply], cutoffs[ply]);
+    }
+
+    public double getExactRate(int ply) {
+        return ratio(exactValues[ply], sampledNodes[ply]);
+    }
+
+    public double getFailHighRate(int ply) {
+        return ratio(lowerBounds[ply], sampledNodes[ply]);
+    }
+
+    public double getFailLowRate(int ply) {
+        return ratio(upperBounds[ply], sampledNodes[ply]);
+    }
+
+    public long getSampledPlayouts() {
+        return sampledPlayouts;
+    }
+
+    public long getRootSnapshots(int bucket) {
+        return rootSnapshots[bucket];
+    }
+
+    /**
+     * Returns the average share of root visits that went to the most visited move.
+     *
+     * @param bucket Part of the search, 0 for the first 1 / PROGRESS_BUCKETS of the playouts.
+     */
+    public double getTopMoveShare(int bucket) {
+        return ratio(topMoveShares[bucket], rootSnapshots[bucket]);
+    }
+
+    /**
+     * Returns the average entropy in bits of the root visits. 0 means all visits went to one move.
+     */
+    public double getVisitEntropy(int bucket) {
+        return ratio(visitEntropies[bucket], rootSnapshots[bucket]);
+    }
+
+    /**
+     * Returns how often the most visited move was also the most visited at the end of the search.
+     */
+    public double getFinalMoveLeadRate(int bucket) {
+        return ratio(finalMoveLeads[bucket], rootSnapshots[bucket]);
+    }
+
+    public void printReport(PrintStream out) {
+        out.println(String.format(Locale.US, "Searches: %d (Monte Carlo: %d), sampled nodes: %d, sampled playouts: %d",
+                searches, monteCarloSearches, alphaBetaSamples, sampledPlayouts));
+
+        out.println();
+        out.println("Ply        Nodes     EBF   Sampled   Moves  Cutoff  First cut  Cut index  Exact  Fail high  Fail low");
+        for (int ply = 0; ply <= maxPly; ply++) {
+            out.println(String.format(Locale.US, "%3d %12d %7.2f %9d %7.1f %6.1f%% %9.1f%% %10.2f %5.1f%% %9.1f%% %8.1f%%",
+                    ply, nodes[ply], getEffectiveBranchingFactor(ply), sampledNodes[ply], getAverageMovesGenerated(ply),
+                    getCutoffRate(ply) * 100, getFirstMoveCutoffRate(ply) * 100, getAverageCutoffIndex(ply),
+                    getExactRate(ply) * 100, getFailHighRate(ply) * 100, getFailLowRate(ply) * 100));
+        }
+
+        if (sampledPlayouts > 0) {
+            out.println();
+            out.println("Search   Snapshots  Top move  Entropy  Final move leads");
+            for (int i = 0; i < PROGRESS_BUCKETS; i++) {
+                out.println(String.format(Locale.US, "%3d-%3d%% %9d %8.1f%% %8.2f %16.1f%%",
+                        i * 100 / PROGRESS_BUCKETS, (i + 1) * 100 / PROGRESS_BUCKETS, rootSnapshots[i],
+                        getTopMoveShare(i) * 100, getVisitEntropy(i), getFinalMoveLeadRate(i) * 100));
+            }
+
+            out.println();
+            out.println("Ply  Sampled nodes  Visits  Value");
+            for (int ply = 0; ply < MAX_PLIES; ply++) {
+                if (sampledMonteCarloNodes[ply] == 0) continue;
+                out.println(String.format(Locale.US, "%3d %14d %7.1f %6.3f", ply, sampledMonteCarloNodes[ply],
+                        ratio(monteCarloVisits[ply], sampledMonteCarloNodes[ply]),
+                        monteCarloValues[ply] / sampledMonteCarloNodes[ply]));
+            }
+        }
+    }
+
+    private static double ratio(double value, double total) {
+        return (total > 0) ? value / total : 0;
+    }
+
+    private static class RootSnapshot {
+        private int playout;
+        private long mostVisitedMove;
+        private double topMoveShare;
+        private double entropy;
+    }
+}
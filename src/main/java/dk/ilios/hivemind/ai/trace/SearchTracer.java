@@ -0,0 +1,252 @@
+package dk.ilios.hivemind.ai.trace;
+
+import dk.ilios.hivemind.game.Game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a sampled trace of the search trees of an AI to a compact binary file, that can be analyzed afterwards with
+ * <code>SearchTraceAnalyzer</code>, eg. to tune move ordering and pruning.
+ *
+ * All nodes are counted pr. ply, but only a random sample of nodes is written: For Alpha-Beta searches 1 of every
+ * <code>sampleInterval</code> nodes that have been searched, and for Monte Carlo searches the path of 1 of every
+ * <code>sampleInterval</code> playouts together with the visits of all root moves at that time. With the default
+ * interval and buffered output the tracer can stay enabled during real matches.
+ *
+ * Format, all values big endian:
+ * - Header: MAGIC (int), VERSION (short), sample interval (int).
+ * - SEARCH_START: AI name (UTF), white to move (boolean), moves made by the player to move (short).
+ * - ALPHA_BETA_NODE: ply (byte), remaining depth (byte), alpha, beta and value (int), bound (byte), moves generated
+ *   (short), index of the move that caused a cutoff or -1 (short), best or cutoff move (long, see MoveEncoder).
+ * - MONTE_CARLO_NODE: ply (byte), playout (int), move (long), visits (int), total result (int).
+ * - MONTE_CARLO_ROOT: playout (int), root moves (short), and for each root move: move (long), visits (int), total
+ *   result (int).
+ * - SEARCH_END: playouts (int), plies (byte), and for each ply the number of nodes (long).
+ *
+ * A search is ended when the next one starts or the tracer is closed. A tracer must only be used by one AI at a time
+ * and isn't thread safe. Errors writing the trace stop the tracing and are thrown by <code>close()</code>, so they
+ * never interrupt a search.
+ */
+public class SearchTracer {
+
+    public static final int MAGIC = 0x48565452; // "HVTR"
+    public static final int VERSION = 1;
+    public static final int DEFAULT_SAMPLE_INTERVAL = 1000;
+
+    // Record types
+    public static final byte SEARCH_START = 1;
+    public static final byte ALPHA_BETA_NODE = 2;
+    public static final byte MONTE_CARLO_NODE = 3;
+    public static final byte MONTE_CARLO_ROOT = 4;
+    public static final byte SEARCH_END = 5;
+
+    // Bound types of Alpha-Beta nodes
+    public static final byte EXACT = 0;
+    public static final byte LOWER_BOUND = 1;   // Fail high, ie. value >= beta
+    public static final byte UPPER_BOUND = 2;   // Fail low, ie. value <= alpha
+
+    public static final int MAX_PLIES = 64;     // Nodes deeper than this are counted at the last ply
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream output;
+    private final int sampleInterval;
+    private long random;
+    private IOException error;
+
+    private boolean searching;
+    private final long[] nodesPrPly = new long[MAX_PLIES];
+    private int maxPly = -1;
+    private int playouts;
+    private boolean playoutSampled;
+
+    /**
+     * Trace to a file using the default sample interval.
+     */
+    public SearchTracer(File file) throws IOException {
+        this(new FileOutputStream(file), DEFAULT_SAMPLE_INTERVAL, System.nanoTime());
+    }
+
+    /**
+     * @param output Stream to write the trace to. It is buffered by the tracer and closed by <code>close()</code>.
+     * @param sampleInterval On average 1 of this many nodes or playouts is written. 1 writes all of them.
+     * @param seed Seed for choosing the samples.
+     */
+    public SearchTracer(OutputStream output, int sampleInterval, long seed) throws IOException {
+        if (sampleInterval < 1) throw new IllegalArgumentException("Sample interval must be positive: " + sampleInterval);
+        this.output = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        this.sampleInterval = sampleInterval;
+        this.random = (seed == 0) ? 1 : seed; // Xorshift never leaves 0
+        this.output.writeInt(MAGIC);
+        this.output.writeShort(VERSION);
+        this.output.writeInt(sampleInterval);
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Start tracing a new search from the given game state. Ends the previous search, if any.
+     */
+    public void startSearch(String ai, Game state) {
+        endSearch();
+        searching = true;
+        try {
+            output.writeByte(SEARCH_START);
+            output.writeUTF(ai);
+            output.writeBoolean(state.getActivePlayer().isWhitePlayer());
+            output.writeShort(state.getActivePlayer().getMoves());
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Count a node at the given ply. The root is ply 0.
+     */
+    public void nodeVisited(int ply) {
+        if (ply >= MAX_PLIES) ply = MAX_PLIES - 1;
+        nodesPrPly[ply]++;
+        if (ply > maxPly) maxPly = ply;
+    }
+
+    /**
+     * Returns true if the next node should be traced.
+     */
+    public boolean sampleNode() {
+        if (error != null) return false;
+        if (sampleInterval == 1) return true;
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (random >>> 1) % sampleInterval == 0;
+    }
+
+    /**
+     * Trace an Alpha-Beta node after all its moves have been searched.
+     *
+     * @param alpha Alpha when the node was entered.
+     * @param beta Beta when the node was entered.
+     * @param cutoffIndex Index of the move that caused a cutoff or -1 if all moves were searched.
+     * @param move Encoded move that caused the cutoff or the best move, see MoveEncoder.
+     */
+    public void traceAlphaBetaNode(int ply, int depth, int alpha, int beta, int value, int moves, int cutoffIndex, long move) {
+        byte bound = EXACT;
+        if (value >= beta) {
+            bound = LOWER_BOUND;
+        } else if (value <= alpha) {
+            bound = UPPER_BOUND;
+        }
+
+        try {
+            output.writeByte(ALPHA_BETA_NODE);
+            output.writeByte(Math.min(ply, Byte.MAX_VALUE));
+            output.writeByte(Math.max(Byte.MIN_VALUE, Math.min(depth, Byte.MAX_VALUE)));
+            output.writeInt(alpha);
+            output.writeInt(beta);
+            output.writeInt(value);
+            output.writeByte(bound);
+            output.writeShort(moves);
+            output.writeShort(cutoffIndex);
+            output.writeLong(move);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Must be called before each Monte Carlo playout. Returns true if the playout is sampled, ie. its path should be
+     * traced using <code>traceMonteCarloNode()</code> and the root using <code>traceMonteCarloRoot()</code>.
+     */
+    public boolean startPlayout() {
+        playouts++;
+        playoutSampled = sampleNode();
+        return playoutSampled;
+    }
+
+    /**
+     * Returns true if the current playout is sampled.
+     */
+    public boolean isPlayoutSampled() {
+        return playoutSampled;
+    }
+
+    /**
+     * Trace a Monte Carlo node after it has been updated with the result of the current playout.
+     */
+    public void traceMonteCarloNode(int ply, long move, int visits, int totalResult) {
+        try {
+            output.writeByte(MONTE_CARLO_NODE);
+            output.writeByte(Math.min(ply, Byte.MAX_VALUE));
+            output.writeInt(playouts);
+            output.writeLong(move);
+            output.writeInt(visits);
+            output.writeInt(totalResult);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Trace the visits and results of all root moves before the current playout.
+     */
+    public void traceMonteCarloRoot(long[] moves, int[] visits, int[] totalResults) {
+        try {
+            output.writeByte(MONTE_CARLO_ROOT);
+            output.writeInt(playouts);
+            output.writeShort(moves.length);
+            for (int i = 0; i < moves.length; i++) {
+                output.writeLong(moves[i]);
+                output.writeInt(visits[i]);
+                output.writeInt(totalResults[i]);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * End the current search and close the trace. Throws the first error that happened while writing the trace.
+     */
+    public void close() throws IOException {
+        endSearch();
+        try {
+            output.close();
+        } catch (IOException e) {
+            failed(e);
+        }
+        if (error != null) throw error;
+    }
+
+    private void endSearch() {
+        if (!searching) return;
+        try {
+            output.writeByte(SEARCH_END);
+            output.writeInt(playouts);
+            output.writeByte(maxPly + 1);
+            for (int i = 0; i <= maxPly; i++) {
+                output.writeLong(nodesPrPly[i]);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+
+        searching = false;
+        for (int i = 0; i <= maxPly; i++) {
+            nodesPrPly[i] = 0;
+        }
+        maxPly = -1;
+        playouts = 0;
+        playoutSampled = false;
+    }
+
+    private void failed(IOException e) {
+        if (error == null) error = e;
+    }
+}
@@ -0,0 +1,378 @@
+package dk.ilios.hivemind.ai.transpositiontable;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.MoveEncoder;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.ZobristTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transposition table stored off-heap in a memory-mapped file, so results survive between processes. A new process
+ * that opens the same file starts with all the results found by earlier runs, eg. the deep searches of common
+ * openings in a long tournament.
+ *
+ * The file starts with a header describing the format and the Zobrist tables used for the keys. If the header doesn't
+ * match the current code or the requested size, the table is cleared, as the stored keys would be useless.
+ *
+ * The header also names the owner of the values, see <code>AbstractMinMaxAI.getTranspositionTableOwner()</code>.
+ * Values are only comparable when they come from the same AI and heuristic, so a file owned by another AI is rejected
+ * instead of being mixed with new results.
+ *
+ * After the header follows a power of two number of buckets, each with 4 slots of 4 longs:
+ * - Key ^ data ^ move
+ * - Data: Value (32 bits), depth (8 bits), node type (2 bits) and a bit marking the slot as used.
+ * - Move: Best move encoded by <code>MoveEncoder</code>, so it is valid in any game reaching the same position.
+ * - Verification key ^ data ^ move
+ *
+ * Slots are written without locking. A slot written by two threads at the same time, or only partially written when
+ * a process died, fails the XOR check and is treated as empty [1]. The verification key protects against two positions
+ * sharing a Zobrist key, which becomes likely when billions of positions are stored across runs.
+ *
+ * When a bucket is full, the entry with the smallest depth is replaced. Results for the same position are replaced if
+ * the new search is as least as deep, like in <code>TranspositionTable</code>.
+ *
+ * Results stored for game states use the verification key of the game and keep the best move. Results stored for a
+ * raw Zobrist key have no board to encode the move relative to and no independent key, so they are read back
+ * without a best move, and their verification word is derived from the key itself. It still detects torn writes, but
+ * not two positions sharing a key.
+ *
+ * @see [1] http://www.craftychess.com/hyatt/hashing.html
+ */
+public class PersistentTranspositionTable extends TranspositionTable {
+
+    public static final long GB = 1L << 30;
+    public static final long MB = 1L << 20;
+
+    public static final long MAGIC = 0x48495645545421L; // "HIVETT!"
+    public static final int FORMAT_VERSION = 2;
+    public static final int MAX_OWNER_LENGTH = 1024; // Bytes in UTF-8
+
+    private static final int HEADER_SIZE = 4096;
+    private static final int SLOTS = 4;
+    private static final int SLOT_SIZE = 4 * 8;
+    private static final int BUCKET_SIZE = SLOTS * SLOT_SIZE;
+    private static final int SEGMENT_BITS = 30;     // A single MappedByteBuffer can at most be 2 GB, so map 1 GB at a time.
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+    private static final int FILL_RATE_SAMPLE_BUCKETS = 256;
+    private static final int OWNER_OFFSET = 48;
+
+    // Data word
+    private static final long USED_BIT = 1L << 42;
+    private static final int DEPTH_OFFSET = 128;
+
+    // Multiplier used to derive the verification word for raw keys
+    private static final long RAW_KEY_VERIFICATION = 0x9E3779B97F4A7C15L;
+
+    private final File file;
+    private final String owner;
+    private final byte[] ownerBytes;
+    private final long buckets;
+    private final long bucketMask;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private final boolean reloaded;
+    private final AtomicLong collisions = new AtomicLong();
+
+    /**
+     * Open a table stored in the given file. It is created if it doesn't exist.
+     *
+     * @param file File to store the table in.
+     * @param sizeInBytes Maximum size of the file, eg. 4 * GB. The number of buckets is rounded down to a power of 2.
+     * @param owner Identifies the AI and heuristic the values come from.
+     * @throws IOException if the file cannot be opened or contains a table owned by someone else.
+     */
+    public PersistentTranspositionTable(File file, long sizeInBytes, String owner) throws IOException {
+        if (sizeInBytes < HEADER_SIZE + BUCKET_SIZE) throw new IllegalArgumentException("Table is too small: " + sizeInBytes);
+        this.file = file;
+        this.owner = owner;
+        this.ownerBytes = owner.getBytes("UTF-8");
+        if (ownerBytes.length > MAX_OWNER_LENGTH) throw new IllegalArgumentException("Owner is too long: " + owner);
+        this.buckets = Long.highestOneBit((sizeInBytes - HEADER_SIZE) / BUCKET_SIZE);
+        this.bucketMask = buckets - 1;
+
+        long fileSize = HEADER_SIZE + buckets * BUCKET_SIZE;
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        boolean validFile = randomAccessFile.length() == fileSize;
+        if (!validFile) {
+            randomAccessFile.setLength(0); // Make sure no old data survives
+            randomAccessFile.setLength(fileSize);
+        }
+
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        int segmentCount = (int) (((buckets * BUCKET_SIZE) + SEGMENT_MASK) >>> SEGMENT_BITS);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long position = (long) i << SEGMENT_BITS;
+            long size = Math.min(1L << SEGMENT_BITS, buckets * BUCKET_SIZE - position);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + position, size);
+        }
+
+        reloaded = validFile && isHeaderValid();
+        if (reloaded && !isOwnerValid()) {
+            String fileOwner = readOwner();
+            close();
+            throw new IOException("Transposition table in " + file + " belongs to " + fileOwner + ", not " + owner);
+        }
+        if (!validFile) {
+            writeHeader(); // New files are already filled with zeros
+        } else if (!reloaded) {
+            clear();
+        }
+    }
+
+    /**
+     * Returns true if the table contained results from an earlier run when it was opened.
+     */
+    public boolean isReloaded() {
+        return reloaded;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the number of entries that can be stored.
+     */
+    public long getCapacity() {
+        return buckets * SLOTS;
+    }
+
+    /**
+     * Returns the part of the slots that are in use, estimated from the first buckets of the table. Keys are spread
+     * evenly across buckets, so a small sample is enough.
+     */
+    @Override
+    public double getFillRate() {
+        long sampleBuckets = Math.min(buckets, FILL_RATE_SAMPLE_BUCKETS);
+        int used = 0;
+        for (long slot = 0; slot < sampleBuckets * BUCKET_SIZE; slot += SLOT_SIZE) {
+            if ((getLong(slot + 8) & USED_BIT) != 0) used++;
+        }
+        return used / (double) (sampleBuckets * SLOTS);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Store a result for a raw Zobrist key. The best move is not stored, see the class description.
+     */
+    @Override
+    public void addResult(long zobristKey, int value, int depth, int valueType, GameCommand bestMove) {
+        addResult(zobristKey, getRawVerificationKey(zobristKey), encodeData(value, depth, valueType), MoveEncoder.NO_MOVE);
+    }
+
+    /**
+     * Return the result for a raw Zobrist key or null if it isn't known. The best move of the entry is always null.
+     */
+    @Override
+    public TranspositionTableEntry getResult(long zobristKey) {
+        long slot = findSlot(zobristKey, getRawVerificationKey(zobristKey));
+        if (slot < 0) return null;
+        long data = getLong(slot + 8);
+        return new TranspositionTableEntry((int) data, decodeDepth(data), decodeType(data), null);
+    }
+
+    @Override
+    public void addResult(Game state, Player perspective, int value, int depth, int valueType, GameCommand bestMove) {
+        long move = MoveEncoder.encode(state.getBoard(), bestMove);
+        addResult(getKey(state, perspective), getVerificationKey(state, perspective), encodeData(value, depth, valueType), move);
+    }
+
+    @Override
+    public TranspositionTableEntry getResult(Game state, Player perspective) {
+        long slot = findSlot(getKey(state, perspective), getVerificationKey(state, perspective));
+        if (slot < 0) return null;
+        long data = getLong(slot + 8);
+        return new TranspositionTableEntry((int) data, decodeDepth(data), decodeType(data), MoveEncoder.decode(state, getLong(slot + 16)));
+    }
+
+    private void addResult(long key, long verificationKey, long data, long move) {
+        int depth = decodeDepth(data);
+        long bucket = getBucket(key);
+        long replace = -1;
+        int replaceDepth = Integer.MAX_VALUE;
+        for (int i = 0; i < SLOTS; i++) {
+            long slot = bucket + i * SLOT_SIZE;
+            long slotData = getLong(slot + 8);
+            if ((slotData & USED_BIT) == 0) {
+                if (replaceDepth > Integer.MIN_VALUE) {
+                    replace = slot;
+                    replaceDepth = Integer.MIN_VALUE; // Empty slots are used before replacing anything
+                }
+                continue;
+            }
+
+            long slotMove = getLong(slot + 16);
+            if ((getLong(slot) ^ slotData ^ slotMove) == key && (getLong(slot + 24) ^ slotData ^ slotMove) == verificationKey) {
+                if (depth >= decodeDepth(slotData)) {
+                    writeSlot(slot, key, verificationKey, data, move);
+                }
+                return;
+            }
+
+            int slotDepth = decodeDepth(slotData);
+            if (slotDepth < replaceDepth) {
+                replace = slot;
+                replaceDepth = slotDepth;
+            }
+        }
+
+        writeSlot(replace, key, verificationKey, data, move);
+    }
+
+    // Returns the position of the slot with the given keys or -1 if there is none
+    private long findSlot(long key, long verificationKey) {
+        long bucket = getBucket(key);
+        for (int i = 0; i < SLOTS; i++) {
+            long slot = bucket + i * SLOT_SIZE;
+            long data = getLong(slot + 8);
+            long move = getLong(slot + 16);
+            if ((data & USED_BIT) != 0 && (getLong(slot) ^ data ^ move) == key) {
+                if ((getLong(slot + 24) ^ data ^ move) == verificationKey) {
+                    return slot;
+                }
+                collisions.incrementAndGet();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of lookups that found an entry with the same key, but a different verification key.
+     */
+    @Override
+    public long getCollisions() {
+        return collisions.get();
+    }
+
+    /**
+     * Remove all entries and write a new header.
+     */
+    public synchronized void clear() {
+        for (MappedByteBuffer segment : segments) {
+            for (int i = 0; i < segment.capacity(); i += 8) {
+                segment.putLong(i, 0);
+            }
+        }
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        header.putLong(0, MAGIC);
+        header.putInt(8, FORMAT_VERSION);
+        header.putInt(12, ZobristTable.VERSION);
+        header.putLong(16, ZobristTable.SEED);
+        header.putLong(24, ZobristTable.VERIFICATION_SEED);
+        header.putLong(32, buckets);
+        header.putInt(40, SLOTS);
+        header.putInt(44, SLOT_SIZE);
+        header.putInt(OWNER_OFFSET, ownerBytes.length);
+        for (int i = 0; i < ownerBytes.length; i++) {
+            header.put(OWNER_OFFSET + 4 + i, ownerBytes[i]);
+        }
+        flush();
+    }
+
+    /**
+     * Write all changes to disk. Changes are also written by the OS on its own, but without this a crash of the machine
+     * can lose them.
+     */
+    public synchronized void flush() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Flush and close the file. The table cannot be used afterwards.
+     */
+    public synchronized void close() throws IOException {
+        flush();
+        channel.close();
+        randomAccessFile.close();
+    }
+
+    private boolean isHeaderValid() {
+        return header.getLong(0) == MAGIC
+                && header.getInt(8) == FORMAT_VERSION
+                && header.getInt(12) == ZobristTable.VERSION
+                && header.getLong(16) == ZobristTable.SEED
+                && header.getLong(24) == ZobristTable.VERIFICATION_SEED
+                && header.getLong(32) == buckets
+                && header.getInt(40) == SLOTS
+                && header.getInt(44) == SLOT_SIZE;
+    }
+
+    private boolean isOwnerValid() {
+        if (header.getInt(OWNER_OFFSET) != ownerBytes.length) return false;
+        for (int i = 0; i < ownerBytes.length; i++) {
+            if (header.get(OWNER_OFFSET + 4 + i) != ownerBytes[i]) return false;
+        }
+        return true;
+    }
+
+    private String readOwner() throws IOException {
+        int length = Math.max(0, Math.min(MAX_OWNER_LENGTH, header.getInt(OWNER_OFFSET)));
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = header.get(OWNER_OFFSET + 4 + i);
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    private static long getRawVerificationKey(long key) {
+        return Long.reverse(key) * RAW_KEY_VERIFICATION;
+    }
+
+    private long getBucket(long key) {
+        return ((key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+
+    private void writeSlot(long slot, long key, long verificationKey, long data, long move) {
+        putLong(slot, key ^ data ^ move);
+        putLong(slot + 8, data);
+        putLong(slot + 16, move);
+        putLong(slot + 24, verificationKey ^ data ^ move);
+    }
+
+    private long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    private void putLong(long position, long value) {
+        segments[(int) (position >>> SEGMENT_BITS)].putLong((int) (position & SEGMENT_MASK), value);
+    }
+
+    private static long encodeData(int value, int depth, int type) {
+        long storedDepth = Math.max(0, Math.min(255, depth + DEPTH_OFFSET));
+        return (value & 0xFFFFFFFFL) | (storedDepth << 32) | ((long) (type & 3) << 40) | USED_BIT;
+    }
+
+    private static int decodeDepth(long data) {
+        return (int) ((data >>> 32) & 0xFF) - DEPTH_OFFSET;
+    }
+
+    private static int decodeType(long data) {
+        return (int) ((data >>> 40) & 3);
+    }
+}
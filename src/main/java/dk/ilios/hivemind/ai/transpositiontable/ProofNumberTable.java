@@ -0,0 +1,99 @@
+package dk.ilios.hivemind.ai.transpositiontable;
+
+/**
+ * Compact table of solved positions for the Proof-Number search.
+ *
+ * Only solved results are stored, ie. either "proven" (attacker can win within X plies) or "disproven" (attacker
+ * cannot win within X plies). Entries are kept in flat primitive arrays indexed by the lower bits of the Zobrist key,
+ * so a table with 2^20 slots uses ~10 MB no matter how many positions are searched.
+ *
+ * A proven result remains valid for any larger search horizon, while a disproven result remains valid for any smaller
+ * search horizon.
+ *
+ * @see http://en.wikipedia.org/wiki/Proof-number_search
+ */
+public class ProofNumberTable {
+
+    public static final int UNKNOWN = 0;
+    public static final int PROVEN = 1;
+    public static final int DISPROVEN = 2;
+
+    private final long[] keys;
+    private final byte[] results;   // UNKNOWN, PROVEN or DISPROVEN
+    private final byte[] plies;     // Search horizon for the result
+    private final int mask;
+
+    private int entries = 0;
+
+    /**
+     * Create a table with 2^sizeBits slots.
+     */
+    public ProofNumberTable(int sizeBits) {
+        if (sizeBits < 1 || sizeBits > 30) throw new IllegalArgumentException("Size must be between 1 and 30 bits: " + sizeBits);
+        int size = 1 << sizeBits;
+        keys = new long[size];
+        results = new byte[size];
+        plies = new byte[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Store a solved result for the given position.
+     *
+     * @param zobristKey Key for the position.
+     * @param result Either PROVEN or DISPROVEN.
+     * @param pliesLeft Number of plies the result was calculated for.
+     */
+    public void addResult(long zobristKey, int result, int pliesLeft) {
+        if (result != PROVEN && result != DISPROVEN) return;
+        int index = index(zobristKey);
+        pliesLeft = Math.min(pliesLeft, Byte.MAX_VALUE);
+
+        if (results[index] != UNKNOWN && keys[index] == zobristKey) {
+            // Keep the most general result for the same position
+            if (results[index] == result) {
+                if (result == PROVEN && plies[index] <= pliesLeft) return;
+                if (result == DISPROVEN && plies[index] >= pliesLeft) return;
+            } else if (results[index] == PROVEN && result == DISPROVEN && pliesLeft <= plies[index]) {
+                return; // A shorter horizon cannot overrule a proof.
+            }
+        } else if (results[index] == UNKNOWN) {
+            entries++;
+        }
+
+        keys[index] = zobristKey;
+        results[index] = (byte) result;
+        plies[index] = (byte) pliesLeft;
+    }
+
+    /**
+     * Returns the stored result for the position if it is valid for the given search horizon.
+     *
+     * @return PROVEN, DISPROVEN or UNKNOWN.
+     */
+    public int getResult(long zobristKey, int pliesLeft) {
+        int index = index(zobristKey);
+        if (results[index] == UNKNOWN || keys[index] != zobristKey) return UNKNOWN;
+        if (results[index] == PROVEN && plies[index] <= pliesLeft) return PROVEN;
+        if (results[index] == DISPROVEN && plies[index] >= pliesLeft) return DISPROVEN;
+        return UNKNOWN;
+    }
+
+    public void clear() {
+        for (int i = 0; i < results.length; i++) {
+            results[i] = UNKNOWN;
+        }
+        entries = 0;
+    }
+
+    /**
+     * Returns the number of slots in use.
+     */
+    public int size() {
+        return entries;
+    }
+
+    private int index(long zobristKey) {
+        return (int) (zobristKey ^ (zobristKey >>> 32)) & mask;
+    }
+}
@@ -1,6 +1,10 @@
 package dk.ilios.hivemind.ai.transpositiontable;
 
+import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.jfr.FlightRecorderEvents;
+import dk.ilios.hivemind.jfr.TranspositionTableResizeEvent;
+import dk.ilios.hivemind.model.Player;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -8,6 +12,9 @@ import java.util.Map;
 /**
  * Implementation of a Transposition table for an AlphaBetaMinimax algorithm
  *
+ * Values are relative to a player (the perspective), eg. the maximizing player in MiniMax or the player to move in
+ * Negamax. The perspective is part of the key, so an AI that plays both colors never sees values from the other side.
+ *
  * @see http://en.wikipedia.org/wiki/Transposition_table
  * @see http://www.gamedev.net/topic/503234-transposition-table-question/
  * @see http://homepages.cwi.nl/~paulk/theses/Carolus.pdf
@@ -15,12 +22,36 @@ import java.util.Map;
  */
 public class TranspositionTable {
 
-    private Map<Long, TranspositionTableEntry> table = new HashMap<Long, TranspositionTableEntry>();
+    // Random numbers XOR'ed into the keys when values are from the black players perspective
+    protected static final long BLACK_PERSPECTIVE = 0x2545F4914F6CDD1DL;
+    protected static final long BLACK_PERSPECTIVE_VERIFICATION = 0x5DEECE66D1B7E151L;
+
+    // Growth policy of java.util.HashMap, used to report when the table is resized.
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private Map<Long, TranspositionTableEntry> table = new HashMap<Long, TranspositionTableEntry>(INITIAL_CAPACITY, LOAD_FACTOR);
+    private int capacity = INITIAL_CAPACITY;
 
     public void addResult(long zobristKey, int value, int depth, int valueType, GameCommand bestMove) {
         TranspositionTableEntry existingEntry = table.get(zobristKey);
         if (existingEntry == null || depth >= existingEntry.depth) {
             table.put(zobristKey, new TranspositionTableEntry(value, depth, valueType, bestMove));
+            if (table.size() > capacity * LOAD_FACTOR) {
+                resized();
+            }
+        }
+    }
+
+    private void resized() {
+        int oldCapacity = capacity;
+        capacity *= 2;
+        if (FlightRecorderEvents.ENABLED) {
+            TranspositionTableResizeEvent event = new TranspositionTableResizeEvent();
+            event.entries = table.size();
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = capacity;
+            event.commit();
         }
     }
 
@@ -30,4 +61,64 @@ public class TranspositionTable {
     public TranspositionTableEntry getResult(long zobristKey) {
         return table.get(zobristKey);
     }
+
+    /**
+     * Store the result for the current game state.
+     *
+     * @param perspective Player the value is relative to.
+     */
+    public void addResult(Game state, Player perspective, int value, int depth, int valueType, GameCommand bestMove) {
+        addResult(getKey(state, perspective), value, depth, valueType, bestMove);
+    }
+
+    /**
+     * Return the already calculated value for the current game state or null if it isn't known.
+     *
+     * @param perspective Player the value should be relative to.
+     */
+    public TranspositionTableEntry getResult(Game state, Player perspective) {
+        return getResult(getKey(state, perspective));
+    }
+
+    /**
+     * Returns the part of the table that is in use, from 0 to 1. The table grows as needed, so this is the number of
+     * entries relative to the current capacity.
+     */
+    public double getFillRate() {
+        return table.size() / (double) capacity;
+    }
+
+    /**
+     * Returns the number of lookups where an entry for another position was found under the same key. Entries in this
+     * table are only identified by their 64 bit key, so collisions cannot be detected and 0 is returned.
+     */
+    public long getCollisions() {
+        return 0;
+    }
+
+    /**
+     * Returns the identifier of the AI and heuristic the values belong to, or null if the table accepts values from any
+     * AI. Only tables that outlive the AI using them have an owner.
+     *
+     * @see dk.ilios.hivemind.ai.AbstractMinMaxAI#getTranspositionTableOwner()
+     */
+    public String getOwner() {
+        return null;
+    }
+
+    /**
+     * Returns true if the table can be used by multiple searches at the same time. Such tables are shared between
+     * copies of an AI.
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    protected static long getKey(Game state, Player perspective) {
+        return perspective.isWhitePlayer() ? state.getZobristKey() : state.getZobristKey() ^ BLACK_PERSPECTIVE;
+    }
+
+    protected static long getVerificationKey(Game state, Player perspective) {
+        return perspective.isWhitePlayer() ? state.getVerificationKey() : state.getVerificationKey() ^ BLACK_PERSPECTIVE_VERIFICATION;
+    }
 }
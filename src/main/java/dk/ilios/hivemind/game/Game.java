@@ -7,7 +7,6 @@ import dk.ilios.hivemind.model.rules.Rules;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * General game state class for a game of Hive.
@@ -33,7 +32,7 @@ public class Game {
 
     private boolean useZobristKey = false;      // If true, a Zobrist key is maintained for the board position and game state.
     private long zobristKey = 0;                // Zobrist key for board + game state
-    private long[] playerHash = new long[2];
+    private long verificationKey = 0;           // Independent key for board + game state
 
     private boolean isRunning = false;      // Game is started and progressing
     private boolean manualStepping = false; // If true, continue() must be called after every move to progress the game (for debugging/testing)
@@ -65,6 +64,35 @@ public class Game {
         board = new Board(white, black);
     }
 
+    /**
+     * Create a copy of the game state that can be searched independently of this game, eg. on another thread.
+     * Players, tokens, board and move history are copied, and the copy has the same Zobrist keys as this game. Command providers, statistics and replay state are not copied.
+     */
+    public Game copy() {
+        Game copy = new Game();
+        Player white = whitePlayer.copy();
+        Player black = blackPlayer.copy();
+        copy.addPlayers(white, black);
+        copy.board = board.copy(white, black);
+        copy.name = name;
+        copy.useZobristKey = useZobristKey;
+        copy.zobristKey = zobristKey;
+        copy.verificationKey = verificationKey;
+        copy.turnLimit = turnLimit;
+        copy.status = status;
+        if (activePlayer != null) {
+            copy.activePlayer = activePlayer.isWhitePlayer() ? white : black;
+        }
+        for (GameCommand move : moves) {
+            copy.moves.add(move.copyFor(copy));
+        }
+        copy.enforceForcedDraw = enforceForcedDraw;
+        copy.repeatMovesBeforeForcedDraw = repeatMovesBeforeForcedDraw;
+        copy.whiteDuplicateMoves = whiteDuplicateMoves;
+        copy.blackDuplicateMoves = blackDuplicateMoves;
+        return copy;
+    }
+
     /**
      * Resets the game and start a new game.
      */
@@ -73,6 +101,7 @@ public class Game {
         board.clear();
         moves.clear();
         activePlayer = whitePlayer;
+        updateZobristKey();
 
         // Start the game loop
         statistics.startGame();
@@ -379,20 +408,49 @@ public class Game {
     public void setStandardPositionMode(StandardPositionMode mode) {
         board.setStandardPositionMode(mode);
         useZobristKey = (mode != StandardPositionMode.DISABLED);
-
-        // Initialize Game state hashes
-        Random random = new Random();
-        playerHash[0] = random.nextLong();
-        playerHash[1] = random.nextLong();
     }
 
     public long getZobristKey() {
         return zobristKey;
     }
 
+    /**
+     * Returns true if a Zobrist key is maintained for the game state.
+     */
+    public boolean isUsingZobristKey() {
+        return useZobristKey;
+    }
+
+    /**
+     * Returns a second Zobrist key for the game state, calculated from an independent table. It can be used to detect
+     * collisions between game states with the same Zobrist key.
+     */
+    public long getVerificationKey() {
+        return verificationKey;
+    }
+
+    /**
+     * Update the Zobrist keys for the game state. Besides the board, the keys include the player to move, the supply
+     * of both players and whether the player to move must place the queen this turn, as all of these change the legal
+     * moves.
+     */
     public void updateZobristKey() {
         if (useZobristKey) {
-            zobristKey = board.getZobristKey() ^ playerHash[getColorIndex(getActivePlayer())];
+            Player player = getActivePlayer();
+            int color = getColorIndex(player);
+            boolean queenDeadline = player.getMoves() == 3 && !player.hasPlacedQueen();
+
+            zobristKey = board.getZobristKey()
+                    ^ ZobristTable.PRIMARY.getPlayerHash(color)
+                    ^ whitePlayer.getSupplyKey()
+                    ^ blackPlayer.getSupplyKey()
+                    ^ (queenDeadline ? ZobristTable.PRIMARY.getQueenDeadlineHash(color) : 0);
+
+            verificationKey = board.getVerificationKey()
+                    ^ ZobristTable.VERIFICATION.getPlayerHash(color)
+                    ^ whitePlayer.getSupplyVerificationKey()
+                    ^ blackPlayer.getSupplyVerificationKey()
+                    ^ (queenDeadline ? ZobristTable.VERIFICATION.getQueenDeadlineHash(color) : 0);
         }
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package dk.ilios.hivemind.game;
 
 import dk.ilios.hivemind.model.Board;
 import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Player;
 import dk.ilios.hivemind.model.Token;
 
 public class GameCommand {
@@ -43,6 +44,17 @@ public class GameCommand {
         this.movedByPillbug = movedByPillbug;
     }
 
+    /**
+     * Returns the same command for a copy of the game, ie. using the token with the same id from that game.
+     *
+     * @see dk.ilios.hivemind.game.Game#copy()
+     */
+    public GameCommand copyFor(Game game) {
+        if (token == null) return this;
+        Player player = token.getPlayer().isWhitePlayer() ? game.getWhitePlayer() : game.getBlackPlayer();
+        return new GameCommand(fromQ, fromR, toQ, toR, player.get(token.getId()), movedByPillbug);
+    }
+
     public int getFromQ() {
         return fromQ;
     }
@@ -136,4 +148,14 @@ public class GameCommand {
         if (movedByPillbug != gc2.isMovedByPillbug()) return false;
         return (token == null && gc2.getToken() == null) || token.equals(gc2.getToken());
     }
+
+    @Override
+    public int hashCode() {
+        int result = fromQ;
+        result = 31 * result + fromR;
+        result = 31 * result + toQ;
+        result = 31 * result + toR;
+        result = 31 * result + (movedByPillbug ? 1 : 0);
+        return 31 * result + (token != null ? token.hashCode() : 0);
+    }
 }
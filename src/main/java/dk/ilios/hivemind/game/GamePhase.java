@@ -0,0 +1,30 @@
+package dk.ilios.hivemind.game;
+
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.Player;
+
+/**
+ * Rough phase of a game as seen from the active player.
+ */
+public enum GamePhase {
+    OPENING,    // The active player hasn't made the moves in which the queen must be placed yet
+    MIDGAME,
+    ENDGAME;    // A queen is close to being surrounded
+
+    private static final int OPENING_MOVES = 4;     // Moves before the queen must be placed
+    private static final int ENDGAME_NEIGHBORS = 4; // Tokens around a queen before the endgame starts
+
+    public static GamePhase of(Game state) {
+        if (state.getActivePlayer().getMoves() < OPENING_MOVES) {
+            return OPENING;
+        } else if (isQueenThreatened(state.getWhitePlayer(), state.getBoard()) || isQueenThreatened(state.getBlackPlayer(), state.getBoard())) {
+            return ENDGAME;
+        } else {
+            return MIDGAME;
+        }
+    }
+
+    private static boolean isQueenThreatened(Player player, Board board) {
+        return player.hasPlacedQueen() && board.getNeighborTokens(player.getQueen().getHex()).size() >= ENDGAME_NEIGHBORS;
+    }
+}
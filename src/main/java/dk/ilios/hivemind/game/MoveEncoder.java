@@ -0,0 +1,109 @@
+package dk.ilios.hivemind.game;
+
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.BugType;
+import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.Token;
+
+/**
+ * Encodes moves as a single long that can be saved to disk, eg. in transposition tables or opening books.
+ *
+ * Coordinates are saved in the canonical orientation of the board, see <code>Board.getCanonicalQ()</code>, and tokens
+ * by their color and type, so a move can be decoded in any game that reaches a position with the same Zobrist key.
+ *
+ * Layout:
+ * - Bit 0: Set for all moves, so 0 means "no move".
+ * - Bit 1: Pass.
+ * - Bit 2: Black token.
+ * - Bit 3-6: Bug type.
+ * - Bit 7: Moved by pillbug.
+ * - Bit 8: Placed from the supply.
+ * - Bit 16-31: From coordinates (Q, R). 8 bits each.
+ * - Bit 32-47: To coordinates (Q, R). 8 bits each.
+ */
+public final class MoveEncoder {
+
+    public static final long NO_MOVE = 0;
+
+    private static final long HAS_MOVE = 1L;
+    private static final long PASS = 1L << 1;
+    private static final long BLACK = 1L << 2;
+    private static final long PILLBUG = 1L << 7;
+    private static final long SUPPLY = 1L << 8;
+    private static final int COORDINATE_OFFSET = 128;
+
+    private static final BugType[] BUG_TYPES = BugType.values();
+
+    private MoveEncoder() {
+        // Only static methods
+    }
+
+    /**
+     * Encode a move for the current board.
+     *
+     * @param move Move to encode or null.
+     * @return The encoded move or NO_MOVE if move is null.
+     */
+    public static long encode(Board board, GameCommand move) {
+        if (move == null) return NO_MOVE;
+        if (move.getToken() == null) return HAS_MOVE | PASS;
+
+        Token token = move.getToken();
+        long result = HAS_MOVE;
+        if (token.getPlayer().isBlack()) result |= BLACK;
+        result |= (long) token.getOriginalType().ordinal() << 3;
+        if (move.isMovedByPillbug()) result |= PILLBUG;
+        if (move.getFromQ() == Hex.SUPPLY) {
+            result |= SUPPLY;
+        } else {
+            result |= encodeCoordinate(board.getCanonicalQ(move.getFromQ(), move.getFromR())) << 16;
+            result |= encodeCoordinate(board.getCanonicalR(move.getFromQ(), move.getFromR())) << 24;
+        }
+        result |= encodeCoordinate(board.getCanonicalQ(move.getToQ(), move.getToR())) << 32;
+        result |= encodeCoordinate(board.getCanonicalR(move.getToQ(), move.getToR())) << 40;
+        return result;
+    }
+
+    /**
+     * Decode a move for the current game state. Moves are not checked against the rules, only that the token exists.
+     *
+     * @return The move or null if it was NO_MOVE or the token cannot be found in the game.
+     */
+    public static GameCommand decode(Game state, long move) {
+        if ((move & HAS_MOVE) == 0) return null;
+        if ((move & PASS) != 0) return GameCommand.PASS;
+
+        Board board = state.getBoard();
+        Player player = ((move & BLACK) != 0) ? state.getBlackPlayer() : state.getWhitePlayer();
+        int typeIndex = (int) ((move >>> 3) & 0xF);
+        if (typeIndex >= BUG_TYPES.length) return null;
+        BugType type = BUG_TYPES[typeIndex];
+        int canonicalToQ = decodeCoordinate(move, 32);
+        int canonicalToR = decodeCoordinate(move, 40);
+        int toQ = board.getQForCanonicalPosition(canonicalToQ, canonicalToR);
+        int toR = board.getRForCanonicalPosition(canonicalToQ, canonicalToR);
+
+        if ((move & SUPPLY) != 0) {
+            if (!player.haveMoreTokens(type)) return null;
+            return GameCommand.addFromSupply(player.getFromSupply(type), toQ, toR);
+        }
+
+        int canonicalFromQ = decodeCoordinate(move, 16);
+        int canonicalFromR = decodeCoordinate(move, 24);
+        int fromQ = board.getQForCanonicalPosition(canonicalFromQ, canonicalFromR);
+        int fromR = board.getRForCanonicalPosition(canonicalFromQ, canonicalFromR);
+        Hex from = board.findHex(fromQ, fromR);
+        Token token = (from != null) ? from.getTopToken() : null;
+        if (token == null || token.getPlayer() != player || token.getOriginalType() != type) return null;
+        return new GameCommand(fromQ, fromR, toQ, toR, token, (move & PILLBUG) != 0);
+    }
+
+    private static long encodeCoordinate(int coordinate) {
+        return (coordinate + COORDINATE_OFFSET) & 0xFF;
+    }
+
+    private static int decodeCoordinate(long move, int offset) {
+        return (int) ((move >>> offset) & 0xFF) - COORDINATE_OFFSET;
+    }
+}
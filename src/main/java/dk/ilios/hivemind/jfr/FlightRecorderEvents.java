@@ -0,0 +1,41 @@
+package dk.ilios.hivemind.jfr;
+
+/**
+ * Java Flight Recorder [1] events for searches and game parsing.
+ *
+ * Events are disabled by default. Enable them with the system property "hivemind.jfr" and start a recording as usual,
+ * eg.:
+ *
+ *   java -Dhivemind.jfr=true -XX:StartFlightRecording=filename=hivemind.jfr ...
+ *
+ * The recording can then be opened in JDK Mission Control, where the events are found under "Hivemind" next to the
+ * JVM's own events, eg. garbage collections. Within a recording, single event types can be turned off in the settings
+ * like any other JFR event.
+ *
+ * All code creating events must check <code>ENABLED</code> first. It is a constant, so the JIT removes the checks when
+ * events are disabled. The event classes are only loaded when the flag is set, which keeps the engine working on JVMs
+ * without the <code>jdk.jfr</code> API.
+ *
+ * @see [1] https://docs.oracle.com/en/java/javase/17/jfapi/
+ */
+public final class FlightRecorderEvents {
+
+    public static final String PROPERTY = "hivemind.jfr";
+    public static final String CATEGORY = "Hivemind";
+
+    public static final boolean ENABLED = Boolean.getBoolean(PROPERTY) && isAvailable();
+
+    private FlightRecorderEvents() {
+        // Only constants
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            System.err.println("Flight Recorder events are not supported by this JVM.");
+            return false;
+        }
+    }
+}
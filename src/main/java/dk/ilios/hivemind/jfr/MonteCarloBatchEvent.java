@@ -0,0 +1,31 @@
+package dk.ilios.hivemind.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Monte Carlo Tree Search has played a batch of playouts.
+ */
+@Name("dk.ilios.hivemind.MonteCarloBatch")
+@Label("Monte Carlo Batch")
+@Category({FlightRecorderEvents.CATEGORY, "Search"})
+@Description("A batch of playouts in a Monte Carlo Tree Search")
+public class MonteCarloBatchEvent extends jdk.jfr.Event {
+
+    @Label("AI")
+    public String ai;
+
+    @Label("Playouts")
+    @Description("Playouts in this batch")
+    public int playouts;
+
+    @Label("Total Playouts")
+    @Description("Playouts in the search so far")
+    public int totalPlayouts;
+
+    @Label("Tree Size")
+    @Description("Nodes in the search tree")
+    public int treeSize;
+}
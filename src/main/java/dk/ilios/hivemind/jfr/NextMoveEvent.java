@@ -0,0 +1,30 @@
+package dk.ilios.hivemind.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An AI has calculated a move in a game.
+ */
+@Name("dk.ilios.hivemind.NextMove")
+@Label("Next Move")
+@Category({FlightRecorderEvents.CATEGORY, "Search"})
+@Description("An AI calculating its next move")
+public class NextMoveEvent extends jdk.jfr.Event {
+
+    @Label("AI")
+    public String ai;
+
+    @Label("Depth Reached")
+    @Description("Depth of the last search iteration that reported a best move or 0 if unknown")
+    public int depth;
+
+    @Label("Nodes")
+    @Description("Positions expanded, evaluated or solved while searching")
+    public long nodes;
+
+    @Label("Best Move")
+    public String bestMove;
+}
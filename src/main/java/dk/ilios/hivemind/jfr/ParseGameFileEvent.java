@@ -0,0 +1,30 @@
+package dk.ilios.hivemind.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Boardspace game file has been parsed and analyzed.
+ */
+@Name("dk.ilios.hivemind.ParseGameFile")
+@Label("Parse Game File")
+@Category({FlightRecorderEvents.CATEGORY, "Parser"})
+@Description("Parsing a game file and running all metrics on it")
+public class ParseGameFileEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Game Type")
+    public String gameType;
+
+    @Label("Parsed")
+    @Description("The file could be parsed")
+    public boolean parsed;
+
+    @Label("Analyzed")
+    @Description("The game passed all filters and was analyzed by the metrics")
+    public boolean analyzed;
+}
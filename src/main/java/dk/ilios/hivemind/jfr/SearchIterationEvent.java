@@ -0,0 +1,36 @@
+package dk.ilios.hivemind.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An Iterative Deepening search has completed an iteration.
+ */
+@Name("dk.ilios.hivemind.SearchIteration")
+@Label("Search Iteration")
+@Category({FlightRecorderEvents.CATEGORY, "Search"})
+@Description("A single Iterative Deepening iteration")
+public class SearchIterationEvent extends jdk.jfr.Event {
+
+    @Label("AI")
+    public String ai;
+
+    @Label("Depth")
+    public int depth;
+
+    @Label("Nodes")
+    @Description("Nodes visited in this iteration")
+    public long nodes;
+
+    @Label("Best Move")
+    public String bestMove;
+
+    @Label("Value")
+    public int value;
+
+    @Label("Aborted")
+    @Description("The iteration was stopped before it was complete")
+    public boolean aborted;
+}
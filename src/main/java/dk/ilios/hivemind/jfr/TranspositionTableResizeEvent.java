@@ -0,0 +1,23 @@
+package dk.ilios.hivemind.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A transposition table has grown.
+ */
+@Name("dk.ilios.hivemind.TranspositionTableResize")
+@Label("Transposition Table Resize")
+@Category({FlightRecorderEvents.CATEGORY, "Search"})
+public class TranspositionTableResizeEvent extends jdk.jfr.Event {
+
+    @Label("Entries")
+    public int entries;
+
+    @Label("Old Capacity")
+    public int oldCapacity;
+
+    @Label("New Capacity")
+    public int newCapacity;
+}
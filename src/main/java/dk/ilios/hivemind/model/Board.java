@@ -46,17 +46,19 @@ import java.util.*;
  * move very far. This minimizes the chance of origin changes or rotations. Analysis of Boardspace.net games has shown
  * that Queen Bee moves are only 4.8% of all moves.
  *
- * Note SP doesn't guarantee that all similar board positions have the same Zobrist Key [3]. Mirror or reflected boards
- * around the Q axis do not have the same Zobrist key. For now this is in acceptable inaccuracy as we still reduce
- * a board position from 12 different positions to 2.
+ * SP alone doesn't guarantee that all similar board positions have the same Zobrist Key [3], as mirrored boards are
+ * only flipped into place in the opening. Instead the board keeps 12 Zobrist keys, one for each rotation and
+ * reflection of the board around the SP origin, and uses the smallest one as the key for the board. This reduces all
+ * 12 symmetric variants of a position to a single key.
  *
  * << Insert example here >>
  *
- * A Zobrist key is maintained for the board state. It will be recalculated for rotations/flips/center changes, so
- * the Zobrist key is always calculated on the SP board.
+ * The symmetry keys are updated incrementally when tokens are added, moved or removed. They are relative to the SP
+ * origin, so they only have to be recalculated when the origin changes. Changes to the SP rotation or flip does not
+ * change any of them.
  *
- * Note the backing hashes for the Zobrist key have a pretty high memory requirement, due to the potential board size.
- * Currently about 51*51*7*2*8 bytes ~ 2.2 MB.
+ * The backing hashes for the Zobrist key have a pretty high memory requirement, due to the potential board size
+ * (51*51*7*2*8 longs ~ 2.3 MB), so they are shared by all boards. See <code>ZobristTable</code>.
  *
  * @see [1] Randy Ingersoll: Play Hive like a champion
  * @see [2] http://www.redblobgames.com/grids/hexagons/
@@ -64,6 +66,10 @@ import java.util.*;
  */
 public class Board {
 
+    public static final int SYMMETRIES = SymmetryTransform.SYMMETRIES; // 6 rotations x 2 reflections
+
+    private static final int SP_STATE_SIZE = 4; // Origin Q, origin R, rotation and flip
+
     private HiveAsciiPrettyPrinter printer = new HiveAsciiPrettyPrinter();
 
     private Map<String, Hex> hexes = new HashMap<String, Hex>(); // Key := (q,r), Value: hex. List of hexes visited in the game
@@ -79,43 +85,90 @@ public class Board {
     private int spRotation = 0;               // How many clockwise rotations are needed to achieve Standard Position
     private int[] spOrigin = new int[2];      // Displacement of origin
     private Token[] firstTokens = new Token[5]; // Keep track of the first 4 tokens placed on the board. 2 white and 2 black
+    private int[] spHistory = new int[32 * SP_STATE_SIZE]; // Standard Position before each token was added, restored when it is removed
 
-    // The board state is hashed as a Zobrist key.
-    long zobristKey = 0;
-
+    // The board state is hashed as a Zobrist key using the shared ZobristTable.
     // See [2] for details about storing hexagon maps.
-    // Maximum size is 26 tokens in each directions that can be stacked 7 high.
-    // This is not entirely true, but for simplicity we just use that as a first implementation
-    // q, r, height, color, token type
-    private long[][][][][] zobristHashes = new long[51][51][7][2][8];
+    // Token coordinates are limited to the largest possible hive around the origin, see ZobristTable.
+    long zobristKey = 0;
+    private long[] symmetryKeys = new long[SYMMETRIES]; // Keys for rotation 0-5, followed by the same rotations flipped
+    private long verificationKey = 0;                   // Independent key for the same symmetry as zobristKey
+    private long[] verificationKeys = new long[SYMMETRIES];
+    private int canonicalSymmetry = 0;                  // Index of the symmetry with the smallest key
 
     public Board(Player white, Player black) {
         this.whitePlayer = white;
         this.blackPlayer = black;
     }
 
-    private void loadZobristHashes() {
-        Random random = new Random();
-
-        // Create the zobrist hashes needed for all edges
-        // Is it possible to convert this to a recursive call?
-        for (int i = 0; i < zobristHashes.length; i++) {
-            long[][][][] d1 = zobristHashes[0];
-            for (int j = 0; j < d1.length; j++) {
-                long[][][] d2 = d1[j];
-                for (int k = 0; k < d2.length; k++) {
-                    long[][] d3 = d2[k];
-                    for (int l = 0; l < d3.length; l++) {
-                        long[] d4 = d3[l];
-                        for(int m = 0; m < d4.length; m++) {
-                            zobristHashes[i][j][k][l][m] = random.nextLong();
-                        }
-                    }
+    /**
+     * Create a copy of the board using the tokens of the given players, which must be copies of the players on this
+     * board.
+     *
+     * @see Player#copy()
+     */
+    public Board copy(Player white, Player black) {
+        Board copy = new Board(white, black);
+        copy.standardPosition = standardPosition;
+        copy.spQFlip = spQFlip;
+        copy.spRotation = spRotation;
+        copy.spOrigin = spOrigin.clone();
+        copy.spHistory = spHistory.clone();
+        copy.zobristKey = zobristKey;
+        copy.symmetryKeys = symmetryKeys.clone();
+        copy.verificationKey = verificationKey;
+        copy.verificationKeys = verificationKeys.clone();
+        copy.canonicalSymmetry = canonicalSymmetry;
+
+        for (Hex hex : getFilledHexes()) {
+            Hex copyHex = copy.findOrCreateHex(hex.getQ(), hex.getR());
+            for (int height = 1; height <= hex.getHeight(); height++) {
+                Token token = hex.getTokenAt(height);
+                Token copyToken = findCopy(token, white, black);
+                copyToken.mimic(token.getType() != token.getOriginalType() ? token.getType() : null);
+                copyHex.addToken(copyToken);
+                copyToken.setHex(copyHex);
+                copyToken.getPlayer().removeFromSupply(copyToken);
+                copy.tokens.add(copyToken);
+            }
+        }
+
+        for (int i = 0; i < firstTokens.length; i++) {
+            copy.firstTokens[i] = (firstTokens[i] != null) ? findCopy(firstTokens[i], white, black) : null;
+        }
+
+        return copy;
+    }
+
+    private Token findCopy(Token token, Player white, Player black) {
+        Player player = token.getPlayer().isWhitePlayer() ? white : black;
+        return player.get(token.getId());
+    }
+
+    /**
+     * Returns true if the other board has the same tokens stacked on the same hexes. Tokens are compared by color
+     * and id, so this also works for copies of the board.
+     */
+    public boolean hasSameLayout(Board other) {
+        List<Hex> filledHexes = getFilledHexes();
+        if (filledHexes.size() != other.getFilledHexes().size()) return false;
+
+        for (Hex hex : filledHexes) {
+            Hex otherHex = other.findHex(hex.getQ(), hex.getR());
+            if (otherHex == null || otherHex.getHeight() != hex.getHeight()) return false;
+            for (int height = 1; height <= hex.getHeight(); height++) {
+                Token token = hex.getTokenAt(height);
+                Token otherToken = otherHex.getTokenAt(height);
+                if (token.getPlayer().getType() != otherToken.getPlayer().getType() || !token.getId().equals(otherToken.getId())) {
+                    return false;
                 }
             }
         }
+
+        return true;
     }
 
+
     /**
      * Add a token to the board.
      */
@@ -126,6 +179,7 @@ public class Board {
         token.setHex(hex);
         token.getPlayer().removeFromSupply(token);
         tokens.add(token);
+        saveStandardPosition(tokens.size() - 1);
 
         updateZobristKey(token);
 
@@ -138,14 +192,16 @@ public class Board {
 
     private void maintainStandardPosition(Token token) {
         if (standardPosition == StandardPositionMode.DISABLED) return;
-        boolean rebuildZobristKey;
+        int oldOriginQ = spOrigin[0];
+        int oldOriginR = spOrigin[1];
         if (bothQueensPlaced() && standardPosition == StandardPositionMode.ENABLED) {
-            rebuildZobristKey = maintainSPForMidGame(token);
+            maintainSPForMidGame(token);
         } else {
-            rebuildZobristKey = maintainSPForOpenings(token);
+            maintainSPForOpenings(token);
         }
 
-        if (rebuildZobristKey) {
+        // Symmetry keys are relative to the origin, but doesn't depend on rotation or flip.
+        if (spOrigin[0] != oldOriginQ || spOrigin[1] != oldOriginR) {
             rebuildZobristKey();
         }
     }
@@ -156,7 +212,7 @@ public class Board {
 
     // INVARIANT: All tokens are placed in a legal position
     private boolean maintainSPForOpenings(Token token) {
-        boolean rebuildZobristKey = false;
+        boolean spChanged = false;
 
         if (firstTokens[4] != null ) {
             // Should only be called if standardPostion = StandardPostionMode.LIMITED
@@ -165,38 +221,38 @@ public class Board {
 
         } if (firstTokens[3] != null) {
             // TURN 4+, after turn 4 pieces can move
-            rebuildZobristKey = moveOrigin(firstTokens[0]) || rebuildZobristKey;
-            rebuildZobristKey = rotateToStandardPosition(firstTokens[1]) || rebuildZobristKey;
-            rebuildZobristKey = swapAxisIfNeededForThirdToken() || rebuildZobristKey;
-            rebuildZobristKey = swapAxisIfNeededForFourthToken() || rebuildZobristKey;
+            spChanged = moveOrigin(firstTokens[0]) || spChanged;
+            spChanged = rotateToStandardPosition(firstTokens[1]) || spChanged;
+            spChanged = swapAxisIfNeededForThirdToken() || spChanged;
+            spChanged = swapAxisIfNeededForFourthToken() || spChanged;
 
         } else if (firstTokens[2] != null) {
             // TURN 3
-            rebuildZobristKey = moveOrigin(firstTokens[0]) || rebuildZobristKey;
-            rebuildZobristKey = rotateToStandardPosition(firstTokens[1]) || rebuildZobristKey;
-            rebuildZobristKey = swapAxisIfNeededForThirdToken() || rebuildZobristKey;
+            spChanged = moveOrigin(firstTokens[0]) || spChanged;
+            spChanged = rotateToStandardPosition(firstTokens[1]) || spChanged;
+            spChanged = swapAxisIfNeededForThirdToken() || spChanged;
 
         } else if (firstTokens[1] != null) {
             // TURN 2
-            rebuildZobristKey = moveOrigin(firstTokens[0]) || rebuildZobristKey;
-            rebuildZobristKey = rotateToStandardPosition(firstTokens[1]) || rebuildZobristKey;
+            spChanged = moveOrigin(firstTokens[0]) || spChanged;
+            spChanged = rotateToStandardPosition(firstTokens[1]) || spChanged;
 
         } else if (firstTokens[0] != null) {
             // TURN 1
-            rebuildZobristKey = moveOrigin(token) || rebuildZobristKey;
+            spChanged = moveOrigin(token) || spChanged;
 
         } else {
             throw new IllegalStateException("Board is empty");
         }
 
-        return rebuildZobristKey;
+        return spChanged;
     }
 
     private boolean swapAxisIfNeededForThirdToken() {
-        int[] coords = getRotatedSPCoordinatesFor(firstTokens[2].getHex());
+        Hex hex = firstTokens[2].getHex();
         boolean oldFlip = spQFlip;
         // R must be negative for 3rd token to be in SP
-        if (coords[1] > 0) {
+        if (getRotatedSPCoordinateR(hex.getQ(), hex.getR()) > 0) {
             spQFlip = true;
         } else {
             spQFlip = false;
@@ -206,14 +262,14 @@ public class Board {
     }
 
     private boolean swapAxisIfNeededForFourthToken() {
-        int[] coords = getSPCoordinatesFor(firstTokens[2].getHex());
+        Hex third = firstTokens[2].getHex();
         boolean oldFlip = spQFlip;
 
         // If R == 0 for 3rd piece, R must be negative for 4th piece to be in SP
-        if (coords[1] == 0) {
+        if (getSPCoordinateR(third.getQ(), third.getR()) == 0) {
             // Only check rotation if 3rd is inline with the rest
-            coords = getSPCoordinatesFor(firstTokens[3].getHex());
-            if (coords[1] > 0) {
+            Hex fourth = firstTokens[3].getHex();
+            if (getSPCoordinateR(fourth.getQ(), fourth.getR()) > 0) {
                 spQFlip = true;
             } else {
                 spQFlip = false;
@@ -225,34 +281,36 @@ public class Board {
 
     private boolean maintainSPForMidGame(Token token) {
         boolean oldFlip = spQFlip;
-        boolean rebuildZobristKey = false;
+        boolean spChanged = false;
 
         spQFlip = false;
-        rebuildZobristKey = moveOrigin(whitePlayer.getQueen()) || rebuildZobristKey;
-        rebuildZobristKey = rotateToStandardPosition(blackPlayer.getQueen()) || rebuildZobristKey;
+        spChanged = moveOrigin(whitePlayer.getQueen()) || spChanged;
+        spChanged = rotateToStandardPosition(blackPlayer.getQueen()) || spChanged;
 
-        return rebuildZobristKey || oldFlip != spQFlip;
+        return spChanged || oldFlip != spQFlip;
     }
 
     private boolean moveOrigin(Token token) {
         if (token.inSupply()) throw new IllegalStateException("Cannot recenter around token in supply: " + token);
         Hex hex = token.getHex();
-        boolean rebuildZobristKey = spOrigin[0] != hex.getQ() || spOrigin[1] != hex.getR();
+        boolean spChanged = spOrigin[0] != hex.getQ() || spOrigin[1] != hex.getR();
         spOrigin[0] = token.getHex().getQ();
         spOrigin[1] = token.getHex().getR();
-        return rebuildZobristKey;
+        return spChanged;
     }
 
-    // Rebuild Zobrist key when Standard Position changes
+    // Rebuild Zobrist keys when the Standard Position origin changes
     private void rebuildZobristKey() {
-        zobristKey = 0;
+        Arrays.fill(symmetryKeys, 0);
+        Arrays.fill(verificationKeys, 0);
         for (Token t: tokens) {
             updateZobristKey(t);
         }
+        updateCanonicalKey();
     }
 
     // Rotate to last available space before crossing the positive Q axis.
-    // Return true if rotation has changed so Zobrist key needs to be rebuild.
+    // Return true if rotation has changed.
     private boolean rotateToStandardPosition(Token token) {
         if (token.getHex().getQ() == spOrigin[0] && token.getHex().getR() == spOrigin[1]) {
             // Very special case, can happen if a Beetle working as Blacks anchor point, move on top of White's origin.
@@ -261,15 +319,19 @@ public class Board {
         }
 
         int oldRotation = spRotation;
-        int[] sp = getSPCoordinatesFor(token.getHex());
+        int q = token.getHex().getQ();
+        int r = token.getHex().getR();
+        int spQ = getSPCoordinateQ(q, r);
+        int spR = getSPCoordinateR(q, r);
         int maxRotations = 6;
-        while(!(sp[0] >= 0 && sp[1] >= 1)) {  // q >= 0 && r >= 1
+        while(!(spQ >= 0 && spR >= 1)) {  // q >= 0 && r >= 1
             if (maxRotations == 0) {
                 printer.print(this);
                 throw new IllegalStateException("Keeps rotating: Cannot find Standard Position");
             }
             rotateClockwise();
-            sp = getRotatedSPCoordinatesFor(token.getHex());
+            spQ = getRotatedSPCoordinateQ(q, r);
+            spR = getRotatedSPCoordinateR(q, r);
             maxRotations--;
         }
 
@@ -293,38 +355,42 @@ public class Board {
     }
 
     public int[] getSPCoordinatesFor(int q, int r) {
-        int[] cubeCoords = HexagonUtils.convertToCubeCoordinates(q - spOrigin[0], r - spOrigin[1]);
+        return new int[] { getSPCoordinateQ(q, r), getSPCoordinateR(q, r) };
+    }
 
-        for (int i = 0; i < spRotation; i++) {
-            cubeCoords = HexagonUtils.rotateRight(cubeCoords);
-        }
+    /**
+     * Returns the Q coordinate in Standard Position for the hex at (q, r). Doesn't allocate.
+     */
+    public int getSPCoordinateQ(int q, int r) {
+        return SymmetryTransform.transformQ(getSPSymmetry(), q - spOrigin[0], r - spOrigin[1]);
+    }
 
-        if (spQFlip) {
-            int newX = -cubeCoords[1];
-            int newY = -cubeCoords[0];
-            int newZ = -cubeCoords[2];
-            cubeCoords[0] = newX;
-            cubeCoords[1] = newY;
-            cubeCoords[2] = newZ;
-        }
+    /**
+     * Returns the R coordinate in Standard Position for the hex at (q, r). Doesn't allocate.
+     */
+    public int getSPCoordinateR(int q, int r) {
+        return SymmetryTransform.transformR(getSPSymmetry(), q - spOrigin[0], r - spOrigin[1]);
+    }
 
-        return HexagonUtils.convertToAxialCoordinates(cubeCoords[0], cubeCoords[1], cubeCoords[2]);
+    /**
+     * Returns the symmetry that transforms coordinates relative to the SP origin into Standard Position.
+     *
+     * @see SymmetryTransform
+     */
+    public int getSPSymmetry() {
+        return SymmetryTransform.getSymmetry(spRotation, spQFlip);
     }
 
     /**
      * Returns the SP coordinates, only taking rotation into account
      */
-    private int[] getRotatedSPCoordinatesFor(Hex hex) {
-        int q = hex.getQ();
-        int r = hex.getR();
-        int[] cubeCoords = HexagonUtils.convertToCubeCoordinates(q - spOrigin[0], r - spOrigin[1]);
-        for (int i = 0; i < spRotation; i++) {
-            cubeCoords = HexagonUtils.rotateRight(cubeCoords);
-        }
-        return HexagonUtils.convertToAxialCoordinates(cubeCoords[0], cubeCoords[1], cubeCoords[2]);
+    private int getRotatedSPCoordinateQ(int q, int r) {
+        return SymmetryTransform.transformQ(spRotation, q - spOrigin[0], r - spOrigin[1]);
     }
 
-
+    private int getRotatedSPCoordinateR(int q, int r) {
+        return SymmetryTransform.transformR(spRotation, q - spOrigin[0], r - spOrigin[1]);
+    }
 
     /**
      * Returns the hex for the given Standard Position
@@ -333,23 +399,42 @@ public class Board {
      * @param r R coordinate in Standard Position
      */
     public Hex getHexForStandardPosition(int q, int r) {
-        int[] cubeCoords = HexagonUtils.convertToCubeCoordinates(q, r);
+        int inverse = SymmetryTransform.getInverse(getSPSymmetry());
+        int originalQ = SymmetryTransform.transformQ(inverse, q, r);
+        int originalR = SymmetryTransform.transformR(inverse, q, r);
+        return findOrCreateHex(originalQ + spOrigin[0], originalR + spOrigin[1]);
+    }
 
-        if (spQFlip) {
-            int newX = -cubeCoords[1];
-            int newY = -cubeCoords[0];
-            int newZ = -cubeCoords[2];
-            cubeCoords[0] = newX;
-            cubeCoords[1] = newY;
-            cubeCoords[2] = newZ;
-        }
+    /**
+     * Returns the Q coordinate of (q, r) in the canonical orientation, ie. relative to the SP origin and transformed by
+     * the symmetry used for the Zobrist key. Coordinates of a move saved this way can be used in any game that
+     * reaches a position with the same key, no matter how that board is rotated or positioned.
+     */
+    public int getCanonicalQ(int q, int r) {
+        return SymmetryTransform.transformQ(canonicalSymmetry, q - spOrigin[0], r - spOrigin[1]);
+    }
 
-        for (int i = 0; i < (6 - spRotation); i++) {
-            cubeCoords = HexagonUtils.rotateRight(cubeCoords);
-        }
+    /**
+     * Returns the R coordinate of (q, r) in the canonical orientation.
+     *
+     * @see #getCanonicalQ(int, int)
+     */
+    public int getCanonicalR(int q, int r) {
+        return SymmetryTransform.transformR(canonicalSymmetry, q - spOrigin[0], r - spOrigin[1]);
+    }
 
-        int[] originalCoords = HexagonUtils.convertToAxialCoordinates(cubeCoords[0], cubeCoords[1], cubeCoords[2]);
-        return findOrCreateHex(originalCoords[0] + spOrigin[0], originalCoords[1] + spOrigin[1]);
+    /**
+     * Returns the board Q coordinate for canonical coordinates. Inverse of <code>getCanonicalQ()</code>.
+     */
+    public int getQForCanonicalPosition(int q, int r) {
+        return SymmetryTransform.transformQ(SymmetryTransform.getInverse(canonicalSymmetry), q, r) + spOrigin[0];
+    }
+
+    /**
+     * Returns the board R coordinate for canonical coordinates. Inverse of <code>getCanonicalR()</code>.
+     */
+    public int getRForCanonicalPosition(int q, int r) {
+        return SymmetryTransform.transformR(SymmetryTransform.getInverse(canonicalSymmetry), q, r) + spOrigin[1];
     }
 
     /**
@@ -360,7 +445,6 @@ public class Board {
         if (tokens.size() > 0 && mode != StandardPositionMode.DISABLED) throw new IllegalStateException("Cannot enable Standard Position for non-empty board");
         this.standardPosition = mode;
         if (mode != StandardPositionMode.DISABLED) {
-            loadZobristHashes();
             spOrigin = new int[2];
             spRotation = 0;
             spQFlip = false;
@@ -388,8 +472,31 @@ public class Board {
                 throw new IllegalStateException("Unknown token: " + token);
         }
 
-        int[] coords = getSPCoordinatesFor(tokenHex);
-        zobristKey = zobristKey ^ zobristHashes[coords[0] + 25][coords[1] + 25][tokenHex.getHeight() - 1][getColorIndex(token.getPlayer())][typeIndex];
+        int height = tokenHex.getHeightOf(token); // Not always the top token when the keys are rebuilt
+        int color = getColorIndex(token.getPlayer());
+
+        int q = tokenHex.getQ() - spOrigin[0];
+        int r = tokenHex.getR() - spOrigin[1];
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            int symmetryQ = SymmetryTransform.transformQ(symmetry, q, r);
+            int symmetryR = SymmetryTransform.transformR(symmetry, q, r);
+            symmetryKeys[symmetry] ^= ZobristTable.PRIMARY.getTokenHash(symmetryQ, symmetryR, height, color, typeIndex);
+            verificationKeys[symmetry] ^= ZobristTable.VERIFICATION.getTokenHash(symmetryQ, symmetryR, height, color, typeIndex);
+        }
+
+        updateCanonicalKey();
+    }
+
+    // The smallest symmetry key is used as key for the board
+    private void updateCanonicalKey() {
+        canonicalSymmetry = 0;
+        for (int i = 1; i < SYMMETRIES; i++) {
+            if (symmetryKeys[i] < symmetryKeys[canonicalSymmetry]) {
+                canonicalSymmetry = i;
+            }
+        }
+        zobristKey = symmetryKeys[canonicalSymmetry];
+        verificationKey = verificationKeys[canonicalSymmetry];
     }
 
     private int getColorIndex(Player player) {
@@ -418,6 +525,34 @@ public class Board {
             spOrigin[0] = 0;
             spOrigin[1] = 0;
         }
+        restoreStandardPosition(tokens.size());
+    }
+
+    // The Standard Position can depend on how the board was reached, eg. the origin is kept when the 5th token is
+    // placed, so it cannot be calculated again when a token is removed.
+    private void saveStandardPosition(int index) {
+        if (standardPosition == StandardPositionMode.DISABLED) return;
+        int offset = index * SP_STATE_SIZE;
+        if (offset + SP_STATE_SIZE > spHistory.length) {
+            spHistory = Arrays.copyOf(spHistory, spHistory.length * 2);
+        }
+        spHistory[offset] = spOrigin[0];
+        spHistory[offset + 1] = spOrigin[1];
+        spHistory[offset + 2] = spRotation;
+        spHistory[offset + 3] = spQFlip ? 1 : 0;
+    }
+
+    private void restoreStandardPosition(int index) {
+        if (standardPosition == StandardPositionMode.DISABLED) return;
+        int offset = index * SP_STATE_SIZE;
+        boolean originChanged = spOrigin[0] != spHistory[offset] || spOrigin[1] != spHistory[offset + 1];
+        spOrigin[0] = spHistory[offset];
+        spOrigin[1] = spHistory[offset + 1];
+        spRotation = spHistory[offset + 2];
+        spQFlip = spHistory[offset + 3] == 1;
+        if (originChanged) {
+            rebuildZobristKey();
+        }
     }
 
 
@@ -456,6 +591,7 @@ public class Board {
         Hex toHex = findOrCreateHex(toQ, toR);
         toHex.addToken(token);
         token.setHex(toHex);
+        updateZobristKey(token); // Add new position
         maintainStandardPosition(token);
     }
 
@@ -583,7 +719,7 @@ public class Board {
         int result = Integer.MAX_VALUE;
         for (Hex hex : hexes.values()) {
             if (hex.getTopToken() == null) continue;
-            int q = isUsingStandardPosition() ? getSPCoordinatesFor(hex)[0] : hex.getQ();
+            int q = isUsingStandardPosition() ? getSPCoordinateQ(hex.getQ(), hex.getR()) : hex.getQ();
             if (q < result) {
                 result = q;
             }
@@ -599,7 +735,7 @@ public class Board {
         int result = Integer.MAX_VALUE;
         for (Hex hex : hexes.values()) {
             if (hex.getTopToken() == null) continue;
-            int r = isUsingStandardPosition() ? getSPCoordinatesFor(hex)[1] : hex.getR();
+            int r = isUsingStandardPosition() ? getSPCoordinateR(hex.getQ(), hex.getR()) : hex.getR();
             if (r < result) {
                 result = r;
             }
@@ -612,7 +748,7 @@ public class Board {
         int result = Integer.MIN_VALUE;
         for (Hex hex : hexes.values()) {
             if (hex.getTopToken() == null) continue;
-            int q = isUsingStandardPosition() ? getSPCoordinatesFor(hex)[0] : hex.getQ();
+            int q = isUsingStandardPosition() ? getSPCoordinateQ(hex.getQ(), hex.getR()) : hex.getQ();
             if (q > result) {
                 result = q;
             }
@@ -625,7 +761,7 @@ public class Board {
         int result = Integer.MIN_VALUE;
         for (Hex hex : hexes.values()) {
             if (hex.getTopToken() == null) continue;
-            int r = isUsingStandardPosition() ? getSPCoordinatesFor(hex)[1] : hex.getR();
+            int r = isUsingStandardPosition() ? getSPCoordinateR(hex.getQ(), hex.getR()) : hex.getR();
             if (r > result) {
                 result = r;
             }
@@ -733,12 +869,38 @@ public class Board {
     }
 
     /**
-     * Returns the zobrist key for the given board layout.
+     * Returns the zobrist key for the given board layout. This is the smallest of the symmetry keys, so all rotations
+     * and reflections of a board have the same key.
      */
     public long getZobristKey() {
         return zobristKey;
     }
 
+    /**
+     * Returns a second Zobrist key for the board, calculated from an independent table. It can be used to detect
+     * collisions between boards with the same Zobrist key.
+     */
+    public long getVerificationKey() {
+        return verificationKey;
+    }
+
+    /**
+     * Returns the Zobrist key for one of the 12 symmetric variants of the board around the SP origin.
+     *
+     * @param symmetry 0-5: Number of clockwise rotations, 6-11: The same rotations followed by a flip around the Q axis.
+     * @see SymmetryTransform
+     */
+    public long getSymmetryKey(int symmetry) {
+        return symmetryKeys[symmetry];
+    }
+
+    /**
+     * Returns the symmetry that has the smallest key, ie. the one used as the key for the board.
+     */
+    public int getCanonicalSymmetry() {
+        return canonicalSymmetry;
+    }
+
     public boolean isUsingStandardPosition() {
         return (standardPosition != StandardPositionMode.DISABLED);
     }
@@ -56,6 +56,13 @@ public class Hex implements Comparable<Hex> {
         return tokens.size();
     }
 
+    /**
+     * Returns the height of the given token in this hex, 1 being ground level, or 0 if it isn't in this hex.
+     */
+    public int getHeightOf(Token token) {
+        return tokens.lastIndexOf(token) + 1;
+    }
+
     public int getQ() {
         return q;
     }
@@ -69,6 +76,15 @@ public class Hex implements Comparable<Hex> {
         return "(" + q + ", " + r + ")";
     }
 
+    /**
+     * Hexes are only equal to themselves, but the hash code is based on the coordinates, so the iteration order of
+     * hash based collections of hexes is the same on every run.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * q + r;
+    }
+
     @Override
     public int compareTo(Hex another) {
         if (another == null) return 1;
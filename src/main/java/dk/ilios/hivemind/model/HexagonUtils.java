@@ -44,6 +44,47 @@ public class HexagonUtils {
         return new int[]{x, y, z};
     }
 
+    /**
+     * Returns the Q coordinate of (q, r) after rotating it clockwise around (0, 0). Doesn't allocate, so it can be used
+     * in hot paths instead of <code>rotateRight()</code>.
+     * In axial coordinates: (q, r) -> (-r, q + r)
+     */
+    public static int rotateRightQ(int q, int r, int rotations) {
+        for (int i = 0; i < rotations; i++) {
+            int newQ = -r;
+            r = q + r;
+            q = newQ;
+        }
+        return q;
+    }
+
+    /**
+     * Returns the R coordinate of (q, r) after rotating it clockwise around (0, 0). Doesn't allocate.
+     */
+    public static int rotateRightR(int q, int r, int rotations) {
+        for (int i = 0; i < rotations; i++) {
+            int newQ = -r;
+            r = q + r;
+            q = newQ;
+        }
+        return r;
+    }
+
+    /**
+     * Returns the Q coordinate of (q, r) after flipping it around the Q axis. Doesn't allocate.
+     * In cube coordinates: [x, y, z] -> [-y, -x, -z]
+     */
+    public static int flipQ(int q, int r) {
+        return q + r;
+    }
+
+    /**
+     * Returns the R coordinate of (q, r) after flipping it around the Q axis. Doesn't allocate.
+     */
+    public static int flipR(int q, int r) {
+        return -r;
+    }
+
     /**
      * Distance between two hexes. If neighbors the distance is 1.
      */
@@ -2,6 +2,7 @@ package dk.ilios.hivemind.model;
 
 import dk.ilios.hivemind.game.CommandProvider;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -28,6 +29,8 @@ public class Player {
     private Map<String, Token> bugs = new HashMap<String, Token>();
     private Map<BugType, Integer>  supplyCreatureCounter = new HashMap<BugType, Integer>();     // Easy lookup to determine number of tokens of a specific type in the supply.
     private Set<Token> supply = new HashSet<Token>();                            // Tokens in the supply
+    private long supplyKey = 0;                                                  // Zobrist key for the supply counts
+    private long supplyVerificationKey = 0;
 
     private long playTime = 0; // How much time has the player used so far
 
@@ -77,6 +80,7 @@ public class Player {
         }
 
         supplyCreatureCounter.put(type, currentCount + count);
+        updateSupplyKey(type, currentCount, currentCount + count);
 
         // Set queen if needed
         if (queen == null && type == BugType.QUEEN_BEE) {
@@ -85,6 +89,28 @@ public class Player {
     }
 
 
+    /**
+     * Create a copy of the player with the same tokens (same types and ids) and move counters. All tokens start in the
+     * supply of the copy. The command provider is not copied.
+     */
+    public Player copy() {
+        Player copy = new Player(name, type);
+        Map<BugType, Integer> tokenCount = new EnumMap<BugType, Integer>(BugType.class);
+        for (Token token : bugs.values()) {
+            BugType bugType = token.getOriginalType();
+            tokenCount.put(bugType, tokenCount.containsKey(bugType) ? tokenCount.get(bugType) + 1 : 1);
+        }
+        for (Map.Entry<BugType, Integer> entry : tokenCount.entrySet()) {
+            copy.addToSupply(entry.getKey(), entry.getValue());
+        }
+
+        copy.ranking = ranking;
+        copy.moves = moves;
+        copy.passes = passes;
+        copy.playTime = playTime;
+        return copy;
+    }
+
     public String getName() {
         return name;
     }
@@ -136,8 +162,10 @@ public class Player {
         BugType type = token.getType();
         if (supplyCreatureCounter.containsKey(type)) {
             supplyCreatureCounter.put(type, supplyCreatureCounter.get(type) + 1);
+            updateSupplyKey(type, supplyCreatureCounter.get(type) - 1, supplyCreatureCounter.get(type));
         } else {
             supplyCreatureCounter.put(type, 1);
+            updateSupplyKey(type, 0, 1);
         }
     }
 
@@ -146,11 +174,34 @@ public class Player {
             supply.remove(token);
             int count = supplyCreatureCounter.get(token.getOriginalType()) - 1;
             supplyCreatureCounter.put(token.getOriginalType(), count);
+            updateSupplyKey(token.getOriginalType(), count + 1, count);
         } else {
             throw new IllegalStateException("Supply doesn't contain: " + token);
         }
     }
 
+    private void updateSupplyKey(BugType type, int oldCount, int newCount) {
+        int color = isWhitePlayer() ? 0 : 1;
+        supplyKey ^= ZobristTable.PRIMARY.getSupplyHash(color, type, oldCount) ^ ZobristTable.PRIMARY.getSupplyHash(color, type, newCount);
+        supplyVerificationKey ^= ZobristTable.VERIFICATION.getSupplyHash(color, type, oldCount) ^ ZobristTable.VERIFICATION.getSupplyHash(color, type, newCount);
+    }
+
+    /**
+     * Returns the Zobrist key for the number of tokens of each type in the supply.
+     */
+    public long getSupplyKey() {
+        return supplyKey;
+    }
+
+    /**
+     * Returns the supply key calculated from the verification table.
+     *
+     * @see ZobristTable#VERIFICATION
+     */
+    public long getSupplyVerificationKey() {
+        return supplyVerificationKey;
+    }
+
     /**
      * Fetches a token from the supply. It is not removed until removeFromSupply() is called.
      * An IllegalStateException will be thrown if no such is available.
@@ -0,0 +1,113 @@
+package dk.ilios.hivemind.model;
+
+/**
+ * Lookup tables for the 12 symmetries of the hex grid around (0, 0): 6 clockwise rotations, optionally followed by a
+ * flip around the Q axis.
+ *
+ * Symmetries are numbered the same way as the symmetry keys in <code>Board</code>:
+ * - 0-5: Number of clockwise rotations.
+ * - 6-11: The same rotations followed by a flip.
+ *
+ * Coordinates within <code>RANGE</code> of (0, 0) are packed into a single index, so a transform is two array lookups
+ * without any allocations. Coordinates further away are calculated using <code>HexagonUtils</code>.
+ */
+public final class SymmetryTransform {
+
+    public static final int SYMMETRIES = 12;
+    public static final int ROTATIONS = 6;
+    public static final int RANGE = 32;                 // Coordinates from -32 to 32 in both directions use the tables
+
+    private static final int SIZE = 2 * RANGE + 1;
+    private static final int[][] Q = new int[SYMMETRIES][SIZE * SIZE];
+    private static final int[][] R = new int[SYMMETRIES][SIZE * SIZE];
+    private static final int[] INVERSE = new int[SYMMETRIES];
+
+    static {
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            for (int q = -RANGE; q <= RANGE; q++) {
+                for (int r = -RANGE; r <= RANGE; r++) {
+                    int index = pack(q, r);
+                    Q[symmetry][index] = calculateQ(symmetry, q, r);
+                    R[symmetry][index] = calculateR(symmetry, q, r);
+                }
+            }
+        }
+
+        // Inverse symmetries are found by checking which symmetry moves the two basis vectors back into place.
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            for (int inverse = 0; inverse < SYMMETRIES; inverse++) {
+                if (isIdentity(symmetry, inverse, 1, 0) && isIdentity(symmetry, inverse, 0, 1)) {
+                    INVERSE[symmetry] = inverse;
+                }
+            }
+        }
+    }
+
+    private SymmetryTransform() {
+        // Only static methods
+    }
+
+    /**
+     * Returns the symmetry for the given number of clockwise rotations, optionally followed by a flip.
+     */
+    public static int getSymmetry(int rotations, boolean flip) {
+        return (flip ? ROTATIONS : 0) + rotations;
+    }
+
+    /**
+     * Returns the symmetry that reverses the given one.
+     */
+    public static int getInverse(int symmetry) {
+        return INVERSE[symmetry];
+    }
+
+    /**
+     * Returns the Q coordinate of (q, r) after applying the symmetry.
+     */
+    public static int transformQ(int symmetry, int q, int r) {
+        if (isInRange(q, r)) {
+            return Q[symmetry][pack(q, r)];
+        } else {
+            return calculateQ(symmetry, q, r);
+        }
+    }
+
+    /**
+     * Returns the R coordinate of (q, r) after applying the symmetry.
+     */
+    public static int transformR(int symmetry, int q, int r) {
+        if (isInRange(q, r)) {
+            return R[symmetry][pack(q, r)];
+        } else {
+            return calculateR(symmetry, q, r);
+        }
+    }
+
+    private static boolean isInRange(int q, int r) {
+        return q >= -RANGE && q <= RANGE && r >= -RANGE && r <= RANGE;
+    }
+
+    private static int pack(int q, int r) {
+        return (q + RANGE) * SIZE + (r + RANGE);
+    }
+
+    private static boolean isIdentity(int symmetry, int inverse, int q, int r) {
+        int transformedQ = calculateQ(symmetry, q, r);
+        int transformedR = calculateR(symmetry, q, r);
+        return calculateQ(inverse, transformedQ, transformedR) == q && calculateR(inverse, transformedQ, transformedR) == r;
+    }
+
+    private static int calculateQ(int symmetry, int q, int r) {
+        int rotations = symmetry % ROTATIONS;
+        int rotatedQ = HexagonUtils.rotateRightQ(q, r, rotations);
+        int rotatedR = HexagonUtils.rotateRightR(q, r, rotations);
+        return (symmetry >= ROTATIONS) ? HexagonUtils.flipQ(rotatedQ, rotatedR) : rotatedQ;
+    }
+
+    private static int calculateR(int symmetry, int q, int r) {
+        int rotations = symmetry % ROTATIONS;
+        int rotatedQ = HexagonUtils.rotateRightQ(q, r, rotations);
+        int rotatedR = HexagonUtils.rotateRightR(q, r, rotations);
+        return (symmetry >= ROTATIONS) ? HexagonUtils.flipR(rotatedQ, rotatedR) : rotatedR;
+    }
+}
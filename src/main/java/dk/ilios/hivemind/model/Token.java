@@ -67,6 +67,16 @@ public class Token {
         this.id = id;
     }
 
+    /**
+     * Tokens are only equal to themselves, but the hash code is based on values that never change, so the iteration
+     * order of hash based collections of tokens is the same on every run.
+     */
+    @Override
+    public int hashCode() {
+        int result = (player != null) ? player.getType().ordinal() + 1 : 0;
+        return 31 * result + originalType.ordinal();
+    }
+
     @Override
     public String toString() {
         return player.getName() + "("+id+"): " + originalType + (hex != null ? " " + hex.toString() : " (SUPPLY)");
@@ -0,0 +1,131 @@
+package dk.ilios.hivemind.model;
+
+/**
+ * Random numbers used to calculate Zobrist keys for boards and games [1].
+ *
+ * All boards and games share two immutable tables:
+ * - PRIMARY: Used for the Zobrist keys.
+ * - VERIFICATION: Filled from another seed and used for a second, independent key. Tables that only store part of
+ *   the primary key, or are shared between many searches, can store this key as well to detect collisions.
+ *
+ * The hashes for tokens on the board are stored as a flat array, indexed by (q, r, height, color, token type), and all
+ * hashes are filled from a fixed seed, so the same position has the same key in all boards, threads and processes.
+ * This means keys can be saved to disk, eg. in opening books or transposition tables.
+ *
+ * Changing the seeds or the layout of the tables changes all keys, which invalidates anything persisted with the old
+ * keys. <code>VERSION</code> should be bumped when that happens.
+ *
+ * @see [1] http://en.wikipedia.org/wiki/Zobrist_hashing
+ */
+public final class ZobristTable {
+
+    public static final int VERSION = 3;
+    public static final long SEED = 0x4869766520414921L;
+    public static final long VERIFICATION_SEED = 0x56657269667921L;
+
+    // Coordinates are relative to the Standard Position origin, which is a token in the hive. The largest hive is 28
+    // tokens with all expansions, so no token can be more than 27 hexes from the origin, also while moving.
+    public static final int BOARD_OFFSET = 27;
+    public static final int BOARD_SIZE = 2 * BOARD_OFFSET + 1;
+    public static final int MAX_HEIGHT = 7;      // A token with all beetles and mosquitoes on top
+    public static final int COLORS = 2;
+    public static final int TOKEN_TYPES = 8;
+    public static final int MAX_SUPPLY_COUNT = 16; // Supply counts are hashed modulo this
+
+    // Strides for the flat array
+    private static final int COLOR_STRIDE = TOKEN_TYPES;
+    private static final int HEIGHT_STRIDE = COLORS * COLOR_STRIDE;
+    private static final int R_STRIDE = MAX_HEIGHT * HEIGHT_STRIDE;
+    private static final int Q_STRIDE = BOARD_SIZE * R_STRIDE;
+    private static final int SUPPLY_TYPES = BugType.values().length;
+
+    // Must be created after the constants above
+    public static final ZobristTable PRIMARY = new ZobristTable(SEED);
+    public static final ZobristTable VERIFICATION = new ZobristTable(VERIFICATION_SEED);
+
+    private final long[] tokenHashes = new long[BOARD_SIZE * Q_STRIDE];
+    private final long[] playerHashes = new long[COLORS];
+    private final long[] supplyHashes = new long[COLORS * SUPPLY_TYPES * MAX_SUPPLY_COUNT];
+    private final long[] queenDeadlineHashes = new long[COLORS];
+
+    private ZobristTable(long seed) {
+        SplitMix64 random = new SplitMix64(seed);
+        fill(tokenHashes, random);
+        fill(playerHashes, random);
+        fill(supplyHashes, random);
+        fill(queenDeadlineHashes, random);
+    }
+
+    private static void fill(long[] hashes, SplitMix64 random) {
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Returns the hash for a token.
+     *
+     * @param q Q coordinate in Standard Position.
+     * @param r R coordinate in Standard Position.
+     * @param height Height of the token, starting at 1.
+     * @param color 0 for white, 1 for black.
+     * @param type Token type index, see <code>Board</code>.
+     * @throws IllegalArgumentException if the coordinates or height are outside the table.
+     */
+    public long getTokenHash(int q, int r, int height, int color, int type) {
+        // Checked explicitly, as an R outside the table would silently use the hash for another Q
+        if (q < -BOARD_OFFSET || q > BOARD_OFFSET || r < -BOARD_OFFSET || r > BOARD_OFFSET || height < 1 || height > MAX_HEIGHT) {
+            throw new IllegalArgumentException("Token outside the Zobrist table: (" + q + ", " + r + "), height " + height);
+        }
+        return tokenHashes[(q + BOARD_OFFSET) * Q_STRIDE + (r + BOARD_OFFSET) * R_STRIDE + (height - 1) * HEIGHT_STRIDE + color * COLOR_STRIDE + type];
+    }
+
+    /**
+     * Returns the hash for the player to move.
+     *
+     * @param color 0 for white, 1 for black.
+     */
+    public long getPlayerHash(int color) {
+        return playerHashes[color];
+    }
+
+    /**
+     * Returns the hash for having <code>count</code> tokens of the given type in the supply. An empty supply has
+     * the hash 0, so bug types that are not used in a game doesn't change the key.
+     *
+     * @param color 0 for white, 1 for black.
+     */
+    public long getSupplyHash(int color, BugType type, int count) {
+        if (count == 0) return 0;
+        return supplyHashes[(color * SUPPLY_TYPES + type.ordinal()) * MAX_SUPPLY_COUNT + (count % MAX_SUPPLY_COUNT)];
+    }
+
+    /**
+     * Returns the hash for the player to move having to place the queen this turn.
+     *
+     * @param color 0 for white, 1 for black.
+     */
+    public long getQueenDeadlineHash(int color) {
+        return queenDeadlineHashes[color];
+    }
+
+    /**
+     * SplitMix64 generator [1]. Unlike <code>java.util.Random</code> all 64 bits of the output are random.
+     *
+     * @see [1] http://xorshift.di.unimi.it/splitmix64.c
+     */
+    private static class SplitMix64 {
+        private long state;
+
+        private SplitMix64(long seed) {
+            this.state = seed;
+        }
+
+        private long nextLong() {
+            long z = (state += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -143,7 +143,7 @@ public class BoardspaceGameParser {
         }
 
         game.addPlayers(white, black);
-        game.getBoard().setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED); // Also maintain Zobrist keys, eg. for opening books
         game.setManualStepping(true);
         game.setPrintGameStateAfterEachMove(DEBUG);
         game.start();
@@ -0,0 +1,46 @@
+package dk.ilios.hivemind.parser.metric;
+
+import dk.ilios.hivemind.ai.book.OpeningBookBuilder;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.parser.BoardspaceGameType;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compiles an opening book from the first moves of all analyzed games.
+ *
+ * @see dk.ilios.hivemind.ai.OpeningBookAI
+ */
+public class OpeningBookMetric extends Metric {
+
+    public static final String FILE_NAME = "opening_book.bin";
+    private final OpeningBookBuilder builder;
+
+    public OpeningBookMetric() {
+        this(OpeningBookBuilder.DEFAULT_MAX_PLIES);
+    }
+
+    /**
+     * @param maxPlies Number of plies to record from each game.
+     */
+    public OpeningBookMetric(int maxPlies) {
+        builder = new OpeningBookBuilder(maxPlies);
+    }
+
+    @Override
+    public void analyzeGame(BoardspaceGameType type, String variant, Game game) {
+        builder.addGame(game);
+    }
+
+    @Override
+    public void save() {
+        File file = new File("results/" + FILE_NAME);
+        try {
+            builder.write(file);
+            System.out.println(file.getAbsolutePath() + ": " + builder.size() + " entries");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
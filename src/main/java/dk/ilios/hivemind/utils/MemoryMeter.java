@@ -0,0 +1,57 @@
+package dk.ilios.hivemind.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures memory without an instrumentation agent: Bytes allocated by the current thread, as counted by the JVM, and
+ * the heap in use after garbage collection, which can be compared before and after creating objects to estimate how
+ * much they retain.
+ */
+public final class MemoryMeter {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final int MAX_GC_RUNS = 20;
+    private static final int STABLE_GC_RUNS = 2; // Collections in a row that must not free anything
+
+    private MemoryMeter() {
+        // Only static methods
+    }
+
+    /**
+     * Returns true if <code>getAllocatedBytes()</code> is supported by the JVM.
+     */
+    public static boolean isAllocationMeasurable() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread since it started or -1 if the JVM cannot measure it.
+     */
+    public static long getAllocatedBytes() {
+        if (!isAllocationMeasurable()) return -1;
+        return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the heap in use after running the garbage collector until the result is stable. Slow, as it runs several
+     * full collections, and only precise for objects much larger than the noise from other threads.
+     */
+    public static long getUsedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        int stableRuns = 0;
+        for (int i = 0; i < MAX_GC_RUNS && stableRuns < STABLE_GC_RUNS; i++) {
+            System.gc();
+            System.runFinalization();
+            long usedAfterGc = runtime.totalMemory() - runtime.freeMemory();
+            stableRuns = (usedAfterGc >= used) ? stableRuns + 1 : 0;
+            used = Math.min(used, usedAfterGc);
+        }
+        return used;
+    }
+}
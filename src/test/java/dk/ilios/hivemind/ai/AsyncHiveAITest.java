@@ -0,0 +1,86 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV3;
+import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncHiveAITest {
+
+    Game game;
+
+    @Before
+    public void setup() {
+        game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+    }
+
+    @Test
+    public void testNextMoveReportsBestMoves() throws Exception {
+        AsyncHiveAI ai = new AsyncHiveAI(new IDDFSAlphaBetaMiniMaxAI("IDDFS", new SimpleHeuristicV3(), 3, 30000));
+        game = TestSetups.sureWinInTwoTurns(game);
+        final List<GameCommand> updates = Collections.synchronizedList(new ArrayList<GameCommand>());
+
+        Future<GameCommand> future = ai.nextMove(game, new BestMoveListener() {
+            @Override
+            public void onBestMove(HiveAI ai, GameCommand move, int value, int depth) {
+                updates.add(move);
+            }
+        });
+        GameCommand move = future.get(30, TimeUnit.SECONDS);
+
+        assertEquals(2, move.getToQ());
+        assertEquals(1, move.getToR());
+        assertFalse(updates.isEmpty());
+        assertEquals(move, updates.get(updates.size() - 1));
+        move.execute(game); // Move belongs to the original game
+        ai.shutdown();
+    }
+
+    @Test
+    public void testStopReturnsBestMoveSoFar() throws Exception {
+        AsyncHiveAI ai = new AsyncHiveAI(new IDDFSAlphaBetaMiniMaxAI("IDDFS", new SimpleHeuristicV3(), 20, 60000));
+        game = TestSetups.sureWinInTwoTurns(game);
+
+        Future<GameCommand> future = ai.nextMove(game, null);
+        Thread.sleep(200);
+        long start = System.currentTimeMillis();
+        ai.stop();
+        GameCommand move = future.get();
+
+        assertNotNull(move);
+        assertTrue(future.isDone());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        ai.shutdown();
+    }
+
+    @Test
+    public void testStopBeforeSearchStarts() throws Exception {
+        AsyncHiveAI ai = new AsyncHiveAI(new IDDFSAlphaBetaMiniMaxAI("IDDFS", new SimpleHeuristicV3(), 20, 60000));
+        game = TestSetups.sureWinInTwoTurns(game);
+
+        Future<GameCommand> future = ai.nextMove(game, null);
+        ai.stop();
+
+        assertNotNull(future.get(5, TimeUnit.SECONDS));
+        ai.shutdown();
+    }
+}
@@ -1,13 +1,23 @@
 package dk.ilios.hivemind.ai;
 
+import dk.ilios.hivemind.ai.heuristics.BoardValueHeuristic;
 import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV1;
 import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.ai.trace.SearchTracer;
 import dk.ilios.hivemind.game.Game;
 import dk.ilios.hivemind.game.GameCommand;
 import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class IDDFSAlphaBetaMiniMaxAITest {
 
@@ -46,4 +56,163 @@ public class IDDFSAlphaBetaMiniMaxAITest {
         assertEquals(2, command.getToQ());
         assertEquals(1, command.getToR());
     }
+
+    @Test
+    public void testSeededSearchWithNodeBudgetIsReproducible() {
+        IDDFSAlphaBetaMiniMaxAI ai = new IDDFSAlphaBetaMiniMaxAI("IDDFS", new SimpleHeuristicV1(), 4, 600000);
+        ai.setSeed(42);
+        ai.setMaxNodes(2000);
+        IDDFSAlphaBetaMiniMaxAI copy = (IDDFSAlphaBetaMiniMaxAI) ai.copy();
+
+        Game game = createMidGame();
+        GameCommand first = ai.nextMove(game, game.getBoard());
+        game = createMidGame();
+        GameCommand second = copy.nextMove(game, game.getBoard());
+
+        assertEquals(first.toString(), second.toString());
+        assertEquals(2000, ai.getTimeManager().getNodes());
+        assertEquals(ai.getTimeManager().getNodes(), copy.getTimeManager().getNodes());
+        assertEquals(ai.getAiStats().getTotalPositionsEvaluated(), copy.getAiStats().getTotalPositionsEvaluated());
+    }
+
+    @Test
+    public void testProgressIsReportedForEachIteration() {
+        TranspostionTableIDDFSAlphaBetaMiniMaxAI ai = new TranspostionTableIDDFSAlphaBetaMiniMaxAI("TT", new SimpleHeuristicV1(), 3, 600000);
+        final List<SearchProgress> reports = new ArrayList<SearchProgress>();
+        ai.setSearchProgressListener(new SearchProgressListener() {
+            @Override
+            public void onSearchProgress(HiveAI ai, SearchProgress progress) {
+                reports.add(progress);
+            }
+        });
+
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setTurnLimit(10);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game = TestSetups.sureWinInTwoTurns(game);
+        game.updateZobristKey();
+
+        long key = game.getZobristKey();
+        GameCommand move = ai.nextMove(game, game.getBoard());
+
+        assertEquals(key, game.getZobristKey());
+        assertFalse(reports.isEmpty());
+        int maxPVLength = 0;
+        for (int i = 0; i < reports.size(); i++) {
+            SearchProgress progress = reports.get(i);
+            assertEquals(i, progress.depth);
+            assertTrue(progress.selectiveDepth >= progress.depth);
+            assertTrue(progress.principalVariation.size() <= Math.max(1, progress.depth));
+            assertTrue(progress.transpositionTableFill >= 0 && progress.transpositionTableFill <= 1);
+            if (i > 0) {
+                assertTrue(progress.nodes > reports.get(i - 1).nodes);
+                assertEquals(progress.bestMove, progress.principalVariation.get(0));
+            }
+            maxPVLength = Math.max(maxPVLength, progress.principalVariation.size());
+        }
+        assertTrue(maxPVLength > 1);
+        assertEquals(move, reports.get(reports.size() - 1).bestMove);
+    }
+
+    @Test
+    public void testStoppedSearchKeepsLastCompletedIteration() {
+        for (int stopAfter : new int[] { 50, 500, 5000 }) {
+            List<AbstractMinMaxAI> ais = new ArrayList<AbstractMinMaxAI>();
+            ais.add(new IDDFSAlphaBetaMiniMaxAI("IDDFS", new StoppingHeuristic(stopAfter), 10, 600000));
+            ais.add(new TranspostionTableIDDFSAlphaBetaMiniMaxAI("TT", new StoppingHeuristic(stopAfter), 10, 600000));
+            ais.add(new KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI("Killer", new StoppingHeuristic(stopAfter), 10, 600000));
+            ais.add(new MTDFAI("MTDF", new StoppingHeuristic(stopAfter), 10, 600000));
+            for (AbstractMinMaxAI ai : ais) {
+                final List<GameCommand> reported = new ArrayList<GameCommand>();
+                ((StoppingHeuristic) ai.heuristic).ai = ai;
+                ai.setSeed(42);
+                ai.setBestMoveListener(new BestMoveListener() {
+                    @Override
+                    public void onBestMove(HiveAI ai, GameCommand move, int value, int depth) {
+                        assertFalse("Move from an aborted iteration reported by " + ai.getName(), ((AbstractMinMaxAI) ai).getTimeManager().isStopped());
+                        reported.add(move);
+                    }
+                });
+
+                Game game = MemoryFootprint.createMidgame(42);
+                GameCommand move = ai.nextMove(game, game.getBoard());
+
+                assertTrue(ai.getName(), ai.getTimeManager().isStopped());
+                if (!reported.isEmpty()) {
+                    assertEquals(ai.getName(), reported.get(reported.size() - 1), move);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCutoffsAreCountedOncePrNode() throws IOException {
+        List<AbstractMinMaxAI> ais = new ArrayList<AbstractMinMaxAI>();
+        ais.add(new IDDFSAlphaBetaMiniMaxAI("IDDFS", new SimpleHeuristicV1(), 3, 600000));
+        ais.add(new TranspostionTableIDDFSAlphaBetaMiniMaxAI("TT", new SimpleHeuristicV1(), 3, 600000));
+        ais.add(new KillerHeuristicTranspostionTableIDDFSAlphaBetaMiniMaxAI("Killer", new SimpleHeuristicV1(), 3, 600000));
+        ais.add(new MTDFAI("MTDF", new SimpleHeuristicV1(), 3, 600000));
+        for (AbstractMinMaxAI ai : ais) {
+            CutoffCounter counter = new CutoffCounter();
+            ai.setSearchTracer(counter);
+            Game game = MemoryFootprint.createMidgame(42);
+            ai.nextMove(game, game.getBoard());
+
+            long cutoffs = 0;
+            for (long count : ai.getAiStats().getCutoffDistribution()) {
+                cutoffs += count;
+            }
+            assertTrue(ai.getName(), counter.cutoffs > 0);
+            assertEquals(ai.getName(), counter.cutoffs, cutoffs);
+        }
+    }
+
+    private Game createMidGame() {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+
+        game.addPlayers(p1, p2);
+        game.setTurnLimit(10);
+        return TestSetups.sureWinInTwoTurns(game);
+    }
+
+    // Counts the traced nodes that ended in a cutoff
+    private static class CutoffCounter extends SearchTracer {
+        private long cutoffs = 0;
+
+        private CutoffCounter() throws IOException {
+            super(new ByteArrayOutputStream(), 1, 42);
+        }
+
+        @Override
+        public void traceAlphaBetaNode(int ply, int depth, int alpha, int beta, int value, int moves, int cutoffIndex, long move) {
+            if (cutoffIndex >= 0) {
+                cutoffs++;
+            }
+        }
+    }
+
+    // Stops the AI in the middle of an iteration, after the given number of evaluations
+    private static class StoppingHeuristic implements BoardValueHeuristic {
+        private final BoardValueHeuristic heuristic = new SimpleHeuristicV1();
+        private final int stopAfter;
+        private int evaluations = 0;
+        private HiveAI ai;
+
+        private StoppingHeuristic(int stopAfter) {
+            this.stopAfter = stopAfter;
+        }
+
+        @Override
+        public int calculateBoardValue(Game state) {
+            if (++evaluations == stopAfter) {
+                ai.stop();
+            }
+            return heuristic.calculateBoardValue(state);
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.heuristics.BoardValueHeuristic;
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV1;
+import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class MTDFAITest {
+
+    @Test(timeout = 30000)
+    public void testCanDetectWinTurnTwo() {
+        final List<Integer> values = new ArrayList<Integer>();
+        HiveAI ai = new MTDFAI("MTDF", new SimpleHeuristicV1(), 3, 30000);
+        ai.setBestMoveListener(new BestMoveListener() {
+            @Override
+            public void onBestMove(HiveAI ai, GameCommand move, int value, int depth) {
+                values.add(value);
+            }
+        });
+
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+
+        game.addPlayers(p1, p2);
+        game.setTurnLimit(10);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game = TestSetups.sureWinInTwoTurns(game);
+
+        GameCommand command = ai.nextMove(game, game.getBoard());
+
+        assertNotNull(command);
+        assertEquals(HiveAI.MAX, (int) values.get(values.size() - 1));
+    }
+
+    @Test(timeout = 60000)
+    public void testConvergesToMinimaxValue() {
+        for (long seed : new long[] { 1, 2, 3 }) {
+            Map<Integer, Integer> values = getValuesPrDepth(new MTDFAI("MTDF", new SimpleHeuristicV1(), 3, 600000), seed);
+            for (int depth = 1; depth <= 3; depth++) {
+                Map<Integer, Integer> expected = getValuesPrDepth(new AlphaBetaMiniMaxAI("AlphaBeta", new SimpleHeuristicV1(), depth, 600000), seed);
+                assertEquals("Position " + seed + ", depth " + depth, expected.get(depth), values.get(depth));
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testTerminatesWhenValuesAreAtTheLimits() {
+        for (final int heuristicValue : new int[] { HiveAI.MAX, HiveAI.MIN }) {
+            MTDFAI ai = new MTDFAI("MTDF", new BoardValueHeuristic() {
+                @Override
+                public int calculateBoardValue(Game state) {
+                    return heuristicValue;
+                }
+            }, 3, 600000);
+
+            Game game = MemoryFootprint.createMidgame(42);
+            assertNotNull(ai.nextMove(game, game.getBoard()));
+        }
+    }
+
+    // Returns the last value reported for each depth
+    private Map<Integer, Integer> getValuesPrDepth(AbstractMinMaxAI ai, long seed) {
+        final Map<Integer, Integer> values = new HashMap<Integer, Integer>();
+        ai.setBestMoveListener(new BestMoveListener() {
+            @Override
+            public void onBestMove(HiveAI ai, GameCommand move, int value, int depth) {
+                values.put(depth, value);
+            }
+        });
+
+        Game game = MemoryFootprint.createMidgame(seed);
+        ai.nextMove(game, game.getBoard());
+        return values;
+    }
+}
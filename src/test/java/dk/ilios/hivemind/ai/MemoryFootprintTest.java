@@ -0,0 +1,46 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.utils.MemoryMeter;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Fails if the bytes allocated by move generation or search grow beyond their budget. Budgets are about 1.5 times the
+ * measured values and can be overridden with system properties, eg. -Dhivemind.memoryBudget.searchedNode=15000. Lower
+ * them when the footprint is reduced, so it doesn't creep back.
+ *
+ * Allocations are counted by the JVM for the current thread, so they don't depend on the garbage collector or other
+ * tests. Retained bytes are checked by <code>RetainedMemoryFootprintTest</code>.
+ */
+public class MemoryFootprintTest {
+
+    private static final long GENERATED_MOVE_BUDGET = 1000;
+    private static final long SEARCHED_NODE_BUDGET = 20000;
+
+    private static MemoryFootprint footprint;
+
+    @BeforeClass
+    public static void setUp() {
+        footprint = new MemoryFootprint();
+    }
+
+    @Test
+    public void testAllocatedBytesPrGeneratedMove() {
+        assumeTrue(MemoryMeter.isAllocationMeasurable());
+        assertWithinBudget("generatedMove", footprint.getAllocatedBytesPrGeneratedMove(), GENERATED_MOVE_BUDGET);
+    }
+
+    @Test
+    public void testAllocatedBytesPrSearchedNode() {
+        assumeTrue(MemoryMeter.isAllocationMeasurable());
+        assertWithinBudget("searchedNode", footprint.getAllocatedBytesPrSearchedNode(), SEARCHED_NODE_BUDGET);
+    }
+
+    private void assertWithinBudget(String name, long bytes, long defaultBudget) {
+        long budget = Long.getLong("hivemind.memoryBudget." + name, defaultBudget);
+        assertTrue(name + ": " + bytes + " bytes is above the budget of " + budget + " bytes", bytes > 0 && bytes <= budget);
+    }
+}
@@ -6,7 +6,11 @@ import dk.ilios.hivemind.game.GameCommand;
 import dk.ilios.hivemind.model.Player;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MonteCarloAITest {
 
@@ -27,4 +31,56 @@ public class MonteCarloAITest {
         assertEquals(1, command.getToQ());
         assertEquals(1, command.getToR());
     }
+
+    @Test
+    public void testSeededSearchWithPlayoutBudgetIsReproducible() {
+        UCTMonteCarloTreeSearchAI ai = new UCTMonteCarloTreeSearchAI("MCTS", 20, 600000);
+        ai.setSeed(42);
+        ai.setMaxPlayouts(100);
+        HiveAI copy = ai.copy();
+
+        Game game = createGame();
+        GameCommand first = ai.nextMove(game, game.getBoard());
+        game = createGame();
+        GameCommand second = copy.nextMove(game, game.getBoard());
+
+        assertEquals(first.toString(), second.toString());
+    }
+
+    @Test
+    public void testProgressIsReportedDuringSearch() {
+        UCTMonteCarloTreeSearchAI ai = new UCTMonteCarloTreeSearchAI("MCTS", 20, 600000);
+        ai.setSeed(42);
+        ai.setMaxPlayouts(250);
+        final List<SearchProgress> reports = new ArrayList<SearchProgress>();
+        ai.setSearchProgressListener(new SearchProgressListener() {
+            @Override
+            public void onSearchProgress(HiveAI ai, SearchProgress progress) {
+                reports.add(progress);
+            }
+        });
+
+        Game game = createGame();
+        GameCommand move = ai.nextMove(game, game.getBoard());
+
+        assertEquals(3, reports.size());
+        assertEquals(100, reports.get(0).nodes);
+        assertEquals(200, reports.get(1).nodes);
+        assertEquals(250, reports.get(2).nodes);
+        SearchProgress last = reports.get(2);
+        assertEquals(move, last.bestMove);
+        assertEquals(move, last.principalVariation.get(0));
+        assertEquals(last.principalVariation.size(), last.depth);
+        assertTrue(last.selectiveDepth >= last.depth);
+    }
+
+    private Game createGame() {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+
+        game.addPlayers(p1, p2);
+        game.setTurnLimit(10);
+        return TestSetups.sureWinInTwoTurns(game);
+    }
 }
@@ -0,0 +1,122 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV1;
+import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.ai.moves.MoveGenerator;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MultiPVAlphaBetaMiniMaxAITest {
+
+    Game game;
+
+    @Before
+    public void setup() {
+        game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setTurnLimit(10);
+    }
+
+    @Test
+    public void testCanDetectWinTurnOne() {
+        final HiveAI ai = new MultiPVAlphaBetaMiniMaxAI("MultiPV", new SimpleHeuristicV1(), 1, 30000);
+        game = TestSetups.sureWinInOneTurn(game);
+
+        GameCommand command = ai.nextMove(game, game.getBoard());
+
+        assertEquals(1, command.getToQ());
+        assertEquals(1, command.getToR());
+    }
+
+    @Test
+    public void testCanDetectWinTurnTwo() {
+        final HiveAI ai = new MultiPVAlphaBetaMiniMaxAI("MultiPV", new SimpleHeuristicV1(), 3, 30000);
+        game = TestSetups.sureWinInTwoTurns(game);
+
+        GameCommand command = ai.nextMove(game, game.getBoard());
+
+        assertEquals(2, command.getToQ());
+        assertEquals(1, command.getToR());
+    }
+
+    @Test
+    public void testAnalyzeReturnsTopMoves() {
+        MultiPVAlphaBetaMiniMaxAI ai = new MultiPVAlphaBetaMiniMaxAI("MultiPV", new SimpleHeuristicV1(), 3, 30000);
+        game = TestSetups.sureWinInTwoTurns(game);
+        game.updateZobristKey(); // Setup bypasses GameCommands
+        long key = game.getZobristKey();
+
+        List<PrincipalVariation> lines = ai.analyze(game, 3);
+
+        assertEquals(3, lines.size());
+        assertEquals(2, lines.get(0).move.getToQ());
+        assertEquals(1, lines.get(0).move.getToR());
+        assertEquals(HiveAI.MAX, lines.get(0).value);
+        assertEquals(3, lines.get(0).moves.size());
+
+        Set<GameCommand> rootMoves = new HashSet<GameCommand>();
+        for (int i = 0; i < lines.size(); i++) {
+            PrincipalVariation pv = lines.get(i);
+            assertEquals(pv.move, pv.moves.get(0));
+            assertTrue(rootMoves.add(pv.move));
+            if (i > 0) {
+                assertTrue(pv.value <= lines.get(i - 1).value);
+            }
+        }
+
+        assertEquals(key, game.getZobristKey()); // Game state is restored
+    }
+
+    @Test
+    public void testBestLineMatchesSingleLineSearch() {
+        MultiPVAlphaBetaMiniMaxAI ai = new MultiPVAlphaBetaMiniMaxAI("MultiPV", new SimpleHeuristicV1(), 2, 30000);
+        game = TestSetups.sureWinInTwoTurns(game);
+
+        int singleLineValue = ((MultiPVAlphaBetaMiniMaxAI) ai.copy()).analyze(game, 1).get(0).value;
+        List<PrincipalVariation> lines = ai.analyze(game, 3);
+
+        assertEquals(singleLineValue, lines.get(0).value);
+        assertEquals(2, lines.get(0).moves.size());
+    }
+
+    @Test
+    public void testPlayerWithoutMovesPasses() {
+        MultiPVAlphaBetaMiniMaxAI ai = new MultiPVAlphaBetaMiniMaxAI("MultiPV", new SimpleHeuristicV1(), 2, 30000);
+        game = TestSetups.sureWinInTwoTurns(game);
+        final Player opponent = game.getOtherPlayer();
+        ai.moveGenerator = new MoveGenerator() {
+            private final MoveGenerator generator = new StandardMoveGenerator();
+
+            @Override
+            public List<GameCommand> generateMoves(List<GameCommand> initialList, Game state) {
+                // The opponent never has any moves
+                if (state.getActivePlayer() == opponent) return new ArrayList<GameCommand>();
+                return generator.generateMoves(initialList, state);
+            }
+        };
+
+        List<PrincipalVariation> lines = ai.analyze(game, 3);
+
+        assertEquals(3, lines.size());
+        for (PrincipalVariation pv : lines) {
+            assertTrue(pv.value > HiveAI.MIN);
+            assertEquals(GameCommand.PASS, pv.moves.get(1));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV1;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.ai.statistics.AIStatistics;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PonderingAITest {
+
+    Game game;
+    volatile GameCommand prediction;
+    HiveAI predictor = new HiveAI() {
+        private AIStatistics aiStats = new AIStatistics(this);
+
+        @Override
+        public GameCommand nextMove(Game state, Board board) {
+            GameCommand move = new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), state).get(0);
+            prediction = move;
+            return move;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void setBestMoveListener(BestMoveListener listener) {
+        }
+
+        @Override
+        public void setSearchProgressListener(SearchProgressListener listener) {
+        }
+
+        @Override
+        public AIStatistics getAiStats() {
+            return aiStats;
+        }
+
+        @Override
+        public void setAiStats(AIStatistics stats) {
+            aiStats = stats;
+        }
+
+        @Override
+        public String getName() {
+            return "Predictor";
+        }
+
+        @Override
+        public HiveAI copy() {
+            return this;
+        }
+
+        @Override
+        public boolean maintainsStandardPosition() {
+            return false;
+        }
+
+        @Override
+        public int getThreadCount() {
+            return 1;
+        }
+    };
+
+    @Before
+    public void setup() {
+        game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setManualStepping(true);
+        game.setTurnLimit(10);
+        game.start();
+    }
+
+    @Test
+    public void testPonderHitAndMiss() throws InterruptedException {
+        PonderingAI ai = new PonderingAI(new AlphaBetaMiniMaxAI("AlphaBeta", new SimpleHeuristicV1(), 1, 30000), predictor);
+
+        // Opponent plays the predicted move
+        game.continueGame(ai.nextMove(game, game.getBoard()));
+        long evaluated = ai.getAiStats().getTotalPositionsEvaluated();
+        game.continueGame(waitForPrediction().copyFor(game));
+        game.continueGame(ai.nextMove(game, game.getBoard()));
+        assertEquals(1, ai.getAiStats().getPonderHits());
+        assertEquals(0, ai.getAiStats().getPonderMisses());
+        assertEquals(evaluated, ai.getAiStats().getTotalPositionsEvaluated()); // Background searches are not counted
+
+        // Opponent plays another move
+        GameCommand predicted = waitForPrediction().copyFor(game);
+        List<GameCommand> moves = new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), game);
+        moves.remove(predicted);
+        game.continueGame(moves.get(0));
+        GameCommand move = ai.nextMove(game, game.getBoard());
+        assertNotNull(move);
+        assertEquals(1, ai.getAiStats().getPonderHits());
+        assertEquals(1, ai.getAiStats().getPonderMisses());
+        assertEquals(0.5, ai.getAiStats().getPonderHitRate(), 0.0001);
+        assertTrue(ai.getAiStats().getTotalPositionsEvaluated() > evaluated);
+
+        ai.stopPondering();
+        if (ManagementFactory.getThreadMXBean().isCurrentThreadCpuTimeSupported()) {
+            assertTrue(ai.getBackgroundCpuTimeInNanos() > 0);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testStopReachesPredictorThatHasNotStartedYet() {
+        // Like the search AIs, the predictor clears the stop flag when it starts searching
+        HiveAI slowPredictor = new RandomAI("Predictor") {
+            private volatile boolean stopped;
+
+            @Override
+            public GameCommand nextMove(Game state, Board board) {
+                stopped = false;
+                while (!stopped) {
+                    Thread.yield();
+                }
+                return super.nextMove(state, board);
+            }
+
+            @Override
+            public void stop() {
+                stopped = true;
+            }
+        };
+        PonderingAI ai = new PonderingAI(new RandomAI("Random"), slowPredictor);
+
+        game.continueGame(ai.nextMove(game, game.getBoard()));
+        game.continueGame(new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), game).get(0));
+        assertNotNull(ai.nextMove(game, game.getBoard()));
+        ai.stopPondering();
+    }
+
+    @Test
+    public void testFailedPonderSearchIsReported() throws InterruptedException {
+        final AtomicInteger searches = new AtomicInteger();
+        HiveAI failing = new RandomAI("Failing") {
+            @Override
+            public GameCommand nextMove(Game state, Board board) {
+                if (searches.incrementAndGet() == 2) throw new IllegalStateException("Search failed");
+                return super.nextMove(state, board);
+            }
+        };
+        PonderingAI ai = new PonderingAI(failing, predictor);
+
+        game.continueGame(ai.nextMove(game, game.getBoard()));
+        game.continueGame(waitForPrediction().copyFor(game));
+        try {
+            ai.nextMove(game, game.getBoard());
+            fail("Exception from the ponder search was not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("Search failed", e.getMessage());
+        }
+        assertEquals(0, ai.getAiStats().getPonderHits());
+        assertEquals(1, ai.getAiStats().getPonderMisses());
+        ai.stopPondering();
+    }
+
+    private GameCommand waitForPrediction() throws InterruptedException {
+        while (prediction == null) {
+            Thread.sleep(1);
+        }
+        GameCommand result = prediction;
+        prediction = null;
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+package dk.ilios.hivemind.ai;
+
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV1;
+import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.ai.solver.ProofNumberSearch;
+import dk.ilios.hivemind.ai.transpositiontable.ProofNumberTable;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ProofNumberSearchAITest {
+
+    Game game;
+
+    @Before
+    public void setup() {
+        game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setTurnLimit(10);
+    }
+
+    @Test
+    public void testCanDetectWinTurnOne() {
+        final HiveAI ai = new ProofNumberSearchAI("PNS", 1, 30000, new RandomAI("Random"));
+        game = TestSetups.sureWinInOneTurn(game);
+
+        GameCommand command = ai.nextMove(game, game.getBoard());
+
+        assertEquals(1, command.getToQ());
+        assertEquals(1, command.getToR());
+    }
+
+    @Test
+    public void testProveWinTurnTwo() {
+        ProofNumberSearch solver = new ProofNumberSearch(3, 100000);
+        game = TestSetups.sureWinInTwoTurns(game);
+        game.updateZobristKey(); // Setup bypasses GameCommands
+        long key = game.getZobristKey();
+
+        assertEquals(ProofNumberTable.PROVEN, solver.solve(game, 30000));
+        assertNotNull(solver.getWinningMove());
+        assertEquals(key, game.getZobristKey()); // Game state is restored
+    }
+
+    @Test
+    public void testDisproveWinWithTooFewPlies() {
+        ProofNumberSearch solver = new ProofNumberSearch(1, 100000);
+        game = TestSetups.sureWinInTwoTurns(game);
+
+        assertEquals(ProofNumberTable.DISPROVEN, solver.solve(game, 30000));
+    }
+
+    @Test
+    public void testMinMaxUsesEndgameSolver() {
+        AbstractMinMaxAI ai = new AlphaBetaMiniMaxAI("AlphaBeta", new SimpleHeuristicV1(), 1, 30000);
+        ai.setEndgameSolver(3, 100000, 10000);
+        game = TestSetups.sureWinInOneTurn(game);
+
+        GameCommand command = ai.copy().nextMove(game, game.getBoard());
+
+        assertEquals(1, command.getToQ());
+        assertEquals(1, command.getToR());
+    }
+}
@@ -0,0 +1,55 @@
+package dk.ilios.hivemind.ai;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fails if the retained bytes of the model or search structures grow beyond their budget. Budgets are about 1.5 times
+ * the measured values and can be overridden with system properties, eg. -Dhivemind.memoryBudget.game=8000. Lower them
+ * when the footprint is reduced, so it doesn't creep back.
+ *
+ * Retained bytes are the difference in used heap after <code>System.gc()</code>, which depends on the JVM, the heap size
+ * and other tests running at the same time. This test is therefore not part of "gradle test", but is run by
+ * "gradle footprint" in its own JVM with a fixed heap size.
+ */
+public class RetainedMemoryFootprintTest {
+
+    private static final long GAME_BUDGET = 10000;
+    private static final long BOARD_BUDGET = 3000;
+    private static final long MONTE_CARLO_NODE_BUDGET = 300;
+    private static final long TRANSPOSITION_TABLE_ENTRY_BUDGET = 160;
+
+    private static MemoryFootprint footprint;
+
+    @BeforeClass
+    public static void setUp() {
+        footprint = new MemoryFootprint();
+    }
+
+    @Test
+    public void testRetainedBytesPrGame() {
+        assertWithinBudget("game", footprint.getRetainedBytesPrGame(), GAME_BUDGET);
+    }
+
+    @Test
+    public void testRetainedBytesPrBoard() {
+        assertWithinBudget("board", footprint.getRetainedBytesPrBoard(), BOARD_BUDGET);
+    }
+
+    @Test
+    public void testRetainedBytesPrMonteCarloNode() {
+        assertWithinBudget("monteCarloNode", footprint.getRetainedBytesPrMonteCarloNode(), MONTE_CARLO_NODE_BUDGET);
+    }
+
+    @Test
+    public void testRetainedBytesPrTranspositionTableEntry() {
+        assertWithinBudget("transpositionTableEntry", footprint.getRetainedBytesPrTranspositionTableEntry(), TRANSPOSITION_TABLE_ENTRY_BUDGET);
+    }
+
+    private void assertWithinBudget(String name, long bytes, long defaultBudget) {
+        long budget = Long.getLong("hivemind.memoryBudget." + name, defaultBudget);
+        assertTrue(name + ": " + bytes + " bytes is above the budget of " + budget + " bytes", bytes > 0 && bytes <= budget);
+    }
+}
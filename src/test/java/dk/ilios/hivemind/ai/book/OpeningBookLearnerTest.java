@@ -0,0 +1,142 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.GameStatus;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OpeningBookLearnerTest {
+
+    File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("hivemind", ".book");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".lock").delete();
+    }
+
+    @Test
+    public void testGamesAreMergedIntoBook() throws IOException {
+        OpeningBookLearner learner = new OpeningBookLearner(file, 4, 2);
+        OpeningBook book = learner.getBook();
+        assertEquals(0, book.size());
+
+        learner.addGame(playRandomGame(new Random(1), GameStatus.RESULT_WHITE_WINS));
+        assertEquals(1, learner.getPendingGames());
+        assertEquals(0, book.size());
+
+        learner.addGame(playRandomGame(new Random(2), GameStatus.RESULT_BLACK_WINS));
+        assertEquals(0, learner.getPendingGames());
+        assertEquals(2, countGames(book.getMoves(createGame())));
+    }
+
+    @Test
+    public void testLearnersShareBook() throws IOException {
+        OpeningBookLearner learnerA = new OpeningBookLearner(file, 4, 100);
+        OpeningBookLearner learnerB = new OpeningBookLearner(file, 4, 100);
+        learnerA.addGame(playRandomGame(new Random(1), GameStatus.RESULT_WHITE_WINS));
+        learnerB.addGame(playRandomGame(new Random(2), GameStatus.RESULT_WHITE_WINS));
+        learnerB.addGame(playRandomGame(new Random(3), GameStatus.RESULT_DRAW));
+        learnerA.merge();
+        learnerB.merge();
+
+        assertEquals(3, countGames(learnerB.getBook().getMoves(createGame())));
+        learnerA.getBook().reload();
+        assertEquals(3, countGames(learnerA.getBook().getMoves(createGame())));
+    }
+
+    @Test
+    public void testMergeUpdatesKnownMovesAndInsertsNewOnes() throws IOException {
+        OpeningBookLearner learner = new OpeningBookLearner(file, 4, 1);
+        OpeningBook book = learner.getBook();
+        learner.addGame(playRandomGame(new Random(1), GameStatus.RESULT_WHITE_WINS));
+        int size = book.size();
+
+        // Known moves don't add entries
+        learner.addGame(playRandomGame(new Random(1), GameStatus.RESULT_BLACK_WINS));
+        assertEquals(size, book.size());
+        assertEquals(2, countGames(book.getMoves(createGame())));
+
+        // New moves are inserted in order
+        learner.addGame(playRandomGame(new Random(2), GameStatus.RESULT_DRAW));
+        OpeningBookBuilder builder = new OpeningBookBuilder(4);
+        builder.addGame(playRandomGame(new Random(1), GameStatus.RESULT_WHITE_WINS));
+        builder.addGame(playRandomGame(new Random(1), GameStatus.RESULT_BLACK_WINS));
+        builder.addGame(playRandomGame(new Random(2), GameStatus.RESULT_DRAW));
+        List<BookEntry> expected = builder.getSortedEntries();
+        assertTrue(book.size() > size);
+        assertEquals(expected.size(), book.size());
+        for (int i = 0; i < book.size(); i++) {
+            BookEntry entry = book.getEntry(i);
+            assertEquals(expected.get(i), entry);
+            assertEquals(expected.get(i).getGames(), entry.getGames());
+            assertEquals(expected.get(i).getWhiteWins(), entry.getWhiteWins());
+            assertEquals(expected.get(i).getBlackWins(), entry.getBlackWins());
+        }
+    }
+
+    @Test
+    public void testExplorationPolicyTriesUndersampledMoves() {
+        Player white = new Player("White", Player.PlayerType.WHITE);
+        BookMove wellKnown = new BookMove(GameCommand.PASS, 20, 10, 10);
+        BookMove undersampled = new BookMove(GameCommand.PASS, 1, 0, 1);
+        BookMove losing = new BookMove(GameCommand.PASS, 200, 0, 200);
+        List<BookMove> moves = Arrays.asList(wellKnown, undersampled);
+
+        assertSame(undersampled, new UCBExplorationPolicy(UCBExplorationPolicy.DEFAULT_EXPLORATION, 0, 10).select(moves, white, new Random()));
+        assertSame(wellKnown, new UCBExplorationPolicy(UCBExplorationPolicy.DEFAULT_EXPLORATION, 0, 10).select(Arrays.asList(wellKnown, losing), white, new Random()));
+        assertNull(new UCBExplorationPolicy(UCBExplorationPolicy.DEFAULT_EXPLORATION, 1, Integer.MAX_VALUE / 2).select(moves, white, new Random()));
+    }
+
+    private int countGames(List<BookMove> moves) {
+        int games = 0;
+        for (BookMove move : moves) {
+            games += move.games;
+        }
+        return games;
+    }
+
+    private Game createGame() {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setManualStepping(true);
+        game.start();
+        return game;
+    }
+
+    private Game playRandomGame(Random random, GameStatus result) {
+        Game game = createGame();
+        for (int i = 0; i < 6; i++) {
+            List<GameCommand> moves = new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), game);
+            game.continueGame(moves.get(random.nextInt(moves.size())));
+        }
+        game.setStatus(result);
+        return game;
+    }
+}
@@ -0,0 +1,170 @@
+package dk.ilios.hivemind.ai.book;
+
+import dk.ilios.hivemind.ai.OpeningBookAI;
+import dk.ilios.hivemind.ai.RandomAI;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.game.GameStatus;
+import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OpeningBookTest {
+
+    private static final int PLIES = 6;
+
+    File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("hivemind", ".book");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testMovesCanBeFoundInOtherGames() throws IOException {
+        Game recorded = playRandomGame(new Random(42), 10, GameStatus.RESULT_WHITE_WINS);
+        OpeningBookBuilder builder = new OpeningBookBuilder(PLIES);
+        builder.addGame(recorded);
+        builder.write(file);
+        assertEquals(PLIES, builder.size());
+
+        // Replay the game in a new game, where the tokens have other ids
+        OpeningBook book = new OpeningBook(file);
+        Game game = createGame();
+        for (int ply = 0; ply < 10; ply++) {
+            GameCommand move = copyMove(recorded.getMove(ply % 2 == 0 ? recorded.getWhitePlayer() : recorded.getBlackPlayer(), ply / 2 + 1), game);
+            List<BookMove> bookMoves = book.getMoves(game);
+            if (ply < PLIES) {
+                assertEquals(1, bookMoves.size());
+                assertEquals(move, bookMoves.get(0).move);
+                assertEquals(1, bookMoves.get(0).games);
+                assertEquals(1, bookMoves.get(0).whiteWins);
+            } else {
+                assertTrue(bookMoves.isEmpty());
+            }
+            game.continueGame(move);
+        }
+    }
+
+    @Test
+    public void testMergeBooks() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(PLIES);
+        builder.addGame(playRandomGame(new Random(1), PLIES, GameStatus.RESULT_WHITE_WINS));
+        builder.addGame(playRandomGame(new Random(2), PLIES, GameStatus.RESULT_BLACK_WINS));
+        builder.write(file);
+
+        OpeningBookBuilder mergedBuilder = new OpeningBookBuilder(PLIES);
+        mergedBuilder.addBook(new OpeningBook(file));
+        mergedBuilder.addGame(playRandomGame(new Random(3), PLIES, GameStatus.RESULT_DRAW));
+        mergedBuilder.write(file);
+
+        // All games start with a placement in the center
+        OpeningBook book = new OpeningBook(file);
+        int games = 0;
+        int whiteWins = 0;
+        int blackWins = 0;
+        for (BookMove move : book.getMoves(createGame())) {
+            games += move.games;
+            whiteWins += move.whiteWins;
+            blackWins += move.blackWins;
+        }
+        assertEquals(3, games);
+        assertEquals(1, whiteWins);
+        assertEquals(1, blackWins);
+    }
+
+    @Test
+    public void testOpeningBookAI() throws IOException {
+        Game recorded = playRandomGame(new Random(7), PLIES, GameStatus.RESULT_BLACK_WINS);
+        OpeningBookBuilder builder = new OpeningBookBuilder(2);
+        builder.addGame(recorded);
+        builder.write(file);
+
+        OpeningBookAI ai = new OpeningBookAI(new RandomAI("Random"), new OpeningBook(file), 1, new Random(7));
+        Game game = createGame();
+        GameCommand expected = copyMove(recorded.getMove(recorded.getWhitePlayer(), 1), game);
+        assertEquals(expected, ai.getBookMove(game));
+        assertEquals(expected, ai.nextMove(game, game.getBoard()));
+        game.continueGame(expected);
+
+        expected = copyMove(recorded.getMove(recorded.getBlackPlayer(), 1), game);
+        assertEquals(expected, ai.getBookMove(game));
+        game.continueGame(expected);
+
+        assertNull(ai.getBookMove(game));
+
+        // Moves seen in too few games are ignored
+        OpeningBookAI strictAI = new OpeningBookAI(new RandomAI("Random"), new OpeningBook(file), 2, new Random(7));
+        assertNull(strictAI.getBookMove(createGame()));
+    }
+
+    @Test
+    public void testSeededCopyPicksSameBookMoves() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(1);
+        for (int i = 0; i < 10; i++) {
+            builder.addGame(playRandomGame(new Random(i), PLIES, GameStatus.RESULT_WHITE_WINS));
+        }
+        builder.write(file);
+
+        OpeningBookAI ai = new OpeningBookAI(new RandomAI("Random"), new OpeningBook(file), 1, new Random());
+        ai.setSeed(42);
+        OpeningBookAI copy = (OpeningBookAI) ai.copy();
+        Game game = createGame();
+        assertTrue(ai.getBookMoves(game).size() > 1);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(ai.getBookMove(game), copy.getBookMove(game));
+        }
+    }
+
+    private Game createGame() {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setManualStepping(true);
+        game.start();
+        return game;
+    }
+
+    private Game playRandomGame(Random random, int plies, GameStatus result) {
+        Game game = createGame();
+        for (int i = 0; i < plies; i++) {
+            List<GameCommand> moves = new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), game);
+            game.continueGame(moves.get(random.nextInt(moves.size())));
+        }
+        game.setStatus(result);
+        return game;
+    }
+
+    // Returns the same move for another game. Tokens of the same type might have different ids in the two games.
+    private GameCommand copyMove(GameCommand move, Game game) {
+        Player player = move.getToken().getPlayer().isWhitePlayer() ? game.getWhitePlayer() : game.getBlackPlayer();
+        if (move.getFromQ() == Hex.SUPPLY) {
+            return GameCommand.addFromSupply(player.getFromSupply(move.getToken().getOriginalType()), move.getToQ(), move.getToR());
+        } else {
+            Hex from = game.getBoard().findHex(move.getFromQ(), move.getFromR());
+            return new GameCommand(move.getFromQ(), move.getFromR(), move.getToQ(), move.getToR(), from.getTopToken(), move.isMovedByPillbug());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package dk.ilios.hivemind.ai.controller;
+
+import dk.ilios.hivemind.ai.HiveAI;
+import dk.ilios.hivemind.ai.RandomAI;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Board;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ForkedTournamentTest {
+
+    private static final String CRASH_MARKER_PROPERTY = "hivemind.crashMarker";
+
+    File marker;
+
+    @Before
+    public void setup() throws IOException {
+        marker = File.createTempFile("hivemind", ".crashed");
+        marker.delete();
+    }
+
+    @After
+    public void tearDown() {
+        marker.delete();
+    }
+
+    @Test
+    public void testGamesArePlayedInWorkers() {
+        ForkedTournament tournament = new ForkedTournament(RandomSetup.class);
+        tournament.setTurnLimit(5);
+        tournament.setNumberOfMatches(2);
+        tournament.setWorkers(2);
+        tournament.setJvmArguments("-Xmx64m");
+        tournament.start();
+
+        assertEquals(4, tournament.getGameResults().size());
+        assertEquals(0, tournament.getFailedGames().size());
+        for (String result : tournament.getGameResults()) {
+            assertEquals(8, result.split("\t").length);
+        }
+    }
+
+    @Test
+    public void testCrashedGameIsRetried() {
+        ForkedTournament tournament = new ForkedTournament(CrashingSetup.class);
+        tournament.setTurnLimit(5);
+        tournament.setNumberOfMatches(1);
+        tournament.setWorkers(1);
+        tournament.setJvmArguments("-D" + CRASH_MARKER_PROPERTY + "=" + marker.getPath());
+        tournament.start();
+
+        assertTrue(marker.exists());
+        assertEquals(2, tournament.getGameResults().size());
+        assertEquals(0, tournament.getFailedGames().size());
+    }
+
+    @Test
+    public void testGameFailsAfterMaxRetries() {
+        ForkedTournament tournament = new ForkedTournament(CrashingSetup.class);
+        tournament.setTurnLimit(5);
+        tournament.setNumberOfMatches(1);
+        tournament.setWorkers(1);
+        tournament.setMaxRetries(0);
+        tournament.setJvmArguments("-D" + CRASH_MARKER_PROPERTY + "=" + marker.getPath());
+        tournament.start();
+
+        assertEquals(1, tournament.getGameResults().size());
+        assertEquals(1, tournament.getFailedGames().size());
+    }
+
+    @Test
+    public void testHangingGameIsRetried() {
+        ForkedTournament tournament = new ForkedTournament(HangingSetup.class);
+        tournament.setTurnLimit(5);
+        tournament.setNumberOfMatches(1);
+        tournament.setWorkers(1);
+        tournament.setGameTimeout(5000);
+        tournament.setJvmArguments("-D" + CRASH_MARKER_PROPERTY + "=" + marker.getPath());
+        tournament.start();
+
+        assertTrue(marker.exists());
+        assertEquals(2, tournament.getGameResults().size());
+        assertEquals(0, tournament.getFailedGames().size());
+    }
+
+    public static class RandomSetup implements TournamentSetup {
+        @Override
+        public List<HiveAI> createOpponents() {
+            return Arrays.<HiveAI>asList(new RandomAI("RandomA"), new RandomAI("RandomB"));
+        }
+    }
+
+    public static class CrashingSetup implements TournamentSetup {
+        @Override
+        public List<HiveAI> createOpponents() {
+            return Arrays.<HiveAI>asList(new CrashingAI("Crashing"), new RandomAI("Random"));
+        }
+    }
+
+    public static class HangingSetup implements TournamentSetup {
+        @Override
+        public List<HiveAI> createOpponents() {
+            return Arrays.<HiveAI>asList(new HangingAI("Hanging"), new RandomAI("Random"));
+        }
+    }
+
+    // Kills the JVM the first time it is asked for a move
+    private static class CrashingAI extends RandomAI {
+
+        private CrashingAI(String name) {
+            super(name);
+        }
+
+        @Override
+        public GameCommand nextMove(Game state, Board board) {
+            if (isFirstMove()) {
+                Runtime.getRuntime().halt(1);
+            }
+            return super.nextMove(state, board);
+        }
+
+        @Override
+        public HiveAI copy() {
+            return new CrashingAI(getName());
+        }
+    }
+
+    // Never answers the first time it is asked for a move
+    private static class HangingAI extends RandomAI {
+
+        private HangingAI(String name) {
+            super(name);
+        }
+
+        @Override
+        public GameCommand nextMove(Game state, Board board) {
+            if (isFirstMove()) {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.nextMove(state, board);
+        }
+
+        @Override
+        public HiveAI copy() {
+            return new HangingAI(getName());
+        }
+    }
+
+    // True the first time it is called in any worker JVM, using a marker file shared by the workers
+    private static boolean isFirstMove() {
+        String markerPath = System.getProperty(CRASH_MARKER_PROPERTY);
+        if (markerPath == null) return false;
+        try {
+            return new File(markerPath).createNewFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
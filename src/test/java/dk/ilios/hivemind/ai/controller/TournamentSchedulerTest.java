@@ -0,0 +1,105 @@
+package dk.ilios.hivemind.ai.controller;
+
+import dk.ilios.hivemind.ai.HiveAI;
+import dk.ilios.hivemind.ai.RandomAI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TournamentSchedulerTest {
+
+    File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("hivemind", ".results");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testWorkersAreSizedToThreads() {
+        assertEquals(8, TournamentScheduler.getWorkers(8, 1));
+        assertEquals(4, TournamentScheduler.getWorkers(8, 2));
+        assertEquals(2, TournamentScheduler.getWorkers(8, 3));
+        assertEquals(1, TournamentScheduler.getWorkers(2, 4));
+
+        TournamentScheduler scheduler = new TournamentScheduler();
+        scheduler.addGame(new RandomAI("A"), new RandomAI("B"), Runtime.getRuntime().availableProcessors());
+        assertEquals(1, scheduler.getWorkers());
+        scheduler.setWorkers(3);
+        assertEquals(3, scheduler.getWorkers());
+    }
+
+    @Test
+    public void testLongestExpectedGameFirst() {
+        HiveAI fast = new RandomAI("Fast");
+        HiveAI slow = new RandomAI("Slow");
+        TournamentScheduler scheduler = new TournamentScheduler();
+        for (int i = 0; i < 2; i++) {
+            scheduler.addGame(fast, fast, 1);
+            scheduler.addGame(slow, slow, 1);
+        }
+
+        // Unknown pairings are started first, one game from each
+        TournamentScheduler.ScheduledGame first = scheduler.nextGame();
+        TournamentScheduler.ScheduledGame second = scheduler.nextGame();
+        assertSame(fast, first.white);
+        assertSame(slow, second.white);
+
+        scheduler.gameFinished(first, 10);
+        scheduler.gameFinished(second, 1000);
+        assertSame(slow, scheduler.nextGame().white);
+        assertSame(fast, scheduler.nextGame().white);
+        assertNull(scheduler.nextGame());
+    }
+
+    @Test
+    public void testResultsAreStreamedToFile() throws IOException {
+        AIGameController controller = new AIGameController();
+        controller.addOpponent(new RandomAI("RandomA"));
+        controller.addOpponent(new RandomAI("RandomB"));
+        controller.setTurnLimit(5);
+        controller.setNumberOfMatches(2);
+        controller.setWorkers(2);
+        controller.setResultFile(file);
+        controller.start();
+
+        List<String> lines = readLines(file);
+        assertEquals(5, lines.size());
+        assertEquals(GameResultWriter.HEADER, lines.get(0));
+        assertEquals(4, controller.getGameResults().size());
+        for (int i = 1; i < lines.size(); i++) {
+            assertEquals(8, lines.get(i).split("\t").length);
+        }
+    }
+
+    private List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
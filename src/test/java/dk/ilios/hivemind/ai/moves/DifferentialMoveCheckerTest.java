@@ -0,0 +1,129 @@
+package dk.ilios.hivemind.ai.moves;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.BugType;
+import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Token;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DifferentialMoveCheckerTest {
+
+    // Moves are encoded in canonical coordinates, which depend on the Zobrist keys, so these must be updated together
+    // with ZobristTable.VERSION.
+
+    // Undoing the second queen placement didn't restore the Standard Position origin
+    private static final long[] UNDO_SECOND_QUEEN = {
+            0x808000000111L, 0x80810000011dL, 0x808100000121L, 0x817e0000011dL, 0x817f00000129L, 0x7d820000012dL,
+            0x827e00000109L
+    };
+
+    // Rebuilding the keys for a new origin used the height of the stack for the token below a beetle
+    private static final long[] BEETLE_ON_QUEEN = {
+            0x808000000119L, 0x817f00000115L, 0x808100000129L, 0x807e0000010dL, 0x7f7f00000119L, 0x7e810000011dL,
+            0x828000000109L, 0x838100000115L, 0x7f8000000129L, 0x827c837c0015L
+    };
+
+    @Test
+    public void testStandardGeneratorMatchesReference() {
+        RandomPositionGenerator generator = new RandomPositionGenerator(42);
+        assertNull(new DifferentialMoveChecker(new StandardMoveGenerator()).run(generator, 20));
+    }
+
+    @Test
+    public void testAggressiveGeneratorMatchesReference() {
+        RandomPositionGenerator generator = new RandomPositionGenerator(43);
+        assertNull(new DifferentialMoveChecker(new AggressiveMovesFirstGenerator()).run(generator, 10));
+    }
+
+    @Test
+    public void testRegressions() {
+        DifferentialMoveChecker checker = new DifferentialMoveChecker(new StandardMoveGenerator());
+        assertNull(checker.check(new RandomPositionGenerator.Position(true, false, false, UNDO_SECOND_QUEEN)));
+        assertNull(checker.check(new RandomPositionGenerator.Position(true, false, false, BEETLE_ON_QUEEN)));
+    }
+
+    @Test
+    public void testPositionsAreReproducible() {
+        RandomPositionGenerator first = new RandomPositionGenerator(1);
+        RandomPositionGenerator second = new RandomPositionGenerator(1);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(first.next().toString(), second.next().toString());
+        }
+    }
+
+    @Test
+    public void testPositionsCoverAllExpansions() {
+        RandomPositionGenerator generator = new RandomPositionGenerator(42);
+        generator.setPlies(20, 40);
+        Set<BugType> placed = EnumSet.noneOf(BugType.class);
+        for (int i = 0; i < 30; i++) {
+            Game game = generator.next().replay();
+            assertNotNull(game);
+            for (Hex hex : game.getBoard().getFilledHexes()) {
+                for (int height = 1; height <= hex.getHeight(); height++) {
+                    placed.add(hex.getTokenAt(height).getOriginalType());
+                }
+            }
+        }
+        assertTrue(placed.contains(BugType.MOSQUITO));
+        assertTrue(placed.contains(BugType.LADY_BUG));
+        assertTrue(placed.contains(BugType.PILL_BUG));
+    }
+
+    @Test
+    public void testMissingMovesAreFoundAndShrunk() {
+        DifferentialMoveChecker checker = new DifferentialMoveChecker(new NoBeetleMovesGenerator());
+        RandomPositionGenerator generator = new RandomPositionGenerator(42);
+        generator.setPlies(30, 40);
+        DifferentialMoveChecker.Failure failure = checker.run(generator, 10);
+
+        assertNotNull(failure);
+        assertTrue(failure.error, failure.error.contains("Moves differ"));
+        assertEquals(failure.error, checker.check(failure.position));
+
+        // The last move must be needed, otherwise an earlier position would have failed
+        RandomPositionGenerator.Position position = failure.position;
+        long[] moves = new long[position.getPlies() - 1];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = position.getMove(i);
+        }
+        assertNull(checker.check(position.withMoves(moves)));
+    }
+
+    @Test
+    public void testThroughput() {
+        DifferentialMoveChecker checker = new DifferentialMoveChecker(new StandardMoveGenerator());
+        RandomPositionGenerator generator = new RandomPositionGenerator(42);
+        generator.setExpansions(true);
+        assertTrue(checker.runThroughput(generator, 5) > 0);
+    }
+
+    // Forgets that beetles on the board can move
+    private static class NoBeetleMovesGenerator extends MoveGenerator {
+        private final MoveGenerator generator = new StandardMoveGenerator();
+
+        @Override
+        public List<GameCommand> generateMoves(List<GameCommand> initialList, Game state) {
+            List<GameCommand> moves = generator.generateMoves(initialList, state);
+            Iterator<GameCommand> it = moves.iterator();
+            while (it.hasNext()) {
+                Token token = it.next().getToken();
+                if (token != null && token.getType() == BugType.BEETLE && !token.inSupply()) {
+                    it.remove();
+                }
+            }
+            return moves;
+        }
+    }
+}
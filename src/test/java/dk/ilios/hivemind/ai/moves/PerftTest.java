@@ -0,0 +1,100 @@
+package dk.ilios.hivemind.ai.moves;
+
+import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Golden perft counts. If a change to the rules or the board makes any of these fail, the change alters which moves
+ * are legal. Use <code>Perft.divide()</code> on the old and new version to find the moves that differ.
+ */
+public class PerftTest {
+
+    private static final long[] START_POSITION = { 1, 11, 726, 21912, 661344 };
+    private static final long[] START_POSITION_ALL_EXPANSIONS = { 1, 14, 1176, 46032 };
+    private static final long[] SURE_WIN_IN_ONE_TURN = { 1, 53, 3672 };
+    private static final long[] SURE_WIN_IN_TWO_TURNS = { 1, 89, 7448 };
+
+    @Test
+    public void testStartPosition() {
+        assertCounts(START_POSITION, createGame(false));
+    }
+
+    @Test
+    public void testStartPositionAllExpansions() {
+        assertCounts(START_POSITION_ALL_EXPANSIONS, createGame(true));
+    }
+
+    @Test
+    public void testSureWinInOneTurn() {
+        assertCounts(SURE_WIN_IN_ONE_TURN, TestSetups.sureWinInOneTurn(createGame(false)));
+    }
+
+    @Test
+    public void testSureWinInTwoTurns() {
+        assertCounts(SURE_WIN_IN_TWO_TURNS, TestSetups.sureWinInTwoTurns(createGame(false)));
+    }
+
+    @Test
+    public void testParallelPerft() {
+        Game game = TestSetups.sureWinInTwoTurns(createGame(false));
+        assertEquals(SURE_WIN_IN_TWO_TURNS[2], new Perft().parallelPerft(game, 2, new ForkJoinPool(2)));
+        assertEquals(START_POSITION[3], new Perft().parallelPerft(createGame(false), 3, new ForkJoinPool(2)));
+    }
+
+    @Test
+    public void testDivide() {
+        Game game = TestSetups.sureWinInOneTurn(createGame(false));
+        Map<GameCommand, Long> divide = new Perft().divide(game, 2);
+        assertEquals(SURE_WIN_IN_ONE_TURN[1], divide.size());
+        long leaves = 0;
+        for (long count : divide.values()) {
+            leaves += count;
+        }
+        assertEquals(SURE_WIN_IN_ONE_TURN[2], leaves);
+    }
+
+    @Test
+    public void testStateIsRestored() {
+        Game game = TestSetups.sureWinInTwoTurns(createGame(false));
+        game.updateZobristKey();
+        Game original = game.copy();
+        new Perft().perft(game, 2);
+
+        assertTrue(game.getBoard().hasSameLayout(original.getBoard()));
+        assertEquals(original.getZobristKey(), game.getZobristKey());
+        assertEquals(original.getActivePlayer().getType(), game.getActivePlayer().getType());
+        assertEquals(original.getActivePlayer().getMoves(), game.getActivePlayer().getMoves());
+    }
+
+    private void assertCounts(long[] expected, Game game) {
+        Perft perft = new Perft();
+        for (int depth = 0; depth < expected.length; depth++) {
+            assertEquals("Depth " + depth, expected[depth], perft.perft(game, depth));
+        }
+    }
+
+    private Game createGame(boolean expansions) {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        if (expansions) {
+            p1.useAllExpansions();
+            p2.useAllExpansions();
+        }
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setManualStepping(true);
+        game.start();
+        return game;
+    }
+}
@@ -0,0 +1,89 @@
+package dk.ilios.hivemind.ai.statistics;
+
+import dk.ilios.hivemind.ai.RandomAI;
+import dk.ilios.hivemind.game.GamePhase;
+import dk.ilios.hivemind.game.GameStatus;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AIStatisticsTest {
+
+    @Test
+    public void testCacheHitsArePrMove() {
+        AIStatistics stats = new AIStatistics(new RandomAI("Random"));
+        stats.startCalculatingNextMove();
+        stats.cacheHit();
+        stats.cacheHit();
+        stats.moveCalculated();
+        stats.startCalculatingNextMove();
+        stats.cacheHit();
+        stats.moveCalculated();
+
+        assertEquals(2, stats.getMoves());
+        assertArrayEquals(new int[] { 2, 1 }, stats.getCacheHits());
+        assertEquals(2, stats.getMillisecondsPrMove().length);
+        assertEquals(2, stats.getTimePrMoveHistogram().getCount());
+    }
+
+    @Test
+    public void testCutoffDistribution() {
+        AIStatistics stats = new AIStatistics(new RandomAI("Random"));
+        stats.cutOffAfter(1);
+        stats.cutOffAfter(1);
+        stats.cutOffAfter(3);
+        stats.cutOffAfter(100);
+
+        long[] distribution = stats.getCutoffDistribution();
+        assertEquals(2, distribution[1]);
+        assertEquals(1, distribution[3]);
+        assertEquals(1, distribution[AIStatistics.MAX_CUTOFF_INDEX]);
+        assertEquals(0.5, stats.getFirstMoveCutoffRate(), 0.0001);
+    }
+
+    @Test
+    public void testBranchingByPhase() {
+        AIStatistics stats = new AIStatistics(new RandomAI("Random"));
+        stats.setGamePhase(GamePhase.OPENING);
+        stats.nodeBranched(10);
+        stats.nodeBranched(20);
+        stats.setGamePhase(GamePhase.ENDGAME);
+        stats.nodeBranched(60);
+
+        assertEquals(15, stats.getAverageBranchFactor(GamePhase.OPENING), 0.0001);
+        assertEquals(-1, stats.getAverageBranchFactor(GamePhase.MIDGAME), 0.0001);
+        assertEquals(60, stats.getAverageBranchFactor(GamePhase.ENDGAME), 0.0001);
+        assertEquals(30, stats.getAverageBranchFactor());
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        AIStatistics white = new AIStatistics(new RandomAI("White"));
+        white.startCalculatingNextMove();
+        white.moveCalculated();
+        GameStatistics game = new GameStatistics();
+        game.setWhiteName("White");
+        game.setBlackName("Black");
+        game.setStatus(GameStatus.RESULT_WHITE_WINS);
+        game.addWhiteAIStats(white);
+        game.addBlackAIStats(new AIStatistics(new RandomAI("Black")));
+
+        StringWriter csv = new StringWriter();
+        StatisticsExporter.writeCsv(Arrays.asList(game), csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(StatisticsExporter.COLUMNS.length, lines[0].split(",").length);
+        assertEquals(StatisticsExporter.COLUMNS.length, lines[1].split(",").length);
+        assertTrue(lines[1].startsWith("1,white,White,Black,RESULT_WHITE_WINS,1,"));
+
+        StringWriter json = new StringWriter();
+        StatisticsExporter.writeJson(Arrays.asList(game), json);
+        assertTrue(json.toString().contains("\"whiteStats\": {\"moves\": 1,"));
+        assertTrue(json.toString().contains("\"cutoffDistribution\": [0, 0,"));
+    }
+}
@@ -0,0 +1,75 @@
+package dk.ilios.hivemind.ai.statistics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(50, histogram.getCount());
+        assertEquals(25, histogram.getPercentile(50));
+        assertEquals(45, histogram.getPercentile(90));
+        assertEquals(50, histogram.getPercentile(100));
+        assertEquals(1, histogram.getMin());
+        assertEquals(25.5, histogram.getMean(), 0.0001);
+    }
+
+    @Test
+    public void testLargeValuesWithinPrecision() {
+        Histogram histogram = new Histogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertPrecision(50000000, histogram.getPercentile(50));
+        assertPrecision(90000000, histogram.getPercentile(90));
+        assertPrecision(99000000, histogram.getPercentile(99));
+        assertEquals(100000000, histogram.getMax());
+    }
+
+    @Test
+    public void testBucketsAreContinuous() {
+        for (int index = 1; index < 1000; index++) {
+            assertEquals(index, Histogram.getIndex(Histogram.getHighestValue(index - 1) + 1));
+            assertEquals(index, Histogram.getIndex(Histogram.getHighestValue(index)));
+        }
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void testAdd() {
+        Histogram a = new Histogram();
+        Histogram b = new Histogram();
+        a.record(10);
+        b.record(20);
+        b.record(30);
+        a.add(b);
+
+        assertEquals(3, a.getCount());
+        assertEquals(10, a.getMin());
+        assertEquals(30, a.getMax());
+        assertEquals(20, a.getPercentile(50));
+    }
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    private void assertPrecision(long expected, long actual) {
+        assertTrue(expected + " vs. " + actual, Math.abs(expected - actual) <= expected / 32);
+    }
+}
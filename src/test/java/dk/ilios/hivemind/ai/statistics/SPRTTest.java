@@ -0,0 +1,70 @@
+package dk.ilios.hivemind.ai.statistics;
+
+import dk.ilios.hivemind.ai.RandomAI;
+import dk.ilios.hivemind.ai.controller.AIGameController;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SPRTTest {
+
+    @Test
+    public void testEloConversion() {
+        assertEquals(0.5, SPRT.getScore(0), 0.0001);
+        assertEquals(0.64, SPRT.getScore(100), 0.01);
+        assertEquals(100, SPRT.getElo(SPRT.getScore(100)), 0.0001);
+        assertEquals(-100, SPRT.getElo(SPRT.getScore(-100)), 0.0001);
+    }
+
+    @Test
+    public void testStrongerAIAcceptsH1() {
+        SPRT sprt = new SPRT(0, 10, 0.05, 0.05);
+        assertEquals(SPRT.Status.CONTINUE, sprt.getStatus());
+        int pairs = 0;
+        while (sprt.getStatus() == SPRT.Status.CONTINUE) {
+            // Scores 75% on average
+            if (pairs % 2 == 0) {
+                sprt.addGamePair(1, 0.5);
+            } else {
+                sprt.addGamePair(1, 0.5);
+                sprt.addGamePair(1, 0);
+                sprt.addGamePair(1, 1);
+            }
+            pairs++;
+        }
+        assertEquals(SPRT.Status.H1_ACCEPTED, sprt.getStatus());
+        assertTrue(sprt.getGamePairs() < 200);
+        assertTrue(sprt.getElo() - sprt.getEloError() > 0);
+    }
+
+    @Test
+    public void testEqualAIAcceptsH0() {
+        SPRT sprt = new SPRT(0, 10, 0.05, 0.05);
+        while (sprt.getStatus() == SPRT.Status.CONTINUE) {
+            sprt.addGamePair(1, 0);
+            sprt.addGamePair(0.5, 0.5);
+            sprt.addGamePair(0, 1);
+        }
+        assertEquals(SPRT.Status.H0_ACCEPTED, sprt.getStatus());
+        assertEquals(0, sprt.getElo(), 0.0001);
+        assertEquals(sprt.getGamePairs() * 2, sprt.getWins() + sprt.getDraws() + sprt.getLosses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalBounds() {
+        new SPRT(10, 0, 0.05, 0.05);
+    }
+
+    @Test
+    public void testMatchStopsWhenHypothesisIsAccepted() {
+        AIGameController controller = new AIGameController();
+        controller.setTurnLimit(3); // All games are draws
+        controller.setWorkers(1);
+        SPRT sprt = controller.startSPRT(new RandomAI("Candidate"), new RandomAI("Baseline"), new SPRT(0, 10, 0.05, 0.05), 1000);
+        assertEquals(SPRT.Status.H0_ACCEPTED, sprt.getStatus());
+        assertTrue(sprt.getGamePairs() < 1000);
+        assertEquals(sprt.getGamePairs() * 2, sprt.getDraws());
+        assertEquals(sprt.getGamePairs() * 2, controller.getGameResults().size());
+    }
+}
@@ -0,0 +1,135 @@
+package dk.ilios.hivemind.ai.time;
+
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.model.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeManagerTest {
+
+    Game game;
+
+    @Before
+    public void setup() {
+        game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setActivePlayer(p1);
+        game.setTurnLimit(10);
+    }
+
+    @Test
+    public void testLimitsInOpening() {
+        TimeManager timeManager = new TimeManager(10000);
+        timeManager.start(game, 0);
+
+        assertEquals(10000, timeManager.getHardLimitMillis());
+        assertEquals(2500, timeManager.getSoftLimitMillis());
+    }
+
+    @Test
+    public void testRemainingGameTimeLimitsHardLimit() {
+        TimeManager timeManager = new TimeManager(10000);
+        timeManager.setRemainingGameTime(10000); // 10 moves left
+        timeManager.start(game, 0);
+
+        assertEquals(3000, timeManager.getHardLimitMillis());
+    }
+
+    @Test
+    public void testNarrowPositionsLowersSoftLimit() {
+        TimeManager timeManager = new TimeManager(10000);
+        timeManager.start(game, 1);
+
+        assertEquals(1250, timeManager.getSoftLimitMillis());
+    }
+
+    @Test
+    public void testClockIsOnlyCheckedEveryNNodes() {
+        TimeManager timeManager = new TimeManager(0, 100);
+        timeManager.start(game, 0);
+
+        for (int i = 0; i < 99; i++) {
+            assertFalse(timeManager.checkTime());
+        }
+        assertTrue(timeManager.checkTime());
+        assertEquals(100, timeManager.getNodes());
+    }
+
+    @Test
+    public void testStopFromOtherThread() throws InterruptedException {
+        final TimeManager timeManager = new TimeManager(10000);
+        timeManager.start(game, 0);
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                timeManager.stop();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertTrue(timeManager.checkTime());
+        assertFalse(timeManager.canStartIteration());
+    }
+
+    @Test
+    public void testEffectiveBranchingFactor() {
+        TimeManager timeManager = new TimeManager(10000);
+        timeManager.start(game, 0);
+
+        assertTrue(timeManager.canStartIteration());
+        for (int i = 0; i < 10; i++) timeManager.checkTime();
+        timeManager.iterationCompleted();
+        for (int i = 0; i < 100; i++) timeManager.checkTime();
+        timeManager.iterationCompleted();
+
+        assertEquals(10.0, timeManager.getEffectiveBranchingFactor(), 0.0001);
+    }
+
+    @Test
+    public void testNoNewIterationAfterSoftLimit() {
+        TimeManager timeManager = new TimeManager(0);
+        timeManager.start(game, 0);
+
+        assertTrue(timeManager.canStartIteration());
+        timeManager.iterationCompleted();
+        assertFalse(timeManager.canStartIteration());
+    }
+
+    @Test
+    public void testNodeBudgetStopsSearch() {
+        TimeManager timeManager = new TimeManager(10000);
+        timeManager.setMaxNodes(50);
+        timeManager.start(game, 0);
+
+        for (int i = 0; i < 49; i++) {
+            assertFalse(timeManager.checkTime());
+        }
+        assertTrue(timeManager.checkTime());
+        assertEquals(50, timeManager.getNodes());
+    }
+
+    @Test
+    public void testNodeBudgetPredictsNextIteration() {
+        TimeManager timeManager = new TimeManager(10000);
+        timeManager.setMaxNodes(1000);
+        timeManager.start(game, 0);
+
+        for (int i = 0; i < 10; i++) timeManager.checkTime();
+        timeManager.iterationCompleted();
+        for (int i = 0; i < 50; i++) timeManager.checkTime();
+        timeManager.iterationCompleted();
+        assertTrue(timeManager.canStartIteration()); // 60 + 50 * 5 nodes
+
+        for (int i = 0; i < 250; i++) timeManager.checkTime();
+        timeManager.iterationCompleted();
+        assertFalse(timeManager.canStartIteration()); // 310 + 250 * 5 nodes
+    }
+}
@@ -0,0 +1,125 @@
+package dk.ilios.hivemind.ai.trace;
+
+import dk.ilios.hivemind.ai.RandomAI;
+import dk.ilios.hivemind.ai.TranspostionTableIDDFSAlphaBetaMiniMaxAI;
+import dk.ilios.hivemind.ai.UCTMonteCarloTreeSearchAI;
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV1;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchTracerTest {
+
+    @Test
+    public void testAlphaBetaTrace() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SearchTraceAnalyzer analyzer = analyze(traceAlphaBeta(output, 1), output);
+
+        assertEquals(1, analyzer.getSearches());
+        assertEquals(0, analyzer.getMonteCarloSearches());
+        assertEquals(1, analyzer.getNodes(0));
+        assertTrue(analyzer.getMaxPly() >= 2);
+        assertTrue(analyzer.getEffectiveBranchingFactor(0) > 1);
+
+        long sampled = 0;
+        for (int ply = 0; ply <= analyzer.getMaxPly(); ply++) {
+            sampled += analyzer.getSampledNodes(ply);
+            assertTrue(analyzer.getSampledNodes(ply) <= analyzer.getNodes(ply));
+            assertTrue(analyzer.getFirstMoveCutoffRate(ply) >= 0 && analyzer.getFirstMoveCutoffRate(ply) <= 1);
+            assertEquals(analyzer.getSampledNodes(ply) > 0 ? 1 : 0,
+                    analyzer.getExactRate(ply) + analyzer.getFailHighRate(ply) + analyzer.getFailLowRate(ply), 0.0001);
+        }
+        assertTrue(sampled > 0);
+        assertTrue(analyzer.getCutoffRate(1) > 0);
+    }
+
+    @Test
+    public void testSamplingDoesNotChangeNodeCounts() throws IOException {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        SearchTraceAnalyzer allNodes = analyze(traceAlphaBeta(all, 1), all);
+        ByteArrayOutputStream sampled = new ByteArrayOutputStream();
+        SearchTraceAnalyzer sampledNodes = analyze(traceAlphaBeta(sampled, 100), sampled);
+
+        assertTrue(sampled.size() * 10 < all.size());
+        assertEquals(allNodes.getMaxPly(), sampledNodes.getMaxPly());
+        for (int ply = 0; ply <= allNodes.getMaxPly(); ply++) {
+            assertEquals(allNodes.getNodes(ply), sampledNodes.getNodes(ply));
+            assertTrue(sampledNodes.getSampledNodes(ply) <= allNodes.getSampledNodes(ply));
+        }
+    }
+
+    @Test
+    public void testMonteCarloTrace() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SearchTracer tracer = new SearchTracer(output, 1, 42);
+        UCTMonteCarloTreeSearchAI ai = new UCTMonteCarloTreeSearchAI("MCTS", 20, 600000);
+        ai.setSeed(42);
+        ai.setMaxPlayouts(100);
+        ai.setSearchTracer(tracer);
+        Game game = createGame();
+        ai.nextMove(game, game.getBoard());
+        SearchTraceAnalyzer analyzer = analyze(tracer, output);
+
+        assertEquals(1, analyzer.getSearches());
+        assertEquals(1, analyzer.getMonteCarloSearches());
+        assertEquals(100, analyzer.getSampledPlayouts());
+        assertEquals(1, analyzer.getNodes(0));
+        assertTrue(analyzer.getNodes(1) > 0);
+
+        long snapshots = 0;
+        for (int i = 0; i < SearchTraceAnalyzer.PROGRESS_BUCKETS; i++) {
+            snapshots += analyzer.getRootSnapshots(i);
+            assertTrue(analyzer.getTopMoveShare(i) > 0 && analyzer.getTopMoveShare(i) <= 1);
+        }
+        assertEquals(99, snapshots); // The first snapshot is before any visits
+        assertEquals(1, analyzer.getFinalMoveLeadRate(SearchTraceAnalyzer.PROGRESS_BUCKETS - 1), 0.5);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        new SearchTraceAnalyzer().read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 }));
+    }
+
+    private SearchTracer traceAlphaBeta(ByteArrayOutputStream output, int sampleInterval) throws IOException {
+        SearchTracer tracer = new SearchTracer(output, sampleInterval, 42);
+        TranspostionTableIDDFSAlphaBetaMiniMaxAI ai = new TranspostionTableIDDFSAlphaBetaMiniMaxAI("TT", new SimpleHeuristicV1(), 3, 600000);
+        ai.setSeed(42);
+        ai.setSearchTracer(tracer);
+        Game game = createGame();
+        ai.nextMove(game, game.getBoard());
+        return tracer;
+    }
+
+    private SearchTraceAnalyzer analyze(SearchTracer tracer, ByteArrayOutputStream output) throws IOException {
+        tracer.close();
+        SearchTraceAnalyzer analyzer = new SearchTraceAnalyzer();
+        analyzer.read(new ByteArrayInputStream(output.toByteArray()));
+        return analyzer;
+    }
+
+    // Position after a few random moves, so the search isn't over as soon as it starts
+    private Game createGame() {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setTurnLimit(30);
+        game.setManualStepping(true);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.start();
+
+        RandomAI random = new RandomAI("Random", 42);
+        for (int i = 0; i < 8; i++) {
+            random.nextMove(game, game.getBoard()).execute(game);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,201 @@
+package dk.ilios.hivemind.ai.transpositiontable;
+
+import dk.ilios.hivemind.ai.AbstractMinMaxAI;
+import dk.ilios.hivemind.ai.TranspostionTableIDDFSAlphaBetaMiniMaxAI;
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV1;
+import dk.ilios.hivemind.ai.heuristics.SimpleHeuristicV2;
+import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
+import dk.ilios.hivemind.model.Hex;
+import dk.ilios.hivemind.model.Player;
+import dk.ilios.hivemind.model.StandardPositionMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PersistentTranspositionTableTest {
+
+    private static final long SIZE = PersistentTranspositionTable.MB;
+    private static final String OWNER = "TestAI/TestHeuristic";
+
+    File file;
+    Game game;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("hivemind", ".tt");
+        file.deleteOnExit();
+        game = createGame();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testResultsSurviveReopening() throws IOException {
+        GameCommand move = getBoardMove(game);
+        PersistentTranspositionTable table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        assertFalse(table.isReloaded());
+        table.addResult(game, game.getActivePlayer(), 42, 5, TranspositionTableEntry.CUT_NODE, move);
+        table.close();
+
+        // Read the result from another game with the same position
+        Game otherGame = createGame();
+        table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        assertTrue(table.isReloaded());
+        TranspositionTableEntry entry = table.getResult(otherGame, otherGame.getActivePlayer());
+        table.close();
+
+        assertNotNull(entry);
+        assertEquals(42, entry.value);
+        assertEquals(5, entry.depth);
+        assertEquals(TranspositionTableEntry.CUT_NODE, entry.type);
+        // Tokens of the same type can have different ids in the two games, so use the token on the hex
+        Hex from = otherGame.getBoard().findHex(move.getFromQ(), move.getFromR());
+        assertEquals(GameCommand.move(from.getTopToken(), move.getToQ(), move.getToR()), entry.move);
+    }
+
+    @Test
+    public void testPlacementsAndPerspective() throws IOException {
+        GameCommand placement = getPlacement(game);
+        PersistentTranspositionTable table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        table.addResult(game, game.getWhitePlayer(), -7, 2, TranspositionTableEntry.PV_NODE, placement);
+
+        TranspositionTableEntry entry = table.getResult(game, game.getWhitePlayer());
+        assertEquals(-7, entry.value);
+        assertEquals(placement.getToQ(), entry.move.getToQ());
+        assertEquals(placement.getToR(), entry.move.getToR());
+        assertEquals(Hex.SUPPLY, entry.move.getFromQ());
+        assertEquals(placement.getToken().getOriginalType(), entry.move.getToken().getOriginalType());
+        assertNull(table.getResult(game, game.getBlackPlayer()));
+        table.close();
+    }
+
+    @Test
+    public void testShallowResultsDoesNotReplaceDeeper() throws IOException {
+        PersistentTranspositionTable table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        table.addResult(game, game.getWhitePlayer(), 10, 4, TranspositionTableEntry.PV_NODE, null);
+        table.addResult(game, game.getWhitePlayer(), 20, 3, TranspositionTableEntry.PV_NODE, null);
+        assertEquals(10, table.getResult(game, game.getWhitePlayer()).value);
+
+        table.addResult(game, game.getWhitePlayer(), 30, 4, TranspositionTableEntry.ALL_NODE, null);
+        TranspositionTableEntry entry = table.getResult(game, game.getWhitePlayer());
+        assertEquals(30, entry.value);
+        assertEquals(TranspositionTableEntry.ALL_NODE, entry.type);
+        assertNull(entry.move);
+        table.close();
+    }
+
+    @Test
+    public void testRawKeys() throws IOException {
+        long key = game.getZobristKey();
+        PersistentTranspositionTable table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        table.addResult(key, 12, 3, TranspositionTableEntry.CUT_NODE, getBoardMove(game));
+        table.addResult(key, 13, 2, TranspositionTableEntry.CUT_NODE, null);
+        table.close();
+
+        table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        TranspositionTableEntry entry = table.getResult(key);
+        assertEquals(12, entry.value);
+        assertEquals(3, entry.depth);
+        assertEquals(TranspositionTableEntry.CUT_NODE, entry.type);
+        assertNull(entry.move); // Moves cannot be stored without a board
+        assertNull(table.getResult(key + 1));
+        assertNull(table.getResult(game, game.getWhitePlayer())); // Not the same entry as the game state
+        table.close();
+    }
+
+    @Test
+    public void testChangedSizeResetsTable() throws IOException {
+        PersistentTranspositionTable table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        table.addResult(game, game.getWhitePlayer(), 10, 4, TranspositionTableEntry.PV_NODE, null);
+        table.close();
+
+        table = new PersistentTranspositionTable(file, 2 * SIZE, OWNER);
+        assertFalse(table.isReloaded());
+        assertNull(table.getResult(game, game.getWhitePlayer()));
+        table.close();
+    }
+
+    @Test
+    public void testOtherOwnerIsRejected() throws IOException {
+        PersistentTranspositionTable table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        table.addResult(game, game.getWhitePlayer(), 10, 4, TranspositionTableEntry.PV_NODE, null);
+        table.close();
+
+        try {
+            new PersistentTranspositionTable(file, SIZE, "OtherAI/OtherHeuristic");
+            fail("Table from another AI was accepted");
+        } catch (IOException expected) {
+        }
+
+        // The rejected owner must not have changed the file
+        table = new PersistentTranspositionTable(file, SIZE, OWNER);
+        assertTrue(table.isReloaded());
+        assertEquals(OWNER, table.getOwner());
+        assertEquals(10, table.getResult(game, game.getWhitePlayer()).value);
+        table.close();
+    }
+
+    @Test
+    public void testAIRejectsTableOfOtherHeuristic() throws IOException {
+        AbstractMinMaxAI ai = new TranspostionTableIDDFSAlphaBetaMiniMaxAI("TT", new SimpleHeuristicV1(), 3, 30000);
+        PersistentTranspositionTable table = new PersistentTranspositionTable(file, SIZE, ai.getTranspositionTableOwner());
+        ai.setTranspositionTable(table);
+        assertEquals(table, ai.getTranspositionTable());
+
+        AbstractMinMaxAI other = new TranspostionTableIDDFSAlphaBetaMiniMaxAI("TT", new SimpleHeuristicV2(), 3, 30000);
+        try {
+            other.setTranspositionTable(table);
+            fail("Table from another heuristic was accepted");
+        } catch (IllegalArgumentException expected) {
+        } finally {
+            table.close();
+        }
+    }
+
+    private Game createGame() {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game = TestSetups.sureWinInTwoTurns(game);
+        game.updateZobristKey();
+        return game;
+    }
+
+    private GameCommand getBoardMove(Game game) {
+        for (GameCommand move : generateMoves(game)) {
+            if (move.getFromQ() != Hex.SUPPLY) return move;
+        }
+        throw new IllegalStateException("No moves on the board");
+    }
+
+    private GameCommand getPlacement(Game game) {
+        for (GameCommand move : generateMoves(game)) {
+            if (move.getFromQ() == Hex.SUPPLY) return move;
+        }
+        throw new IllegalStateException("No placements");
+    }
+
+    private List<GameCommand> generateMoves(Game game) {
+        return new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), game);
+    }
+}
@@ -267,6 +267,68 @@ public class BoardTest {
         assertEquals(firstKey, board.getZobristKey());
     }
 
+    @Test
+    public void testZobristKey_sameForIndependentBoards() {
+        Board board1 = new Board(p1, p2);
+        board1.setStandardPositionMode(StandardPositionMode.ENABLED);
+        board1.addToken(p1.getFromSupply(BugType.QUEEN_BEE), 0, 0);
+        board1.addToken(p2.getFromSupply(BugType.BEETLE), 1, 0);
+
+        Player white = new Player("White", Player.PlayerType.WHITE); white.fillBaseSupply();
+        Player black = new Player("Black", Player.PlayerType.BLACK); black.fillBaseSupply();
+        Board board2 = new Board(white, black);
+        board2.setStandardPositionMode(StandardPositionMode.ENABLED);
+        board2.addToken(white.getFromSupply(BugType.QUEEN_BEE), 0, 0);
+        board2.addToken(black.getFromSupply(BugType.BEETLE), 1, 0);
+
+        // Keys only depend on the seeded table, so they can be compared across boards and processes
+        long expectedKey = ZobristTable.PRIMARY.getTokenHash(0, 0, 1, 0, 0) ^ ZobristTable.PRIMARY.getTokenHash(1, 0, 1, 1, 1);
+        assertEquals(expectedKey, board1.getSymmetryKey(0));
+        assertEquals(board1.getZobristKey(), board2.getZobristKey());
+    }
+
+    @Test
+    public void testZobristTable_coversLargestHive() {
+        int max = ZobristTable.BOARD_OFFSET;
+        assertNotEquals(ZobristTable.PRIMARY.getTokenHash(0, max, 1, 0, 0), ZobristTable.PRIMARY.getTokenHash(1, -max, 1, 0, 0));
+        assertNotEquals(0, ZobristTable.PRIMARY.getTokenHash(-max, -max, ZobristTable.MAX_HEIGHT, 1, 7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZobristTable_rejectsTokensOutsideTable() {
+        // Would otherwise hit the hash of (1, -27)
+        ZobristTable.PRIMARY.getTokenHash(0, ZobristTable.BOARD_OFFSET + 1, 1, 0, 0);
+    }
+
+    @Test
+    public void testZobristKey_sameForMirroredPositions() {
+        Board board = new Board(p1, p2);
+        board.setStandardPositionMode(StandardPositionMode.ENABLED);
+        board.addToken(p1.getFromSupply(BugType.QUEEN_BEE), 0, 0);
+        board.addToken(p2.getFromSupply(BugType.QUEEN_BEE), 1, 0);
+        board.addToken(p1.getFromSupply(BugType.SOLDIER_ANT), 0, -1);
+        board.addToken(p2.getFromSupply(BugType.SOLDIER_ANT), 2, -1);
+
+        // Mirror around the Q axis: (q, r) -> (q + r, -r)
+        Player white = new Player("White", Player.PlayerType.WHITE); white.fillBaseSupply();
+        Player black = new Player("Black", Player.PlayerType.BLACK); black.fillBaseSupply();
+        Board mirror = new Board(white, black);
+        mirror.setStandardPositionMode(StandardPositionMode.ENABLED);
+        mirror.addToken(white.getFromSupply(BugType.QUEEN_BEE), 0, 0);
+        mirror.addToken(black.getFromSupply(BugType.QUEEN_BEE), 1, 0);
+        mirror.addToken(white.getFromSupply(BugType.SOLDIER_ANT), -1, 1);
+        mirror.addToken(black.getFromSupply(BugType.SOLDIER_ANT), 1, 1);
+
+        assertEquals(board.getZobristKey(), mirror.getZobristKey());
+
+        // Keys are restored when moving tokens back and forth
+        long key = board.getZobristKey();
+        board.moveToken(2, -1, 2, 0);
+        assertNotEquals(key, board.getZobristKey());
+        board.moveToken(2, 0, 2, -1);
+        assertEquals(key, board.getZobristKey());
+    }
+
     @Test
     public void testZobristKey_sameForStandardPositionForMultiplePositions() {
         Board board = new Board(p1, p2);
@@ -1,8 +1,21 @@
 package dk.ilios.hivemind.model;
 
+import dk.ilios.hivemind.ai.heuristics.TestSetups;
+import dk.ilios.hivemind.ai.moves.StandardMoveGenerator;
+import dk.ilios.hivemind.game.Game;
+import dk.ilios.hivemind.game.GameCommand;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
 public class GameTest {
 
     @Test
@@ -14,4 +27,71 @@ public class GameTest {
     public void testReplayModeBackwards() {
 
     }
+
+    @Test
+    public void testCopy() {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game = TestSetups.sureWinInTwoTurns(game);
+        game.updateZobristKey();
+        long key = game.getZobristKey();
+
+        Game copy = game.copy();
+
+        assertEquals(key, copy.getZobristKey());
+        assertEquals(game.getVerificationKey(), copy.getVerificationKey());
+        assertTrue(copy.getBoard().hasSameLayout(game.getBoard()));
+        assertEquals(Player.PlayerType.BLACK, copy.getActivePlayer().getType());
+        assertNotSame(game.getBlackPlayer(), copy.getBlackPlayer());
+        assertEquals(game.getBlackPlayer().getSupply().size(), copy.getBlackPlayer().getSupply().size());
+
+        // Moves in the copy doesn't affect the original, but gives the same keys
+        List<GameCommand> moves = new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), copy);
+        GameCommand move = moves.get(0);
+        move.execute(copy);
+        assertFalse(copy.getBoard().hasSameLayout(game.getBoard()));
+        assertEquals(key, game.getZobristKey());
+
+        move.copyFor(game).execute(game);
+        assertTrue(copy.getBoard().hasSameLayout(game.getBoard()));
+        assertEquals(game.getZobristKey(), copy.getZobristKey());
+    }
+
+    @Test
+    public void testZobristKeyIncludesSupply() {
+        Game baseGame = createGame(false);
+        Game expansionGame = createGame(true);
+        assertEquals(baseGame.getBoard().getZobristKey(), expansionGame.getBoard().getZobristKey());
+        assertNotEquals(baseGame.getZobristKey(), expansionGame.getZobristKey());
+        assertNotEquals(baseGame.getVerificationKey(), expansionGame.getVerificationKey());
+
+        // Keys are restored when undoing moves
+        long key = baseGame.getZobristKey();
+        long verificationKey = baseGame.getVerificationKey();
+        GameCommand move = new StandardMoveGenerator().generateMoves(new ArrayList<GameCommand>(), baseGame).get(0);
+        move.execute(baseGame);
+        assertNotEquals(key, baseGame.getZobristKey());
+        move.undo(baseGame);
+        assertEquals(key, baseGame.getZobristKey());
+        assertEquals(verificationKey, baseGame.getVerificationKey());
+    }
+
+    private Game createGame(boolean mosquito) {
+        Game game = new Game();
+        Player p1 = new Player("White", Player.PlayerType.WHITE); p1.fillBaseSupply();
+        Player p2 = new Player("Black", Player.PlayerType.BLACK); p2.fillBaseSupply();
+        if (mosquito) {
+            p1.useMosquitoExpansion();
+            p2.useMosquitoExpansion();
+        }
+        game.addPlayers(p1, p2);
+        game.setStandardPositionMode(StandardPositionMode.ENABLED);
+        game.setManualStepping(true);
+        game.start();
+        game.updateZobristKey();
+        return game;
+    }
 }
@@ -0,0 +1,40 @@
+package dk.ilios.hivemind.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SymmetryTransformTest {
+
+    @Test
+    public void testMatchesCubeRotations() {
+        for (int symmetry = 0; symmetry < SymmetryTransform.SYMMETRIES; symmetry++) {
+            for (int q = -40; q <= 40; q++) {
+                for (int r = -40; r <= 40; r++) {
+                    int[] cube = HexagonUtils.convertToCubeCoordinates(q, r);
+                    for (int i = 0; i < symmetry % SymmetryTransform.ROTATIONS; i++) {
+                        HexagonUtils.rotateRight(cube);
+                    }
+                    if (symmetry >= SymmetryTransform.ROTATIONS) {
+                        cube = new int[] { -cube[1], -cube[0], -cube[2] };
+                    }
+                    int[] expected = HexagonUtils.convertToAxialCoordinates(cube[0], cube[1], cube[2]);
+
+                    assertEquals(expected[0], SymmetryTransform.transformQ(symmetry, q, r));
+                    assertEquals(expected[1], SymmetryTransform.transformR(symmetry, q, r));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInverse() {
+        for (int symmetry = 0; symmetry < SymmetryTransform.SYMMETRIES; symmetry++) {
+            int inverse = SymmetryTransform.getInverse(symmetry);
+            int q = SymmetryTransform.transformQ(symmetry, 3, -7);
+            int r = SymmetryTransform.transformR(symmetry, 3, -7);
+            assertEquals(3, SymmetryTransform.transformQ(inverse, q, r));
+            assertEquals(-7, SymmetryTransform.transformR(inverse, q, r));
+        }
+    }
+}